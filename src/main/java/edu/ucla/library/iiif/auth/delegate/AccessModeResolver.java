@@ -0,0 +1,476 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+import edu.ucla.library.iiif.auth.delegate.cache.BoundedCache;
+import edu.ucla.library.iiif.auth.delegate.events.AccessModeEvent;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+import edu.ucla.library.iiif.auth.delegate.hauth.CacheDirectives;
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthAccessMode;
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthItem;
+import edu.ucla.library.iiif.auth.delegate.hauth.ItemSource;
+import edu.ucla.library.iiif.auth.delegate.limit.Bulkhead;
+import edu.ucla.library.iiif.auth.delegate.metrics.Metrics;
+import edu.ucla.library.iiif.auth.delegate.metrics.UpstreamMetrics;
+import edu.ucla.library.iiif.auth.delegate.policy.AccessPolicy;
+
+/**
+ * Resolves the access modes of items, checking the local access policy, then the access mode cache, and only then
+ * asking Hauth. Lookups in Hauth are limited by a bulkhead; an item whose lookup is rejected, or fails, is given the
+ * configured fallback access mode.
+ * <p>
+ * Hauth's HTTP caching metadata is honored: an access mode is fresh for its response's <code>max-age</code> (or, if it
+ * doesn't have one, {@link Config#AUTH_ACCESS_CACHE_TTL}), isn't cached if its response is <code>no-store</code>, and
+ * may be used for <code>stale-if-error</code> longer if Hauth can't be reached. A stale access mode is kept for a
+ * while, so that it can be revalidated with a conditional lookup, which Hauth can answer with a 304 Not Modified.
+ * <p>
+ * A fresh access mode that's read after {@link Config#AUTH_ACCESS_CACHE_REFRESH} percent of its freshness is
+ * revalidated in the background, so that items that are still being requested don't go stale and make a request wait
+ * for Hauth. Refreshes are limited in number, and one that fails leaves the cached access mode in place.
+ */
+public final class AccessModeResolver {
+
+    /**
+     * The name of the access mode service's bulkhead and metrics.
+     */
+    public static final String ACCESS_SERVICE = "access";
+
+    /**
+     * The access mode resolver's logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccessModeResolver.class, MessageCodes.BUNDLE);
+
+    /**
+     * The metrics of the Hauth access mode service.
+     */
+    private static final UpstreamMetrics METRICS = Metrics.getUpstream(ACCESS_SERVICE);
+
+    /**
+     * The name of the threads that refresh access modes.
+     */
+    private static final String REFRESH_THREAD_NAME = "auth-delegate-refresh";
+
+    /**
+     * The maximum number of refreshes that may wait for a refresh thread; more are dropped, and tried again the next
+     * time their items are requested.
+     */
+    private static final int REFRESH_QUEUE_SIZE = 1000;
+
+    /**
+     * The number of seconds a refresh thread is kept alive while there's nothing to refresh.
+     */
+    private static final long KEEP_ALIVE = 30;
+
+    /**
+     * The percentage of a time to live that's all of it.
+     */
+    private static final int ALL = 100;
+
+    /**
+     * The local access policy, which decides the access modes of whole collections without a Hauth lookup.
+     */
+    private final AccessPolicy myPolicy;
+
+    /**
+     * A cache of the access modes that Hauth has returned.
+     */
+    private final BoundedCache<String, HauthAccessMode> myCache;
+
+    /**
+     * The amount of time an access mode is cached.
+     */
+    private final Duration myCacheTTL;
+
+    /**
+     * The Hauth access mode service.
+     */
+    private final URI myAccessService;
+
+    /**
+     * An HTTP client for the Hauth access mode service.
+     */
+    private final HttpClient myHttpClient;
+
+    /**
+     * The amount of time a lookup in the Hauth access mode service may take.
+     */
+    private final Duration myTimeout;
+
+    /**
+     * The bulkhead that limits calls to the Hauth access mode service.
+     */
+    private final Bulkhead myBulkhead;
+
+    /**
+     * The access mode of an item whose access mode can't be looked up.
+     */
+    private final AccessMode myFallback;
+
+    /**
+     * The refreshes of cached access modes.
+     */
+    private final Refreshes myRefreshes;
+
+    /**
+     * Creates a new access mode resolver.
+     *
+     * @param aConfig A delegate configuration
+     * @param aPolicy A local access policy
+     * @param aHttpClient An HTTP client for the Hauth access mode service
+     */
+    public AccessModeResolver(final Config aConfig, final AccessPolicy aPolicy, final HttpClient aHttpClient) {
+        this(aConfig, aPolicy, new BoundedCache<>(aConfig.getAccessCacheSize(), aConfig.getAccessCacheTTL(), true),
+                aHttpClient);
+    }
+
+    /**
+     * Creates a new access mode resolver that replaces the supplied resolver, keeping its cache if the new
+     * configuration's cache settings and access mode service are the same.
+     *
+     * @param aConfig A delegate configuration
+     * @param aPolicy A local access policy
+     * @param aPrevious The resolver that's being replaced
+     */
+    AccessModeResolver(final Config aConfig, final AccessPolicy aPolicy, final AccessModeResolver aPrevious) {
+        this(aConfig, aPolicy, aPrevious.canShareCache(aConfig) ? aPrevious.myCache
+                : new BoundedCache<>(aConfig.getAccessCacheSize(), aConfig.getAccessCacheTTL(), true),
+                aPrevious.myHttpClient);
+    }
+
+    /**
+     * Creates a new access mode resolver with the supplied cache.
+     *
+     * @param aConfig A delegate configuration
+     * @param aPolicy A local access policy
+     * @param aCache An access mode cache
+     * @param aHttpClient An HTTP client for the Hauth access mode service
+     */
+    private AccessModeResolver(final Config aConfig, final AccessPolicy aPolicy,
+            final BoundedCache<String, HauthAccessMode> aCache, final HttpClient aHttpClient) {
+        this(aPolicy, aCache, aConfig.getAccessCacheTTL(), aConfig.getAccessService(), aHttpClient,
+                aConfig.getUpstreamTimeout(), Bulkhead.getShared(ACCESS_SERVICE, aConfig.getAccessServiceConcurrency(),
+                        aConfig.getUpstreamQueueSize(), aConfig.getUpstreamQueueTimeout(), aConfig.isAdaptiveLimit()),
+                aConfig.getFallbackAccessMode(), new Refreshes(aConfig));
+    }
+
+    /**
+     * Creates a new access mode resolver from its parts.
+     *
+     * @param aPolicy A local access policy
+     * @param aCache An access mode cache
+     * @param aCacheTTL The amount of time an access mode is fresh, if Hauth doesn't say
+     * @param aAccessService The Hauth access mode service
+     * @param aHttpClient An HTTP client for the Hauth access mode service
+     * @param aTimeout The amount of time a lookup in the Hauth access mode service may take
+     * @param aBulkhead The bulkhead that limits calls to the Hauth access mode service
+     * @param aFallback The access mode of an item whose access mode can't be looked up
+     * @param aRefreshes The refreshes of cached access modes
+     */
+    private AccessModeResolver(final AccessPolicy aPolicy, final BoundedCache<String, HauthAccessMode> aCache,
+            final Duration aCacheTTL, final URI aAccessService, final HttpClient aHttpClient, final Duration aTimeout,
+            final Bulkhead aBulkhead, final AccessMode aFallback, final Refreshes aRefreshes) {
+        myPolicy = aPolicy;
+        myCache = aCache;
+        myCacheTTL = aCacheTTL;
+        myAccessService = aAccessService;
+        myHttpClient = aHttpClient;
+        myTimeout = aTimeout;
+        myBulkhead = aBulkhead;
+        myFallback = aFallback;
+        myRefreshes = aRefreshes;
+    }
+
+    /**
+     * Creates a resolver that shares this resolver's cache and HTTP client, but that uses a different local access
+     * policy.
+     *
+     * @param aPolicy A local access policy
+     * @return A new access mode resolver
+     */
+    AccessModeResolver withPolicy(final AccessPolicy aPolicy) {
+        return new AccessModeResolver(aPolicy, myCache, myCacheTTL, myAccessService, myHttpClient, myTimeout,
+                myBulkhead, myFallback, myRefreshes);
+    }
+
+    /**
+     * Gets the access mode of the supplied item. If the item has to be looked up, and the lookup fails or is rejected,
+     * the item is given the fallback access mode.
+     *
+     * @param aID An item ID
+     * @return The item's access mode
+     */
+    public AccessMode getAccessMode(final String aID) {
+        final AccessModeEvent event = new AccessModeEvent();
+        event.begin();
+
+        final Optional<AccessMode> policyAccessMode = myPolicy.getAccessMode(aID);
+
+        if (policyAccessMode.isPresent()) {
+            LOGGER.debug(MessageCodes.CAD_033, aID, policyAccessMode.get());
+            event.commit(aID, policyAccessMode.get().name(), AccessModeEvent.POLICY);
+            return policyAccessMode.get();
+        }
+
+        final Optional<HauthAccessMode> cached = myCache.get(aID);
+
+        if (cached.isPresent() && cached.get().isFresh(System.nanoTime(), myCacheTTL)) {
+            refreshIfDue(aID, cached.get());
+            event.commit(aID, cached.get().getAccessMode().name(), AccessModeEvent.CACHE);
+            return cached.get().getAccessMode();
+        }
+
+        // A stale access mode is revalidated, and may still be used for a while if Hauth can't be reached
+        final Optional<HauthAccessMode> accessMode = lookUp(aID, cached);
+
+        if (accessMode.isPresent()) {
+            event.commit(aID, accessMode.get().getAccessMode().name(), AccessModeEvent.HAUTH);
+            return accessMode.get().getAccessMode();
+        }
+
+        if (cached.isPresent() && cached.get().isUsableOnError(System.nanoTime(), myCacheTTL)) {
+            event.commit(aID, cached.get().getAccessMode().name(), AccessModeEvent.CACHE);
+            return cached.get().getAccessMode();
+        }
+
+        event.commit(aID, myFallback.name(), AccessModeEvent.FALLBACK);
+        return myFallback;
+    }
+
+    /**
+     * Gets where the supplied item's image is stored, from the same Hauth record as its access mode. If the record is
+     * cached (e.g., because the request for the item has just been authorized), it's used without another lookup.
+     * Items in the local access policy are looked up, too, since the policy only has their access modes. Reading the
+     * cached record isn't counted as a cache hit or miss, since it's part of a request whose access mode read was.
+     *
+     * @param aID An item ID
+     * @return Where the item's image is stored, or an empty optional if its record doesn't say or can't be looked up
+     */
+    public Optional<ItemSource> getSource(final String aID) {
+        final Optional<HauthAccessMode> cached = myCache.peek(aID);
+
+        if (cached.isPresent() && cached.get().isFresh(System.nanoTime(), myCacheTTL)) {
+            return cached.get().getSource();
+        }
+
+        return lookUp(aID, cached).or(() -> cached.filter(record -> record.isUsableOnError(System.nanoTime(),
+                myCacheTTL))).flatMap(HauthAccessMode::getSource);
+    }
+
+    /**
+     * Looks up the access mode of the supplied item and caches it, so that a later request for the item won't have
+     * to wait for the lookup. Items that are in the local access policy, or whose cached access modes are still
+     * fresh, aren't looked up.
+     *
+     * @param aID An item ID
+     * @return True if the item's access mode was looked up and cached; else, false
+     */
+    public boolean preload(final String aID) {
+        if (myPolicy.getAccessMode(aID).isPresent()) {
+            return false;
+        }
+
+        final Optional<HauthAccessMode> cached = myCache.get(aID);
+
+        if (cached.isPresent() && cached.get().isFresh(System.nanoTime(), myCacheTTL)) {
+            return false;
+        }
+
+        return lookUp(aID, cached).filter(accessMode -> !accessMode.getDirectives().isNoStore()).isPresent();
+    }
+
+    /**
+     * Looks up the access mode of the supplied item again right away, even if its cached access mode is still fresh.
+     * The lookup revalidates the cached access mode, which is only replaced if the lookup succeeds; if it fails, the
+     * cached access mode is kept.
+     *
+     * @param aID An item ID
+     * @return True if the item's access mode was looked up and cached; else, false
+     */
+    public boolean revalidate(final String aID) {
+        if (myPolicy.getAccessMode(aID).isPresent()) {
+            return false;
+        }
+
+        return lookUp(aID, myCache.peek(aID)).filter(accessMode -> !accessMode.getDirectives().isNoStore())
+                .isPresent();
+    }
+
+    /**
+     * Gets the maximum number of access modes that can be cached.
+     *
+     * @return The maximum number of access modes that can be cached
+     */
+    public int getCacheSize() {
+        return myCache.getMaxSize();
+    }
+
+    /**
+     * Gets the resolver's local access policy.
+     *
+     * @return The local access policy, whose access modes are used instead of Hauth's
+     */
+    AccessPolicy getPolicy() {
+        return myPolicy;
+    }
+
+    /**
+     * Gets the resolver's access mode cache.
+     *
+     * @return The cache of looked up access modes
+     */
+    BoundedCache<String, HauthAccessMode> getCache() {
+        return myCache;
+    }
+
+    /**
+     * Looks up the access mode of the supplied item in Hauth, caching it if the lookup succeeds and Hauth allows it.
+     * If a previous access mode is supplied, the lookup revalidates it. Failed or rejected lookups aren't cached, so
+     * that they're retried by the next request.
+     *
+     * @param aID An item ID
+     * @param aCached The item's previous access mode, if there is one
+     * @return The item's access mode, or an empty optional if the lookup failed or was rejected
+     */
+    private Optional<HauthAccessMode> lookUp(final String aID, final Optional<HauthAccessMode> aCached) {
+        Optional<HauthAccessMode> accessMode = Optional.empty();
+
+        if (!myBulkhead.tryEnter()) {
+            LOGGER.debug(MessageCodes.CAD_044, myBulkhead.getName(), aID);
+            METRICS.recordRejection();
+            return accessMode;
+        }
+
+        final long start = System.nanoTime();
+
+        try {
+            accessMode = new HauthItem(myHttpClient, myAccessService, aID, myTimeout).lookUp(aCached);
+        } finally {
+            final long latency = System.nanoTime() - start;
+
+            myBulkhead.exit(latency, accessMode.isPresent());
+            METRICS.record(latency, accessMode.isPresent());
+        }
+
+        accessMode.ifPresent(mode -> cache(aID, mode));
+        return accessMode;
+    }
+
+    /**
+     * Caches an access mode returned by Hauth, unless its response mustn't be cached. It's kept for a while after it
+     * goes stale, so that it can be revalidated cheaply, or used if Hauth can't be reached and its response allows it.
+     *
+     * @param aID An item ID
+     * @param aAccessMode The item's access mode
+     */
+    private void cache(final String aID, final HauthAccessMode aAccessMode) {
+        final CacheDirectives directives = aAccessMode.getDirectives();
+
+        if (directives.isNoStore()) {
+            myCache.invalidate(aID);
+            return;
+        }
+
+        final Duration staleTime =
+                directives.getStaleIfError().filter(time -> time.compareTo(myCacheTTL) > 0).orElse(myCacheTTL);
+
+        myCache.put(aID, aAccessMode, aAccessMode.getFreshness(myCacheTTL).plus(staleTime));
+    }
+
+    /**
+     * Starts a background revalidation of a fresh cached access mode, if it has been fresh for long enough.
+     *
+     * @param aID An item ID
+     * @param aCached The item's cached access mode
+     */
+    private void refreshIfDue(final String aID, final HauthAccessMode aCached) {
+        if (myRefreshes.myPercentage > 0 && aCached.getAge(System.nanoTime()) >=
+                aCached.getFreshness(myCacheTTL).toNanos() / ALL * myRefreshes.myPercentage) {
+            refresh(aID);
+        }
+    }
+
+    /**
+     * Starts a background revalidation of the supplied item's access mode, unless one is already running or waiting.
+     *
+     * @param aID An item ID
+     */
+    private void refresh(final String aID) {
+        if (!myRefreshes.myItems.add(aID)) {
+            return;
+        }
+
+        try {
+            myRefreshes.myExecutor.execute(() -> {
+                try {
+                    lookUp(aID, myCache.peek(aID));
+                } finally {
+                    myRefreshes.myItems.remove(aID);
+                }
+            });
+        } catch (final RejectedExecutionException details) {
+            // Too many refreshes are waiting; this one can be tried again the next time the item is requested
+            myRefreshes.myItems.remove(aID);
+        }
+    }
+
+    /**
+     * Checks whether this resolver's cache can be used with the supplied configuration.
+     *
+     * @param aConfig A delegate configuration
+     * @return True if the cache can be shared; else, false
+     */
+    private boolean canShareCache(final Config aConfig) {
+        return myCache.getMaxSize() == aConfig.getAccessCacheSize() && myCacheTTL.equals(aConfig.getAccessCacheTTL()) &&
+                myAccessService.equals(aConfig.getAccessService());
+    }
+
+    /**
+     * The refreshes of cached access modes, which are shared by resolvers that differ only in their local access
+     * policies.
+     */
+    private static final class Refreshes {
+
+        /**
+         * The percentage of an access mode's time to live after which, if it's read, it's refreshed.
+         */
+        private final int myPercentage;
+
+        /**
+         * The executor that runs refreshes, with a thread for each refresh that may run at once.
+         */
+        private final ThreadPoolExecutor myExecutor;
+
+        /**
+         * The items whose access modes are being refreshed, or are waiting to be.
+         */
+        private final Set<String> myItems = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Creates the refreshes of cached access modes.
+         *
+         * @param aConfig A delegate configuration
+         */
+        private Refreshes(final Config aConfig) {
+            final int concurrency = aConfig.getRefreshConcurrency();
+
+            myPercentage = aConfig.getAccessCacheRefresh();
+            myExecutor = new ThreadPoolExecutor(concurrency, concurrency, KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(REFRESH_QUEUE_SIZE),
+                    BackgroundThreads.newThreadFactory(REFRESH_THREAD_NAME));
+            myExecutor.allowCoreThreadTimeOut(true);
+        }
+    }
+}
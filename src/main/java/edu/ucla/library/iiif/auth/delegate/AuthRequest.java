@@ -0,0 +1,128 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.util.Map;
+
+import edu.illinois.library.cantaloupe.delegate.JavaContext;
+
+/**
+ * The parts of a Cantaloupe request that an authorization decision depends on.
+ * <p>
+ * This is copied out of Cantaloupe's request context so that decisions can be made (and tested, or warmed up) without
+ * a delegate instance.
+ */
+public final class AuthRequest {
+
+    /**
+     * The last path segment of an image information request.
+     */
+    private static final String INFO_JSON = "info.json";
+
+    /**
+     * The requested item's ID.
+     */
+    private final String myID;
+
+    /**
+     * The request's URI, as the client sent it.
+     */
+    private final String myRequestURI;
+
+    /**
+     * The request's URI, as Cantaloupe sees it.
+     */
+    private final String myLocalURI;
+
+    /**
+     * The scale constraint of the request's meta-identifier.
+     */
+    private final int[] myScaleConstraint;
+
+    /**
+     * The request's credential headers.
+     */
+    private final RequestHeaders myHeaders;
+
+    /**
+     * Creates a new authorization request.
+     *
+     * @param aID The requested item's ID
+     * @param aRequestURI The request's URI, as the client sent it
+     * @param aLocalURI The request's URI, as Cantaloupe sees it
+     * @param aScaleConstraint The scale constraint of the request's meta-identifier (which is 1:1 if there isn't one)
+     * @param aHeaders The request's headers
+     */
+    public AuthRequest(final String aID, final String aRequestURI, final String aLocalURI,
+            final int[] aScaleConstraint, final Map<String, String> aHeaders) {
+        myID = aID;
+        myRequestURI = aRequestURI;
+        myLocalURI = aLocalURI;
+        myScaleConstraint = aScaleConstraint.clone();
+        myHeaders = new RequestHeaders(aHeaders);
+    }
+
+    /**
+     * Creates a new authorization request from Cantaloupe's request context.
+     *
+     * @param aContext A request context
+     * @return The authorization request
+     */
+    public static AuthRequest from(final JavaContext aContext) {
+        return new AuthRequest(aContext.getIdentifier(), aContext.getRequestURI(), aContext.getLocalURI(),
+                aContext.getScaleConstraint(), aContext.getRequestHeaders());
+    }
+
+    /**
+     * Gets the requested item's ID.
+     *
+     * @return The requested item's ID
+     */
+    public String getID() {
+        return myID;
+    }
+
+    /**
+     * Gets the request's URI, as the client sent it.
+     *
+     * @return The request's URI
+     */
+    public String getRequestURI() {
+        return myRequestURI;
+    }
+
+    /**
+     * Gets the request's URI, as Cantaloupe sees it.
+     *
+     * @return The request's local URI
+     */
+    public String getLocalURI() {
+        return myLocalURI;
+    }
+
+    /**
+     * Gets the scale constraint of the request's meta-identifier.
+     *
+     * @return The scale constraint, which is 1:1 for full size image requests
+     */
+    public int[] getScaleConstraint() {
+        return myScaleConstraint.clone();
+    }
+
+    /**
+     * Gets the request's credential headers.
+     *
+     * @return The request's credential headers
+     */
+    public RequestHeaders getHeaders() {
+        return myHeaders;
+    }
+
+    /**
+     * Gets whether the request is for an info.json rather than an image.
+     *
+     * @return True if the request is for an info.json; else, false
+     */
+    public boolean isInfoRequest() {
+        return myRequestURI.endsWith(INFO_JSON);
+    }
+}
@@ -0,0 +1,185 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import info.freelibrary.iiif.presentation.v3.services.AuthCookieService1;
+import info.freelibrary.iiif.presentation.v3.services.AuthTokenService1;
+import info.freelibrary.iiif.presentation.v3.services.ExternalCookieService1;
+import info.freelibrary.iiif.presentation.v3.services.KioskCookieService1;
+import info.freelibrary.iiif.presentation.v3.utils.JSON;
+import info.freelibrary.iiif.presentation.v3.utils.JsonKeys;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * The IIIF authentication service descriptions that are added to the info.json responses of restricted items.
+ * <p>
+ * The descriptions only depend on the configured service URIs, so they're built (and serialized) once per
+ * configuration and then shared, as immutable structures, by all requests.
+ */
+public final class AuthServices {
+
+    /**
+     * A Jackson TypeReference for a Map.
+     */
+    private static final TypeReference<Map<String, Object>> MAP_TYPE_REFERENCE = new TypeReference<>() {};
+
+    /**
+     * The label of the tiered access cookie service.
+     */
+    private static final String TIERED_LABEL = "Internal cookie granting service";
+
+    /**
+     * The label of the all-or-nothing access cookie service.
+     */
+    private static final String ALL_OR_NOTHING_LABEL = "External authentication required";
+
+    /**
+     * The most recently built service descriptions.
+     */
+    private static volatile AuthServices latestServices;
+
+    /**
+     * The cookie service URI the descriptions were built from.
+     */
+    private final URI myCookieService;
+
+    /**
+     * The token service URI the descriptions were built from.
+     */
+    private final URI myTokenService;
+
+    /**
+     * The Sinai token service URI the descriptions were built from.
+     */
+    private final URI mySinaiTokenService;
+
+    /**
+     * The extra info.json keys for items with tiered access.
+     */
+    private final Map<String, Object> myTieredInfoKeys;
+
+    /**
+     * The extra info.json keys for items with all-or-nothing access.
+     */
+    private final Map<String, Object> myAllOrNothingInfoKeys;
+
+    /**
+     * Creates the auth service descriptions for the supplied configuration.
+     *
+     * @param aConfig A delegate configuration
+     */
+    private AuthServices(final Config aConfig) {
+        final AuthTokenService1 tokenService = new AuthTokenService1(aConfig.getTokenService());
+        final AuthTokenService1 sinaiTokenService = new AuthTokenService1(aConfig.getSinaiTokenService());
+
+        myCookieService = aConfig.getCookieService();
+        myTokenService = aConfig.getTokenService();
+        mySinaiTokenService = aConfig.getSinaiTokenService();
+
+        myTieredInfoKeys = toInfoKeys(new KioskCookieService1(myCookieService, tokenService), TIERED_LABEL);
+        myAllOrNothingInfoKeys = toInfoKeys(new ExternalCookieService1(sinaiTokenService), ALL_OR_NOTHING_LABEL);
+    }
+
+    /**
+     * Gets the auth service descriptions for the supplied configuration, reusing previously built descriptions if
+     * the configured service URIs haven't changed.
+     *
+     * @param aConfig A delegate configuration
+     * @return The auth service descriptions
+     */
+    public static AuthServices forConfig(final Config aConfig) {
+        final AuthServices latest = latestServices;
+
+        if (latest != null && latest.isFor(aConfig)) {
+            return latest;
+        }
+
+        final AuthServices services = new AuthServices(aConfig);
+
+        latestServices = services;
+        return services;
+    }
+
+    /**
+     * Gets the extra info.json keys for an item with the supplied access mode.
+     *
+     * @param aAccessMode An item's access mode
+     * @return An immutable map of the extra info.json keys, which is empty for open access items
+     */
+    public Map<String, Object> getInfoKeys(final AccessMode aAccessMode) {
+        switch (aAccessMode) {
+            case TIERED:
+                return myTieredInfoKeys;
+            case ALL_OR_NOTHING:
+                return myAllOrNothingInfoKeys;
+            case OPEN:
+            default:
+                // The OPEN and default branches should not be reachable, but are included here just in case
+                return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Checks whether these descriptions were built from the same service URIs as the supplied configuration.
+     *
+     * @param aConfig A delegate configuration
+     * @return True if the descriptions can be used with the supplied configuration; else, false
+     */
+    private boolean isFor(final Config aConfig) {
+        return Objects.equals(myCookieService, aConfig.getCookieService()) &&
+                Objects.equals(myTokenService, aConfig.getTokenService()) &&
+                Objects.equals(mySinaiTokenService, aConfig.getSinaiTokenService());
+    }
+
+    /**
+     * Serializes a cookie service description into the extra info.json keys that contain it.
+     *
+     * @param aCookieService A cookie service description
+     * @param aLabel A label to use if the service description doesn't have one
+     * @return An immutable map of the extra info.json keys
+     */
+    private static Map<String, Object> toInfoKeys(final AuthCookieService1<?> aCookieService, final String aLabel) {
+        final Map<String, Object> serviceMap = JSON.convertValue(aCookieService, MAP_TYPE_REFERENCE);
+
+        // Workaround for Mirador bug that requires label be present (Cf. https://bitly.com/3NllMLq+)
+        serviceMap.putIfAbsent(JsonKeys.LABEL, aLabel);
+
+        return Collections.singletonMap(JsonKeys.SERVICE, List.of(toImmutable(serviceMap)));
+    }
+
+    /**
+     * Makes an immutable copy of a value from a deserialized JSON structure.
+     *
+     * @param aValue A JSON value
+     * @return An immutable copy of the value
+     */
+    private static Object toImmutable(final Object aValue) {
+        if (aValue instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) aValue;
+            final Map<Object, Object> copy = new LinkedHashMap<>(map.size());
+
+            map.forEach((key, value) -> copy.put(key, toImmutable(value)));
+            return Collections.unmodifiableMap(copy);
+        }
+
+        if (aValue instanceof List) {
+            final List<?> list = (List<?>) aValue;
+            final List<Object> copy = new ArrayList<>(list.size());
+
+            list.forEach(value -> copy.add(toImmutable(value)));
+            return Collections.unmodifiableList(copy);
+        }
+
+        return aValue;
+    }
+}
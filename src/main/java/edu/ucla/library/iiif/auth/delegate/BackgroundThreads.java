@@ -0,0 +1,71 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The threads that run the delegate's background work (e.g., warm-up, preloading, prefetching, and watching the
+ * configuration file) and its HTTP client's tasks, which mostly wait on upstream services.
+ * <p>
+ * This is the JDK 11 version, which uses platform daemon threads. The delegate's multi-release jar has a JDK 21 version
+ * that uses virtual threads instead, so that many more upstream waits can be in flight without growing thread pools.
+ */
+final class BackgroundThreads {
+
+    /**
+     * Creates a new background threads utility.
+     */
+    private BackgroundThreads() {
+        // This is intentionally left empty
+    }
+
+    /**
+     * Checks whether background work runs on virtual threads.
+     *
+     * @return True if background work runs on virtual threads; else, false
+     */
+    static boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * Gets a factory for background threads with the supplied name.
+     *
+     * @param aName A thread name
+     * @return A thread factory
+     */
+    static ThreadFactory newThreadFactory(final String aName) {
+        return task -> {
+            final Thread thread = new Thread(task, aName);
+
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Gets an executor that runs each task on a background thread, reusing idle threads where it can.
+     *
+     * @param aName The name of the executor's threads
+     * @return An executor
+     */
+    static ExecutorService newExecutor(final String aName) {
+        return Executors.newCachedThreadPool(newThreadFactory(aName));
+    }
+
+    /**
+     * Starts a task on a new background thread.
+     *
+     * @param aName The thread's name
+     * @param aTask The task to run
+     * @return The started thread
+     */
+    static Thread start(final String aName, final Runnable aTask) {
+        final Thread thread = newThreadFactory(aName).newThread(aTask);
+
+        thread.start();
+        return thread;
+    }
+}
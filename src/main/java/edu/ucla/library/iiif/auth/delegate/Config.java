@@ -3,14 +3,38 @@ package edu.ucla.library.iiif.auth.delegate;
 
 import static info.freelibrary.util.Constants.COLON;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
 import java.util.stream.Stream;
 
+import edu.ucla.library.iiif.auth.delegate.audit.RingBuffer;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+import edu.ucla.library.iiif.auth.delegate.limit.ClientRateLimiter;
+
 /**
  * A configuration class.
+ * <p>
+ * A configuration is read from the environment and, optionally, from a properties file (named by the
+ * {@link #AUTH_CONFIG_FILE} environmental property) whose values override the environment's. A configuration is
+ * immutable, so one that's in use by the {@link DecisionEngine} can be shared safely: each setter validates and
+ * returns a copy with the supplied value, and changes are put into effect by loading a new configuration.
  */
+// A getter and setter for each property is expected here
+@SuppressWarnings({ "PMD.GodClass", "PMD.TooManyMethods", "PMD.TooManyFields", "PMD.ExcessivePublicCount",
+    "PMD.CyclomaticComplexity" })
 public final class Config {
 
     /**
@@ -40,41 +64,499 @@ public final class Config {
      */
     public static final String TIERED_ACCESS_SCALE_CONSTRAINT = "TIERED_ACCESS_SCALE_CONSTRAINT";
 
+    /**
+     * An optional environmental property for the number of parsed Authorization headers to cache.
+     */
+    public static final String AUTH_TOKEN_CACHE_SIZE = "AUTH_TOKEN_CACHE_SIZE";
+
+    /**
+     * An optional environmental property for the location of a properties file that overrides the environment.
+     */
+    public static final String AUTH_CONFIG_FILE = "AUTH_CONFIG_FILE";
+
+    /**
+     * An optional environmental property for the location of a local access policy file.
+     */
+    public static final String AUTH_POLICY_FILE = "AUTH_POLICY_FILE";
+
+    /**
+     * An optional environmental property for the largest dimension of a derivative that's always allowed.
+     */
+    public static final String FREE_DERIVATIVE_MAX_SIZE = "FREE_DERIVATIVE_MAX_SIZE";
+
+    /**
+     * An optional environmental property for whether derivatives within the tiered access scale constraint are always
+     * allowed.
+     */
+    public static final String FREE_DERIVATIVE_SCALED = "FREE_DERIVATIVE_SCALED";
+
+    /**
+     * An optional environmental property for the number of synthetic decisions to make when the delegate is loaded.
+     */
+    public static final String AUTH_WARM_UP_ITERATIONS = "AUTH_WARM_UP_ITERATIONS";
+
+    /**
+     * An optional environmental property for the number of item access modes to cache.
+     */
+    public static final String AUTH_ACCESS_CACHE_SIZE = "AUTH_ACCESS_CACHE_SIZE";
+
+    /**
+     * An optional environmental property for the number of seconds an item access mode is cached.
+     */
+    public static final String AUTH_ACCESS_CACHE_TTL = "AUTH_ACCESS_CACHE_TTL";
+
+    /**
+     * An optional environmental property for the percentage of an access mode's time to live after which, if it's
+     * read, it's refreshed in the background.
+     */
+    public static final String AUTH_ACCESS_CACHE_REFRESH = "AUTH_ACCESS_CACHE_REFRESH";
+
+    /**
+     * An optional environmental property for the number of access mode refreshes that may run at once.
+     */
+    public static final String AUTH_REFRESH_CONCURRENCY = "AUTH_REFRESH_CONCURRENCY";
+
+    /**
+     * An optional environmental property for whether items' sources are resolved from their Hauth records.
+     */
+    public static final String AUTH_SOURCE_RESOLUTION = "AUTH_SOURCE_RESOLUTION";
+
+    /**
+     * An optional environmental property for the location of a file of identifiers, or an access log, to preload.
+     */
+    public static final String AUTH_PRELOAD_FILE = "AUTH_PRELOAD_FILE";
+
+    /**
+     * An optional environmental property for the number of access mode lookups a preload may make at once.
+     */
+    public static final String AUTH_PRELOAD_CONCURRENCY = "AUTH_PRELOAD_CONCURRENCY";
+
+    /**
+     * An optional environmental property for the number of access mode lookups a preload may make each second.
+     */
+    public static final String AUTH_PRELOAD_RATE = "AUTH_PRELOAD_RATE";
+
+    /**
+     * The optional URI template of the manifests whose items' access modes are prefetched.
+     */
+    public static final String AUTH_MANIFEST_TEMPLATE = "AUTH_MANIFEST_TEMPLATE";
+
+    /**
+     * The optional maximum number of access mode lookups that may be made at once.
+     */
+    public static final String AUTH_ACCESS_CONCURRENCY = "AUTH_ACCESS_CONCURRENCY";
+
+    /**
+     * The optional maximum number of token service calls that may be made at once.
+     */
+    public static final String AUTH_TOKEN_CONCURRENCY = "AUTH_TOKEN_CONCURRENCY";
+
+    /**
+     * The optional maximum number of Sinai token service calls that may be made at once.
+     */
+    public static final String SINAI_AUTH_TOKEN_CONCURRENCY = "SINAI_AUTH_TOKEN_CONCURRENCY";
+
+    /**
+     * The optional maximum number of calls that may wait for each upstream service.
+     */
+    public static final String AUTH_UPSTREAM_QUEUE_SIZE = "AUTH_UPSTREAM_QUEUE_SIZE";
+
+    /**
+     * The optional number of milliseconds a call may wait for an upstream service.
+     */
+    public static final String AUTH_UPSTREAM_QUEUE_TIMEOUT = "AUTH_UPSTREAM_QUEUE_TIMEOUT";
+
+    /**
+     * The optional number of milliseconds a call to an upstream service may take, including connecting to it.
+     */
+    public static final String AUTH_UPSTREAM_TIMEOUT = "AUTH_UPSTREAM_TIMEOUT";
+
+    /**
+     * The optional access mode of an item whose access mode can't be looked up.
+     */
+    public static final String AUTH_FALLBACK_ACCESS_MODE = "AUTH_FALLBACK_ACCESS_MODE";
+
+    /**
+     * The optional flag that lets each upstream service's concurrency adapt to its latency.
+     */
+    public static final String AUTH_ADAPTIVE_LIMIT = "AUTH_ADAPTIVE_LIMIT";
+
+    /**
+     * The optional number of failed credential checks each client may make per minute.
+     */
+    public static final String AUTH_CLIENT_RATE_LIMIT = "AUTH_CLIENT_RATE_LIMIT";
+
+    /**
+     * The optional number of failed credential checks a client may make at once.
+     */
+    public static final String AUTH_CLIENT_BURST = "AUTH_CLIENT_BURST";
+
+    /**
+     * The optional number of proxies in front of Cantaloupe that append to X-Forwarded-For.
+     */
+    public static final String AUTH_TRUSTED_PROXIES = "AUTH_TRUSTED_PROXIES";
+
+    /**
+     * The optional audit log file, to which authorization decisions are written as JSON lines.
+     */
+    public static final String AUTH_AUDIT_LOG = "AUTH_AUDIT_LOG";
+
+    /**
+     * The optional percentage of authorization decisions that are written to the audit log.
+     */
+    public static final String AUTH_AUDIT_SAMPLE_RATE = "AUTH_AUDIT_SAMPLE_RATE";
+
+    /**
+     * The optional number of decisions that may wait to be written to the audit log.
+     */
+    public static final String AUTH_AUDIT_BUFFER_SIZE = "AUTH_AUDIT_BUFFER_SIZE";
+
+    /**
+     * The optional size, in megabytes, past which the audit log file is rotated.
+     */
+    public static final String AUTH_AUDIT_MAX_FILE_SIZE = "AUTH_AUDIT_MAX_FILE_SIZE";
+
+    /**
+     * The default largest dimension of a derivative that's always allowed; this lets any thumbnail through.
+     */
+    public static final int DEFAULT_FREE_DERIVATIVE_MAX_SIZE = 200;
+
+    /**
+     * The default number of parsed Authorization headers to cache.
+     */
+    public static final int DEFAULT_TOKEN_CACHE_SIZE = 1000;
+
+    /**
+     * The default number of item access modes to cache.
+     */
+    public static final int DEFAULT_ACCESS_CACHE_SIZE = 10_000;
+
+    /**
+     * The default number of seconds an item access mode is cached.
+     */
+    public static final int DEFAULT_ACCESS_CACHE_TTL = 600;
+
+    /**
+     * The default percentage of an access mode's time to live after which, if it's read, it's refreshed.
+     */
+    public static final int DEFAULT_ACCESS_CACHE_REFRESH = 80;
+
+    /**
+     * The default number of access mode refreshes that may run at once.
+     */
+    public static final int DEFAULT_REFRESH_CONCURRENCY = 2;
+
+    /**
+     * The default number of access mode lookups a preload may make at once.
+     */
+    public static final int DEFAULT_PRELOAD_CONCURRENCY = 4;
+
+    /**
+     * The default number of access mode lookups a preload may make each second.
+     */
+    public static final int DEFAULT_PRELOAD_RATE = 50;
+
+    /**
+     * The placeholder for an item's identifier in the manifest URI template.
+     */
+    public static final String MANIFEST_ID_PLACEHOLDER = "{id}";
+
+    /**
+     * The default maximum number of access mode lookups that may be made at once.
+     */
+    public static final int DEFAULT_ACCESS_SERVICE_CONCURRENCY = 64;
+
+    /**
+     * The default maximum number of calls that may be made to each token service at once.
+     */
+    public static final int DEFAULT_TOKEN_SERVICE_CONCURRENCY = 32;
+
+    /**
+     * The default maximum number of calls that may wait for each upstream service.
+     */
+    public static final int DEFAULT_UPSTREAM_QUEUE_SIZE = 64;
+
+    /**
+     * The default number of milliseconds a call may wait for an upstream service.
+     */
+    public static final int DEFAULT_UPSTREAM_QUEUE_TIMEOUT = 1000;
+
+    /**
+     * The default number of milliseconds a call to an upstream service may take.
+     */
+    public static final int DEFAULT_UPSTREAM_TIMEOUT = 10_000;
+
+    /**
+     * The default number of failed credential checks a client may make at once.
+     */
+    public static final int DEFAULT_CLIENT_BURST = 10;
+
+    /**
+     * The default number of proxies in front of Cantaloupe.
+     */
+    public static final int DEFAULT_TRUSTED_PROXIES = 1;
+
+    /**
+     * The default percentage of decisions that are written to the audit log.
+     */
+    public static final int DEFAULT_AUDIT_SAMPLE_RATE = 100;
+
+    /**
+     * The default number of decisions that may wait to be written to the audit log.
+     */
+    public static final int DEFAULT_AUDIT_BUFFER_SIZE = 8192;
+
+    /**
+     * The default size, in megabytes, past which the audit log file is rotated.
+     */
+    public static final int DEFAULT_AUDIT_MAX_FILE_SIZE = 100;
+
+    /**
+     * The smallest value allowed for a configured size.
+     */
+    private static final int MIN_SIZE = 1;
+
+    /**
+     * The smallest value allowed for a configured derivative size.
+     */
+    private static final int MIN_DERIVATIVE_SIZE = 0;
+
+    /**
+     * The largest value allowed for a configured percentage.
+     */
+    private static final int MAX_PERCENTAGE = 100;
+
     /**
      * A configured cookie service.
      */
-    private URI myCookieService;
+    private final URI myCookieService;
 
     /**
      * A configured token service.
      */
-    private URI myTokenService;
+    private final URI myTokenService;
 
     /**
      * A configured Sinai token service.
      */
-    private URI mySinaiTokenService;
+    private final URI mySinaiTokenService;
 
     /**
      * A configured access mode service.
      */
-    private URI myAccessService;
+    private final URI myAccessService;
 
     /**
      * A configured tiered access scale constraint.
      */
-    private int[] myScaleConstraint;
+    private final int[] myScaleConstraint;
 
     /**
-     * Creates a new configuration.
+     * A configured number of parsed Authorization headers to cache.
+     */
+    private final int myTokenCacheSize;
+
+    /**
+     * A configured local access policy file.
+     */
+    private final Path myPolicyFile;
+
+    /**
+     * A configured largest dimension of a derivative that's always allowed.
+     */
+    private final int myFreeDerivativeMaxSize;
+
+    /**
+     * Whether derivatives within the tiered access scale constraint are always allowed.
+     */
+    private final boolean hasFreeScaledDerivatives;
+
+    /**
+     * A configured number of synthetic decisions to make when the delegate is loaded.
+     */
+    private final int myWarmUpIterations;
+
+    /**
+     * A configured number of item access modes to cache.
+     */
+    private final int myAccessCacheSize;
+
+    /**
+     * A configured amount of time an item access mode is cached.
+     */
+    private final Duration myAccessCacheTTL;
+
+    /**
+     * A configured percentage of an access mode's time to live after which, if it's read, it's refreshed.
+     */
+    private final int myAccessCacheRefresh;
+
+    /**
+     * A configured number of access mode refreshes that may run at once.
+     */
+    private final int myRefreshConcurrency;
+
+    /**
+     * Whether items' sources are resolved from their Hauth records.
+     */
+    private final boolean hasSourceResolution;
+
+    /**
+     * A configured file of identifiers, or access log, to preload.
+     */
+    private final Path myPreloadFile;
+
+    /**
+     * A configured number of access mode lookups a preload may make at once.
+     */
+    private final int myPreloadConcurrency;
+
+    /**
+     * A configured number of access mode lookups a preload may make each second.
+     */
+    private final int myPreloadRate;
+
+    /**
+     * A configured URI template of the manifests whose items' access modes are prefetched.
+     */
+    private final String myManifestTemplate;
+
+    /**
+     * A configured maximum number of access mode lookups that may be made at once.
+     */
+    private final int myAccessServiceConcurrency;
+
+    /**
+     * A configured maximum number of token service calls that may be made at once.
+     */
+    private final int myTokenServiceConcurrency;
+
+    /**
+     * A configured maximum number of Sinai token service calls that may be made at once.
+     */
+    private final int mySinaiTokenServiceConcurrency;
+
+    /**
+     * A configured maximum number of calls that may wait for each upstream service.
+     */
+    private final int myUpstreamQueueSize;
+
+    /**
+     * A configured amount of time a call may wait for an upstream service.
+     */
+    private final Duration myUpstreamQueueTimeout;
+
+    /**
+     * A configured amount of time a call to an upstream service may take.
+     */
+    private final Duration myUpstreamTimeout;
+
+    /**
+     * A configured access mode of an item whose access mode can't be looked up.
+     */
+    private final AccessMode myFallbackAccessMode;
+
+    /**
+     * Whether each upstream service's concurrency adapts to its latency.
+     */
+    private final boolean hasAdaptiveLimit;
+
+    /**
+     * A configured number of failed credential checks each client may make per minute.
+     */
+    private final int myClientRateLimit;
+
+    /**
+     * A configured number of failed credential checks a client may make at once.
+     */
+    private final int myClientBurst;
+
+    /**
+     * A configured number of proxies in front of Cantaloupe.
+     */
+    private final int myTrustedProxies;
+
+    /**
+     * A configured audit log file.
+     */
+    private final Path myAuditLog;
+
+    /**
+     * A configured percentage of decisions that are written to the audit log.
+     */
+    private final int myAuditSampleRate;
+
+    /**
+     * A configured number of decisions that may wait to be written to the audit log.
+     */
+    private final int myAuditBufferSize;
+
+    /**
+     * A configured size, in megabytes, past which the audit log file is rotated.
+     */
+    private final int myAuditMaxFileSize;
+
+    /**
+     * Creates a new configuration from the environment.
      */
     public Config() {
-        setScaleConstraint(getString(TIERED_ACCESS_SCALE_CONSTRAINT));
+        this(System.getenv());
+    }
 
-        myCookieService = getURI(AUTH_COOKIE_SERVICE);
-        myTokenService = getURI(AUTH_TOKEN_SERVICE);
-        mySinaiTokenService = getURI(SINAI_AUTH_TOKEN_SERVICE);
-        myAccessService = getURI(AUTH_ACCESS_SERVICE);
+    /**
+     * Creates a new configuration from the supplied properties.
+     *
+     * @param aProperties A map of configuration properties, keyed by their environmental property names
+     * @throws ConfigException If a required property is missing, or a property is invalid
+     */
+    public Config(final Map<String, String> aProperties) {
+        myScaleConstraint = parseScaleConstraint(getString(aProperties, TIERED_ACCESS_SCALE_CONSTRAINT));
+        myCookieService = getURI(aProperties, AUTH_COOKIE_SERVICE);
+        myTokenService = getURI(aProperties, AUTH_TOKEN_SERVICE);
+        mySinaiTokenService = getURI(aProperties, SINAI_AUTH_TOKEN_SERVICE);
+        myAccessService = getURI(aProperties, AUTH_ACCESS_SERVICE);
+        myTokenCacheSize = getInt(aProperties, AUTH_TOKEN_CACHE_SIZE, DEFAULT_TOKEN_CACHE_SIZE, MIN_SIZE);
+        myPolicyFile = getPath(aProperties, AUTH_POLICY_FILE).orElse(null);
+        myFreeDerivativeMaxSize = getInt(aProperties, FREE_DERIVATIVE_MAX_SIZE, DEFAULT_FREE_DERIVATIVE_MAX_SIZE,
+                MIN_DERIVATIVE_SIZE);
+        hasFreeScaledDerivatives = Boolean.parseBoolean(aProperties.get(FREE_DERIVATIVE_SCALED));
+        myWarmUpIterations = getInt(aProperties, AUTH_WARM_UP_ITERATIONS, 0, 0);
+        myAuditLog = getPath(aProperties, AUTH_AUDIT_LOG).orElse(null);
+        myAuditSampleRate = getInt(aProperties, AUTH_AUDIT_SAMPLE_RATE, DEFAULT_AUDIT_SAMPLE_RATE, MIN_SIZE,
+                MAX_PERCENTAGE);
+        myAuditBufferSize = getInt(aProperties, AUTH_AUDIT_BUFFER_SIZE, DEFAULT_AUDIT_BUFFER_SIZE, MIN_SIZE,
+                RingBuffer.MAX_CAPACITY);
+        myAuditMaxFileSize = getInt(aProperties, AUTH_AUDIT_MAX_FILE_SIZE, DEFAULT_AUDIT_MAX_FILE_SIZE, MIN_SIZE);
+        myClientRateLimit = getInt(aProperties, AUTH_CLIENT_RATE_LIMIT, 0, 0, ClientRateLimiter.MAX_RATE);
+        myClientBurst = getInt(aProperties, AUTH_CLIENT_BURST, DEFAULT_CLIENT_BURST, MIN_SIZE,
+                ClientRateLimiter.MAX_BURST);
+        myTrustedProxies = getInt(aProperties, AUTH_TRUSTED_PROXIES, DEFAULT_TRUSTED_PROXIES, MIN_SIZE);
+        hasAdaptiveLimit = Boolean.parseBoolean(aProperties.get(AUTH_ADAPTIVE_LIMIT));
+        myAccessServiceConcurrency = getInt(aProperties, AUTH_ACCESS_CONCURRENCY,
+                DEFAULT_ACCESS_SERVICE_CONCURRENCY, MIN_SIZE);
+        myTokenServiceConcurrency =
+                getInt(aProperties, AUTH_TOKEN_CONCURRENCY, DEFAULT_TOKEN_SERVICE_CONCURRENCY, MIN_SIZE);
+        mySinaiTokenServiceConcurrency =
+                getInt(aProperties, SINAI_AUTH_TOKEN_CONCURRENCY, DEFAULT_TOKEN_SERVICE_CONCURRENCY, MIN_SIZE);
+        myUpstreamQueueSize = getInt(aProperties, AUTH_UPSTREAM_QUEUE_SIZE, DEFAULT_UPSTREAM_QUEUE_SIZE, 0);
+        myUpstreamQueueTimeout =
+                Duration.ofMillis(getInt(aProperties, AUTH_UPSTREAM_QUEUE_TIMEOUT, DEFAULT_UPSTREAM_QUEUE_TIMEOUT, 0));
+        myUpstreamTimeout =
+                Duration.ofMillis(getInt(aProperties, AUTH_UPSTREAM_TIMEOUT, DEFAULT_UPSTREAM_TIMEOUT, MIN_SIZE));
+        myFallbackAccessMode = getOptionalString(aProperties, AUTH_FALLBACK_ACCESS_MODE).map(Config::parseAccessMode)
+                .orElse(AccessMode.ALL_OR_NOTHING);
+        myManifestTemplate =
+                getOptionalString(aProperties, AUTH_MANIFEST_TEMPLATE).map(Config::checkManifestTemplate).orElse(null);
+        myAccessCacheSize = getInt(aProperties, AUTH_ACCESS_CACHE_SIZE, DEFAULT_ACCESS_CACHE_SIZE, MIN_SIZE);
+        myAccessCacheTTL =
+                Duration.ofSeconds(getInt(aProperties, AUTH_ACCESS_CACHE_TTL, DEFAULT_ACCESS_CACHE_TTL, MIN_SIZE));
+        myAccessCacheRefresh =
+                getInt(aProperties, AUTH_ACCESS_CACHE_REFRESH, DEFAULT_ACCESS_CACHE_REFRESH, 0, MAX_PERCENTAGE);
+        myRefreshConcurrency = getInt(aProperties, AUTH_REFRESH_CONCURRENCY, DEFAULT_REFRESH_CONCURRENCY, MIN_SIZE);
+        hasSourceResolution = Boolean.parseBoolean(aProperties.get(AUTH_SOURCE_RESOLUTION));
+        myPreloadFile = getPath(aProperties, AUTH_PRELOAD_FILE).orElse(null);
+        myPreloadConcurrency = getInt(aProperties, AUTH_PRELOAD_CONCURRENCY, DEFAULT_PRELOAD_CONCURRENCY, MIN_SIZE);
+        myPreloadRate = getInt(aProperties, AUTH_PRELOAD_RATE, DEFAULT_PRELOAD_RATE, MIN_SIZE);
     }
 
     /**
@@ -88,12 +570,31 @@ public final class Config {
      */
     public Config(final URI aCookieService, final URI aTokenService, final URI aSinaiTokenService,
             final URI aAccessService, final String aScaleConstraint) {
-        setScaleConstraint(aScaleConstraint);
+        this(Map.of(AUTH_COOKIE_SERVICE, aCookieService.toString(), AUTH_TOKEN_SERVICE, aTokenService.toString(),
+                SINAI_AUTH_TOKEN_SERVICE, aSinaiTokenService.toString(), AUTH_ACCESS_SERVICE, aAccessService.toString(),
+                TIERED_ACCESS_SCALE_CONSTRAINT, aScaleConstraint));
+    }
+
+    /**
+     * Loads a configuration from the supplied properties file, using the environment for any properties that the
+     * file doesn't set.
+     *
+     * @param aConfigFile A properties file
+     * @return The loaded configuration
+     * @throws ConfigException If the file can't be read, or the resulting configuration isn't valid
+     */
+    public static Config load(final Path aConfigFile) {
+        final Map<String, String> properties = new HashMap<>(System.getenv());
+        final Properties fileProperties = new Properties();
+
+        try (Reader reader = Files.newBufferedReader(aConfigFile, StandardCharsets.UTF_8)) {
+            fileProperties.load(reader);
+        } catch (final IOException details) {
+            throw new ConfigException(details, AUTH_CONFIG_FILE, aConfigFile.toString());
+        }
 
-        myCookieService = aCookieService;
-        myTokenService = aTokenService;
-        mySinaiTokenService = aSinaiTokenService;
-        myAccessService = aAccessService;
+        fileProperties.stringPropertyNames().forEach(name -> properties.put(name, fileProperties.getProperty(name)));
+        return new Config(properties);
     }
 
     /**
@@ -109,11 +610,10 @@ public final class Config {
      * Sets the cookie service URI.
      *
      * @param aCookieService A cookie service
-     * @return This configuration
+     * @return A copy of this configuration with the supplied value
      */
     public Config setCookieService(final URI aCookieService) {
-        myCookieService = aCookieService;
-        return this;
+        return with(AUTH_COOKIE_SERVICE, aCookieService);
     }
 
     /**
@@ -129,11 +629,10 @@ public final class Config {
      * Sets the token service URI.
      *
      * @param aTokenService A token service
-     * @return This configuration
+     * @return A copy of this configuration with the supplied value
      */
     public Config setTokenService(final URI aTokenService) {
-        myTokenService = aTokenService;
-        return this;
+        return with(AUTH_TOKEN_SERVICE, aTokenService);
     }
 
     /**
@@ -149,11 +648,10 @@ public final class Config {
      * Sets the Sinai token service URI.
      *
      * @param aSinaiTokenService A Sinai token service
-     * @return This configuration
+     * @return A copy of this configuration with the supplied value
      */
     public Config setSinaiTokenService(final URI aSinaiTokenService) {
-        mySinaiTokenService = aSinaiTokenService;
-        return this;
+        return with(SINAI_AUTH_TOKEN_SERVICE, aSinaiTokenService);
     }
 
     /**
@@ -169,11 +667,10 @@ public final class Config {
      * Sets an access mode service URI.
      *
      * @param aAccessService An access mode service
-     * @return This configuration
+     * @return A copy of this configuration with the supplied value
      */
     public Config setAccessService(final URI aAccessService) {
-        myAccessService = aAccessService;
-        return this;
+        return with(AUTH_ACCESS_SERVICE, aAccessService);
     }
 
     /**
@@ -189,22 +686,710 @@ public final class Config {
      * Sets a scale constraint for tiered access.
      *
      * @param aScaleConstraint A scale constraint for tiered access
-     * @return This configuration
+     * @return A copy of this configuration with the supplied value
      * @throws ConfigException if there is a problem with the scale constraint's syntax
      */
     public Config setScaleConstraint(final String aScaleConstraint) {
+        return with(TIERED_ACCESS_SCALE_CONSTRAINT, aScaleConstraint);
+    }
+
+    /**
+     * Gets the configured number of parsed Authorization headers to cache.
+     *
+     * @return The configured number of parsed Authorization headers to cache
+     */
+    public int getTokenCacheSize() {
+        return myTokenCacheSize;
+    }
+
+    /**
+     * Sets the number of parsed Authorization headers to cache.
+     *
+     * @param aTokenCacheSize A number of parsed Authorization headers to cache
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied cache size is less than one
+     */
+    public Config setTokenCacheSize(final int aTokenCacheSize) {
+        return with(AUTH_TOKEN_CACHE_SIZE, aTokenCacheSize);
+    }
+
+    /**
+     * Gets the configured local access policy file.
+     *
+     * @return The configured local access policy file, if there is one
+     */
+    public Optional<Path> getPolicyFile() {
+        return Optional.ofNullable(myPolicyFile);
+    }
+
+    /**
+     * Sets the local access policy file.
+     *
+     * @param aPolicyFile A local access policy file, or null if no local policy should be used
+     * @return A copy of this configuration with the supplied value
+     */
+    public Config setPolicyFile(final Path aPolicyFile) {
+        return with(AUTH_POLICY_FILE, aPolicyFile);
+    }
+
+    /**
+     * Gets the configured largest dimension of a derivative that's always allowed.
+     *
+     * @return The configured largest dimension of a derivative that's always allowed
+     */
+    public int getFreeDerivativeMaxSize() {
+        return myFreeDerivativeMaxSize;
+    }
+
+    /**
+     * Sets the largest dimension of a derivative that's always allowed.
+     *
+     * @param aMaxSize A largest dimension, in pixels, or zero if no derivatives should always be allowed by size
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied size is negative
+     */
+    public Config setFreeDerivativeMaxSize(final int aMaxSize) {
+        return with(FREE_DERIVATIVE_MAX_SIZE, aMaxSize);
+    }
+
+    /**
+     * Gets whether derivatives within the tiered access scale constraint are always allowed.
+     *
+     * @return True if derivatives within the tiered access scale constraint are always allowed; else, false
+     */
+    public boolean allowsFreeScaledDerivatives() {
+        return hasFreeScaledDerivatives;
+    }
+
+    /**
+     * Sets whether derivatives within the tiered access scale constraint are always allowed. Since this doesn't
+     * depend on an item's access mode, it also applies to all-or-nothing items.
+     *
+     * @param aFreeScaledDerivatives Whether derivatives within the scale constraint are always allowed
+     * @return A copy of this configuration with the supplied value
+     */
+    public Config setFreeScaledDerivatives(final boolean aFreeScaledDerivatives) {
+        return with(FREE_DERIVATIVE_SCALED, aFreeScaledDerivatives);
+    }
+
+    /**
+     * Gets the configured number of synthetic decisions to make when the delegate is loaded.
+     *
+     * @return The configured number of warm-up iterations, which is zero if there shouldn't be a warm-up
+     */
+    public int getWarmUpIterations() {
+        return myWarmUpIterations;
+    }
+
+    /**
+     * Sets the number of synthetic decisions to make when the delegate is loaded.
+     *
+     * @param aIterations A number of warm-up iterations, or zero if there shouldn't be a warm-up
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied number is negative
+     */
+    public Config setWarmUpIterations(final int aIterations) {
+        return with(AUTH_WARM_UP_ITERATIONS, aIterations);
+    }
+
+    /**
+     * Gets the configured number of item access modes to cache.
+     *
+     * @return The configured number of item access modes to cache
+     */
+    public int getAccessCacheSize() {
+        return myAccessCacheSize;
+    }
+
+    /**
+     * Sets the number of item access modes to cache.
+     *
+     * @param aAccessCacheSize A number of item access modes to cache
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied cache size is less than one
+     */
+    public Config setAccessCacheSize(final int aAccessCacheSize) {
+        return with(AUTH_ACCESS_CACHE_SIZE, aAccessCacheSize);
+    }
+
+    /**
+     * Gets the configured amount of time an item access mode is cached.
+     *
+     * @return The configured amount of time an item access mode is cached
+     */
+    public Duration getAccessCacheTTL() {
+        return myAccessCacheTTL;
+    }
+
+    /**
+     * Sets the amount of time an item access mode is cached.
+     *
+     * @param aAccessCacheTTL An amount of time an item access mode is cached
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied time isn't positive
+     */
+    public Config setAccessCacheTTL(final Duration aAccessCacheTTL) {
+        return with(AUTH_ACCESS_CACHE_TTL, aAccessCacheTTL.toSeconds());
+    }
+
+    /**
+     * Gets the configured percentage of an access mode's time to live after which, if it's read, it's refreshed in
+     * the background.
+     *
+     * @return A percentage, from 0 to 100, where 0 means access modes aren't refreshed
+     */
+    public int getAccessCacheRefresh() {
+        return myAccessCacheRefresh;
+    }
+
+    /**
+     * Sets the percentage of an access mode's time to live after which, if it's read, it's refreshed in the
+     * background.
+     *
+     * @param aAccessCacheRefresh A percentage, from 0 to 100, where 0 means access modes aren't refreshed
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied percentage is out of range
+     */
+    public Config setAccessCacheRefresh(final int aAccessCacheRefresh) {
+        return with(AUTH_ACCESS_CACHE_REFRESH, aAccessCacheRefresh);
+    }
+
+    /**
+     * Gets the configured number of access mode refreshes that may run at once.
+     *
+     * @return The configured number of access mode refreshes that may run at once
+     */
+    public int getRefreshConcurrency() {
+        return myRefreshConcurrency;
+    }
+
+    /**
+     * Sets the number of access mode refreshes that may run at once.
+     *
+     * @param aRefreshConcurrency A number of access mode refreshes that may run at once
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied number is less than one
+     */
+    public Config setRefreshConcurrency(final int aRefreshConcurrency) {
+        return with(AUTH_REFRESH_CONCURRENCY, aRefreshConcurrency);
+    }
+
+    /**
+     * Gets whether items' sources are resolved from their Hauth records, rather than by Cantaloupe's configuration.
+     *
+     * @return True if sources are resolved from Hauth records; else, false
+     */
+    public boolean isSourceResolution() {
+        return hasSourceResolution;
+    }
+
+    /**
+     * Sets whether items' sources are resolved from their Hauth records, rather than by Cantaloupe's configuration.
+     *
+     * @param aSourceResolution Whether sources are resolved from Hauth records
+     * @return A copy of this configuration with the supplied value
+     */
+    public Config setSourceResolution(final boolean aSourceResolution) {
+        return with(AUTH_SOURCE_RESOLUTION, aSourceResolution);
+    }
+
+    /**
+     * Gets the configured file of identifiers, or access log, to preload.
+     *
+     * @return The configured preload file, if there is one
+     */
+    public Optional<Path> getPreloadFile() {
+        return Optional.ofNullable(myPreloadFile);
+    }
+
+    /**
+     * Sets the file of identifiers, or access log, to preload.
+     *
+     * @param aPreloadFile A preload file, or null if nothing should be preloaded
+     * @return A copy of this configuration with the supplied value
+     */
+    public Config setPreloadFile(final Path aPreloadFile) {
+        return with(AUTH_PRELOAD_FILE, aPreloadFile);
+    }
+
+    /**
+     * Gets the configured number of access mode lookups a preload may make at once.
+     *
+     * @return The configured number of access mode lookups a preload may make at once
+     */
+    public int getPreloadConcurrency() {
+        return myPreloadConcurrency;
+    }
+
+    /**
+     * Sets the number of access mode lookups a preload may make at once.
+     *
+     * @param aPreloadConcurrency A number of access mode lookups a preload may make at once
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied number is less than one
+     */
+    public Config setPreloadConcurrency(final int aPreloadConcurrency) {
+        return with(AUTH_PRELOAD_CONCURRENCY, aPreloadConcurrency);
+    }
+
+    /**
+     * Gets the configured number of access mode lookups a preload may make each second.
+     *
+     * @return The configured number of access mode lookups a preload may make each second
+     */
+    public int getPreloadRate() {
+        return myPreloadRate;
+    }
+
+    /**
+     * Sets the number of access mode lookups a preload may make each second.
+     *
+     * @param aPreloadRate A number of access mode lookups a preload may make each second
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied number is less than one
+     */
+    public Config setPreloadRate(final int aPreloadRate) {
+        return with(AUTH_PRELOAD_RATE, aPreloadRate);
+    }
+
+    /**
+     * Gets the configured URI template of the manifests whose items' access modes are prefetched.
+     *
+     * @return The manifest URI template, if one is configured
+     */
+    public Optional<String> getManifestTemplate() {
+        return Optional.ofNullable(myManifestTemplate);
+    }
+
+    /**
+     * Sets the URI template of the manifests whose items' access modes are prefetched. The template's
+     * {@link #MANIFEST_ID_PLACEHOLDER} is replaced with the percent-encoded identifier of the requested item.
+     *
+     * @param aManifestTemplate A manifest URI template, or null if manifests shouldn't be prefetched
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the template doesn't contain the identifier placeholder
+     */
+    public Config setManifestTemplate(final String aManifestTemplate) {
+        return with(AUTH_MANIFEST_TEMPLATE, aManifestTemplate);
+    }
+
+    /**
+     * Gets the configured maximum number of access mode lookups that may be made at once.
+     *
+     * @return The configured maximum number of access mode lookups that may be made at once
+     */
+    public int getAccessServiceConcurrency() {
+        return myAccessServiceConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of access mode lookups that may be made at once.
+     *
+     * @param aAccessServiceConcurrency A maximum number of access mode lookups that may be made at once
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied value is less than one
+     */
+    public Config setAccessServiceConcurrency(final int aAccessServiceConcurrency) {
+        return with(AUTH_ACCESS_CONCURRENCY, aAccessServiceConcurrency);
+    }
+
+    /**
+     * Gets the configured maximum number of token service calls that may be made at once.
+     *
+     * @return The configured maximum number of token service calls that may be made at once
+     */
+    public int getTokenServiceConcurrency() {
+        return myTokenServiceConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of token service calls that may be made at once.
+     *
+     * @param aTokenServiceConcurrency A maximum number of token service calls that may be made at once
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied value is less than one
+     */
+    public Config setTokenServiceConcurrency(final int aTokenServiceConcurrency) {
+        return with(AUTH_TOKEN_CONCURRENCY, aTokenServiceConcurrency);
+    }
+
+    /**
+     * Gets the configured maximum number of Sinai token service calls that may be made at once.
+     *
+     * @return The configured maximum number of Sinai token service calls that may be made at once
+     */
+    public int getSinaiTokenServiceConcurrency() {
+        return mySinaiTokenServiceConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of Sinai token service calls that may be made at once.
+     *
+     * @param aSinaiTokenServiceConcurrency A maximum number of Sinai token service calls that may be made at once
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied value is less than one
+     */
+    public Config setSinaiTokenServiceConcurrency(final int aSinaiTokenServiceConcurrency) {
+        return with(SINAI_AUTH_TOKEN_CONCURRENCY, aSinaiTokenServiceConcurrency);
+    }
+
+    /**
+     * Gets the configured maximum number of calls that may wait for each upstream service.
+     *
+     * @return The configured maximum number of calls that may wait for each upstream service
+     */
+    public int getUpstreamQueueSize() {
+        return myUpstreamQueueSize;
+    }
+
+    /**
+     * Sets the maximum number of calls that may wait for each upstream service; zero means calls never wait.
+     *
+     * @param aUpstreamQueueSize A maximum number of calls that may wait for each upstream service
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied value is negative
+     */
+    public Config setUpstreamQueueSize(final int aUpstreamQueueSize) {
+        return with(AUTH_UPSTREAM_QUEUE_SIZE, aUpstreamQueueSize);
+    }
+
+    /**
+     * Gets the configured amount of time a call may wait for an upstream service.
+     *
+     * @return The configured amount of time a call may wait for an upstream service
+     */
+    public Duration getUpstreamQueueTimeout() {
+        return myUpstreamQueueTimeout;
+    }
+
+    /**
+     * Sets the amount of time a call may wait for an upstream service.
+     *
+     * @param aUpstreamQueueTimeout An amount of time a call may wait for an upstream service
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied amount of time is negative
+     */
+    public Config setUpstreamQueueTimeout(final Duration aUpstreamQueueTimeout) {
+        return with(AUTH_UPSTREAM_QUEUE_TIMEOUT, aUpstreamQueueTimeout.toMillis());
+    }
+
+    /**
+     * Gets the configured amount of time a call to an upstream service may take, including connecting to it.
+     *
+     * @return The configured amount of time a call to an upstream service may take
+     */
+    public Duration getUpstreamTimeout() {
+        return myUpstreamTimeout;
+    }
+
+    /**
+     * Sets the amount of time a call to an upstream service may take, including connecting to it.
+     *
+     * @param aUpstreamTimeout An amount of time a call to an upstream service may take
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied amount of time isn't positive
+     */
+    public Config setUpstreamTimeout(final Duration aUpstreamTimeout) {
+        return with(AUTH_UPSTREAM_TIMEOUT, aUpstreamTimeout.toMillis());
+    }
+
+    /**
+     * Gets the configured access mode of an item whose access mode can't be looked up, either because the lookup
+     * failed or because too many lookups are already waiting on the access mode service.
+     *
+     * @return The configured fallback access mode
+     */
+    public AccessMode getFallbackAccessMode() {
+        return myFallbackAccessMode;
+    }
+
+    /**
+     * Sets the access mode of an item whose access mode can't be looked up.
+     *
+     * @param aFallbackAccessMode A fallback access mode
+     * @return A copy of this configuration with the supplied value
+     */
+    public Config setFallbackAccessMode(final AccessMode aFallbackAccessMode) {
+        return with(AUTH_FALLBACK_ACCESS_MODE, aFallbackAccessMode);
+    }
+
+    /**
+     * Sets the access mode of an item whose access mode can't be looked up.
+     *
+     * @param aFallbackAccessMode The name of a fallback access mode
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied name isn't an access mode
+     */
+    public Config setFallbackAccessMode(final String aFallbackAccessMode) {
+        return with(AUTH_FALLBACK_ACCESS_MODE, aFallbackAccessMode);
+    }
+
+    /**
+     * Gets whether each upstream service's concurrency adapts to its latency, below its configured maximum.
+     *
+     * @return True if upstream concurrency is adaptive; else, false
+     */
+    public boolean isAdaptiveLimit() {
+        return hasAdaptiveLimit;
+    }
+
+    /**
+     * Sets whether each upstream service's concurrency adapts to its latency, below its configured maximum.
+     *
+     * @param aAdaptiveLimit Whether upstream concurrency is adaptive
+     * @return A copy of this configuration with the supplied value
+     */
+    public Config setAdaptiveLimit(final boolean aAdaptiveLimit) {
+        return with(AUTH_ADAPTIVE_LIMIT, aAdaptiveLimit);
+    }
+
+    /**
+     * Gets the configured number of failed credential checks each client may make per minute, once its burst is spent.
+     *
+     * @return The configured number of failed credential checks per minute, which is zero if clients aren't limited
+     */
+    public int getClientRateLimit() {
+        return myClientRateLimit;
+    }
+
+    /**
+     * Sets the number of failed credential checks each client may make per minute; zero means clients aren't limited.
+     *
+     * @param aClientRateLimit A number of failed credential checks per minute
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied value is negative or larger than the limiter allows
+     */
+    public Config setClientRateLimit(final int aClientRateLimit) {
+        return with(AUTH_CLIENT_RATE_LIMIT, aClientRateLimit);
+    }
+
+    /**
+     * Gets the configured number of failed credential checks a client may make at once.
+     *
+     * @return The configured number of failed credential checks a client may make at once
+     */
+    public int getClientBurst() {
+        return myClientBurst;
+    }
+
+    /**
+     * Sets the number of failed credential checks a client may make at once.
+     *
+     * @param aClientBurst A number of failed credential checks
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied value is less than one or larger than the limiter allows
+     */
+    public Config setClientBurst(final int aClientBurst) {
+        return with(AUTH_CLIENT_BURST, aClientBurst);
+    }
+
+    /**
+     * Gets the configured number of proxies in front of Cantaloupe, which is used to find a client's address in the
+     * X-Forwarded-For header.
+     *
+     * @return The configured number of proxies in front of Cantaloupe
+     */
+    public int getTrustedProxies() {
+        return myTrustedProxies;
+    }
+
+    /**
+     * Gets the configured audit log file.
+     *
+     * @return The configured audit log file, if decisions are audited
+     */
+    public Optional<Path> getAuditLog() {
+        return Optional.ofNullable(myAuditLog);
+    }
+
+    /**
+     * Sets the audit log file.
+     *
+     * @param aAuditLog An audit log file, or null if decisions shouldn't be audited
+     * @return A copy of this configuration with the supplied value
+     */
+    public Config setAuditLog(final Path aAuditLog) {
+        return with(AUTH_AUDIT_LOG, aAuditLog);
+    }
+
+    /**
+     * Gets the configured percentage of decisions that are written to the audit log.
+     *
+     * @return The configured percentage of audited decisions
+     */
+    public int getAuditSampleRate() {
+        return myAuditSampleRate;
+    }
+
+    /**
+     * Sets the percentage of decisions that are written to the audit log.
+     *
+     * @param aAuditSampleRate A percentage, from 1 to 100
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied value isn't a percentage from 1 to 100
+     */
+    public Config setAuditSampleRate(final int aAuditSampleRate) {
+        return with(AUTH_AUDIT_SAMPLE_RATE, aAuditSampleRate);
+    }
+
+    /**
+     * Gets the configured number of decisions that may wait to be written to the audit log.
+     *
+     * @return The configured size of the audit log's buffer
+     */
+    public int getAuditBufferSize() {
+        return myAuditBufferSize;
+    }
+
+    /**
+     * Sets the number of decisions that may wait to be written to the audit log.
+     *
+     * @param aAuditBufferSize A number of decisions
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied value is less than one or larger than a buffer can be
+     */
+    public Config setAuditBufferSize(final int aAuditBufferSize) {
+        return with(AUTH_AUDIT_BUFFER_SIZE, aAuditBufferSize);
+    }
+
+    /**
+     * Gets the configured size, in megabytes, past which the audit log file is rotated.
+     *
+     * @return The configured maximum size of an audit log file, in megabytes
+     */
+    public int getAuditMaxFileSize() {
+        return myAuditMaxFileSize;
+    }
+
+    /**
+     * Sets the size, in megabytes, past which the audit log file is rotated.
+     *
+     * @param aAuditMaxFileSize A number of megabytes
+     * @return A copy of this configuration with the supplied value
+     */
+    public Config setAuditMaxFileSize(final int aAuditMaxFileSize) {
+        return with(AUTH_AUDIT_MAX_FILE_SIZE, aAuditMaxFileSize);
+    }
+
+    /**
+     * Gets a snapshot of the configuration, as the properties that would recreate it. Optional properties that aren't
+     * set are left out.
+     *
+     * @return The configuration's properties, keyed by their environmental property names
+     */
+    public Map<String, String> toMap() {
+        final Map<String, String> properties = new TreeMap<>();
+
+        properties.put(AUTH_COOKIE_SERVICE, getCookieService().toString());
+        properties.put(AUTH_TOKEN_SERVICE, getTokenService().toString());
+        properties.put(SINAI_AUTH_TOKEN_SERVICE, getSinaiTokenService().toString());
+        properties.put(AUTH_ACCESS_SERVICE, getAccessService().toString());
+        properties.put(TIERED_ACCESS_SCALE_CONSTRAINT, myScaleConstraint[0] + COLON + myScaleConstraint[1]);
+        properties.put(AUTH_TOKEN_CACHE_SIZE, Integer.toString(getTokenCacheSize()));
+        getPolicyFile().ifPresent(file -> properties.put(AUTH_POLICY_FILE, file.toString()));
+        properties.put(FREE_DERIVATIVE_MAX_SIZE, Integer.toString(getFreeDerivativeMaxSize()));
+        properties.put(FREE_DERIVATIVE_SCALED, Boolean.toString(allowsFreeScaledDerivatives()));
+        properties.put(AUTH_WARM_UP_ITERATIONS, Integer.toString(getWarmUpIterations()));
+        properties.put(AUTH_ACCESS_CACHE_SIZE, Integer.toString(getAccessCacheSize()));
+        properties.put(AUTH_ACCESS_CACHE_TTL, Long.toString(getAccessCacheTTL().toSeconds()));
+        properties.put(AUTH_ACCESS_CACHE_REFRESH, Integer.toString(getAccessCacheRefresh()));
+        properties.put(AUTH_REFRESH_CONCURRENCY, Integer.toString(getRefreshConcurrency()));
+        properties.put(AUTH_SOURCE_RESOLUTION, Boolean.toString(isSourceResolution()));
+        getPreloadFile().ifPresent(file -> properties.put(AUTH_PRELOAD_FILE, file.toString()));
+        properties.put(AUTH_PRELOAD_CONCURRENCY, Integer.toString(getPreloadConcurrency()));
+        properties.put(AUTH_PRELOAD_RATE, Integer.toString(getPreloadRate()));
+        getManifestTemplate().ifPresent(template -> properties.put(AUTH_MANIFEST_TEMPLATE, template));
+        properties.put(AUTH_ACCESS_CONCURRENCY, Integer.toString(getAccessServiceConcurrency()));
+        properties.put(AUTH_TOKEN_CONCURRENCY, Integer.toString(getTokenServiceConcurrency()));
+        properties.put(SINAI_AUTH_TOKEN_CONCURRENCY, Integer.toString(getSinaiTokenServiceConcurrency()));
+        properties.put(AUTH_UPSTREAM_QUEUE_SIZE, Integer.toString(getUpstreamQueueSize()));
+        properties.put(AUTH_UPSTREAM_QUEUE_TIMEOUT, Long.toString(getUpstreamQueueTimeout().toMillis()));
+        properties.put(AUTH_UPSTREAM_TIMEOUT, Long.toString(getUpstreamTimeout().toMillis()));
+        properties.put(AUTH_FALLBACK_ACCESS_MODE, getFallbackAccessMode().name());
+        properties.put(AUTH_ADAPTIVE_LIMIT, Boolean.toString(isAdaptiveLimit()));
+        properties.put(AUTH_CLIENT_RATE_LIMIT, Integer.toString(getClientRateLimit()));
+        properties.put(AUTH_CLIENT_BURST, Integer.toString(getClientBurst()));
+        properties.put(AUTH_TRUSTED_PROXIES, Integer.toString(getTrustedProxies()));
+        getAuditLog().ifPresent(file -> properties.put(AUTH_AUDIT_LOG, file.toString()));
+        properties.put(AUTH_AUDIT_SAMPLE_RATE, Integer.toString(getAuditSampleRate()));
+        properties.put(AUTH_AUDIT_BUFFER_SIZE, Integer.toString(getAuditBufferSize()));
+        properties.put(AUTH_AUDIT_MAX_FILE_SIZE, Integer.toString(getAuditMaxFileSize()));
+
+        return properties;
+    }
+
+    /**
+     * Creates a copy of this configuration with a property changed, validating it as {@link #Config(Map)} does.
+     *
+     * @param aPropertyName A property name
+     * @param aValue The property's new value, or null to unset an optional property
+     * @return A copy of this configuration with the supplied value
+     * @throws ConfigException If the supplied value isn't valid for the property
+     */
+    private Config with(final String aPropertyName, final Object aValue) {
+        final Map<String, String> properties = toMap();
+
+        if (aValue == null) {
+            properties.remove(aPropertyName);
+        } else {
+            properties.put(aPropertyName, aValue.toString());
+        }
+
+        return new Config(properties);
+    }
+
+    /**
+     * Parses a scale constraint for tiered access.
+     *
+     * @param aScaleConstraint A scale constraint, like 1:2
+     * @return The scale constraint's numerator and denominator
+     * @throws ConfigException if there is a problem with the scale constraint's syntax
+     */
+    private static int[] parseScaleConstraint(final String aScaleConstraint) {
+        final int[] scaleConstraint;
+
         try {
-            myScaleConstraint = Stream.of(aScaleConstraint.split(COLON)).mapToInt(Integer::parseInt).toArray();
+            scaleConstraint = Stream.of(aScaleConstraint.split(COLON)).mapToInt(Integer::parseInt).toArray();
         } catch (final NumberFormatException details) {
             throw new ConfigException(details, aScaleConstraint);
         }
 
         // Must be able to be mapped to an array of length 2, and numerator must be less than the denominator
-        if (myScaleConstraint.length != 2 || myScaleConstraint[0] >= myScaleConstraint[1]) {
+        if (scaleConstraint.length != 2 || scaleConstraint[0] >= scaleConstraint[1]) {
             throw new ConfigException(aScaleConstraint);
         }
 
-        return this;
+        return scaleConstraint;
+    }
+
+    /**
+     * Parses the access mode of an item whose access mode can't be looked up.
+     *
+     * @param aFallbackAccessMode The name of an access mode
+     * @return The access mode
+     * @throws ConfigException If the supplied name isn't an access mode
+     */
+    private static AccessMode parseAccessMode(final String aFallbackAccessMode) {
+        try {
+            return AccessMode.valueOf(aFallbackAccessMode);
+        } catch (final IllegalArgumentException details) {
+            throw new ConfigException(details, AUTH_FALLBACK_ACCESS_MODE, aFallbackAccessMode);
+        }
+    }
+
+    /**
+     * Checks that a manifest URI template contains the identifier placeholder.
+     *
+     * @param aManifestTemplate A manifest URI template
+     * @return The manifest URI template
+     * @throws ConfigException If the template doesn't contain the identifier placeholder
+     */
+    private static String checkManifestTemplate(final String aManifestTemplate) {
+        if (!aManifestTemplate.contains(MANIFEST_ID_PLACEHOLDER)) {
+            throw new ConfigException(AUTH_MANIFEST_TEMPLATE, aManifestTemplate);
+        }
+
+        return aManifestTemplate;
     }
 
     /**
@@ -215,9 +1400,20 @@ public final class Config {
      * @throws ConfigException If the supplied property name doesn't exist in the environment or is invalid
      */
     static URI getURI(final String aPropertyName) {
+        return getURI(System.getenv(), aPropertyName);
+    }
+
+    /**
+     * Gets a property as a URI, checking that it exists and is valid.
+     *
+     * @param aProperties A map of configuration properties
+     * @param aPropertyName A property name
+     * @return The property value
+     * @throws ConfigException If the supplied property name doesn't exist in the properties or is invalid
+     */
+    private static URI getURI(final Map<String, String> aProperties, final String aPropertyName) {
         try {
-            return new URI(Optional.ofNullable(System.getenv(aPropertyName))
-                    .orElseThrow(() -> new ConfigException(aPropertyName)));
+            return new URI(getString(aProperties, aPropertyName));
         } catch (final URISyntaxException details) {
             throw new ConfigException(details, aPropertyName);
         }
@@ -231,6 +1427,118 @@ public final class Config {
      * @throws ConfigException If the supplied property name doesn't exist in the environment
      */
     static String getString(final String aPropertyName) {
-        return Optional.ofNullable(System.getenv(aPropertyName)).orElseThrow(() -> new ConfigException(aPropertyName));
+        return getString(System.getenv(), aPropertyName);
+    }
+
+    /**
+     * Gets a property, checking that it exists.
+     *
+     * @param aProperties A map of configuration properties
+     * @param aPropertyName A property name
+     * @return The property value
+     * @throws ConfigException If the supplied property name doesn't exist in the properties
+     */
+    private static String getString(final Map<String, String> aProperties, final String aPropertyName) {
+        return Optional.ofNullable(aProperties.get(aPropertyName))
+                .orElseThrow(() -> new ConfigException(aPropertyName));
+    }
+
+    /**
+     * Gets an optional property.
+     *
+     * @param aProperties A map of configuration properties
+     * @param aPropertyName A property name
+     * @return The property value, if the property is set and isn't blank
+     */
+    private static Optional<String> getOptionalString(final Map<String, String> aProperties,
+            final String aPropertyName) {
+        return Optional.ofNullable(aProperties.get(aPropertyName)).map(String::trim).filter(value -> !value.isEmpty());
+    }
+
+    /**
+     * Gets an optional environmental property as a file system path.
+     *
+     * @param aPropertyName An environmental property name
+     * @return The property value, if the property is set
+     * @throws ConfigException If the supplied property isn't a valid path
+     */
+    static Optional<Path> getPath(final String aPropertyName) {
+        return getPath(System.getenv(), aPropertyName);
+    }
+
+    /**
+     * Gets an optional property as a file system path.
+     *
+     * @param aProperties A map of configuration properties
+     * @param aPropertyName A property name
+     * @return The property value, if the property is set
+     * @throws ConfigException If the supplied property isn't a valid path
+     */
+    private static Optional<Path> getPath(final Map<String, String> aProperties, final String aPropertyName) {
+        final String value = aProperties.get(aPropertyName);
+
+        if (value == null || value.isBlank()) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(Paths.get(value.trim()));
+        } catch (final InvalidPathException details) {
+            throw new ConfigException(details, aPropertyName, value);
+        }
+    }
+
+    /**
+     * Gets an optional property as an integer.
+     *
+     * @param aProperties A map of configuration properties
+     * @param aPropertyName A property name
+     * @param aDefaultValue The value to use if the property isn't set
+     * @param aMinValue The smallest value the property may have
+     * @return The property value
+     * @throws ConfigException If the supplied property isn't an integer, or is less than the minimum value
+     */
+    private static int getInt(final Map<String, String> aProperties, final String aPropertyName,
+            final int aDefaultValue, final int aMinValue) {
+        final String value = aProperties.get(aPropertyName);
+        final int number;
+
+        if (value == null) {
+            return aDefaultValue;
+        }
+
+        try {
+            number = Integer.parseInt(value.trim());
+        } catch (final NumberFormatException details) {
+            throw new ConfigException(details, aPropertyName, value);
+        }
+
+        if (number < aMinValue) {
+            throw new ConfigException(aPropertyName, value);
+        }
+
+        return number;
+    }
+
+    /**
+     * Gets an optional property as an integer within a range.
+     *
+     * @param aProperties A map of configuration properties
+     * @param aPropertyName A property name
+     * @param aDefaultValue The value to use if the property isn't set
+     * @param aMinValue The smallest value the property may have
+     * @param aMaxValue The largest value the property may have
+     * @return The property value
+     * @throws ConfigException If the supplied property isn't an integer, or is outside the range
+     */
+    private static int getInt(final Map<String, String> aProperties, final String aPropertyName,
+            final int aDefaultValue, final int aMinValue, final int aMaxValue) {
+        final int number = getInt(aProperties, aPropertyName, aDefaultValue, aMinValue);
+
+        if (number > aMaxValue) {
+            throw new ConfigException(aPropertyName, Integer.toString(number));
+        }
+
+        return number;
     }
 }
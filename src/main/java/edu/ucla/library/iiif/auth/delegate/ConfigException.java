@@ -24,6 +24,27 @@ public class ConfigException extends I18nRuntimeException {
         super(MessageCodes.BUNDLE, MessageCodes.CAD_001, aMessageKey);
     }
 
+    /**
+     * Create a configuration exception for a property that has an invalid value.
+     *
+     * @param aPropertyName The name of the property
+     * @param aValue The property's invalid value
+     */
+    public ConfigException(final String aPropertyName, final String aValue) {
+        super(MessageCodes.BUNDLE, MessageCodes.CAD_031, aPropertyName, aValue);
+    }
+
+    /**
+     * Create a configuration exception for a property that has an invalid value.
+     *
+     * @param aCause A parent exception indicating why the value is invalid
+     * @param aPropertyName The name of the property
+     * @param aValue The property's invalid value
+     */
+    public ConfigException(final Exception aCause, final String aPropertyName, final String aValue) {
+        super(aCause, MessageCodes.BUNDLE, MessageCodes.CAD_031, aPropertyName, aValue);
+    }
+
     /**
      * Create a configuration exception from the supplied message key.
      *
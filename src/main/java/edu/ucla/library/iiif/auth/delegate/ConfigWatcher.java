@@ -0,0 +1,122 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+/**
+ * A background watcher that reloads a configuration file when it changes.
+ * <p>
+ * A reloaded configuration is only passed on to the listener if it's valid; if the file can't be read, or the
+ * configuration (or anything the listener builds from it) is invalid, the current configuration stays in use.
+ */
+@SuppressWarnings("PMD.AvoidCatchingGenericException") // An unexpected reload failure mustn't stop the watcher
+final class ConfigWatcher implements Runnable {
+
+    /**
+     * The configuration watcher's logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigWatcher.class, MessageCodes.BUNDLE);
+
+    /**
+     * The name of the watcher's thread.
+     */
+    private static final String THREAD_NAME = "auth-delegate-config-watcher";
+
+    /**
+     * How long to wait for an editor to finish writing the file before it's reloaded, in milliseconds.
+     */
+    private static final long SETTLE_TIME = 250;
+
+    /**
+     * The configuration file being watched.
+     */
+    private final Path myConfigFile;
+
+    /**
+     * The listener that's passed each reloaded configuration.
+     */
+    private final Consumer<Config> myListener;
+
+    /**
+     * Creates a new configuration watcher.
+     *
+     * @param aConfigFile A configuration file
+     * @param aListener A listener that's passed each reloaded configuration
+     */
+    private ConfigWatcher(final Path aConfigFile, final Consumer<Config> aListener) {
+        myConfigFile = aConfigFile.toAbsolutePath();
+        myListener = aListener;
+    }
+
+    /**
+     * Starts watching the supplied configuration file in a background thread.
+     *
+     * @param aConfigFile A configuration file
+     * @param aListener A listener that's passed each reloaded configuration; it may throw a {@link ConfigException}
+     *        to reject the configuration
+     */
+    static void start(final Path aConfigFile, final Consumer<Config> aListener) {
+        BackgroundThreads.start(THREAD_NAME, new ConfigWatcher(aConfigFile, aListener));
+    }
+
+    @Override
+    public void run() {
+        final Path fileName = myConfigFile.getFileName();
+
+        // Editors often replace files rather than writing to them, so the file's directory is watched
+        try (WatchService watcher = myConfigFile.getFileSystem().newWatchService()) {
+            myConfigFile.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            LOGGER.info(MessageCodes.CAD_035, myConfigFile);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+
+                // Collect the burst of events that a single save can cause before reloading
+                while (key != null) {
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        changed |= fileName.equals(event.context());
+                    }
+
+                    key.reset();
+                    key = watcher.poll(SETTLE_TIME, TimeUnit.MILLISECONDS);
+                }
+
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (final IOException details) {
+            LOGGER.error(details, details.getMessage());
+        } catch (final InterruptedException details) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reloads the configuration file and passes the new configuration to the listener. If either fails, the current
+     * configuration is kept and the watcher keeps watching, so a later fix to the file is still picked up.
+     */
+    private void reload() {
+        try {
+            myListener.accept(Config.load(myConfigFile));
+            LOGGER.info(MessageCodes.CAD_036, myConfigFile);
+        } catch (final ConfigException details) {
+            LOGGER.error(details, MessageCodes.CAD_037, details.getMessage());
+        } catch (final RuntimeException details) {
+            LOGGER.error(details, MessageCodes.CAD_037, details.toString());
+        }
+    }
+}
@@ -0,0 +1,263 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Optional;
+
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+import edu.ucla.library.iiif.auth.delegate.events.CookieValidationEvent;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessTokenReader;
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthSinaiToken;
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthToken;
+import edu.ucla.library.iiif.auth.delegate.limit.Bulkhead;
+import edu.ucla.library.iiif.auth.delegate.limit.ClientRateLimiter;
+import edu.ucla.library.iiif.auth.delegate.metrics.Metrics;
+import edu.ucla.library.iiif.auth.delegate.metrics.UpstreamMetrics;
+
+/**
+ * A validator of a client's cookies, which exchanges them at a token service for a token and checks the token for a
+ * claim (e.g., campus network access or Sinai affiliation). Calls to the token service are limited by a bulkhead, so a
+ * slow token service can't tie up requests that don't need it; a call the bulkhead rejects is treated as a failed
+ * validation.
+ */
+public final class CookieValidator {
+
+    /**
+     * The name of the campus network token service's bulkhead and metrics.
+     */
+    public static final String TOKEN_SERVICE = "token";
+
+    /**
+     * The name of the Sinai token service's bulkhead and metrics.
+     */
+    public static final String SINAI_TOKEN_SERVICE = "sinai-token";
+
+    /**
+     * The cookie validator's logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(CookieValidator.class, MessageCodes.BUNDLE);
+
+    /**
+     * An HTTP client for the token service.
+     */
+    private final HttpClient myHttpClient;
+
+    /**
+     * The token service.
+     */
+    private final URI myTokenService;
+
+    /**
+     * The name of the claim that grants access.
+     */
+    private final String myClaim;
+
+    /**
+     * The bulkhead that limits calls to the token service.
+     */
+    private final Bulkhead myBulkhead;
+
+    /**
+     * The metrics of the token service.
+     */
+    private final UpstreamMetrics myMetrics;
+
+    /**
+     * The limiter of each client's failed checks, or null if clients aren't limited.
+     */
+    private final ClientRateLimiter myClientLimiter;
+
+    /**
+     * The number of proxies in front of Cantaloupe, which is used to find a client's address.
+     */
+    private final int myTrustedProxies;
+
+    /**
+     * The amount of time a call to the token service may take.
+     */
+    private final Duration myTimeout;
+
+    /**
+     * Creates a new cookie validator that doesn't limit clients' failed checks.
+     *
+     * @param aHttpClient An HTTP client for the token service
+     * @param aTokenService A token service
+     * @param aClaim The name of the claim that grants access
+     * @param aBulkhead The bulkhead that limits calls to the token service
+     */
+    public CookieValidator(final HttpClient aHttpClient, final URI aTokenService, final String aClaim,
+            final Bulkhead aBulkhead) {
+        this(aHttpClient, aTokenService, aClaim, aBulkhead, null, Config.DEFAULT_TRUSTED_PROXIES,
+                Duration.ofMillis(Config.DEFAULT_UPSTREAM_TIMEOUT));
+    }
+
+    /**
+     * Creates a new cookie validator.
+     *
+     * @param aHttpClient An HTTP client for the token service
+     * @param aTokenService A token service
+     * @param aClaim The name of the claim that grants access
+     * @param aBulkhead The bulkhead that limits calls to the token service
+     * @param aClientLimiter The limiter of each client's failed checks, or null if clients aren't limited
+     * @param aTrustedProxies The number of proxies in front of Cantaloupe
+     * @param aTimeout The amount of time a call to the token service may take
+     */
+    public CookieValidator(final HttpClient aHttpClient, final URI aTokenService, final String aClaim,
+            final Bulkhead aBulkhead, final ClientRateLimiter aClientLimiter, final int aTrustedProxies,
+            final Duration aTimeout) {
+        myHttpClient = aHttpClient;
+        myTokenService = aTokenService;
+        myClaim = aClaim;
+        myBulkhead = aBulkhead;
+        myMetrics = Metrics.getUpstream(aBulkhead.getName());
+        myClientLimiter = aClientLimiter;
+        myTrustedProxies = aTrustedProxies;
+        myTimeout = aTimeout;
+    }
+
+    /**
+     * Creates a validator of campus network access cookies.
+     *
+     * @param aConfig A delegate configuration
+     * @param aHttpClient An HTTP client for the token service
+     * @param aClientLimiter The limiter of each client's failed checks, or null if clients aren't limited
+     * @return A cookie validator
+     */
+    public static CookieValidator forCampusNetwork(final Config aConfig, final HttpClient aHttpClient,
+            final ClientRateLimiter aClientLimiter) {
+        return new CookieValidator(aHttpClient, aConfig.getTokenService(), HauthToken.CAMPUS_NETWORK_KEY,
+                Bulkhead.getShared(TOKEN_SERVICE, aConfig.getTokenServiceConcurrency(),
+                        aConfig.getUpstreamQueueSize(), aConfig.getUpstreamQueueTimeout(), aConfig.isAdaptiveLimit()),
+                aClientLimiter, aConfig.getTrustedProxies(), aConfig.getUpstreamTimeout());
+    }
+
+    /**
+     * Creates a validator of Sinai affiliation cookies.
+     *
+     * @param aConfig A delegate configuration
+     * @param aHttpClient An HTTP client for the token service
+     * @param aClientLimiter The limiter of each client's failed checks, or null if clients aren't limited
+     * @return A cookie validator
+     */
+    public static CookieValidator forSinaiAffiliation(final Config aConfig, final HttpClient aHttpClient,
+            final ClientRateLimiter aClientLimiter) {
+        return new CookieValidator(aHttpClient, aConfig.getSinaiTokenService(), HauthSinaiToken.SINAI_AFFILIATE_KEY,
+                Bulkhead.getShared(SINAI_TOKEN_SERVICE, aConfig.getSinaiTokenServiceConcurrency(),
+                        aConfig.getUpstreamQueueSize(), aConfig.getUpstreamQueueTimeout(), aConfig.isAdaptiveLimit()),
+                aClientLimiter, aConfig.getTrustedProxies(), aConfig.getUpstreamTimeout());
+    }
+
+    /**
+     * Checks whether the request's client has made too many failed checks recently, taking one of its checks if it
+     * hasn't. Requests without cookies, or without a client address, aren't limited, since their cookies aren't sent
+     * to the token service.
+     *
+     * @param aRequest An authorization request
+     * @return True if the request should be refused without checking its cookies; else, false
+     */
+    public boolean isOverClientLimit(final AuthRequest aRequest) {
+        if (myClientLimiter == null || aRequest.getHeaders().getCookie().isEmpty()) {
+            return false;
+        }
+
+        final Optional<String> client = aRequest.getHeaders().getClientIP(myTrustedProxies);
+
+        if (client.isPresent() && !myClientLimiter.tryAcquire(client.get())) {
+            LOGGER.debug(MessageCodes.CAD_045, client.get(), aRequest.getID());
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Determines whether or not the client's cookies can be exchanged at the token service for a token with the
+     * validator's claim.
+     *
+     * @param aRequest An authorization request
+     * @return Whether or not the cookies prove the client has the claim
+     */
+    public boolean hasClaim(final AuthRequest aRequest) {
+        final CookieValidationEvent event = new CookieValidationEvent();
+        event.begin();
+
+        final boolean hasClaim = hasClaim(aRequest, event);
+
+        event.commit(myBulkhead.getName(), aRequest.getID(), hasClaim);
+        return hasClaim;
+    }
+
+    /**
+     * Checks whether the cookies in the supplied request prove the client has the validator's claim, noting the token
+     * service's response status in the supplied Flight Recorder event.
+     *
+     * @param aRequest An authorization request
+     * @param aEvent The check's Flight Recorder event
+     * @return Whether or not the cookies prove the client has the claim
+     */
+    private boolean hasClaim(final AuthRequest aRequest, final CookieValidationEvent aEvent) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder().uri(myTokenService).timeout(myTimeout);
+        final RequestHeaders requestHeaders = aRequest.getHeaders();
+        final Optional<String> cookieHeader = requestHeaders.getCookie();
+        final Optional<String> xForwardedForHeader = requestHeaders.getForwardedFor();
+
+        if (cookieHeader.isPresent()) {
+            builder.header(RequestHeaders.COOKIE, cookieHeader.get());
+        } else {
+            LOGGER.error(MessageCodes.CAD_029, RequestHeaders.COOKIE);
+            return false;
+        }
+
+        if (xForwardedForHeader.isPresent()) {
+            builder.header(RequestHeaders.X_FORWARDED_FOR, xForwardedForHeader.get());
+        } else {
+            LOGGER.debug(MessageCodes.CAD_029, RequestHeaders.X_FORWARDED_FOR);
+        }
+
+        if (!myBulkhead.tryEnter()) {
+            LOGGER.debug(MessageCodes.CAD_044, myBulkhead.getName(), aRequest.getID());
+            myMetrics.recordRejection();
+            return false;
+        }
+
+        final long start = System.nanoTime();
+        boolean succeeded = false;
+
+        try {
+            final HttpResponse<InputStream> response = myHttpClient.send(builder.build(), BodyHandlers.ofInputStream());
+
+            aEvent.setUpstreamStatus(response.statusCode());
+
+            final boolean accessAllowed = AccessTokenReader.hasClaim(response.body(), myClaim);
+
+            succeeded = true;
+
+            if (!accessAllowed) {
+                // Cookie found, but it's not what we were expecting
+                LOGGER.error(MessageCodes.CAD_008, cookieHeader.get());
+            } else if (myClientLimiter != null) {
+                // Only failed checks count against a client's limit
+                aRequest.getHeaders().getClientIP(myTrustedProxies).ifPresent(myClientLimiter::release);
+            }
+
+            return accessAllowed;
+        } catch (final InterruptedException | IOException details) {
+            LOGGER.error(details, details.getMessage());
+            return false; // QUESTION: Should we retry?
+        } finally {
+            final long latency = System.nanoTime() - start;
+
+            myBulkhead.exit(latency, succeeded);
+            myMetrics.record(latency, succeeded);
+        }
+    }
+}
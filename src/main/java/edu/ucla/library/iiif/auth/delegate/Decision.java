@@ -0,0 +1,75 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.util.Collections;
+import java.util.Map;
+
+import info.freelibrary.util.HTTP;
+
+/**
+ * The outcome of an authorization decision: the value to return from Cantaloupe's <code>preAuthorize()</code> and
+ * the extra keys, if any, to add to the request's info.json response.
+ */
+public final class Decision {
+
+    /**
+     * The value to return from <code>preAuthorize()</code>.
+     */
+    private final Object myResult;
+
+    /**
+     * The extra info.json keys.
+     */
+    private final Map<String, Object> myInfoKeys;
+
+    /**
+     * Creates a new decision that doesn't add anything to info.json responses.
+     *
+     * @param aResult True, false, or a map with a status code, challenge, or scaling information
+     */
+    public Decision(final Object aResult) {
+        this(aResult, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a new decision.
+     *
+     * @param aResult True, false, or a map with a status code, challenge, or scaling information
+     * @param aInfoKeys The extra keys to add to an info.json response
+     */
+    public Decision(final Object aResult, final Map<String, Object> aInfoKeys) {
+        myResult = aResult;
+        myInfoKeys = aInfoKeys;
+    }
+
+    /**
+     * Gets the value to return from <code>preAuthorize()</code>.
+     *
+     * @return True, false, or a map with a status code, challenge, or scaling information
+     */
+    public Object getResult() {
+        return myResult;
+    }
+
+    /**
+     * Gets the HTTP status of the decision's response.
+     *
+     * @return 200 if the request is allowed, 403 if it's forbidden, or the status in the result's map
+     */
+    public int getStatusCode() {
+        if (myResult instanceof Map) {
+            return ((Number) ((Map<?, ?>) myResult).get(DecisionEngine.STATUS_CODE)).intValue();
+        }
+
+        return Boolean.TRUE.equals(myResult) ? HTTP.OK : HTTP.FORBIDDEN;
+    }
+
+    /**
+     * Gets the extra keys to add to an info.json response.
+     *
+     * @return An immutable map of extra info.json keys, which may be empty
+     */
+    public Map<String, Object> getInfoKeys() {
+        return myInfoKeys;
+    }
+}
@@ -0,0 +1,702 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import info.freelibrary.util.HTTP;
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+import edu.ucla.library.iiif.auth.delegate.audit.AuditLog;
+import edu.ucla.library.iiif.auth.delegate.audit.Credential;
+import edu.ucla.library.iiif.auth.delegate.cache.BoundedCache;
+import edu.ucla.library.iiif.auth.delegate.events.DecisionEvent;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+import edu.ucla.library.iiif.auth.delegate.hauth.BearerToken;
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthSinaiToken;
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthToken;
+import edu.ucla.library.iiif.auth.delegate.hauth.ItemSource;
+import edu.ucla.library.iiif.auth.delegate.limit.ClientRateLimiter;
+import edu.ucla.library.iiif.auth.delegate.metrics.Metrics;
+import edu.ucla.library.iiif.auth.delegate.policy.AccessPolicy;
+import edu.ucla.library.iiif.auth.delegate.policy.DerivativeRules;
+
+/**
+ * The process-wide engine that makes the delegate's authorization decisions.
+ * <p>
+ * Cantaloupe creates a new delegate for each request, so everything that can be shared between requests (the parsed
+ * configuration, the local access policy, the caches, and the HTTP client) is owned by the engine instead. The engine
+ * is immutable and thread-safe; all of a request's state is kept in the {@link AuthRequest} it's asked to decide.
+ * <p>
+ * If a configuration file is used, the shared engine is swapped for a new one whenever the file changes. The new
+ * engine keeps the previous engine's HTTP client and, if their settings haven't changed, its caches.
+ */
+@SuppressWarnings("PMD.GodClass") // The engine is where the delegate's parts are brought together
+public final class DecisionEngine {
+
+    /**
+     * The status code key for <code>preAuthorize()</code> responses.
+     */
+    static final String STATUS_CODE = "status_code";
+
+    /**
+     * The name of the cache of parsed Authorization headers.
+     */
+    static final String TOKEN_CACHE = "token";
+
+    /**
+     * The name of the access mode cache.
+     */
+    static final String ACCESS_MODE_CACHE = "access-mode";
+
+    /**
+     * The decision engine's logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecisionEngine.class, MessageCodes.BUNDLE);
+
+    /**
+     * The Map key, for a <code>preAuthorize()</code> return value, used to indicate that a WWW-Authenticate HTTP header
+     * should be included in the response.
+     */
+    private static final String CHALLENGE = "challenge";
+
+    /**
+     * The value of the WWW-Authenticate HTTP response header.
+     */
+    private static final String WWW_AUTHENTICATE_HEADER_VALUE = "Bearer charset=\"UTF-8\"";
+
+    /**
+     * The scale numerator key for <code>preAuthorize()</code> responses.
+     */
+    private static final String SCALE_NUMERATOR = "scale_numerator";
+
+    /**
+     * The scale denominator key for <code>preAuthorize()</code> responses.
+     */
+    private static final String SCALE_DENOMINATOR = "scale_denominator";
+
+    /**
+     * The <code>preAuthorize()</code> response for an unauthorized request.
+     */
+    private static final Map<String, Object> UNAUTHORIZED =
+            Map.of(STATUS_CODE, Long.valueOf(HTTP.UNAUTHORIZED), CHALLENGE, WWW_AUTHENTICATE_HEADER_VALUE);
+
+    /**
+     * The name of the HTTP client's threads.
+     */
+    private static final String HTTP_THREAD_NAME = "auth-delegate-http";
+
+    /**
+     * The name of the audit log's writer thread.
+     */
+    private static final String AUDIT_THREAD_NAME = "auth-delegate-audit";
+
+    /**
+     * The number of bytes in a megabyte.
+     */
+    private static final long ONE_MEGABYTE = 1024 * 1024;
+
+    /**
+     * The number of seconds a replaced engine's audit log is kept open, so that requests it's still deciding can
+     * record their decisions.
+     */
+    private static final long AUDIT_LOG_GRACE_PERIOD = 30;
+
+    /**
+     * The engine that's shared by all of the delegates in this process.
+     */
+    private static volatile DecisionEngine sharedInstance;
+
+    /**
+     * The engine's configuration.
+     */
+    private final Config myConfig;
+
+    /**
+     * The resolver of item access modes.
+     */
+    private final AccessModeResolver myAccessModes;
+
+    /**
+     * The prefetcher of the access modes in a requested item's manifest, or null if manifests aren't prefetched.
+     */
+    private final ManifestPrefetcher myPrefetcher;
+
+    /**
+     * The rules for derivatives that are always allowed.
+     */
+    private final DerivativeRules myDerivativeRules;
+
+    /**
+     * The auth service descriptions added to info.json responses.
+     */
+    private final AuthServices myAuthServices;
+
+    /**
+     * A cache of parsed Authorization headers, including those that couldn't be parsed.
+     */
+    private final BoundedCache<String, BearerToken> myTokenCache;
+
+    /**
+     * An HTTP client for the Hauth and token services.
+     */
+    private final HttpClient myHttpClient;
+
+    /**
+     * The limiter of each client's failed credential checks, or null if clients aren't limited.
+     */
+    private final ClientRateLimiter myClientLimiter;
+
+    /**
+     * The validator of campus network access cookies.
+     */
+    private final CookieValidator myCampusCookies;
+
+    /**
+     * The validator of Sinai affiliation cookies.
+     */
+    private final CookieValidator mySinaiCookies;
+
+    /**
+     * Whether the engine's decisions are recorded in the delegate's metrics.
+     */
+    private final boolean hasMetrics;
+
+    /**
+     * The audit log of the engine's decisions, or null if decisions aren't audited.
+     */
+    private final AuditLog myAuditLog;
+
+    /**
+     * The <code>preAuthorize()</code> response that redirects a full image request to the tiered access scale.
+     */
+    private final Map<String, Object> myScaleRedirect;
+
+    /**
+     * Creates a new decision engine, loading the local access policy named in the supplied configuration.
+     *
+     * @param aConfig A delegate configuration
+     * @throws ConfigException If the local access policy can't be loaded
+     */
+    public DecisionEngine(final Config aConfig) {
+        this(aConfig, loadPolicy(aConfig));
+    }
+
+    /**
+     * Creates a new decision engine with the supplied local access policy.
+     *
+     * @param aConfig A delegate configuration
+     * @param aPolicy A local access policy
+     */
+    DecisionEngine(final Config aConfig, final AccessPolicy aPolicy) {
+        this(aConfig, new BoundedCache<>(aConfig.getTokenCacheSize()), HttpClient.newBuilder()
+                .executor(BackgroundThreads.newExecutor(HTTP_THREAD_NAME)).connectTimeout(aConfig.getUpstreamTimeout())
+                .build(), aPolicy);
+    }
+
+    /**
+     * Creates a new decision engine with the supplied parts and an access mode resolver for the supplied policy.
+     *
+     * @param aConfig A delegate configuration
+     * @param aTokenCache A cache of parsed Authorization headers
+     * @param aHttpClient An HTTP client for the Hauth and token services
+     * @param aPolicy A local access policy
+     */
+    private DecisionEngine(final Config aConfig, final BoundedCache<String, BearerToken> aTokenCache,
+            final HttpClient aHttpClient, final AccessPolicy aPolicy) {
+        this(aConfig, aTokenCache, aHttpClient, new AccessModeResolver(aConfig, aPolicy, aHttpClient), true,
+                openAuditLog(aConfig, null));
+    }
+
+    /**
+     * Creates a new decision engine that replaces the supplied engine, keeping the parts of it that are still
+     * compatible with the new configuration.
+     *
+     * @param aConfig A delegate configuration
+     * @param aPrevious The engine that's being replaced
+     * @throws ConfigException If the local access policy can't be loaded
+     */
+    DecisionEngine(final Config aConfig, final DecisionEngine aPrevious) {
+        this(aConfig,
+                aPrevious.myConfig.getTokenCacheSize() == aConfig.getTokenCacheSize() ? aPrevious.myTokenCache
+                        : new BoundedCache<>(aConfig.getTokenCacheSize()),
+                aPrevious.myHttpClient,
+                new AccessModeResolver(aConfig, loadPolicy(aConfig), aPrevious.myAccessModes), true,
+                openAuditLog(aConfig, aPrevious.myAuditLog));
+    }
+
+    /**
+     * Creates a new decision engine from its parts.
+     *
+     * @param aConfig A delegate configuration
+     * @param aTokenCache A cache of parsed Authorization headers
+     * @param aHttpClient An HTTP client for the Hauth and token services
+     * @param aAccessModes A resolver of item access modes
+     * @param aServing Whether the engine serves real requests, in which case it prefetches the access modes in
+     *        requested items' manifests (if configured) and records its decisions in the delegate's metrics
+     * @param aAuditLog An audit log of the engine's decisions, or null if decisions aren't audited
+     */
+    private DecisionEngine(final Config aConfig, final BoundedCache<String, BearerToken> aTokenCache,
+            final HttpClient aHttpClient, final AccessModeResolver aAccessModes, final boolean aServing,
+            final AuditLog aAuditLog) {
+        final int[] scaleConstraint = aConfig.getScaleConstraint();
+
+        myConfig = aConfig;
+        myAccessModes = aAccessModes;
+        myPrefetcher = aConfig.getManifestTemplate().filter(template -> aServing)
+                .map(template -> new ManifestPrefetcher(aConfig, aAccessModes, aHttpClient)).orElse(null);
+        myDerivativeRules = new DerivativeRules(aConfig);
+        myAuthServices = AuthServices.forConfig(aConfig);
+        myTokenCache = aTokenCache;
+        myHttpClient = aHttpClient;
+        myClientLimiter = Optional.of(aConfig.getClientRateLimit()).filter(rate -> rate > 0)
+                .map(rate -> new ClientRateLimiter(rate, aConfig.getClientBurst())).orElse(null);
+        myCampusCookies = CookieValidator.forCampusNetwork(aConfig, aHttpClient, myClientLimiter);
+        mySinaiCookies = CookieValidator.forSinaiAffiliation(aConfig, aHttpClient, myClientLimiter);
+        hasMetrics = aServing;
+        myAuditLog = aAuditLog;
+
+        // The long types make a difference here, apparently
+        myScaleRedirect = Map.of(STATUS_CODE, Long.valueOf(HTTP.FOUND), //
+                SCALE_NUMERATOR, (long) scaleConstraint[0], //
+                SCALE_DENOMINATOR, (long) scaleConstraint[1]);
+    }
+
+    /**
+     * Gets the engine that's shared by all of the delegates in this process, creating it from the environment the
+     * first time it's needed.
+     *
+     * @return The shared decision engine
+     * @throws ConfigException If the environment's configuration isn't valid
+     */
+    @SuppressWarnings("PMD.SingletonClassReturningNewInstance") // Uses double-checked locking
+    public static DecisionEngine getInstance() {
+        DecisionEngine engine = sharedInstance;
+
+        if (engine == null) {
+            synchronized (DecisionEngine.class) {
+                engine = sharedInstance;
+
+                if (engine == null) {
+                    engine = createInstance();
+                    registerCaches(engine);
+                    sharedInstance = engine;
+                    Metrics.register(new Management(DecisionEngine::getInstance), Management.NAME);
+                }
+            }
+        }
+
+        return engine;
+    }
+
+    /**
+     * Creates the shared engine from the environment, or from the configuration file named in the environment, which
+     * is then watched for changes.
+     *
+     * @return A new decision engine
+     * @throws ConfigException If the configuration isn't valid
+     */
+    private static DecisionEngine createInstance() {
+        final Optional<Path> configFile = Config.getPath(Config.AUTH_CONFIG_FILE);
+
+        if (configFile.isEmpty()) {
+            return new DecisionEngine(new Config());
+        }
+
+        final DecisionEngine engine = new DecisionEngine(Config.load(configFile.get()));
+
+        LOGGER.info(MessageCodes.CAD_034, configFile.get());
+        ConfigWatcher.start(configFile.get(), DecisionEngine::replaceInstance);
+        return engine;
+    }
+
+    /**
+     * Replaces the shared engine with one that uses the supplied configuration. Requests that are already being
+     * decided finish with the engine they started with.
+     *
+     * @param aConfig A new delegate configuration
+     * @throws ConfigException If an engine can't be created with the new configuration
+     */
+    static void replaceInstance(final Config aConfig) {
+        synchronized (DecisionEngine.class) {
+            final DecisionEngine previous = sharedInstance;
+            final DecisionEngine engine =
+                    previous == null ? new DecisionEngine(aConfig) : new DecisionEngine(aConfig, previous);
+
+            registerCaches(engine);
+            sharedInstance = engine;
+
+            // Requests that are still being decided by the previous engine may still record their decisions
+            if (previous != null && previous.myAuditLog != null && !previous.myAuditLog.equals(engine.myAuditLog)) {
+                previous.myAuditLog.closeLater(AUDIT_LOG_GRACE_PERIOD, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Measures the caches of the shared engine in the delegate's metrics.
+     *
+     * @param aEngine The shared engine
+     */
+    private static void registerCaches(final DecisionEngine aEngine) {
+        Metrics.registerCache(TOKEN_CACHE, aEngine.myTokenCache);
+        Metrics.registerCache(ACCESS_MODE_CACHE, aEngine.myAccessModes.getCache());
+    }
+
+    /**
+     * Opens the audit log named in the supplied configuration. If the previous engine's audit log writes to the same
+     * file, it's reused with the new settings, since two logs writing to (and rotating) one file would garble it.
+     *
+     * @param aConfig A delegate configuration
+     * @param aPrevious The previous engine's audit log, or null if there isn't one
+     * @return The audit log, or null if the configuration doesn't name one
+     */
+    private static AuditLog openAuditLog(final Config aConfig, final AuditLog aPrevious) {
+        final int sampleRate = aConfig.getAuditSampleRate();
+        final int bufferSize = aConfig.getAuditBufferSize();
+        final long maxFileSize = aConfig.getAuditMaxFileSize() * ONE_MEGABYTE;
+
+        return aConfig.getAuditLog().map(file -> aPrevious != null && aPrevious.getFile().equals(file)
+                ? aPrevious.reconfigure(sampleRate, bufferSize, maxFileSize)
+                : new AuditLog(file, sampleRate, bufferSize, maxFileSize,
+                        BackgroundThreads.newThreadFactory(AUDIT_THREAD_NAME))).orElse(null);
+    }
+
+    /**
+     * Loads the local access policy named in the supplied configuration.
+     *
+     * @param aConfig A delegate configuration
+     * @return The local access policy, which is empty if the configuration doesn't name one
+     * @throws ConfigException If the local access policy can't be loaded
+     */
+    private static AccessPolicy loadPolicy(final Config aConfig) {
+        return aConfig.getPolicyFile().map(AccessPolicy::load).orElse(AccessPolicy.EMPTY);
+    }
+
+    /**
+     * Gets the engine's audit log.
+     *
+     * @return The engine's audit log, if it has one
+     */
+    Optional<AuditLog> getAuditLog() {
+        return Optional.ofNullable(myAuditLog);
+    }
+
+    /**
+     * Gets the engine's configuration.
+     *
+     * @return The engine's configuration
+     */
+    public Config getConfig() {
+        return myConfig;
+    }
+
+    /**
+     * Gets the engine's HTTP client.
+     *
+     * @return The HTTP client for the Hauth and token services
+     */
+    HttpClient getHttpClient() {
+        return myHttpClient;
+    }
+
+    /**
+     * Gets the engine's cache of parsed Authorization headers.
+     *
+     * @return The cache of parsed Authorization headers
+     */
+    BoundedCache<String, BearerToken> getTokenCache() {
+        return myTokenCache;
+    }
+
+    /**
+     * Gets the engine's limiter of each client's failed credential checks.
+     *
+     * @return The client rate limiter, if clients are limited
+     */
+    Optional<ClientRateLimiter> getClientLimiter() {
+        return Optional.ofNullable(myClientLimiter);
+    }
+
+    /**
+     * Creates an engine that shares this engine's configuration, token cache, and HTTP client, but that uses a
+     * different local access policy. The new engine doesn't prefetch manifests or record its decisions in the metrics
+     * or the audit log.
+     *
+     * @param aPolicy A local access policy
+     * @return A new decision engine
+     */
+    DecisionEngine withPolicy(final AccessPolicy aPolicy) {
+        return new DecisionEngine(myConfig, myTokenCache, myHttpClient, myAccessModes.withPolicy(aPolicy), false,
+                null);
+    }
+
+    /**
+     * Decides whether the supplied request is authorized.
+     *
+     * @param aRequest An authorization request
+     * @return The authorization decision
+     */
+    public Decision decide(final AuthRequest aRequest) {
+        final DecisionEvent event = new DecisionEvent();
+        final long start = System.nanoTime();
+        final AccessMode accessMode;
+        final Decision decision;
+        final long latency;
+
+        event.begin();
+
+        recordHotKeys(aRequest);
+
+        // Allow small derivatives (e.g., thumbnails) of the whole image, no questions asked
+        if (isFreeDerivative(aRequest)) {
+            latency = System.nanoTime() - start;
+            LOGGER.debug(MessageCodes.CAD_030, aRequest.getLocalURI());
+
+            if (hasMetrics) {
+                Metrics.getDecisions().recordThumbnailBypass(latency);
+            }
+
+            if (myAuditLog != null) {
+                myAuditLog.record(aRequest.getID(), null, HTTP.OK, Credential.NONE, latency);
+            }
+
+            event.commit(aRequest.getID(), null, DecisionEvent.THUMBNAIL, HTTP.OK);
+            return new Decision(true);
+        }
+
+        // Warm the access modes of the rest of the item's object while this request is decided
+        if (myPrefetcher != null && aRequest.isInfoRequest()) {
+            myPrefetcher.prefetch(aRequest.getID());
+        }
+
+        accessMode = myAccessModes.getAccessMode(aRequest.getID());
+        decision = decide(aRequest, accessMode);
+        latency = System.nanoTime() - start;
+
+        if (hasMetrics) {
+            Metrics.getDecisions().record(accessMode, decision.getStatusCode(), latency);
+        }
+
+        if (myAuditLog != null) {
+            myAuditLog.record(aRequest.getID(), accessMode, decision.getStatusCode(),
+                    Credential.checkedFor(accessMode, aRequest.isInfoRequest()), latency);
+        }
+
+        event.commit(aRequest.getID(), accessMode.name(),
+                aRequest.isInfoRequest() ? DecisionEvent.INFO : DecisionEvent.IMAGE, decision.getStatusCode());
+        return decision;
+    }
+
+    /**
+     * Counts the supplied request's identifier and client in the trackers of the most frequent ones, if the engine
+     * records its decisions in the delegate's metrics.
+     *
+     * @param aRequest An authorization request
+     */
+    private void recordHotKeys(final AuthRequest aRequest) {
+        if (hasMetrics) {
+            Metrics.getHotIdentifiers().record(aRequest.getID());
+            aRequest.getHeaders().getClientIP(myConfig.getTrustedProxies()).ifPresent(Metrics.getHotClients()::record);
+        }
+    }
+
+    /**
+     * Decides whether the supplied request for an item with the supplied access mode is authorized.
+     *
+     * @param aRequest An authorization request
+     * @param aAccessMode The requested item's access mode
+     * @return The authorization decision
+     */
+    private Decision decide(final AuthRequest aRequest, final AccessMode aAccessMode) {
+        switch (aAccessMode) {
+            case OPEN:
+                LOGGER.debug(MessageCodes.CAD_010);
+                return new Decision(true);
+            case TIERED:
+                LOGGER.debug(MessageCodes.CAD_011);
+                return aRequest.isInfoRequest() ? getTieredInfo(aRequest) : getTieredImage(aRequest);
+            case ALL_OR_NOTHING:
+            default:
+                LOGGER.debug(MessageCodes.CAD_012);
+                return aRequest.isInfoRequest() ? getAllOrNothingInfo(aRequest) : getAllOrNothingImage(aRequest);
+        }
+    }
+
+    /**
+     * Gets where the supplied item's image is stored, from its Hauth record, if the delegate resolves sources.
+     *
+     * @param aID An item ID
+     * @return Where the item's image is stored, or an empty optional if sources aren't resolved by the delegate, or the
+     *         item's record doesn't say
+     */
+    public Optional<ItemSource> getSource(final String aID) {
+        return myConfig.isSourceResolution() ? myAccessModes.getSource(aID) : Optional.empty();
+    }
+
+    /**
+     * Gets the engine's access mode resolver.
+     *
+     * @return The resolver of item access modes
+     */
+    public AccessModeResolver getAccessModes() {
+        return myAccessModes;
+    }
+
+    /**
+     * Checks whether the request is for a derivative that the configured derivative rules always allow.
+     *
+     * @param aRequest An authorization request
+     * @return True if the request can be served without an authorization check; else, false
+     */
+    private boolean isFreeDerivative(final AuthRequest aRequest) {
+        final Optional<ImageRequest> imageRequest = ImageRequest.parse(aRequest.getLocalURI());
+
+        return imageRequest.isPresent() &&
+                myDerivativeRules.isAllowed(imageRequest.get(), aRequest.getScaleConstraint());
+    }
+
+    /**
+     * Gets the decision for a tiered image information request.
+     *
+     * @param aRequest An authorization request
+     * @return The authorization decision
+     */
+    private Decision getTieredInfo(final AuthRequest aRequest) {
+        // For full image requests, this array value is equal to { 1, 1 }
+        final int[] scaleConstraint = aRequest.getScaleConstraint();
+        final Optional<HauthToken> token = getBearerToken(aRequest).getToken();
+
+        LOGGER.debug(MessageCodes.CAD_013);
+
+        // Full access from an on-campus IP
+        if (token.isPresent() && token.get().isValidIP()) {
+            LOGGER.debug(MessageCodes.CAD_014);
+            return new Decision(true);
+        }
+
+        // Degraded image request for the size we allow (probably via an earlier HTTP 302 redirect)
+        if (Arrays.equals(myConfig.getScaleConstraint(), scaleConstraint)) {
+            return new Decision(true, myAuthServices.getInfoKeys(AccessMode.TIERED));
+        }
+
+        // Degraded image request for a size that doesn't match what we've configured and isn't 1:1
+        if (scaleConstraint[0] != scaleConstraint[1]) {
+            LOGGER.debug(MessageCodes.CAD_015, scaleConstraint[0], scaleConstraint[1]);
+            return new Decision(false); // returns 403
+        }
+
+        // Full image request, but non-campus IP
+        LOGGER.debug(MessageCodes.CAD_016);
+        return new Decision(myScaleRedirect);
+    }
+
+    /**
+     * Gets the decision for a IIIF tiered image request.
+     *
+     * @param aRequest An authorization request
+     * @return The authorization decision
+     */
+    private Decision getTieredImage(final AuthRequest aRequest) {
+        // For full image requests, this array value is equal to { 1, 1 }
+        final int[] scaleConstraint = aRequest.getScaleConstraint();
+
+        LOGGER.debug(MessageCodes.CAD_017);
+
+        // Degraded image request for the size we allow (probably via an earlier HTTP 302 redirect)
+        if (Arrays.equals(myConfig.getScaleConstraint(), scaleConstraint)) {
+            LOGGER.debug(MessageCodes.CAD_027);
+            return new Decision(true);
+        }
+
+        // Degraded image request for a size we don't allow access to; return HTTP 403
+        if (scaleConstraint[0] != scaleConstraint[1]) {
+            LOGGER.debug(MessageCodes.CAD_028, scaleConstraint[0], scaleConstraint[1]);
+            return new Decision(UNAUTHORIZED);
+        }
+
+        // An over-limit client gets what a failed check would give it, so off-campus viewers still see the scaled image
+        if (myCampusCookies.isOverClientLimit(aRequest)) {
+            return new Decision(myScaleRedirect);
+        }
+
+        // Full access from an on-campus IP
+        if (myCampusCookies.hasClaim(aRequest)) {
+            LOGGER.debug(MessageCodes.CAD_018);
+            return new Decision(true);
+        }
+
+        // Full image request, but non-campus IP
+        LOGGER.debug(MessageCodes.CAD_019);
+        return new Decision(myScaleRedirect);
+    }
+
+    /**
+     * Gets the decision for a all-or-nothing image information request.
+     *
+     * @param aRequest An authorization request
+     * @return The authorization decision
+     */
+    private Decision getAllOrNothingInfo(final AuthRequest aRequest) {
+        final Optional<HauthSinaiToken> sinaiToken = getBearerToken(aRequest).getSinaiToken();
+
+        LOGGER.debug(MessageCodes.CAD_020);
+
+        // Full access is granted with a valid token
+        if (sinaiToken.isPresent() && sinaiToken.get().hasSinaiAffiliate()) {
+            LOGGER.debug(MessageCodes.CAD_021);
+            return new Decision(true);
+        }
+
+        // No access without a token, but auth services should be added to the info.json
+        LOGGER.debug(MessageCodes.CAD_022);
+        return new Decision(UNAUTHORIZED, myAuthServices.getInfoKeys(AccessMode.ALL_OR_NOTHING));
+    }
+
+    /**
+     * Gets the decision for an all-or-nothing image request.
+     *
+     * @param aRequest An authorization request
+     * @return The authorization decision
+     */
+    private Decision getAllOrNothingImage(final AuthRequest aRequest) {
+        LOGGER.debug(MessageCodes.CAD_023);
+
+        if (mySinaiCookies.isOverClientLimit(aRequest)) {
+            return new Decision(UNAUTHORIZED);
+        }
+
+        // Full access
+        if (mySinaiCookies.hasClaim(aRequest)) {
+            LOGGER.debug(MessageCodes.CAD_024);
+            return new Decision(true);
+        }
+
+        // No access
+        LOGGER.debug(MessageCodes.CAD_025);
+        return new Decision(UNAUTHORIZED);
+    }
+
+    /**
+     * Gets the request's parsed Authorization header. Parsed values (including unparseable ones) are cached across
+     * requests.
+     *
+     * @param aRequest An authorization request
+     * @return The request's bearer token, or {@link BearerToken#NONE} if it doesn't have a valid one
+     */
+    private BearerToken getBearerToken(final AuthRequest aRequest) {
+        final Optional<String> authorizationHeader = aRequest.getHeaders().getAuthorization();
+
+        if (authorizationHeader.isPresent()) {
+            return myTokenCache.get(authorizationHeader.get(), BearerToken::parse);
+        }
+
+        LOGGER.debug(MessageCodes.CAD_029, HauthToken.HEADER);
+        return BearerToken.NONE;
+    }
+}
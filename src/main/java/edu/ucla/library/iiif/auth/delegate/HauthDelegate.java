@@ -1,175 +1,52 @@
+package edu.ucla.library.iiif.auth.delegate;
 
-package edu.ucla.library.iiif.auth.delegate; // NOPMD - Excessive imports
-
-import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
-import java.util.Arrays;
-import java.util.Base64;
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
-import info.freelibrary.util.HTTP;
-import info.freelibrary.util.Logger;
-import info.freelibrary.util.LoggerFactory;
-
-import info.freelibrary.iiif.presentation.v3.services.AuthCookieService1;
-import info.freelibrary.iiif.presentation.v3.services.AuthTokenService1;
-import info.freelibrary.iiif.presentation.v3.services.ExternalCookieService1;
-import info.freelibrary.iiif.presentation.v3.services.KioskCookieService1;
-import info.freelibrary.iiif.presentation.v3.utils.JSON;
-import info.freelibrary.iiif.presentation.v3.utils.JsonKeys;
-
-import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
-import edu.ucla.library.iiif.auth.delegate.hauth.HauthItem;
-import edu.ucla.library.iiif.auth.delegate.hauth.HauthSinaiToken;
-import edu.ucla.library.iiif.auth.delegate.hauth.HauthToken;
-
-import edu.illinois.library.cantaloupe.delegate.JavaContext;
 import edu.illinois.library.cantaloupe.delegate.JavaDelegate;
+import edu.ucla.library.iiif.auth.delegate.hauth.ItemSource;
 
 /**
  * A Cantaloupe delegate for handing IIIF Auth interactions.
+ * <p>
+ * Cantaloupe creates a delegate for each request, so this is only a thin adapter between Cantaloupe's request context
+ * and the process-wide {@link DecisionEngine}, which makes the actual decisions.
+ * <p>
+ * If {@link Config#AUTH_SOURCE_RESOLUTION} is set, the delegate also tells Cantaloupe where each item's image is
+ * stored, from the same cached Hauth record that its access mode comes from, so that authorizing a request and finding
+ * its image take one Hauth lookup. Otherwise, sources are left to Cantaloupe's own configuration.
  */
 public class HauthDelegate extends CantaloupeDelegate implements JavaDelegate {
 
-    /**
-     * The authorization delegate's logger.
-     */
-    private static final Logger LOGGER = LoggerFactory.getLogger(HauthDelegate.class, MessageCodes.BUNDLE);
-
-    /**
-     * A Jackson TypeReference for a Map.
-     */
-    private static final TypeReference<Map<String, Object>> MAP_TYPE_REFERENCE = new TypeReference<>() {};
-
-    /**
-     * The way we identify if a thumbnail is being requested.
-     */
-    private static final String THUMBNAIL = "/full/!200,200/0/";
-
-    /**
-     * The name of the Cookie HTTP request header.
-     */
-    private static final String COOKIE = "Cookie";
-
-    /**
-     * The name of the X-Forwarded-For HTTP request header.
-     */
-    private static final String X_FORWARDED_FOR = "X-Forwarded-For";
-
-    /**
-     * The Map key, for a {@link #preAuthorize} return value, used to indicate that a WWW-Authenticate HTTP header
-     * should be included in the response.
-     */
-    private static final String CHALLENGE = "challenge";
-
-    /**
-     * The value of the WWW-Authenticate HTTP response header.
-     */
-    private static final String WWW_AUTHENTICATE_HEADER_VALUE = "Bearer charset=\"UTF-8\"";
-
-    /**
-     * The status code key for {@link #preAuthorize} responses.
-     */
-    private static final String STATUS_CODE = "status_code";
-
-    /**
-     * The scale numerator key for {@link #preAuthorize} responses.
-     */
-    private static final String SCALE_NUMERATOR = "scale_numerator";
-
-    /**
-     * The scale denominator key for {@link #preAuthorize} responses.
-     */
-    private static final String SCALE_DENOMINATOR = "scale_denominator";
-
-    /**
-     * The regex pattern for a single whitespace character.
-     */
-    private static final String SINGLE_SPACE_PATTERN = "\\s";
-
-    /**
-     * The access token JSON key.
-     */
-    private static final String ACCESS_TOKEN = "accessToken";
-
-    /**
-     * The configuration for this delegate.
-     */
-    private final Config myConfig;
+    static {
+        // Get the shared engine ready before the first request arrives
+        WarmUp.start();
+    }
 
     /**
-     * Whether or not access to the requested item is restricted.
+     * The decision made for the current request, once it's been pre-authorized.
      */
-    private AccessMode myAccessMode;
+    private Decision myDecision;
 
     /**
-     * If the current request is for info.json, whether or not a IIIF authentication service description should be
-     * included in the response.
+     * Where the requested item's image is stored, once it's been resolved, or null if it hasn't been or can't be.
      */
-    private boolean myInfoJsonShouldContainAuth;
+    private ItemSource mySource;
 
     /**
-     * Creates a new Cantaloupe authorization delegate.
+     * Whether the requested item's source has been resolved, so Cantaloupe's calls for it don't resolve it again.
      */
-    public HauthDelegate() {
-        myConfig = new Config();
-    }
+    private boolean isSourceResolved;
 
     /**
      * Authorizes a request before having read an image. Not all image information will necessarily be calculated at
      * this point in time.
      */
     @Override
-    @SuppressWarnings({ "PMD.ImplicitSwitchFallThrough" })
     public Object preAuthorize() {
-        final JavaContext context = getContext();
-        final String id = context.getIdentifier();
-
-        // Allow any kind of thumbnail request, no questions asked
-        if (context.getLocalURI().contains(THUMBNAIL)) {
-            LOGGER.debug(MessageCodes.CAD_030, context.getLocalURI());
-            return true;
-        }
-
-        // Cache the result of the access level HTTP request
-        myAccessMode = new HauthItem(myConfig.getAccessService(), id).getAccessMode();
-
-        switch (myAccessMode) {
-            case OPEN:
-                LOGGER.debug(MessageCodes.CAD_010);
-                return true;
-            case TIERED:
-                LOGGER.debug(MessageCodes.CAD_011);
-                switch (getRequestType()) {
-                    case INFORMATION:
-                        return getTieredInfo();
-                    case IMAGE:
-                    default:
-                        return getTieredImage();
-                }
-            case ALL_OR_NOTHING:
-            default:
-                LOGGER.debug(MessageCodes.CAD_012);
-                switch (getRequestType()) {
-                    case INFORMATION:
-                        return getAllOrNothingInfo();
-                    case IMAGE:
-                    default:
-                        return getAllOrNothingImage();
-                }
-        }
+        myDecision = DecisionEngine.getInstance().decide(AuthRequest.from(getContext()));
+        return myDecision.getResult();
     }
 
     @Override
@@ -179,348 +56,39 @@ public class HauthDelegate extends CantaloupeDelegate implements JavaDelegate {
 
     @Override
     public Map<String, Object> getExtraIIIF3InformationResponseKeys() {
-        if (myInfoJsonShouldContainAuth) {
-            return Collections.singletonMap(JsonKeys.SERVICE, List.of(getAuthServices()));
+        if (myDecision != null) {
+            return myDecision.getInfoKeys();
         }
 
         return Collections.emptyMap();
     }
 
-    /**
-     * Gets the response for a tiered image information request.
-     *
-     * @return True, false, or a map with scaling information
-     */
-    private Object getTieredInfo() {
-        // For full image requests, this array value is equal to { 1, 1 }
-        final int[] scaleConstraint = getContext().getScaleConstraint();
-        final int[] configuredScaleConstraint = myConfig.getScaleConstraint();
-        final Optional<HauthToken> token = getToken();
-
-        LOGGER.debug(MessageCodes.CAD_013);
-
-        // Full access from an on-campus IP
-        if (token.isPresent() && token.get().isValidIP()) {
-            LOGGER.debug(MessageCodes.CAD_014);
-            return true;
-        }
-
-        // Degraded image request for the size we allow (probably via an earlier HTTP
-        // 302 redirect)
-        if (Arrays.equals(configuredScaleConstraint, scaleConstraint)) {
-            return myInfoJsonShouldContainAuth = true;
-        }
-
-        // Degraded image request for a size that doesn't match what we've configured
-        // and isn't 1:1
-        if (scaleConstraint[0] != scaleConstraint[1]) {
-            LOGGER.debug(MessageCodes.CAD_015, scaleConstraint[0], scaleConstraint[1]);
-            return false; // returns 403
-        }
-
-        // Full image request, but non-campus IP (the long types make a difference here,
-        // apparently)
-        LOGGER.debug(MessageCodes.CAD_016);
-        return Map.of(STATUS_CODE, Long.valueOf(HTTP.FOUND), //
-                SCALE_NUMERATOR, (long) configuredScaleConstraint[0], //
-                SCALE_DENOMINATOR, (long) configuredScaleConstraint[1]);
-    }
-
-    /**
-     * Gets the response for a IIIF tiered image request.
-     *
-     * @return True or a map with an unauthorized status response
-     */
-    private Object getTieredImage() {
-        // For full image requests, this array value is equal to { 1, 1 }
-        final int[] scaleConstraint = getContext().getScaleConstraint();
-        final int[] configuredScaleConstraint = myConfig.getScaleConstraint();
-
-        LOGGER.debug(MessageCodes.CAD_017);
-
-        // Degraded image request for the size we allow (probably via an earlier HTTP
-        // 302 redirect)
-        if (Arrays.equals(configuredScaleConstraint, scaleConstraint)) {
-            LOGGER.debug(MessageCodes.CAD_027);
-            return true;
-        }
-
-        // Degraded image request for a size we don't allow access to; return HTTP 403
-        if (scaleConstraint[0] != scaleConstraint[1]) {
-            LOGGER.debug(MessageCodes.CAD_028, scaleConstraint[0], scaleConstraint[1]);
-            return Map.of(STATUS_CODE, Long.valueOf(HTTP.UNAUTHORIZED), CHALLENGE, WWW_AUTHENTICATE_HEADER_VALUE);
-        }
-
-        // Full access from an on-campus IP
-        if (hasCampusNetworkCookie()) {
-            LOGGER.debug(MessageCodes.CAD_018);
-            return true;
-        }
-
-        // Full image request, but non-campus IP (the long types make a difference here,
-        // apparently)
-        LOGGER.debug(MessageCodes.CAD_019);
-        return Map.of(STATUS_CODE, Long.valueOf(HTTP.FOUND), //
-                SCALE_NUMERATOR, (long) configuredScaleConstraint[0], //
-                SCALE_DENOMINATOR, (long) configuredScaleConstraint[1]);
-    }
-
-    /**
-     * Gets the response for a all-or-nothing image information request.
-     *
-     * @return True or a map with an unauthorized status response
-     */
-    private Object getAllOrNothingInfo() {
-        final Optional<HauthSinaiToken> sinaiToken = getSinaiToken();
-
-        LOGGER.debug(MessageCodes.CAD_020);
-
-        // Full access is granted with a valid token
-        if (sinaiToken.isPresent() && sinaiToken.get().hasSinaiAffiliate()) {
-            LOGGER.debug(MessageCodes.CAD_021);
-            return true;
-        }
-
-        // Auth services should be added to the info.json
-        myInfoJsonShouldContainAuth = true;
-
-        // No access without a token
-        LOGGER.debug(MessageCodes.CAD_022);
-        return Map.of(STATUS_CODE, Long.valueOf(HTTP.UNAUTHORIZED), CHALLENGE, WWW_AUTHENTICATE_HEADER_VALUE);
-    }
-
-    /**
-     * Gets the response for an all-or-nothing image request.
-     *
-     * @return True or a map with an unauthorized status response
-     */
-    private Object getAllOrNothingImage() {
-        LOGGER.debug(MessageCodes.CAD_023);
-
-        // Full access
-        if (hasSinaiAffiliateCookies()) {
-            LOGGER.debug(MessageCodes.CAD_024);
-            return true;
-        }
-
-        // No access
-        LOGGER.debug(MessageCodes.CAD_025);
-        return Map.of(STATUS_CODE, Long.valueOf(HTTP.UNAUTHORIZED), CHALLENGE, WWW_AUTHENTICATE_HEADER_VALUE);
-    }
-
-    /**
-     * Gets the item's authentication service description.
-     *
-     * @return An auth service description
-     */
-    private Map<String, Object> getAuthServices() {
-        final AuthCookieService1<?> cookieService;
-        final AuthTokenService1 tokenService;
-        final Map<String, Object> serviceMap;
-        final String label;
-
-        switch (myAccessMode) {
-            case TIERED:
-                tokenService = new AuthTokenService1(myConfig.getTokenService());
-                cookieService = new KioskCookieService1(myConfig.getCookieService(), tokenService);
-                label = "Internal cookie granting service";
-                break;
-            case ALL_OR_NOTHING:
-                tokenService = new AuthTokenService1(myConfig.getSinaiTokenService());
-                cookieService = new ExternalCookieService1(tokenService);
-                label = "External authentication required";
-                break;
-            case OPEN:
-            default:
-                // The OPEN and default branches should not be reachable, but are included here
-                // just in case
-                return Collections.emptyMap();
-        }
-
-        // Workaround for Mirador bug that requires label be present (Cf.
-        // https://bitly.com/3NllMLq+)
-        serviceMap = JSON.convertValue(cookieService, MAP_TYPE_REFERENCE);
-        serviceMap.putIfAbsent(JsonKeys.LABEL, label);
-
-        return serviceMap;
-    }
-
-    /**
-     * Determines whether or not the client can prove campus network access.
-     *
-     * @return Whether or not the cookie proves campus network access
-     */
-    private boolean hasCampusNetworkCookie() {
-        final URI tokenService = myConfig.getTokenService();
-        final HttpRequest.Builder builder = HttpRequest.newBuilder().uri(tokenService);
-        final ObjectMapper mapper = new ObjectMapper();
-        final Map<String, String> requestHeaders = getContext().getRequestHeaders();
-        final String cookieHeader = requestHeaders.get(COOKIE);
-        final String xForwardedForHeader = requestHeaders.get(X_FORWARDED_FOR);
-
-        if (cookieHeader != null) {
-            builder.header(COOKIE, cookieHeader);
-        } else {
-            LOGGER.error(MessageCodes.CAD_029, COOKIE);
-            return false;
-        }
-
-        if (xForwardedForHeader != null) {
-            builder.header(X_FORWARDED_FOR, xForwardedForHeader);
-        } else {
-            LOGGER.debug(MessageCodes.CAD_029, X_FORWARDED_FOR);
-        }
-
-        try {
-            final HttpResponse<String> response =
-                    HttpClient.newHttpClient().send(builder.build(), BodyHandlers.ofString());
-            final JsonNode body = mapper.readTree(response.body());
-
-            if (body.has(ACCESS_TOKEN)) {
-                final String encodedAccessToken = body.get(ACCESS_TOKEN).asText();
-                final String accessToken = new String(Base64.getDecoder().decode(encodedAccessToken));
-                final boolean accessAllowed = mapper.readTree(accessToken).get("campusNetwork").asBoolean();
-
-                if (!accessAllowed) {
-                    // Cookie found, but it's not what we were expecting
-                    LOGGER.error(MessageCodes.CAD_008, cookieHeader);
-                }
-
-                return accessAllowed;
-            }
-
-            return false;
-        } catch (final InterruptedException | IOException details) {
-            LOGGER.error(details, details.getMessage());
-            return false; // QUESTION: Should we retry?
-        }
-    }
-
-    /**
-     * Determines whether or not the client can prove Sinai affiliation.
-     *
-     * @return Whether or not the cookies prove Sinai affiliation
-     */
-    private boolean hasSinaiAffiliateCookies() {
-        final URI tokenService = myConfig.getSinaiTokenService();
-        final HttpRequest.Builder builder = HttpRequest.newBuilder().uri(tokenService);
-        final ObjectMapper mapper = new ObjectMapper();
-        final Map<String, String> requestHeaders = getContext().getRequestHeaders();
-        final String cookieHeader = requestHeaders.get(COOKIE);
-        final String xForwardedForHeader = requestHeaders.get(X_FORWARDED_FOR);
-
-        if (cookieHeader != null) {
-            builder.header(COOKIE, cookieHeader);
-        } else {
-            LOGGER.error(MessageCodes.CAD_029, COOKIE);
-            return false;
-        }
-
-        if (xForwardedForHeader != null) {
-            builder.header(X_FORWARDED_FOR, xForwardedForHeader);
-        } else {
-            LOGGER.debug(MessageCodes.CAD_029, X_FORWARDED_FOR);
-        }
-
-        try {
-            final HttpResponse<String> response =
-                    HttpClient.newHttpClient().send(builder.build(), BodyHandlers.ofString());
-            final JsonNode body = mapper.readTree(response.body());
-
-            if (body.has(ACCESS_TOKEN)) {
-                final String encodedAccessToken = body.get(ACCESS_TOKEN).asText();
-                final String accessToken = new String(Base64.getDecoder().decode(encodedAccessToken));
-
-                return mapper.readTree(accessToken).get("sinaiAffiliate").asBoolean();
-            }
-
-            return false;
-        } catch (final InterruptedException | IOException details) {
-            LOGGER.error(details, details.getMessage());
-            return false; // QUESTION: Should we retry?
-        }
-    }
-
-    /**
-     * Gets a Hauth token from the supplied header value.
-     *
-     * @return An optional Hauth authorization token
-     */
-    private Optional<HauthToken> getToken() {
-        final String authorizationHeader = getContext().getRequestHeaders().get(HauthToken.HEADER);
-
-        if (authorizationHeader != null) {
-            final String[] tokenParts = authorizationHeader.split(SINGLE_SPACE_PATTERN);
-
-            if (tokenParts.length == 2 && HauthToken.TYPE.equalsIgnoreCase(tokenParts[0])) {
-                try {
-                    final String value = new String(Base64.getDecoder().decode(tokenParts[1]));
-
-                    LOGGER.debug(value);
-
-                    return Optional.ofNullable(JSON.getReader(HauthToken.class).readValue(value));
-                } catch (final IllegalArgumentException | JsonProcessingException details) {
-                    LOGGER.trace(details.getMessage(), details);
-                }
-            }
-        } else {
-            LOGGER.debug(MessageCodes.CAD_029, HauthToken.HEADER);
-        }
-
-        return Optional.empty();
+    @Override
+    public String getSource() {
+        return getItemSource().map(ItemSource::getType).orElse(null);
     }
 
-    /**
-     * Gets a Sinai token from the supplied header value.
-     *
-     * @return An optional Sinai authorization token
-     */
-    private Optional<HauthSinaiToken> getSinaiToken() {
-        final String authorizationHeader = getContext().getRequestHeaders().get(HauthToken.HEADER);
-
-        if (authorizationHeader != null) {
-            final String[] tokenParts = authorizationHeader.split(SINGLE_SPACE_PATTERN);
-
-            if (tokenParts.length == 2 && HauthToken.TYPE.equalsIgnoreCase(tokenParts[0])) {
-                try {
-                    final String value = new String(Base64.getDecoder().decode(tokenParts[1]));
-
-                    LOGGER.debug(value);
-
-                    return Optional.ofNullable(JSON.getReader(HauthSinaiToken.class).readValue(value));
-                } catch (final IllegalArgumentException | JsonProcessingException details) {
-                    LOGGER.trace(details.getMessage(), details);
-                }
-            }
-        } else {
-            LOGGER.debug(MessageCodes.CAD_029, HauthToken.HEADER);
-        }
-
-        return Optional.empty();
+    @Override
+    public String getFilesystemSourcePathname() {
+        return getItemSource().flatMap(ItemSource::getPathname).orElse(null);
     }
 
-    /**
-     * The different types of requests that this delegate may process.
-     */
-    private enum RequestType {
-
-        /** An information request type. */
-        INFORMATION,
-
-        /** An image request type. */
-        IMAGE;
+    @Override
+    public Map<String, String> getS3SourceObjectInfo() {
+        return getItemSource().map(ItemSource::getS3ObjectInfo).orElse(Collections.emptyMap());
     }
 
     /**
-     * Gets the request type of the current request.
+     * Gets where the requested item's image is stored, resolving it the first time it's asked for.
      *
-     * @return Whether this request is for an info.json or an image
+     * @return Where the requested item's image is stored, if the delegate resolves sources and it can be resolved
      */
-    private RequestType getRequestType() {
-        if (getContext().getRequestURI().endsWith("info.json")) {
-            return RequestType.INFORMATION;
+    private Optional<ItemSource> getItemSource() {
+        if (!isSourceResolved) {
+            mySource = DecisionEngine.getInstance().getSource(getContext().getIdentifier()).orElse(null);
+            isSourceResolved = true;
         }
 
-        return RequestType.IMAGE;
+        return Optional.ofNullable(mySource);
     }
 }
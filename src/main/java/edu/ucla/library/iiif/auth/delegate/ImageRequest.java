@@ -0,0 +1,285 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+
+/**
+ * The parameters of a IIIF image request (version 2 or 3), parsed once from the request's URI.
+ *
+ * @see <a href="https://iiif.io/api/image/3.0/#4-image-requests">Image Requests</a>
+ */
+public final class ImageRequest {
+
+    /**
+     * The full region.
+     */
+    private static final String FULL = "full";
+
+    /**
+     * The square region.
+     */
+    private static final String SQUARE = "square";
+
+    /**
+     * The prefix of a size that's a percentage of the full size.
+     */
+    private static final String PERCENT = "pct:";
+
+    /**
+     * The prefix of a size that can be fit inside the supplied width and height.
+     */
+    private static final char BEST_FIT = '!';
+
+    /**
+     * The prefix of a (version 3) size that may be larger than the region.
+     */
+    private static final char UPSCALE = '^';
+
+    /**
+     * The separator between a size's width and height.
+     */
+    private static final char COMMA = ',';
+
+    /**
+     * The separator between the segments of a request's path.
+     */
+    private static final char SLASH = '/';
+
+    /**
+     * The separator between a request's quality and format.
+     */
+    private static final char DOT = '.';
+
+    /**
+     * The start of a request's query string.
+     */
+    private static final char QUESTION_MARK = '?';
+
+    /**
+     * The last path segment of an image information request.
+     */
+    private static final String INFO_JSON = "info.json";
+
+    /**
+     * The number of path segments after the identifier in an image request.
+     */
+    private static final int PARAMETER_COUNT = 4;
+
+    /**
+     * The number of percentage points in the full size.
+     */
+    private static final double ONE_HUNDRED = 100d;
+
+    /**
+     * The request's region.
+     */
+    private final String myRegion;
+
+    /**
+     * The request's size.
+     */
+    private final String mySize;
+
+    /**
+     * The request's rotation.
+     */
+    private final String myRotation;
+
+    /**
+     * The request's quality.
+     */
+    private final String myQuality;
+
+    /**
+     * The request's format.
+     */
+    private final String myFormat;
+
+    /**
+     * The requested width, or zero if the size doesn't specify one.
+     */
+    private int myWidth;
+
+    /**
+     * The requested height, or zero if the size doesn't specify one.
+     */
+    private int myHeight;
+
+    /**
+     * The requested percentage of the full size, or zero if the size isn't a percentage.
+     */
+    private double myPercent;
+
+    /**
+     * Creates a new image request.
+     *
+     * @param aParameters The region, size, rotation, and quality and format, in that order
+     */
+    private ImageRequest(final String... aParameters) {
+        final String qualityAndFormat = aParameters[3];
+        final int dotIndex = qualityAndFormat.lastIndexOf(DOT);
+
+        myRegion = aParameters[0];
+        mySize = aParameters[1];
+        myRotation = aParameters[2];
+        myQuality = dotIndex == -1 ? qualityAndFormat : qualityAndFormat.substring(0, dotIndex);
+        myFormat = dotIndex == -1 ? "" : qualityAndFormat.substring(dotIndex + 1);
+
+        parseSize();
+    }
+
+    /**
+     * Parses an image request from the supplied request URI.
+     *
+     * @param aURI A IIIF request URI (e.g., Cantaloupe's local URI)
+     * @return The image request, or an empty optional if the URI isn't for an image (e.g., it's for an info.json)
+     */
+    public static Optional<ImageRequest> parse(final String aURI) {
+        final int queryIndex = aURI.indexOf(QUESTION_MARK);
+        final String path = queryIndex == -1 ? aURI : aURI.substring(0, queryIndex);
+        final String[] parameters = new String[PARAMETER_COUNT];
+        int end = path.length();
+
+        // Read the last four path segments, from the end of the path
+        for (int index = PARAMETER_COUNT - 1; index >= 0; index--) {
+            final int start = path.lastIndexOf(SLASH, end - 1);
+
+            if (start == -1 || start == end - 1) {
+                return Optional.empty();
+            }
+
+            parameters[index] = path.substring(start + 1, end);
+            end = start;
+        }
+
+        // There must be an identifier before the image request's parameters
+        if (end <= 0 || INFO_JSON.equals(parameters[PARAMETER_COUNT - 1])) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new ImageRequest(parameters));
+    }
+
+    /**
+     * Gets the request's region.
+     *
+     * @return The request's region
+     */
+    public String getRegion() {
+        return myRegion;
+    }
+
+    /**
+     * Gets the request's size.
+     *
+     * @return The request's size
+     */
+    public String getSize() {
+        return mySize;
+    }
+
+    /**
+     * Gets the request's rotation.
+     *
+     * @return The request's rotation
+     */
+    public String getRotation() {
+        return myRotation;
+    }
+
+    /**
+     * Gets the request's quality.
+     *
+     * @return The request's quality
+     */
+    public String getQuality() {
+        return myQuality;
+    }
+
+    /**
+     * Gets the request's format.
+     *
+     * @return The request's format
+     */
+    public String getFormat() {
+        return myFormat;
+    }
+
+    /**
+     * Gets whether the request's region covers the whole image (i.e., it's either the full or the square region).
+     *
+     * @return True if the request is for the whole image; else, false
+     */
+    public boolean isWholeImage() {
+        return FULL.equals(myRegion) || SQUARE.equals(myRegion);
+    }
+
+    /**
+     * Gets the largest dimension the response can have, if the request's size bounds both its width and its height.
+     * That's the case for <code>w,h</code> and <code>!w,h</code> sizes, with or without the <code>^</code> prefix,
+     * since upscaling still stops at the stated dimensions. A size that only states a width or a height (e.g.,
+     * <code>200,</code> or <code>^,200</code>) leaves the other dimension unbounded, unless the region is square, so
+     * the response's height and width are the same.
+     *
+     * @return The largest dimension of the response, or an empty optional if the size doesn't bound it
+     */
+    public OptionalInt getMaxDimension() {
+        final boolean isBounded = SQUARE.equals(myRegion) ? myWidth > 0 || myHeight > 0 : myWidth > 0 && myHeight > 0;
+        return isBounded ? OptionalInt.of(Math.max(myWidth, myHeight)) : OptionalInt.empty();
+    }
+
+    /**
+     * Gets the scale of a percentage size.
+     *
+     * @return The scale (e.g., 0.5 for <code>pct:50</code>), or an empty optional if the size isn't a percentage
+     */
+    public OptionalDouble getScale() {
+        return myPercent > 0 ? OptionalDouble.of(myPercent / ONE_HUNDRED) : OptionalDouble.empty();
+    }
+
+    /**
+     * Parses the request's size into its width, height, or percentage.
+     */
+    private void parseSize() {
+        final String size = stripPrefix(stripPrefix(mySize, UPSCALE), BEST_FIT);
+        final int commaIndex = size.indexOf(COMMA);
+
+        try {
+            if (size.startsWith(PERCENT)) {
+                myPercent = Double.parseDouble(size.substring(PERCENT.length()));
+            } else if (commaIndex != -1) {
+                myWidth = parseDimension(size.substring(0, commaIndex));
+                myHeight = parseDimension(size.substring(commaIndex + 1));
+            }
+        } catch (final NumberFormatException details) {
+            // An invalid size is treated as unbounded; Cantaloupe will reject the request itself
+            myWidth = 0;
+            myHeight = 0;
+            myPercent = 0;
+        }
+    }
+
+    /**
+     * Removes a prefix character from a size, if the size starts with it.
+     *
+     * @param aSize A size
+     * @param aPrefix A prefix character
+     * @return The size without the prefix
+     */
+    private static String stripPrefix(final String aSize, final char aPrefix) {
+        return !aSize.isEmpty() && aSize.charAt(0) == aPrefix ? aSize.substring(1) : aSize;
+    }
+
+    /**
+     * Parses a width or a height.
+     *
+     * @param aDimension A width or height, which may be empty
+     * @return The dimension, or zero if it's empty
+     * @throws NumberFormatException If the dimension isn't a number
+     */
+    private static int parseDimension(final String aDimension) {
+        return aDimension.isEmpty() ? 0 : Integer.parseInt(aDimension);
+    }
+}
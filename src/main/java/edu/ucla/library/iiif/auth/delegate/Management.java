@@ -0,0 +1,122 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+import edu.ucla.library.iiif.auth.delegate.cache.BoundedCache;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthAccessMode;
+import edu.ucla.library.iiif.auth.delegate.limit.Bulkhead;
+import edu.ucla.library.iiif.auth.delegate.limit.ClientRateLimiter;
+
+/**
+ * The delegate's JMX management operations. Each operation acts on the engine that's current when it's called, so
+ * operations keep working across configuration reloads. Every operation is logged.
+ */
+public final class Management implements ManagementMXBean {
+
+    /**
+     * The key properties of the management MBean's name.
+     */
+    public static final String NAME = "type=Management";
+
+    /**
+     * The management operations' logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Management.class, MessageCodes.BUNDLE);
+
+    /**
+     * The description of an item whose access mode would be looked up.
+     */
+    private static final String NOT_CACHED = "not cached";
+
+    /**
+     * The supplier of the current decision engine.
+     */
+    private final Supplier<DecisionEngine> myEngine;
+
+    /**
+     * Creates new management operations.
+     *
+     * @param aEngine A supplier of the current decision engine
+     */
+    public Management(final Supplier<DecisionEngine> aEngine) {
+        myEngine = aEngine;
+    }
+
+    @Override
+    public Map<String, String> getConfig() {
+        return myEngine.get().getConfig().toMap();
+    }
+
+    @Override
+    public String inspectAccessMode(final String aID) {
+        final AccessModeResolver accessModes = myEngine.get().getAccessModes();
+        final Optional<AccessMode> policyAccessMode = accessModes.getPolicy().getAccessMode(aID);
+
+        if (policyAccessMode.isPresent()) {
+            return policyAccessMode.get() + " (local policy)";
+        }
+
+        return accessModes.getCache().peek(aID).map(accessMode -> accessMode.getAccessMode() + " (cached)")
+                .orElse(NOT_CACHED);
+    }
+
+    @Override
+    public boolean invalidateAccessMode(final String aID) {
+        final BoundedCache<String, HauthAccessMode> cache = myEngine.get().getAccessModes().getCache();
+        final boolean invalidated = cache.peek(aID).isPresent();
+
+        cache.invalidate(aID);
+
+        LOGGER.info(MessageCodes.CAD_049, "invalidateAccessMode", aID, invalidated);
+        return invalidated;
+    }
+
+    @Override
+    public int invalidateAccessModes(final String aPrefix) {
+        final int count = myEngine.get().getAccessModes().getCache().invalidateAll(id -> id.startsWith(aPrefix));
+
+        LOGGER.info(MessageCodes.CAD_049, "invalidateAccessModes", aPrefix, count);
+        return count;
+    }
+
+    @Override
+    public int invalidateTokens() {
+        final int count = myEngine.get().getTokenCache().invalidateAll(header -> true);
+
+        LOGGER.info(MessageCodes.CAD_049, "invalidateTokens", "", count);
+        return count;
+    }
+
+    @Override
+    public boolean refreshAccessMode(final String aID) {
+        final boolean refreshed = myEngine.get().getAccessModes().revalidate(aID);
+
+        LOGGER.info(MessageCodes.CAD_049, "refreshAccessMode", aID, refreshed);
+        return refreshed;
+    }
+
+    @Override
+    public int preload(final String aPreloadFile) throws IOException {
+        final int count = new Preloader(myEngine.get()).preload(Paths.get(aPreloadFile));
+
+        LOGGER.info(MessageCodes.CAD_049, "preload", aPreloadFile, count);
+        return count;
+    }
+
+    @Override
+    public void resetLimits() {
+        Bulkhead.getAllShared().forEach(bulkhead -> bulkhead.getAdaptiveLimit().reset());
+        myEngine.get().getClientLimiter().ifPresent(ClientRateLimiter::reset);
+
+        LOGGER.info(MessageCodes.CAD_049, "resetLimits", "", "");
+    }
+}
@@ -0,0 +1,76 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The JMX management operations of the delegate, which act on the current decision engine. The sizes and hit ratios
+ * of the engine's caches are published by the cache metrics MBeans.
+ */
+public interface ManagementMXBean {
+
+    /**
+     * Gets a snapshot of the current configuration.
+     *
+     * @return The configuration's properties, keyed by their environmental property names
+     */
+    Map<String, String> getConfig();
+
+    /**
+     * Describes where an item's access mode would currently come from: the local access policy, the cache, or (if
+     * neither has it) a Hauth lookup.
+     *
+     * @param aID An item identifier
+     * @return A description of the item's access mode, e.g. "TIERED (cached)"
+     */
+    String inspectAccessMode(String aID);
+
+    /**
+     * Removes an item's cached access mode, so that the next request for it looks it up again.
+     *
+     * @param aID An item identifier
+     * @return True if an access mode was cached for the item; else, false
+     */
+    boolean invalidateAccessMode(String aID);
+
+    /**
+     * Removes the cached access modes of all the items whose identifiers start with the supplied prefix. An empty
+     * prefix clears the cache.
+     *
+     * @param aPrefix An identifier prefix
+     * @return The number of access modes that were removed
+     */
+    int invalidateAccessModes(String aPrefix);
+
+    /**
+     * Removes all the cached Authorization headers.
+     *
+     * @return The number of headers that were removed
+     */
+    int invalidateTokens();
+
+    /**
+     * Looks up an item's access mode in Hauth again, replacing the cached one. If the lookup fails, the cached access
+     * mode is kept.
+     *
+     * @param aID An item identifier
+     * @return True if the access mode was looked up and cached; false if the item is in the local access policy or the
+     *         lookup failed
+     */
+    boolean refreshAccessMode(String aID);
+
+    /**
+     * Preloads the access modes of the items in an identifier list or access log on the server.
+     *
+     * @param aPreloadFile The path of an identifier list or access log
+     * @return The number of access modes that were looked up and cached
+     * @throws IOException If the file can't be read
+     */
+    int preload(String aPreloadFile) throws IOException;
+
+    /**
+     * Resets the upstream services' adaptive concurrency limits and refills every client's failed check allowance.
+     */
+    void resetLimits();
+}
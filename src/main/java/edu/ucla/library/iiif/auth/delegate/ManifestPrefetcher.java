@@ -0,0 +1,352 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import info.freelibrary.util.HTTP;
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+import edu.ucla.library.iiif.auth.delegate.cache.BoundedCache;
+import edu.ucla.library.iiif.auth.delegate.metrics.Metrics;
+import edu.ucla.library.iiif.auth.delegate.metrics.UpstreamMetrics;
+
+/**
+ * A prefetcher that, when an item's info.json is first requested, reads the item's IIIF manifest and preloads the
+ * access modes of all the images in it. This keeps a viewer that pages through a multi-page object from waiting on a
+ * cold access mode lookup for each new page.
+ * <p>
+ * Manifests are fetched from the URI in {@link Config#AUTH_MANIFEST_TEMPLATE}, with the requested item's identifier in
+ * place of {@link Config#MANIFEST_ID_PLACEHOLDER}. Both Presentation API 2 and 3 manifests are understood. Prefetches
+ * run one at a time in the background; if too many are waiting, new ones are dropped rather than queued.
+ */
+public final class ManifestPrefetcher {
+
+    /**
+     * The name of the manifest service's metrics.
+     */
+    public static final String MANIFEST_SERVICE = "manifest";
+
+    /**
+     * The manifest prefetcher's logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ManifestPrefetcher.class, MessageCodes.BUNDLE);
+
+    /**
+     * The name of the prefetcher's thread.
+     */
+    private static final String THREAD_NAME = "auth-delegate-manifest-prefetch";
+
+    /**
+     * The maximum number of prefetches that may wait for the prefetcher's thread.
+     */
+    private static final int QUEUE_SIZE = 100;
+
+    /**
+     * The number of seconds the prefetcher's thread is kept alive while there's nothing to prefetch.
+     */
+    private static final long KEEP_ALIVE = 30;
+
+    /**
+     * The part of an image service's context or profile that identifies the IIIF Image API.
+     */
+    private static final String IMAGE_API = "iiif.io/api/image/";
+
+    /**
+     * The prefix of a Presentation API 3 image service's type.
+     */
+    private static final String IMAGE_SERVICE_TYPE = "ImageService";
+
+    /**
+     * The property that holds a resource's services.
+     */
+    private static final String SERVICE = "service";
+
+    /**
+     * The property that holds a Presentation API 3 ID.
+     */
+    private static final String ID = "id";
+
+    /**
+     * The property that holds a Presentation API 2 ID.
+     */
+    private static final String V2_ID = "@id";
+
+    /**
+     * The property that holds a Presentation API 3 type.
+     */
+    private static final String TYPE = "type";
+
+    /**
+     * The property that holds a Presentation API 2 type.
+     */
+    private static final String V2_TYPE = "@type";
+
+    /**
+     * The property that holds a Presentation API 2 context.
+     */
+    private static final String V2_CONTEXT = "@context";
+
+    /**
+     * The property that holds a service's profile.
+     */
+    private static final String PROFILE = "profile";
+
+    /**
+     * An object mapper for reading manifests.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * The metrics of the manifest service.
+     */
+    private static final UpstreamMetrics METRICS = Metrics.getUpstream(MANIFEST_SERVICE);
+
+    /**
+     * The manifest URI template, with the identifier placeholder.
+     */
+    private final String myTemplate;
+
+    /**
+     * The preloader that looks up the access modes of a manifest's images.
+     */
+    private final Preloader myPreloader;
+
+    /**
+     * The maximum number of images whose access modes are prefetched from a single manifest.
+     */
+    private final int myMaxImages;
+
+    /**
+     * An HTTP client for fetching manifests.
+     */
+    private final HttpClient myHttpClient;
+
+    /**
+     * The amount of time fetching a manifest may take.
+     */
+    private final Duration myTimeout;
+
+    /**
+     * The identifiers of the items whose manifests have already been prefetched.
+     */
+    private final BoundedCache<String, Boolean> myPrefetched;
+
+    /**
+     * The executor that runs prefetches in the background.
+     */
+    private final ThreadPoolExecutor myExecutor;
+
+    /**
+     * Creates a new manifest prefetcher.
+     *
+     * @param aConfig A delegate configuration with a manifest URI template
+     * @param aAccessModes The access mode resolver whose cache is filled
+     * @param aHttpClient An HTTP client for fetching manifests
+     * @throws ConfigException If the configuration doesn't have a manifest URI template
+     */
+    public ManifestPrefetcher(final Config aConfig, final AccessModeResolver aAccessModes,
+            final HttpClient aHttpClient) {
+        myTemplate = aConfig.getManifestTemplate()
+                .orElseThrow(() -> new ConfigException(Config.AUTH_MANIFEST_TEMPLATE));
+        myPreloader = new Preloader(aAccessModes, aConfig);
+        myMaxImages = aAccessModes.getCacheSize();
+        myHttpClient = aHttpClient;
+        myTimeout = aConfig.getUpstreamTimeout();
+        myPrefetched = new BoundedCache<>(aAccessModes.getCacheSize());
+        myExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(QUEUE_SIZE),
+                BackgroundThreads.newThreadFactory(THREAD_NAME));
+        myExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts a background prefetch of the access modes in the supplied item's manifest, unless the manifest has
+     * already been prefetched.
+     *
+     * @param aID The identifier of a requested item
+     * @return True if a prefetch was started; else, false
+     */
+    public boolean prefetch(final String aID) {
+        if (myPrefetched.get(aID).isPresent()) {
+            return false;
+        }
+
+        myPrefetched.put(aID, Boolean.TRUE);
+
+        try {
+            myExecutor.execute(() -> run(aID));
+            return true;
+        } catch (final RejectedExecutionException details) {
+            // Too many prefetches are waiting; this one can be tried again the next time the item is requested
+            myPrefetched.invalidate(aID);
+            return false;
+        }
+    }
+
+    /**
+     * Gets the URI of the supplied item's manifest.
+     *
+     * @param aID An item identifier
+     * @return The manifest's URI
+     */
+    URI getManifestURI(final String aID) {
+        return URI.create(myTemplate.replace(Config.MANIFEST_ID_PLACEHOLDER,
+                URLEncoder.encode(aID, StandardCharsets.UTF_8).replace("+", "%20")));
+    }
+
+    /**
+     * Gets the identifiers of the images in a Presentation API 2 or 3 manifest, in the order they appear.
+     *
+     * @param aManifest A IIIF manifest
+     * @return The identifiers of the manifest's images
+     */
+    static Set<String> getImageIDs(final JsonNode aManifest) {
+        final Set<String> ids = new LinkedHashSet<>();
+
+        aManifest.findParents(SERVICE).stream().map(parent -> parent.get(SERVICE))
+                .forEach(service -> addImageIDs(service, ids));
+        return ids;
+    }
+
+    /**
+     * Prefetches the access modes of the images in the supplied item's manifest.
+     *
+     * @param aID The identifier of a requested item
+     */
+    private void run(final String aID) {
+        final URI manifestURI = getManifestURI(aID);
+        final long start = System.nanoTime();
+
+        try {
+            final HttpResponse<String> response = fetch(manifestURI);
+
+            if (response.statusCode() == HTTP.OK) {
+                final Set<String> ids = getImageIDs(MAPPER.readTree(response.body()));
+                final int count = myPreloader.preload(ids.stream().limit(myMaxImages).collect(Collectors.toList()));
+
+                LOGGER.debug(MessageCodes.CAD_042, count, ids.size(), manifestURI,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } else {
+                LOGGER.debug(MessageCodes.CAD_043, manifestURI, response.statusCode());
+            }
+        } catch (final IOException details) {
+            LOGGER.warn(MessageCodes.CAD_043, manifestURI, details.getMessage());
+        } catch (final InterruptedException details) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Fetches a manifest, recording the call in the manifest service's metrics.
+     *
+     * @param aManifestURI A manifest URI
+     * @return The manifest service's response
+     * @throws IOException If the manifest can't be fetched
+     * @throws InterruptedException If the fetch is interrupted
+     */
+    private HttpResponse<String> fetch(final URI aManifestURI) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        boolean succeeded = false;
+
+        try {
+            final HttpRequest request = HttpRequest.newBuilder(aManifestURI).timeout(myTimeout).build();
+            final HttpResponse<String> response = myHttpClient.send(request, BodyHandlers.ofString());
+
+            succeeded = response.statusCode() == HTTP.OK;
+            return response;
+        } finally {
+            METRICS.record(System.nanoTime() - start, succeeded);
+        }
+    }
+
+    /**
+     * Adds the identifiers of any image services in the supplied <code>service</code> value to a set.
+     *
+     * @param aService The value of a <code>service</code> property, which may be an object or an array of objects
+     * @param aIDs The set of image identifiers
+     */
+    private static void addImageIDs(final JsonNode aService, final Set<String> aIDs) {
+        if (aService.isArray()) {
+            aService.forEach(service -> addImageIDs(service, aIDs));
+        } else if (isImageService(aService)) {
+            getServiceID(aService).flatMap(ManifestPrefetcher::getIdentifier).ifPresent(aIDs::add);
+        }
+    }
+
+    /**
+     * Checks whether a service is a IIIF Image API service.
+     *
+     * @param aService A service description
+     * @return True if the service is an image service; else, false
+     */
+    private static boolean isImageService(final JsonNode aService) {
+        return aService.path(TYPE).asText().startsWith(IMAGE_SERVICE_TYPE) ||
+                aService.path(V2_TYPE).asText().startsWith(IMAGE_SERVICE_TYPE) ||
+                mentionsImageAPI(aService.path(V2_CONTEXT)) || mentionsImageAPI(aService.path(PROFILE));
+    }
+
+    /**
+     * Checks whether a context or profile value refers to the IIIF Image API.
+     *
+     * @param aValue A context or profile value, which may be a string or an array
+     * @return True if the value refers to the IIIF Image API; else, false
+     */
+    private static boolean mentionsImageAPI(final JsonNode aValue) {
+        if (aValue.isArray()) {
+            for (final JsonNode value : aValue) {
+                if (mentionsImageAPI(value)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        return aValue.isTextual() && aValue.asText().contains(IMAGE_API);
+    }
+
+    /**
+     * Gets the ID of a Presentation API 2 or 3 service.
+     *
+     * @param aService A service description
+     * @return The service's ID, if it has one
+     */
+    private static Optional<String> getServiceID(final JsonNode aService) {
+        return Optional.ofNullable(aService.get(ID)).or(() -> Optional.ofNullable(aService.get(V2_ID)))
+                .map(JsonNode::asText);
+    }
+
+    /**
+     * Gets the item identifier from an image service ID, which is the service's base URI followed by the
+     * percent-encoded identifier.
+     *
+     * @param aServiceID An image service ID
+     * @return The item identifier, if it can be decoded
+     */
+    private static Optional<String> getIdentifier(final String aServiceID) {
+        final String serviceID = aServiceID.endsWith("/") ? aServiceID.substring(0, aServiceID.length() - 1)
+                : aServiceID;
+
+        return Preloader.decodeIdentifier(serviceID.substring(serviceID.lastIndexOf('/') + 1));
+    }
+
+}
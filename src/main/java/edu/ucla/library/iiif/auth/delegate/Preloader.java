@@ -0,0 +1,272 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+/**
+ * A loader that fills the decision engine's access mode cache before traffic arrives.
+ * <p>
+ * A preload file is either a list of identifiers, one per line, or a Cantaloupe (Jetty) access log, from which the
+ * identifiers of the requested IIIF images are read. Identifiers are preloaded most requested first, and no more are
+ * read than the access mode cache can hold. Lookups run in parallel, but are limited in both concurrency and rate so
+ * that Hauth isn't overwhelmed.
+ */
+public final class Preloader {
+
+    /**
+     * The preloader's logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Preloader.class, MessageCodes.BUNDLE);
+
+    /**
+     * The name of the preloader's threads.
+     */
+    private static final String THREAD_NAME = "auth-delegate-preload";
+
+    /**
+     * The pattern of the request line in an access log entry.
+     */
+    private static final Pattern REQUEST_LINE = Pattern.compile("\"[A-Z]+ (\\S+) HTTP/[0-9.]+\"");
+
+    /**
+     * The pattern of the identifier in a IIIF image or information request path.
+     */
+    private static final Pattern IIIF_PATH = Pattern.compile("/iiif/[23]/([^/?]+)");
+
+    /**
+     * The pattern of whitespace, which identifiers don't contain.
+     */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+
+    /**
+     * The start of a comment line in an identifier list.
+     */
+    private static final String COMMENT = "#";
+
+    /**
+     * The separator between an identifier and the rest of a Cantaloupe meta-identifier.
+     */
+    private static final char META_IDENTIFIER_SEPARATOR = ';';
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The access mode resolver whose cache is being filled.
+     */
+    private final AccessModeResolver myAccessModes;
+
+    /**
+     * The number of lookups that may be made at once.
+     */
+    private final int myConcurrency;
+
+    /**
+     * The number of nanoseconds between the starts of two lookups.
+     */
+    private final long myInterval;
+
+    /**
+     * The earliest time, in nanoseconds, that the next lookup may start.
+     */
+    private final AtomicLong myNextStart = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Creates a new preloader for the supplied engine, using its configured concurrency and rate.
+     *
+     * @param aEngine A decision engine
+     */
+    public Preloader(final DecisionEngine aEngine) {
+        this(aEngine.getAccessModes(), aEngine.getConfig());
+    }
+
+    /**
+     * Creates a new preloader for the supplied access mode resolver, using the supplied configuration's concurrency
+     * and rate.
+     *
+     * @param aAccessModes An access mode resolver
+     * @param aConfig A delegate configuration
+     */
+    public Preloader(final AccessModeResolver aAccessModes, final Config aConfig) {
+        myAccessModes = aAccessModes;
+        myConcurrency = aConfig.getPreloadConcurrency();
+        myInterval = ONE_SECOND / aConfig.getPreloadRate();
+    }
+
+    /**
+     * Preloads the access modes of the items in the supplied identifier list or access log.
+     *
+     * @param aPreloadFile An identifier list or access log
+     * @return The number of access modes that were looked up and cached
+     * @throws IOException If the file can't be read
+     */
+    public int preload(final Path aPreloadFile) throws IOException {
+        final long start = System.nanoTime();
+        final List<String> ids;
+        final int count;
+
+        try (Stream<String> lines = Files.lines(aPreloadFile, StandardCharsets.UTF_8)) {
+            ids = readIdentifiers(lines, myAccessModes.getCacheSize());
+        }
+
+        count = preload(ids);
+        LOGGER.info(MessageCodes.CAD_040, count, ids.size(), aPreloadFile,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return count;
+    }
+
+    /**
+     * Preloads the access modes of the supplied items.
+     *
+     * @param aIDs A collection of item IDs
+     * @return The number of access modes that were looked up and cached
+     */
+    public int preload(final Collection<String> aIDs) {
+        final ExecutorService pool = Executors.newFixedThreadPool(myConcurrency,
+                BackgroundThreads.newThreadFactory(THREAD_NAME));
+        final List<Callable<Boolean>> tasks = new ArrayList<>(aIDs.size());
+        int count = 0;
+
+        aIDs.forEach(id -> tasks.add(() -> awaitStart() && myAccessModes.preload(id)));
+
+        try {
+            for (final Future<Boolean> result : pool.invokeAll(tasks)) {
+                if (isPreloaded(result)) {
+                    count += 1;
+                }
+            }
+        } catch (final InterruptedException details) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads the identifiers from the lines of an identifier list or access log, ordered from the most to the least
+     * frequently requested.
+     *
+     * @param aLines The lines of an identifier list or access log
+     * @param aLimit The maximum number of identifiers to read
+     * @return The distinct identifiers, most requested first
+     */
+    static List<String> readIdentifiers(final Stream<String> aLines, final int aLimit) {
+        final Map<String, Long> counts = new HashMap<>();
+
+        aLines.map(Preloader::parseIdentifier).flatMap(Optional::stream)
+                .forEach(id -> counts.merge(id, 1L, Long::sum));
+
+        return counts.entrySet().stream().sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(aLimit).map(Map.Entry::getKey).collect(Collectors.toList());
+    }
+
+    /**
+     * Parses the identifier from a line of an identifier list or access log.
+     *
+     * @param aLine A line from an identifier list or access log
+     * @return The line's identifier, or an empty optional if the line doesn't contain one
+     */
+    static Optional<String> parseIdentifier(final String aLine) {
+        final String line = aLine.trim();
+        final Matcher requestLine = REQUEST_LINE.matcher(line);
+
+        if (line.isEmpty() || line.startsWith(COMMENT)) {
+            return Optional.empty();
+        }
+
+        // A line that isn't from an access log is an identifier, unless it's some other sort of log entry
+        if (!requestLine.find()) {
+            return WHITESPACE.matcher(line).find() ? Optional.empty() : Optional.of(line);
+        }
+
+        final Matcher iiifPath = IIIF_PATH.matcher(requestLine.group(1));
+
+        if (!iiifPath.find()) {
+            return Optional.empty();
+        }
+
+        return decodeIdentifier(iiifPath.group(1));
+    }
+
+    /**
+     * Decodes an identifier from the percent-encoded meta-identifier in a IIIF request path or image service ID.
+     *
+     * @param aMetaIdentifier A percent-encoded Cantaloupe meta-identifier
+     * @return The identifier, or an empty optional if the meta-identifier isn't encoded correctly
+     */
+    static Optional<String> decodeIdentifier(final String aMetaIdentifier) {
+        try {
+            final String metaIdentifier = URLDecoder.decode(aMetaIdentifier, StandardCharsets.UTF_8);
+            final int separatorIndex = metaIdentifier.indexOf(META_IDENTIFIER_SEPARATOR);
+
+            return Optional.of(separatorIndex == -1 ? metaIdentifier : metaIdentifier.substring(0, separatorIndex));
+        } catch (final IllegalArgumentException details) { // A malformed percent encoding
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Checks whether a finished preload task looked up and cached an access mode.
+     *
+     * @param aResult The result of a preload task
+     * @return True if the task cached an access mode; else, false
+     */
+    private static boolean isPreloaded(final Future<Boolean> aResult) {
+        try {
+            return aResult.get();
+        } catch (final ExecutionException details) {
+            LOGGER.error(details.getCause(), details.getCause().getMessage());
+        } catch (final InterruptedException details) {
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+
+    /**
+     * Waits until the next lookup may start, according to the configured rate.
+     *
+     * @return True if the lookup may start; false if the thread was interrupted while waiting
+     */
+    private boolean awaitStart() {
+        final long now = System.nanoTime();
+        final long previous = myNextStart.getAndAccumulate(now, (next, time) -> Math.max(next, time) + myInterval);
+        final long delay = Math.max(previous, now) - now;
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay);
+            return true;
+        } catch (final InterruptedException details) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
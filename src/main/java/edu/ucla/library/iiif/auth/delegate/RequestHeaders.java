@@ -0,0 +1,107 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.util.Map;
+import java.util.Optional;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthToken;
+
+/**
+ * A view of the request headers that the delegate checks for credentials.
+ * <p>
+ * The keys in Cantaloupe's request context are capitalized with HTTP/1.1, and lowercased with HTTP/2, so the headers
+ * are matched case-insensitively. The view is built in a single pass over the request's headers and only keeps the
+ * values of the headers it knows about.
+ */
+public final class RequestHeaders {
+
+    /**
+     * The name of the Cookie HTTP request header.
+     */
+    public static final String COOKIE = "Cookie";
+
+    /**
+     * The name of the X-Forwarded-For HTTP request header.
+     */
+    public static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+    /**
+     * The value of the request's Authorization header.
+     */
+    private String myAuthorization;
+
+    /**
+     * The value of the request's Cookie header.
+     */
+    private String myCookie;
+
+    /**
+     * The value of the request's X-Forwarded-For header.
+     */
+    private String myForwardedFor;
+
+    /**
+     * Creates a view of the supplied request headers.
+     *
+     * @param aHeaders A request's headers, as supplied by Cantaloupe's request context
+     */
+    public RequestHeaders(final Map<String, String> aHeaders) {
+        for (final Map.Entry<String, String> header : aHeaders.entrySet()) {
+            final String name = header.getKey();
+
+            if (HauthToken.HEADER.equalsIgnoreCase(name)) {
+                myAuthorization = header.getValue();
+            } else if (COOKIE.equalsIgnoreCase(name)) {
+                myCookie = header.getValue();
+            } else if (X_FORWARDED_FOR.equalsIgnoreCase(name)) {
+                myForwardedFor = header.getValue();
+            }
+        }
+    }
+
+    /**
+     * Gets the value of the request's Authorization header.
+     *
+     * @return The value of the Authorization header, if the request has one
+     */
+    public Optional<String> getAuthorization() {
+        return Optional.ofNullable(myAuthorization);
+    }
+
+    /**
+     * Gets the value of the request's Cookie header.
+     *
+     * @return The value of the Cookie header, if the request has one
+     */
+    public Optional<String> getCookie() {
+        return Optional.ofNullable(myCookie);
+    }
+
+    /**
+     * Gets the value of the request's X-Forwarded-For header.
+     *
+     * @return The value of the X-Forwarded-For header, if the request has one
+     */
+    public Optional<String> getForwardedFor() {
+        return Optional.ofNullable(myForwardedFor);
+    }
+
+    /**
+     * Gets the address of the client that made the request, from its X-Forwarded-For header. Each proxy appends the
+     * address it received the request from to the header, so the client's address is the one that was appended by the
+     * outermost of the trusted proxies; any addresses to the left of it were supplied by the client itself.
+     *
+     * @param aTrustedProxies The number of proxies in front of Cantaloupe
+     * @return The client's address, if the request has an X-Forwarded-For header
+     */
+    public Optional<String> getClientIP(final int aTrustedProxies) {
+        if (myForwardedFor == null) {
+            return Optional.empty();
+        }
+
+        final String[] addresses = myForwardedFor.split(",");
+        final String address = addresses[Math.max(0, addresses.length - aTrustedProxies)].trim();
+
+        return address.isEmpty() ? Optional.empty() : Optional.of(address);
+    }
+}
@@ -0,0 +1,247 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessTokenReader;
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthToken;
+import edu.ucla.library.iiif.auth.delegate.policy.AccessPolicy;
+
+/**
+ * A background warm-up of the delegate, so that the first requests a new Cantaloupe node receives don't pay for
+ * one-time costs like class loading, HTTP client creation, DNS lookups, TLS handshakes, and cold JIT compilation.
+ * <p>
+ * The warm-up always creates the shared {@link DecisionEngine}. If {@link Config#AUTH_WARM_UP_ITERATIONS} is set, it
+ * also opens a connection to each configured service and runs synthetic requests through every branch of the
+ * engine's decision logic. The synthetic requests use their own local access policy, so they never cause access mode
+ * lookups.
+ * <p>
+ * Lastly, if {@link Config#AUTH_PRELOAD_FILE} is set, the access modes of the items it lists are preloaded.
+ */
+final class WarmUp implements Runnable {
+
+    /**
+     * The warm-up's logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUp.class, MessageCodes.BUNDLE);
+
+    /**
+     * The name of the warm-up's thread.
+     */
+    private static final String THREAD_NAME = "auth-delegate-warm-up";
+
+    /**
+     * The prefix of the synthetic requests' IDs.
+     */
+    private static final String ID_PREFIX = "warm-up/";
+
+    /**
+     * The ID of a synthetic open access item.
+     */
+    private static final String OPEN_ID = ID_PREFIX + "open";
+
+    /**
+     * The ID of a synthetic tiered access item.
+     */
+    private static final String TIERED_ID = ID_PREFIX + "tiered";
+
+    /**
+     * The ID of a synthetic all-or-nothing access item.
+     */
+    private static final String ALL_OR_NOTHING_ID = ID_PREFIX + "all-or-nothing";
+
+    /**
+     * The local access policy for the synthetic requests.
+     */
+    private static final AccessPolicy POLICY = AccessPolicy.parse(List.of(getRule(OPEN_ID, AccessMode.OPEN),
+            getRule(TIERED_ID, AccessMode.TIERED), getRule(ALL_OR_NOTHING_ID, AccessMode.ALL_OR_NOTHING)), THREAD_NAME);
+
+    /**
+     * A synthetic campus network access token, generated using the shell command below.
+     * <p>
+     * <code> $ base64 <<< '{"version": "0.0.0-SNAPSHOT", "campusNetwork": true}'</code>
+     */
+    private static final String CAMPUS_ACCESS_TOKEN =
+            "eyJ2ZXJzaW9uIjogIjAuMC4wLVNOQVBTSE9UIiwgImNhbXB1c05ldHdvcmsiOiB0cnVlfQo=";
+
+    /**
+     * A synthetic Sinai access token, generated using the shell command below.
+     * <p>
+     * <code> $ base64 <<< '{"version": "0.0.0-SNAPSHOT", "sinaiAffiliate": true}'</code>
+     */
+    private static final String SINAI_ACCESS_TOKEN =
+            "eyJ2ZXJzaW9uIjogIjAuMC4wLVNOQVBTSE9UIiwgInNpbmFpQWZmaWxpYXRlIjogdHJ1ZX0K";
+
+    /**
+     * A synthetic token service response.
+     */
+    private static final byte[] TOKEN_RESPONSE =
+            ("{\"accessToken\": \"" + CAMPUS_ACCESS_TOKEN + "\"}").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The request paths, after the ID, of the synthetic requests.
+     */
+    private static final String[] PATHS = { "/info.json", "/full/max/0/default.jpg", "/full/!200,200/0/default.jpg",
+        "/0,0,512,512/512,/0/default.jpg" };
+
+    /**
+     * Creates a new warm-up.
+     */
+    private WarmUp() {
+        // This is intentionally left empty
+    }
+
+    /**
+     * Starts the warm-up in a background thread.
+     */
+    static void start() {
+        BackgroundThreads.start(THREAD_NAME, new WarmUp());
+    }
+
+    @Override
+    public void run() {
+        final long start = System.nanoTime();
+
+        try {
+            final DecisionEngine engine = DecisionEngine.getInstance();
+            final Config config = engine.getConfig();
+            if (config.getWarmUpIterations() > 0) {
+                final URI[] services = { config.getAccessService(), config.getTokenService(),
+                    config.getSinaiTokenService() };
+                final int connections = connect(engine.getHttpClient(), config.getUpstreamTimeout(), services);
+                final int decisions = decide(engine.withPolicy(POLICY), config.getWarmUpIterations());
+                final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                LOGGER.info(MessageCodes.CAD_038, duration, connections, services.length, decisions);
+            }
+
+            config.getPreloadFile().ifPresent(file -> preload(engine, file));
+        } catch (final ConfigException details) {
+            // The same error will be reported by the first request
+            LOGGER.error(details, details.getMessage());
+        }
+    }
+
+    /**
+     * Preloads the access modes of the items in the supplied preload file.
+     *
+     * @param aEngine A decision engine
+     * @param aPreloadFile An identifier list or access log
+     */
+    private static void preload(final DecisionEngine aEngine, final Path aPreloadFile) {
+        try {
+            new Preloader(aEngine).preload(aPreloadFile);
+        } catch (final IOException details) {
+            LOGGER.error(details, MessageCodes.CAD_041, aPreloadFile, details.getMessage());
+        }
+    }
+
+    /**
+     * Opens a connection to each of the supplied services.
+     *
+     * @param aHttpClient An HTTP client
+     * @param aTimeout The amount of time each connection may take
+     * @param aServices The services to connect to
+     * @return The number of services that could be connected to
+     */
+    private static int connect(final HttpClient aHttpClient, final Duration aTimeout, final URI... aServices) {
+        int connections = 0;
+
+        for (final URI service : aServices) {
+            try {
+                // Any response, even an error, means the connection is established
+                aHttpClient.send(HttpRequest.newBuilder(service).timeout(aTimeout).build(), BodyHandlers.discarding());
+                connections += 1;
+            } catch (final IOException details) {
+                LOGGER.warn(MessageCodes.CAD_039, service, details.getMessage());
+            } catch (final InterruptedException details) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return connections;
+    }
+
+    /**
+     * Runs synthetic requests through every branch of the supplied engine's decision logic.
+     *
+     * @param aEngine A decision engine
+     * @param aIterations The number of times to run each synthetic request
+     * @return The number of decisions that were made
+     * @throws IllegalStateException If the synthetic token service response can't be read
+     */
+    private static int decide(final DecisionEngine aEngine, final int aIterations) {
+        final List<AuthRequest> requests = getRequests(aEngine.getConfig().getScaleConstraint());
+        int decisions = 0;
+
+        for (int iteration = 0; iteration < aIterations && !Thread.currentThread().isInterrupted(); iteration++) {
+            for (final AuthRequest request : requests) {
+                aEngine.decide(request);
+                decisions += 1;
+            }
+
+            try {
+                AccessTokenReader.hasClaim(new ByteArrayInputStream(TOKEN_RESPONSE), HauthToken.CAMPUS_NETWORK_KEY);
+            } catch (final IOException details) {
+                throw new IllegalStateException(details); // The synthetic response is valid JSON
+            }
+        }
+
+        return decisions;
+    }
+
+    /**
+     * Gets a local access policy rule for a synthetic item.
+     *
+     * @param aID The synthetic item's ID
+     * @param aAccessMode The synthetic item's access mode
+     * @return The policy rule
+     */
+    private static String getRule(final String aID, final AccessMode aAccessMode) {
+        return "prefix " + aID + ' ' + aAccessMode;
+    }
+
+    /**
+     * Gets the synthetic requests, which cover each access mode and request type, with and without credentials.
+     *
+     * @param aScaleConstraint The configured tiered access scale constraint
+     * @return The synthetic requests
+     */
+    private static List<AuthRequest> getRequests(final int... aScaleConstraint) {
+        final int[][] scaleConstraints = { { 1, 1 }, aScaleConstraint, { 1, aScaleConstraint[1] + 1 } };
+        final List<Map<String, String>> headers = List.of(Map.of(), //
+                Map.of(HauthToken.HEADER, HauthToken.TYPE + ' ' + CAMPUS_ACCESS_TOKEN), //
+                Map.of(HauthToken.HEADER, HauthToken.TYPE + ' ' + SINAI_ACCESS_TOKEN));
+        final List<AuthRequest> requests = new ArrayList<>();
+
+        for (final String id : List.of(OPEN_ID, TIERED_ID, ALL_OR_NOTHING_ID)) {
+            for (final String path : PATHS) {
+                for (final int[] scaleConstraint : scaleConstraints) {
+                    for (final Map<String, String> header : headers) {
+                        final String uri = "/iiif/3/" + id + path;
+                        requests.add(new AuthRequest(id, uri, uri, scaleConstraint, header));
+                    }
+                }
+            }
+        }
+
+        return requests;
+    }
+}
@@ -0,0 +1,465 @@
+
+package edu.ucla.library.iiif.auth.delegate.audit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+import edu.ucla.library.iiif.auth.delegate.MessageCodes;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * An audit log of authorization decisions, written as JSON lines.
+ * <p>
+ * A request thread only samples a decision and adds it to a lock-free ring buffer. A background thread takes the
+ * buffered decisions in batches, writes them, and flushes the file once per batch. If the buffer is full, a decision
+ * is dropped (and counted) rather than making the request wait. When the file grows past its maximum size, it's
+ * rotated: <code>audit.log</code> becomes <code>audit.log.1</code>, and so on, and the oldest file is deleted.
+ * <p>
+ * Once the log starts closing, it stops accepting decisions and writes the ones that are still buffered. A log that
+ * other threads may still be recording to (e.g., one belonging to an engine that was just replaced) can be closed
+ * after a grace period with {@link #closeLater(long, TimeUnit)}. A log whose file stays the same when the delegate's
+ * configuration is reloaded is kept, and given the new settings with {@link #reconfigure(int, int, long)}, so that
+ * only one log ever writes to (and rotates) a file.
+ */
+public final class AuditLog implements AutoCloseable {
+
+    /**
+     * The number of rotated files that are kept, besides the current one.
+     */
+    public static final int ROTATED_FILES = 5;
+
+    /**
+     * The audit log's logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuditLog.class, MessageCodes.BUNDLE);
+
+    /**
+     * The number of milliseconds between batches.
+     */
+    private static final long BATCH_INTERVAL = 200;
+
+    /**
+     * The number of seconds to wait for the last batch to be written when the log is closed.
+     */
+    private static final long CLOSE_TIMEOUT = 5;
+
+    /**
+     * The largest sample rate, at which every decision is recorded.
+     */
+    private static final int ALL = 100;
+
+    /**
+     * The factory of the audit log's JSON generators.
+     */
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * The separator between JSON lines.
+     */
+    private static final int NEWLINE = '\n';
+
+    /**
+     * The audit log file.
+     */
+    private final Path myFile;
+
+    /**
+     * The percentage of decisions that are recorded.
+     */
+    private volatile int mySampleRate;
+
+    /**
+     * The size, in bytes, past which the file is rotated.
+     */
+    private volatile long myMaxFileSize;
+
+    /**
+     * The number of decisions that may wait to be written, as it was requested.
+     */
+    private int myBufferSize;
+
+    /**
+     * The buffer of decisions waiting to be written.
+     */
+    private volatile RingBuffer<AuditRecord> myBuffer;
+
+    /**
+     * The buffer that was replaced when the buffer size was last changed, which the writer keeps draining in case a
+     * decision was added to it just as it was replaced; it's null if the buffer size hasn't changed.
+     */
+    private RingBuffer<AuditRecord> myRetiredBuffer;
+
+    /**
+     * The number of decisions dropped because the buffer was full.
+     */
+    private final LongAdder myDrops = new LongAdder();
+
+    /**
+     * The writer thread's executor.
+     */
+    private final ScheduledExecutorService myExecutor;
+
+    /**
+     * A reusable buffer for a single JSON line, which is only used by the writer.
+     */
+    private final ByteArrayOutputStream myLine = new ByteArrayOutputStream();
+
+    /**
+     * Whether the log has started closing, after which decisions are no longer accepted.
+     */
+    private volatile boolean isClosing;
+
+    /**
+     * The scheduled close of the log, or null if it hasn't been scheduled.
+     */
+    private volatile ScheduledFuture<?> myScheduledClose;
+
+    /**
+     * The audit log file's output stream, which is only used by the writer.
+     */
+    private OutputStream myOut;
+
+    /**
+     * Whether the audit log file is open.
+     */
+    private boolean hasOpenFile;
+
+    /**
+     * The size of the open file, in bytes.
+     */
+    private long myFileSize;
+
+    /**
+     * The number of dropped decisions that have already been reported.
+     */
+    private long myReportedDrops;
+
+    /**
+     * Creates a new audit log and starts its writer.
+     *
+     * @param aFile The audit log file
+     * @param aSampleRate The percentage of decisions that are recorded, from 1 to 100
+     * @param aBufferSize The number of decisions that may wait to be written
+     * @param aMaxFileSize The size, in bytes, past which the file is rotated
+     * @param aThreadFactory A factory for the writer's thread
+     * @throws IllegalArgumentException If the sample rate or buffer size is out of range
+     */
+    public AuditLog(final Path aFile, final int aSampleRate, final int aBufferSize, final long aMaxFileSize,
+            final ThreadFactory aThreadFactory) {
+        checkSampleRate(aSampleRate);
+
+        myFile = aFile;
+        mySampleRate = aSampleRate;
+        myMaxFileSize = aMaxFileSize;
+        myBufferSize = aBufferSize;
+        myBuffer = new RingBuffer<>(aBufferSize);
+        myExecutor = Executors.newSingleThreadScheduledExecutor(aThreadFactory);
+        myExecutor.scheduleWithFixedDelay(this::write, BATCH_INTERVAL, BATCH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records a decision, if it's sampled. This never blocks; if the buffer is full, the decision is dropped. Decisions
+     * recorded after the log has started closing are ignored.
+     *
+     * @param aID The requested item's identifier
+     * @param aAccessMode The requested item's access mode, or null if it wasn't looked up
+     * @param aStatus The HTTP status of the decision
+     * @param aCredential The type of credential the decision checked
+     * @param aLatency The time it took to make the decision, in nanoseconds
+     */
+    public void record(final String aID, final AccessMode aAccessMode, final int aStatus,
+            final Credential aCredential, final long aLatency) {
+        if (isClosing || mySampleRate < ALL && ThreadLocalRandom.current().nextInt(ALL) >= mySampleRate) {
+            return;
+        }
+
+        if (!myBuffer.offer(
+                new AuditRecord(System.currentTimeMillis(), aID, aAccessMode, aStatus, aCredential, aLatency))) {
+            myDrops.increment();
+        }
+    }
+
+    /**
+     * Gets the number of decisions that were dropped because the buffer was full.
+     *
+     * @return The number of dropped decisions
+     */
+    public long getDrops() {
+        return myDrops.sum();
+    }
+
+    /**
+     * Gets the audit log file.
+     *
+     * @return The audit log file
+     */
+    public Path getFile() {
+        return myFile;
+    }
+
+    /**
+     * Gets the percentage of decisions that are recorded.
+     *
+     * @return The percentage of decisions that are recorded
+     */
+    public int getSampleRate() {
+        return mySampleRate;
+    }
+
+    /**
+     * Changes the log's settings, keeping its file and writer. If the buffer size changes, the decisions that are
+     * already buffered are written first, and decisions are buffered in a new buffer from then on.
+     *
+     * @param aSampleRate The percentage of decisions that are recorded, from 1 to 100
+     * @param aBufferSize The number of decisions that may wait to be written
+     * @param aMaxFileSize The size, in bytes, past which the file is rotated
+     * @return This audit log
+     * @throws IllegalArgumentException If the sample rate or buffer size is out of range
+     */
+    public synchronized AuditLog reconfigure(final int aSampleRate, final int aBufferSize, final long aMaxFileSize) {
+        checkSampleRate(aSampleRate);
+
+        if (aBufferSize != myBufferSize) {
+            final RingBuffer<AuditRecord> buffer = new RingBuffer<>(aBufferSize);
+
+            write();
+            myRetiredBuffer = myBuffer;
+            myBuffer = buffer;
+            myBufferSize = aBufferSize;
+        }
+
+        mySampleRate = aSampleRate;
+        myMaxFileSize = aMaxFileSize;
+        return this;
+    }
+
+    /**
+     * Checks whether the log has been closed and its last decisions written.
+     *
+     * @return True if the log is closed; else, false
+     */
+    public boolean isClosed() {
+        return myExecutor.isTerminated();
+    }
+
+    /**
+     * Closes the log after a grace period, during which it keeps accepting and writing decisions. This doesn't block,
+     * and does nothing if the log is already closing.
+     *
+     * @param aDelay The length of the grace period
+     * @param aUnit The unit of the grace period
+     */
+    public void closeLater(final long aDelay, final TimeUnit aUnit) {
+        if (!isClosing && !myExecutor.isShutdown()) {
+            myScheduledClose = myExecutor.schedule(this::finish, aDelay, aUnit);
+        }
+    }
+
+    /**
+     * Stops accepting decisions, stops the writer, writes any decisions that are still buffered, and closes the file.
+     * A close that was scheduled with {@link #closeLater(long, TimeUnit)} is done right away instead.
+     */
+    @Override
+    public void close() {
+        final ScheduledFuture<?> scheduledClose = myScheduledClose;
+
+        isClosing = true;
+
+        if (scheduledClose != null) {
+            scheduledClose.cancel(false);
+        }
+
+        myExecutor.shutdown();
+
+        try {
+            myExecutor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+        } catch (final InterruptedException details) {
+            Thread.currentThread().interrupt();
+        }
+
+        write();
+
+        synchronized (this) {
+            closeFile();
+        }
+    }
+
+    /**
+     * Closes the log from the writer's thread, at the end of a grace period.
+     */
+    private void finish() {
+        isClosing = true;
+        myExecutor.shutdown();
+        write();
+
+        synchronized (this) {
+            closeFile();
+        }
+    }
+
+    /**
+     * Writes a batch of buffered decisions and flushes the file.
+     */
+    private synchronized void write() {
+        final long drops = myDrops.sum();
+
+        if (drops > myReportedDrops) {
+            LOGGER.warn(MessageCodes.CAD_047, drops - myReportedDrops, myFile);
+            myReportedDrops = drops;
+        }
+
+        try {
+            if (myRetiredBuffer != null) {
+                write(myRetiredBuffer);
+            }
+
+            write(myBuffer);
+
+            if (hasOpenFile) {
+                myOut.flush();
+            }
+        } catch (final IOException details) {
+            // The file is reopened for the next batch
+            LOGGER.error(MessageCodes.CAD_048, myFile, details.getMessage());
+            closeFile();
+        }
+    }
+
+    /**
+     * Writes the decisions in the supplied buffer.
+     *
+     * @param aBuffer A buffer of decisions
+     * @throws IOException If a decision can't be written
+     */
+    private void write(final RingBuffer<AuditRecord> aBuffer) throws IOException {
+        for (AuditRecord record = aBuffer.poll(); record != null; record = aBuffer.poll()) {
+            write(record);
+        }
+    }
+
+    /**
+     * Writes a decision to the file as a JSON line, rotating the file first if it's full.
+     *
+     * @param aRecord A decision
+     * @throws IOException If the decision can't be written
+     */
+    private void write(final AuditRecord aRecord) throws IOException {
+        myLine.reset();
+
+        try (JsonGenerator json = JSON.createGenerator(myLine, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField("timestamp", Instant.ofEpochMilli(aRecord.getTimestamp()).toString());
+            json.writeStringField("identifier", aRecord.getID());
+            json.writeStringField("accessMode",
+                    aRecord.getAccessMode() == null ? null : aRecord.getAccessMode().name());
+            json.writeNumberField("status", aRecord.getStatus());
+            json.writeStringField("credential", aRecord.getCredential().getLabel());
+            json.writeNumberField("latencyMs", aRecord.getLatency() / 1_000_000.0);
+            json.writeEndObject();
+        }
+
+        myLine.write(NEWLINE);
+
+        if (!hasOpenFile) {
+            openFile();
+        } else if (myFileSize + myLine.size() > myMaxFileSize && myFileSize > 0) {
+            closeFile();
+            rotate();
+            openFile();
+        }
+
+        myLine.writeTo(myOut);
+        myFileSize += myLine.size();
+    }
+
+    /**
+     * Opens the audit log file for appending, creating it (and its directory) if needed.
+     *
+     * @throws IOException If the file can't be opened
+     */
+    private void openFile() throws IOException {
+        if (myFile.getParent() != null) {
+            Files.createDirectories(myFile.getParent());
+        }
+
+        myOut = Files.newOutputStream(myFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        myFileSize = Files.size(myFile);
+        hasOpenFile = true;
+    }
+
+    /**
+     * Closes the audit log file, if it's open.
+     */
+    private void closeFile() {
+        if (hasOpenFile) {
+            hasOpenFile = false;
+
+            try (OutputStream out = myOut) {
+                out.flush();
+            } catch (final IOException details) {
+                LOGGER.error(MessageCodes.CAD_048, myFile, details.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Moves each rotated file along by one, deleting the oldest, and moves the current file to the first place.
+     *
+     * @throws IOException If a file can't be moved or deleted
+     */
+    private void rotate() throws IOException {
+        Files.deleteIfExists(getRotatedFile(ROTATED_FILES));
+
+        for (int index = ROTATED_FILES - 1; index > 0; index--) {
+            final Path rotatedFile = getRotatedFile(index);
+
+            if (Files.exists(rotatedFile)) {
+                Files.move(rotatedFile, getRotatedFile(index + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        Files.move(myFile, getRotatedFile(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Checks that a sample rate is a percentage.
+     *
+     * @param aSampleRate A sample rate
+     * @throws IllegalArgumentException If the sample rate isn't from 1 to 100
+     */
+    private static void checkSampleRate(final int aSampleRate) {
+        if (aSampleRate < 1 || aSampleRate > ALL) {
+            throw new IllegalArgumentException(Integer.toString(aSampleRate));
+        }
+    }
+
+    /**
+     * Gets the path of a rotated audit log file.
+     *
+     * @param aIndex The rotated file's index, where one is the most recent
+     * @return The rotated file's path
+     */
+    Path getRotatedFile(final int aIndex) {
+        return myFile.resolveSibling(myFile.getFileName() + "." + aIndex);
+    }
+}
@@ -0,0 +1,114 @@
+
+package edu.ucla.library.iiif.auth.delegate.audit;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * An authorization decision, as it's recorded in the audit log.
+ */
+public final class AuditRecord {
+
+    /**
+     * The time of the decision, in milliseconds since the epoch.
+     */
+    private final long myTimestamp;
+
+    /**
+     * The requested item's identifier.
+     */
+    private final String myID;
+
+    /**
+     * The requested item's access mode, or null if it wasn't looked up.
+     */
+    private final AccessMode myAccessMode;
+
+    /**
+     * The HTTP status of the decision.
+     */
+    private final int myStatus;
+
+    /**
+     * The type of credential the decision checked.
+     */
+    private final Credential myCredential;
+
+    /**
+     * The time it took to make the decision, in nanoseconds.
+     */
+    private final long myLatency;
+
+    /**
+     * Creates a new audit record.
+     *
+     * @param aTimestamp The time of the decision, in milliseconds since the epoch
+     * @param aID The requested item's identifier
+     * @param aAccessMode The requested item's access mode, or null if it wasn't looked up
+     * @param aStatus The HTTP status of the decision
+     * @param aCredential The type of credential the decision checked
+     * @param aLatency The time it took to make the decision, in nanoseconds
+     */
+    public AuditRecord(final long aTimestamp, final String aID, final AccessMode aAccessMode, final int aStatus,
+            final Credential aCredential, final long aLatency) {
+        myTimestamp = aTimestamp;
+        myID = aID;
+        myAccessMode = aAccessMode;
+        myStatus = aStatus;
+        myCredential = aCredential;
+        myLatency = aLatency;
+    }
+
+    /**
+     * Gets the time of the decision.
+     *
+     * @return The time of the decision, in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return myTimestamp;
+    }
+
+    /**
+     * Gets the requested item's identifier.
+     *
+     * @return The requested item's identifier
+     */
+    public String getID() {
+        return myID;
+    }
+
+    /**
+     * Gets the requested item's access mode.
+     *
+     * @return The requested item's access mode, or null if it wasn't looked up
+     */
+    public AccessMode getAccessMode() {
+        return myAccessMode;
+    }
+
+    /**
+     * Gets the HTTP status of the decision.
+     *
+     * @return The HTTP status of the decision
+     */
+    public int getStatus() {
+        return myStatus;
+    }
+
+    /**
+     * Gets the type of credential the decision checked.
+     *
+     * @return The type of credential the decision checked
+     */
+    public Credential getCredential() {
+        return myCredential;
+    }
+
+    /**
+     * Gets the time it took to make the decision.
+     *
+     * @return The time it took to make the decision, in nanoseconds
+     */
+    public long getLatency() {
+        return myLatency;
+    }
+}
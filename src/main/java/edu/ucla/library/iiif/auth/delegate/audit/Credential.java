@@ -0,0 +1,67 @@
+
+package edu.ucla.library.iiif.auth.delegate.audit;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * The type of credential that an authorization decision checked.
+ */
+public enum Credential {
+
+    /** No credential was checked. */
+    NONE("none"),
+
+    /** A Hauth (campus network) bearer token. */
+    HAUTH_TOKEN("hauth-token"),
+
+    /** A Sinai bearer token. */
+    SINAI_TOKEN("sinai-token"),
+
+    /** A campus network access cookie. */
+    CAMPUS_COOKIE("campus-cookie"),
+
+    /** A Sinai affiliation cookie. */
+    SINAI_COOKIE("sinai-cookie");
+
+    /**
+     * The credential type's label in the audit log.
+     */
+    private final String myLabel;
+
+    /**
+     * Creates a new credential type.
+     *
+     * @param aLabel The credential type's label in the audit log
+     */
+    Credential(final String aLabel) {
+        myLabel = aLabel;
+    }
+
+    /**
+     * Gets the type of credential that's checked by a request for an item with the supplied access mode.
+     *
+     * @param aAccessMode The requested item's access mode
+     * @param aInfoRequest Whether the request is for the item's image information
+     * @return The type of credential the request is checked with
+     */
+    public static Credential checkedFor(final AccessMode aAccessMode, final boolean aInfoRequest) {
+        switch (aAccessMode) {
+            case OPEN:
+                return NONE;
+            case TIERED:
+                return aInfoRequest ? HAUTH_TOKEN : CAMPUS_COOKIE;
+            case ALL_OR_NOTHING:
+            default:
+                return aInfoRequest ? SINAI_TOKEN : SINAI_COOKIE;
+        }
+    }
+
+    /**
+     * Gets the credential type's label in the audit log.
+     *
+     * @return The credential type's label
+     */
+    public String getLabel() {
+        return myLabel;
+    }
+}
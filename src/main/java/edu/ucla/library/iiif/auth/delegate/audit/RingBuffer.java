@@ -0,0 +1,129 @@
+
+package edu.ucla.library.iiif.auth.delegate.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producers and a single consumer.
+ * <p>
+ * Each slot has a sequence number that says whose turn it is: a producer claims the next slot with a single
+ * compare-and-set on the tail, writes its element, and then publishes the slot by advancing its sequence; the consumer
+ * takes an element only once its slot is published. A producer never waits; if the buffer is full, its element is
+ * refused.
+ *
+ * @param <T> The type of the buffered elements
+ */
+public final class RingBuffer<T> {
+
+    /**
+     * The largest capacity a buffer may have.
+     */
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * The buffered elements.
+     */
+    private final AtomicReferenceArray<T> myElements;
+
+    /**
+     * The sequence number of each slot.
+     */
+    private final AtomicLongArray mySequences;
+
+    /**
+     * The mask that finds an element's slot; the capacity is a power of two.
+     */
+    private final int myMask;
+
+    /**
+     * The position of the next element to be added.
+     */
+    private final AtomicLong myTail = new AtomicLong();
+
+    /**
+     * The position of the next element to be taken, which only the consumer reads or writes.
+     */
+    private long myHead;
+
+    /**
+     * Creates a new ring buffer.
+     *
+     * @param aCapacity The smallest number of elements the buffer should hold; it's rounded up to a power of two
+     * @throws IllegalArgumentException If the capacity is less than one or larger than {@link #MAX_CAPACITY}
+     */
+    public RingBuffer(final int aCapacity) {
+        if (aCapacity < 1 || aCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException(Integer.toString(aCapacity));
+        }
+
+        final int capacity = aCapacity == 1 ? 1 : Integer.highestOneBit(aCapacity - 1) << 1;
+
+        myElements = new AtomicReferenceArray<>(capacity);
+        mySequences = new AtomicLongArray(capacity);
+        myMask = capacity - 1;
+
+        for (int index = 0; index < capacity; index++) {
+            mySequences.set(index, index);
+        }
+    }
+
+    /**
+     * Adds an element to the buffer, unless it's full. This may be called from any thread.
+     *
+     * @param aElement An element
+     * @return True if the element was added; false if the buffer is full
+     */
+    public boolean offer(final T aElement) {
+        long tail = myTail.get();
+
+        while (true) {
+            final int index = (int) tail & myMask;
+            final long difference = mySequences.get(index) - tail;
+
+            if (difference == 0) {
+                if (myTail.compareAndSet(tail, tail + 1)) {
+                    myElements.lazySet(index, aElement);
+                    mySequences.lazySet(index, tail + 1); // Publishes the element to the consumer
+                    return true;
+                }
+
+                tail = myTail.get();
+            } else if (difference < 0) {
+                return false; // The consumer hasn't taken the element a full lap behind this one
+            } else {
+                tail = myTail.get(); // Another producer claimed the slot first
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest element from the buffer. This must only be called by the consumer.
+     *
+     * @return The oldest element, or null if the buffer is empty (or its oldest element hasn't been published yet)
+     */
+    public T poll() {
+        final int index = (int) myHead & myMask;
+
+        if (mySequences.get(index) != myHead + 1) {
+            return null;
+        }
+
+        final T element = myElements.get(index);
+
+        myElements.lazySet(index, null);
+        mySequences.lazySet(index, myHead + myMask + 1); // Frees the slot for the producers' next lap
+        myHead += 1;
+        return element;
+    }
+
+    /**
+     * Gets the number of elements the buffer can hold.
+     *
+     * @return The buffer's capacity
+     */
+    public int getCapacity() {
+        return myMask + 1;
+    }
+}
@@ -0,0 +1,503 @@
+package edu.ucla.library.iiif.auth.delegate.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * A compact map from item identifiers to access modes, for holding the access modes of a whole repository (millions of
+ * items) in memory. Each entry is a single long, holding a 31-bit fingerprint of the identifier, the offset of the
+ * identifier's bytes in a flat arena, and the access mode; the arena holds each identifier's UTF-8 bytes after a
+ * two-byte length. With the table at most 80% full, an entry takes about ten bytes plus its identifier's length
+ * (around 33 bytes for an ARK), where a <code>HashMap&lt;String, AccessMode&gt;</code> takes over 100.
+ * <p>
+ * Entries are found by open addressing with linear probing. A fingerprint only narrows the search: when one matches,
+ * the identifier's bytes are compared with those in the arena, so two identifiers with the same fingerprint are kept
+ * as two entries. Reads don't lock; writes are serialized, and a table that has grown too full, or whose arena has no
+ * room left, is replaced with a rebuilt one (whose arena leaves out the bytes of removed identifiers). A read that runs
+ * while an entry is being removed may, briefly, miss another entry whose slot is being moved.
+ */
+public final class AccessModeStore {
+
+    /**
+     * The value of an empty slot; a fingerprint is never zero, so no entry is.
+     */
+    private static final long EMPTY = 0;
+
+    /**
+     * The number of bits in an entry that hold its access mode.
+     */
+    private static final int MODE_BITS = 2;
+
+    /**
+     * The mask of the access mode in an entry.
+     */
+    private static final long MODE_MASK = (1L << MODE_BITS) - 1;
+
+    /**
+     * The number of bits in an entry that hold the arena offset of its identifier.
+     */
+    private static final int OFFSET_BITS = 31;
+
+    /**
+     * The mask of the arena offset in an entry, once the access mode has been shifted off.
+     */
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+    /**
+     * The number of bits an entry is shifted by to get its fingerprint.
+     */
+    private static final int FINGERPRINT_SHIFT = OFFSET_BITS + MODE_BITS;
+
+    /**
+     * The number of bits in a fingerprint.
+     */
+    private static final int FINGERPRINT_BITS = Long.SIZE - FINGERPRINT_SHIFT;
+
+    /**
+     * The number of bytes in the arena that hold an identifier's length.
+     */
+    private static final int LENGTH_BYTES = 2;
+
+    /**
+     * The largest number of bytes an identifier may have.
+     */
+    private static final int MAX_ID_LENGTH = (1 << Byte.SIZE * LENGTH_BYTES) - 1;
+
+    /**
+     * The number of arena bytes an entry is expected to take when the store is first sized, which is about what an
+     * ARK takes.
+     */
+    private static final int EXPECTED_RECORD_SIZE = 24;
+
+    /**
+     * The access modes, by ordinal.
+     */
+    private static final AccessMode[] MODES = AccessMode.values();
+
+    /**
+     * The largest share of the table's slots that may be used before it's replaced with a larger one.
+     */
+    private static final double MAX_LOAD = 0.8;
+
+    /**
+     * The largest number of slots a table may have.
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * The largest number of bytes an arena may have.
+     */
+    private static final int MAX_ARENA_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * The seed of the identifier hash.
+     */
+    private static final long HASH_SEED = 0xCBF2_9CE4_8422_2325L;
+
+    /**
+     * The prime that each byte of an identifier is multiplied into its hash with.
+     */
+    private static final long HASH_PRIME = 0x100_0000_01B3L;
+
+    /**
+     * The table of entries and its arena, which are replaced together (rather than changed in place) when the table
+     * is rebuilt.
+     */
+    private volatile Table myTable;
+
+    /**
+     * The number of entries the table may hold before it grows.
+     */
+    private int myThreshold;
+
+    /**
+     * The number of arena bytes that have been written.
+     */
+    private int myArenaEnd;
+
+    /**
+     * The number of arena bytes that belong to removed identifiers.
+     */
+    private int myGarbage;
+
+    /**
+     * The number of entries in the store.
+     */
+    private volatile int mySize;
+
+    /**
+     * Creates a new access mode store.
+     *
+     * @param aExpectedSize The number of entries the store should hold before it first grows
+     * @throws IllegalArgumentException If the expected size is negative or too large
+     */
+    public AccessModeStore(final int aExpectedSize) {
+        if (aExpectedSize < 0 || aExpectedSize > MAX_CAPACITY * MAX_LOAD) {
+            throw new IllegalArgumentException(Integer.toString(aExpectedSize));
+        }
+
+        myTable = new Table(getCapacity(aExpectedSize),
+                (int) Math.min(MAX_ARENA_SIZE, Math.max(1L, aExpectedSize) * EXPECTED_RECORD_SIZE));
+        myThreshold = getThreshold(myTable.mySlots.length());
+    }
+
+    /**
+     * Gets the access mode stored for the supplied identifier, without locking.
+     *
+     * @param aID An item identifier
+     * @return The item's access mode, if one is stored
+     */
+    public Optional<AccessMode> get(final String aID) {
+        final byte[] id = aID.getBytes(StandardCharsets.UTF_8);
+        final Table table = myTable;
+        final long entry = table.mySlots.get(table.find(getFingerprint(id), id));
+
+        return entry == EMPTY ? Optional.empty() : Optional.of(MODES[(int) (entry & MODE_MASK)]);
+    }
+
+    /**
+     * Stores the access mode of the supplied identifier, replacing any that's already stored.
+     *
+     * @param aID An item identifier
+     * @param aMode The item's access mode
+     * @return This store
+     * @throws IllegalArgumentException If the identifier is longer than 65,535 bytes
+     * @throws IllegalStateException If the store is full
+     */
+    public synchronized AccessModeStore put(final String aID, final AccessMode aMode) {
+        final byte[] id = aID.getBytes(StandardCharsets.UTF_8);
+        final long fingerprint = getFingerprint(id);
+        Table table = myTable;
+        int index = table.find(fingerprint, id);
+        final long entry = table.mySlots.get(index);
+
+        if (entry != EMPTY) {
+            table.mySlots.set(index, entry & ~MODE_MASK | aMode.ordinal());
+            return this;
+        }
+
+        if (id.length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException(aID);
+        }
+
+        if (mySize >= myThreshold || (long) myArenaEnd + LENGTH_BYTES + id.length > table.myArena.length) {
+            table = rebuild(LENGTH_BYTES + id.length);
+            index = table.find(fingerprint, id);
+        }
+
+        // The identifier's bytes are written before the entry that points to them is published
+        final int offset = myArenaEnd;
+
+        myArenaEnd = table.write(offset, id);
+        table.mySlots.set(index, fingerprint << FINGERPRINT_SHIFT | (long) offset << MODE_BITS | aMode.ordinal());
+        mySize += 1;
+        return this;
+    }
+
+    /**
+     * Removes the access mode stored for the supplied identifier. The entries after it that would no longer be found
+     * are moved back into its slot, so no marker of the removed entry is left behind.
+     *
+     * @param aID An item identifier
+     * @return True if an access mode was removed; else, false
+     */
+    public synchronized boolean remove(final String aID) {
+        final byte[] id = aID.getBytes(StandardCharsets.UTF_8);
+        final Table table = myTable;
+        final AtomicLongArray slots = table.mySlots;
+        final int capacity = slots.length();
+        int hole = table.find(getFingerprint(id), id);
+
+        if (slots.get(hole) == EMPTY) {
+            return false;
+        }
+
+        for (int index = next(hole, capacity);; index = next(index, capacity)) {
+            final long entry = slots.get(index);
+
+            if (entry == EMPTY) {
+                break;
+            }
+
+            final int home = getIndex(entry >>> FINGERPRINT_SHIFT, capacity);
+
+            // An entry can fill the hole if the hole is no further back than the slot the entry is first looked for in
+            if (getDistance(home, index, capacity) >= getDistance(hole, index, capacity)) {
+                slots.set(hole, entry);
+                hole = index;
+            }
+        }
+
+        slots.set(hole, EMPTY);
+        myGarbage += LENGTH_BYTES + id.length;
+        mySize -= 1;
+        return true;
+    }
+
+    /**
+     * Removes every stored access mode.
+     */
+    public synchronized void clear() {
+        myTable = new Table(myTable.mySlots.length(), myTable.myArena.length);
+        myArenaEnd = 0;
+        myGarbage = 0;
+        mySize = 0;
+    }
+
+    /**
+     * Gets the number of access modes in the store.
+     *
+     * @return The number of stored access modes
+     */
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Gets the number of slots in the store's table.
+     *
+     * @return The store's capacity
+     */
+    public int getCapacity() {
+        return myTable.mySlots.length();
+    }
+
+    /**
+     * Gets the number of bytes the store's table and arena take.
+     *
+     * @return The size of the store's table and arena in bytes
+     */
+    public long getFootprint() {
+        final Table table = myTable;
+        return (long) table.mySlots.length() * Long.BYTES + table.myArena.length;
+    }
+
+    /**
+     * Replaces the table with a rebuilt one, which has half again as many slots if the table is too full and an arena
+     * that holds only the identifiers of the stored entries, with room to spare.
+     *
+     * @param aRecordSize The number of arena bytes the entry that's about to be added needs
+     * @return The rebuilt table
+     * @throws IllegalStateException If the table or its arena can't grow any larger
+     */
+    private Table rebuild(final int aRecordSize) {
+        final Table table = myTable;
+        final int capacity = table.mySlots.length();
+        final long arenaSize = (long) myArenaEnd - myGarbage + aRecordSize;
+
+        if (mySize >= myThreshold && capacity >= MAX_CAPACITY || arenaSize > MAX_ARENA_SIZE) {
+            throw new IllegalStateException(Integer.toString(mySize));
+        }
+
+        final Table rebuilt = new Table(mySize < myThreshold ? capacity :
+                (int) Math.min(MAX_CAPACITY, capacity * 3L / 2 + 1), (int) Math.min(MAX_ARENA_SIZE, arenaSize * 3 / 2));
+        int arenaEnd = 0;
+
+        for (int index = 0; index < capacity; index++) {
+            final long entry = table.mySlots.get(index);
+
+            if (entry != EMPTY) {
+                final int offset = (int) (entry >>> MODE_BITS & OFFSET_MASK);
+                final int length = table.getLength(offset);
+                final long fingerprint = entry >>> FINGERPRINT_SHIFT;
+
+                System.arraycopy(table.myArena, offset, rebuilt.myArena, arenaEnd, LENGTH_BYTES + length);
+                rebuilt.mySlots.set(rebuilt.findEmpty(fingerprint),
+                        fingerprint << FINGERPRINT_SHIFT | (long) arenaEnd << MODE_BITS | entry & MODE_MASK);
+                arenaEnd += LENGTH_BYTES + length;
+            }
+        }
+
+        myTable = rebuilt;
+        myThreshold = getThreshold(rebuilt.mySlots.length());
+        myArenaEnd = arenaEnd;
+        myGarbage = 0;
+        return rebuilt;
+    }
+
+    /**
+     * Gets the slot an entry with the supplied fingerprint is first looked for in, by scaling its fingerprint to the
+     * capacity (rather than taking a remainder, so the capacity needn't be a power of two).
+     *
+     * @param aFingerprint An identifier's fingerprint
+     * @param aCapacity The number of slots in the table
+     * @return The index of the entry's first slot
+     */
+    private static int getIndex(final long aFingerprint, final int aCapacity) {
+        return (int) (aFingerprint * aCapacity >>> FINGERPRINT_BITS);
+    }
+
+    /**
+     * Gets the slot after the supplied one, wrapping around at the end of the table.
+     *
+     * @param aIndex The index of a slot
+     * @param aCapacity The number of slots in the table
+     * @return The index of the next slot
+     */
+    private static int next(final int aIndex, final int aCapacity) {
+        return aIndex + 1 == aCapacity ? 0 : aIndex + 1;
+    }
+
+    /**
+     * Gets the number of slots from one slot forward to another, wrapping around at the end of the table.
+     *
+     * @param aFrom The index of the first slot
+     * @param aTo The index of the second slot
+     * @param aCapacity The number of slots in the table
+     * @return The distance between the slots
+     */
+    private static int getDistance(final int aFrom, final int aTo, final int aCapacity) {
+        return aTo >= aFrom ? aTo - aFrom : aTo - aFrom + aCapacity;
+    }
+
+    /**
+     * Gets the fingerprint of an identifier: the top 31 bits of a 64-bit hash of its bytes (FNV-1a, finished with
+     * MurmurHash3's mixing function), which is never zero.
+     *
+     * @param aID An item identifier's UTF-8 bytes
+     * @return The identifier's fingerprint
+     */
+    private static long getFingerprint(final byte[] aID) {
+        long hash = HASH_SEED;
+
+        for (final byte element : aID) {
+            hash = (hash ^ element & 0xFF) * HASH_PRIME;
+        }
+
+        hash = (hash ^ hash >>> 33) * 0xFF51_AFD7_ED55_8CCDL;
+        hash = (hash ^ hash >>> 33) * 0xC4CE_B9FE_1A85_EC53L;
+        hash ^= hash >>> 33;
+
+        return hash >>> FINGERPRINT_SHIFT == 0 ? 1 : hash >>> FINGERPRINT_SHIFT;
+    }
+
+    /**
+     * Gets the number of slots a table needs to hold the supplied number of entries.
+     *
+     * @param aSize A number of entries
+     * @return The number of slots
+     */
+    private static int getCapacity(final int aSize) {
+        return (int) Math.min(MAX_CAPACITY, (long) Math.ceil(aSize / MAX_LOAD) + 1);
+    }
+
+    /**
+     * Gets the number of entries a table may hold before it grows; there's always at least one empty slot, so a
+     * lookup always ends.
+     *
+     * @param aCapacity The number of slots in the table
+     * @return The table's threshold
+     */
+    private static int getThreshold(final int aCapacity) {
+        return Math.min(aCapacity - 1, (int) (aCapacity * MAX_LOAD));
+    }
+
+    /**
+     * A table of entries and the arena that holds their identifiers. An identifier's bytes are written to the arena
+     * before the entry that points to them is set, and aren't changed after, so a reader that sees an entry sees its
+     * identifier.
+     */
+    private static final class Table {
+
+        /**
+         * The table's slots.
+         */
+        private final AtomicLongArray mySlots;
+
+        /**
+         * The bytes of the table's identifiers, each after its two-byte length.
+         */
+        private final byte[] myArena;
+
+        /**
+         * Creates a new, empty table.
+         *
+         * @param aCapacity The number of slots in the table
+         * @param aArenaSize The number of bytes in the table's arena
+         */
+        private Table(final int aCapacity, final int aArenaSize) {
+            mySlots = new AtomicLongArray(aCapacity);
+            myArena = new byte[aArenaSize];
+        }
+
+        /**
+         * Finds the slot that holds the entry for the supplied identifier or, if there isn't one, the empty slot where
+         * it would go. An entry whose fingerprint matches is only a match if its identifier's bytes do too.
+         *
+         * @param aFingerprint The identifier's fingerprint
+         * @param aID The identifier's UTF-8 bytes
+         * @return The index of the entry's slot
+         */
+        private int find(final long aFingerprint, final byte[] aID) {
+            final int capacity = mySlots.length();
+
+            for (int index = getIndex(aFingerprint, capacity);; index = next(index, capacity)) {
+                final long entry = mySlots.get(index);
+
+                if (entry == EMPTY || entry >>> FINGERPRINT_SHIFT == aFingerprint &&
+                        matches((int) (entry >>> MODE_BITS & OFFSET_MASK), aID)) {
+                    return index;
+                }
+            }
+        }
+
+        /**
+         * Finds the empty slot where an entry with the supplied fingerprint would go, for an identifier that's known
+         * not to be in the table.
+         *
+         * @param aFingerprint The identifier's fingerprint
+         * @return The index of an empty slot
+         */
+        private int findEmpty(final long aFingerprint) {
+            final int capacity = mySlots.length();
+            int index = getIndex(aFingerprint, capacity);
+
+            while (mySlots.get(index) != EMPTY) {
+                index = next(index, capacity);
+            }
+
+            return index;
+        }
+
+        /**
+         * Checks whether the identifier at the supplied arena offset is the supplied one.
+         *
+         * @param aOffset The arena offset of an identifier
+         * @param aID An identifier's UTF-8 bytes
+         * @return True if the identifiers are the same; else, false
+         */
+        private boolean matches(final int aOffset, final byte[] aID) {
+            final int start = aOffset + LENGTH_BYTES;
+            return getLength(aOffset) == aID.length && Arrays.equals(myArena, start, start + aID.length, aID, 0,
+                    aID.length);
+        }
+
+        /**
+         * Gets the number of bytes in the identifier at the supplied arena offset.
+         *
+         * @param aOffset The arena offset of an identifier
+         * @return The identifier's length in bytes
+         */
+        private int getLength(final int aOffset) {
+            return (myArena[aOffset] & 0xFF) << Byte.SIZE | myArena[aOffset + 1] & 0xFF;
+        }
+
+        /**
+         * Writes an identifier, after its length, to the arena.
+         *
+         * @param aOffset The arena offset to write the identifier at
+         * @param aID An identifier's UTF-8 bytes
+         * @return The arena offset after the identifier
+         */
+        private int write(final int aOffset, final byte[] aID) {
+            myArena[aOffset] = (byte) (aID.length >>> Byte.SIZE);
+            myArena[aOffset + 1] = (byte) aID.length;
+            System.arraycopy(aID, 0, myArena, aOffset + LENGTH_BYTES, aID.length);
+            return aOffset + LENGTH_BYTES + aID.length;
+        }
+    }
+}
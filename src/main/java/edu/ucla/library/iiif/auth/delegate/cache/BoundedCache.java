@@ -0,0 +1,530 @@
+
+package edu.ucla.library.iiif.auth.delegate.cache;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A small, thread-safe cache that holds at most a fixed number of entries, evicting the least recently used entry
+ * when it's full. Entries can, optionally, also expire a fixed amount of time after they're written, or after an amount
+ * of time given when each is written. The cache counts its hits, misses, evictions, and expirations.
+ * <p>
+ * A cache can, optionally, have a frequency-based admission policy (after W-TinyLFU), so that a scan of keys that are
+ * each looked up once (e.g., a crawler) can't push its popular entries out. New entries are written to a small window,
+ * which is itself evicted in least recently used order. An entry evicted from the window is only admitted to the rest
+ * of the cache if it has been looked up more often than the entry it would replace; how often each key has been looked
+ * up is estimated with a {@link CountMinSketch}, whose counts are halved periodically so that it favors recent lookups.
+ *
+ * @param <K> The type of the cache's keys
+ * @param <V> The type of the cache's values
+ */
+@SuppressWarnings("PMD.GodClass") // Its segments, admission policy, and expiry all work under the one lock
+public class BoundedCache<K, V> {
+
+    /**
+     * The load factor of the cache's internal map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * The smallest maximum size a cache can have.
+     */
+    private static final int MIN_SIZE = 1;
+
+    /**
+     * The time to live of entries that don't expire.
+     */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * The smallest maximum size a cache with an admission policy can have; a smaller cache has no room for both a
+     * window and the rest of the cache, so it has no admission policy.
+     */
+    private static final int MIN_ADMISSION_SIZE = 2;
+
+    /**
+     * The number of entries in a cache with an admission policy for each entry in its window.
+     */
+    private static final int WINDOW_DIVISOR = 100;
+
+    /**
+     * The maximum number of entries the cache will hold.
+     */
+    private final int myMaxSize;
+
+    /**
+     * How long, in nanoseconds, an entry stays in the cache after it's written.
+     */
+    private final long myTimeToLive;
+
+    /**
+     * The clock used to time entries, in nanoseconds.
+     */
+    private final LongSupplier myClock;
+
+    /**
+     * The cache's entries, in access order; if the cache has an admission policy, these are the entries that have been
+     * admitted from its window.
+     */
+    private final Map<K, CacheEntry<V>> myEntries;
+
+    /**
+     * The maximum number of entries that have been admitted to the cache.
+     */
+    private final int myMainSize;
+
+    /**
+     * The cache's newest entries, in access order, if the cache has an admission policy; else, it's always empty.
+     */
+    private final Map<K, CacheEntry<V>> myWindow;
+
+    /**
+     * The maximum number of entries in the cache's window.
+     */
+    private final int myWindowSize;
+
+    /**
+     * The estimated number of times each key has been looked up, if the cache has an admission policy.
+     */
+    private final CountMinSketch mySketch;
+
+    /**
+     * Whether the cache has an admission policy.
+     */
+    private final boolean hasAdmission;
+
+    /**
+     * The number of lookups that found a value.
+     */
+    private final LongAdder myHits = new LongAdder();
+
+    /**
+     * The number of lookups that didn't find a value.
+     */
+    private final LongAdder myMisses = new LongAdder();
+
+    /**
+     * The number of entries that were evicted to make room for new ones.
+     */
+    private final LongAdder myEvictions = new LongAdder();
+
+    /**
+     * The number of entries that were removed because they had expired.
+     */
+    private final LongAdder myExpirations = new LongAdder();
+
+    /**
+     * Creates a new bounded cache whose entries don't expire.
+     *
+     * @param aMaxSize The maximum number of entries the cache will hold
+     * @throws IllegalArgumentException If the supplied maximum size is less than one
+     */
+    public BoundedCache(final int aMaxSize) {
+        this(aMaxSize, NEVER, System::nanoTime);
+    }
+
+    /**
+     * Creates a new bounded cache whose entries expire after the supplied amount of time.
+     *
+     * @param aMaxSize The maximum number of entries the cache will hold
+     * @param aTimeToLive How long an entry stays in the cache after it's written
+     * @throws IllegalArgumentException If the supplied maximum size is less than one, or the time to live isn't
+     *         positive
+     */
+    public BoundedCache(final int aMaxSize, final Duration aTimeToLive) {
+        this(aMaxSize, toNanos(aTimeToLive), System::nanoTime, false);
+    }
+
+    /**
+     * Creates a new bounded cache whose entries expire after the supplied amount of time, and which may have a
+     * frequency-based admission policy.
+     *
+     * @param aMaxSize The maximum number of entries the cache will hold
+     * @param aTimeToLive How long an entry stays in the cache after it's written
+     * @param aAdmission Whether the cache has an admission policy; a cache that holds fewer than two entries never
+     *        does
+     * @throws IllegalArgumentException If the supplied maximum size is less than one, or the time to live isn't
+     *         positive
+     */
+    public BoundedCache(final int aMaxSize, final Duration aTimeToLive, final boolean aAdmission) {
+        this(aMaxSize, toNanos(aTimeToLive), System::nanoTime, aAdmission);
+    }
+
+    /**
+     * Creates a new bounded cache that uses the supplied clock.
+     *
+     * @param aMaxSize The maximum number of entries the cache will hold
+     * @param aTimeToLive How long, in nanoseconds, an entry stays in the cache after it's written
+     * @param aClock A clock that measures time in nanoseconds
+     * @throws IllegalArgumentException If the supplied maximum size is less than one
+     */
+    BoundedCache(final int aMaxSize, final long aTimeToLive, final LongSupplier aClock) {
+        this(aMaxSize, aTimeToLive, aClock, false);
+    }
+
+    /**
+     * Creates a new bounded cache that uses the supplied clock, and which may have a frequency-based admission policy.
+     *
+     * @param aMaxSize The maximum number of entries the cache will hold
+     * @param aTimeToLive How long, in nanoseconds, an entry stays in the cache after it's written
+     * @param aClock A clock that measures time in nanoseconds
+     * @param aAdmission Whether the cache has an admission policy
+     * @throws IllegalArgumentException If the supplied maximum size is less than one
+     */
+    BoundedCache(final int aMaxSize, final long aTimeToLive, final LongSupplier aClock, final boolean aAdmission) {
+        if (aMaxSize < MIN_SIZE) {
+            throw new IllegalArgumentException(Integer.toString(aMaxSize));
+        }
+
+        myMaxSize = aMaxSize;
+        myTimeToLive = aTimeToLive;
+        myClock = aClock;
+        hasAdmission = aAdmission && aMaxSize >= MIN_ADMISSION_SIZE;
+        myWindowSize = hasAdmission ? Math.max(1, aMaxSize / WINDOW_DIVISOR) : 0;
+        myMainSize = aMaxSize - myWindowSize;
+        myEntries = newSegment(myMainSize);
+        myWindow = newSegment(myWindowSize);
+        mySketch = new CountMinSketch(hasAdmission ? aMaxSize : 1);
+    }
+
+    /**
+     * Gets the value cached for the supplied key.
+     *
+     * @param aKey A cache key
+     * @return The cached value, if there is one that hasn't expired
+     */
+    public Optional<V> get(final K aKey) {
+        if (hasAdmission) {
+            mySketch.increment(aKey);
+        }
+
+        synchronized (myEntries) {
+            final Map<K, CacheEntry<V>> segment = myWindow.containsKey(aKey) ? myWindow : myEntries;
+            final CacheEntry<V> entry = segment.get(aKey);
+
+            if (entry == null) {
+                myMisses.increment();
+                return Optional.empty();
+            }
+
+            if (isExpired(entry)) {
+                segment.remove(aKey);
+                myExpirations.increment();
+                myMisses.increment();
+                return Optional.empty();
+            }
+
+            myHits.increment();
+            return Optional.of(entry.myValue);
+        }
+    }
+
+    /**
+     * Gets the value cached for the supplied key, loading and caching it if it's not already in the cache.
+     * <p>
+     * The loader is called outside of the cache's lock, so concurrent misses on the same key may each call it.
+     *
+     * @param aKey A cache key
+     * @param aLoader A function that loads the value for a key
+     * @return The cached (or newly loaded) value
+     */
+    public V get(final K aKey, final Function<K, V> aLoader) {
+        final Optional<V> cached = get(aKey);
+
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        final V value = aLoader.apply(aKey);
+
+        put(aKey, value);
+        return value;
+    }
+
+    /**
+     * Caches a value for the supplied key.
+     *
+     * @param aKey A cache key
+     * @param aValue The value to cache
+     * @return This cache
+     */
+    public BoundedCache<K, V> put(final K aKey, final V aValue) {
+        return put(aKey, new CacheEntry<>(aValue, myClock.getAsLong(), myTimeToLive));
+    }
+
+    /**
+     * Caches a value for the supplied key, which expires after the supplied amount of time instead of the cache's
+     * time to live.
+     *
+     * @param aKey A cache key
+     * @param aValue The value to cache
+     * @param aTimeToLive How long the value stays in the cache
+     * @return This cache
+     * @throws IllegalArgumentException If the time to live isn't positive
+     */
+    public BoundedCache<K, V> put(final K aKey, final V aValue, final Duration aTimeToLive) {
+        return put(aKey, new CacheEntry<>(aValue, myClock.getAsLong(), toNanos(aTimeToLive)));
+    }
+
+    /**
+     * Caches an entry for the supplied key.
+     *
+     * @param aKey A cache key
+     * @param aEntry The entry to cache
+     * @return This cache
+     */
+    private BoundedCache<K, V> put(final K aKey, final CacheEntry<V> aEntry) {
+        synchronized (myEntries) {
+            if (hasAdmission && !myEntries.containsKey(aKey)) {
+                myWindow.put(aKey, aEntry);
+
+                if (myWindow.size() > myWindowSize) {
+                    admit(removeEldest(myWindow));
+                }
+            } else {
+                myEntries.put(aKey, aEntry);
+
+                if (myEntries.size() > myMainSize) {
+                    removeEldest(myEntries);
+                    myEvictions.increment();
+                }
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Removes the value cached for the supplied key.
+     *
+     * @param aKey A cache key
+     * @return This cache
+     */
+    public BoundedCache<K, V> invalidate(final K aKey) {
+        synchronized (myEntries) {
+            myEntries.remove(aKey);
+            myWindow.remove(aKey);
+        }
+
+        return this;
+    }
+
+    /**
+     * Removes the values cached for all the keys that match the supplied predicate.
+     *
+     * @param aFilter A predicate on the cache's keys
+     * @return The number of values that were removed
+     */
+    public int invalidateAll(final Predicate<K> aFilter) {
+        synchronized (myEntries) {
+            final int size = myEntries.size() + myWindow.size();
+
+            myEntries.keySet().removeIf(aFilter);
+            myWindow.keySet().removeIf(aFilter);
+            return size - myEntries.size() - myWindow.size();
+        }
+    }
+
+    /**
+     * Gets the value cached for the supplied key, for inspection: the lookup isn't counted as a hit or a miss, and an
+     * expired value isn't removed.
+     *
+     * @param aKey A cache key
+     * @return The cached value, if there is one that hasn't expired
+     */
+    public Optional<V> peek(final K aKey) {
+        final CacheEntry<V> entry;
+
+        synchronized (myEntries) {
+            entry = myWindow.containsKey(aKey) ? myWindow.get(aKey) : myEntries.get(aKey);
+        }
+
+        return entry == null || isExpired(entry) ? Optional.empty() : Optional.of(entry.myValue);
+    }
+
+    /**
+     * Gets the number of entries in the cache, which may include expired entries that haven't been removed yet.
+     *
+     * @return The number of entries in the cache
+     */
+    public int size() {
+        synchronized (myEntries) {
+            return myEntries.size() + myWindow.size();
+        }
+    }
+
+    /**
+     * Gets the maximum number of entries the cache will hold.
+     *
+     * @return The maximum number of entries the cache will hold
+     */
+    public int getMaxSize() {
+        return myMaxSize;
+    }
+
+    /**
+     * Gets the number of lookups that found a value in the cache.
+     *
+     * @return The number of cache hits
+     */
+    public long getHits() {
+        return myHits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that didn't find a value in the cache, including those that found an expired one.
+     *
+     * @return The number of cache misses
+     */
+    public long getMisses() {
+        return myMisses.sum();
+    }
+
+    /**
+     * Gets the number of entries that were evicted to make room for new ones.
+     *
+     * @return The number of evictions
+     */
+    public long getEvictions() {
+        return myEvictions.sum();
+    }
+
+    /**
+     * Gets the number of entries that were removed because they had expired.
+     *
+     * @return The number of expirations
+     */
+    public long getExpirations() {
+        return myExpirations.sum();
+    }
+
+    /**
+     * Checks whether the cache has a frequency-based admission policy.
+     *
+     * @return True if the cache has an admission policy; else, false
+     */
+    public boolean hasAdmissionPolicy() {
+        return hasAdmission;
+    }
+
+    /**
+     * Admits an entry that has been evicted from the window, if the cache has room for it or it has been looked up
+     * more often than the least recently used entry, which it then replaces. Either way, an entry is evicted. The
+     * caller must hold the cache's lock.
+     *
+     * @param aCandidate An entry that has been evicted from the window
+     */
+    private void admit(final Map.Entry<K, CacheEntry<V>> aCandidate) {
+        if (myEntries.size() >= myMainSize) {
+            final K victim = myEntries.keySet().iterator().next();
+
+            myEvictions.increment();
+
+            // Ties go to the entry that's already cached, so a scan of keys seen once can't replace any of them
+            if (mySketch.estimate(aCandidate.getKey()) <= mySketch.estimate(victim)) {
+                return;
+            }
+
+            myEntries.remove(victim);
+        }
+
+        myEntries.put(aCandidate.getKey(), aCandidate.getValue());
+    }
+
+    /**
+     * Checks whether a cache entry has expired.
+     *
+     * @param aEntry A cache entry
+     * @return True if the entry has expired; else, false
+     */
+    private boolean isExpired(final CacheEntry<V> aEntry) {
+        return aEntry.myTimeToLive != NEVER && myClock.getAsLong() - aEntry.myWriteTime >= aEntry.myTimeToLive;
+    }
+
+    /**
+     * Creates a map for one of the cache's segments, which keeps its entries in access order.
+     *
+     * @param <K> The type of the cache's keys
+     * @param <V> The type of the cache's values
+     * @param aSize The maximum number of entries the segment will hold
+     * @return A new, empty, segment
+     */
+    private static <K, V> Map<K, V> newSegment(final int aSize) {
+        return new LinkedHashMap<>((int) (aSize / LOAD_FACTOR) + 1, LOAD_FACTOR, true);
+    }
+
+    /**
+     * Removes the least recently used entry from one of the cache's segments, which must not be empty.
+     *
+     * @param <K> The type of the cache's keys
+     * @param <V> The type of the cache's values
+     * @param aSegment One of the cache's segments
+     * @return The removed entry
+     */
+    private static <K, V> Map.Entry<K, V> removeEldest(final Map<K, V> aSegment) {
+        final Iterator<Map.Entry<K, V>> iterator = aSegment.entrySet().iterator();
+        final Map.Entry<K, V> eldest = new AbstractMap.SimpleImmutableEntry<>(iterator.next());
+
+        iterator.remove();
+        return eldest;
+    }
+
+    /**
+     * Converts a time to live into nanoseconds.
+     *
+     * @param aTimeToLive A time to live
+     * @return The time to live in nanoseconds
+     * @throws IllegalArgumentException If the time to live isn't positive
+     */
+    private static long toNanos(final Duration aTimeToLive) {
+        if (aTimeToLive.isNegative() || aTimeToLive.isZero()) {
+            throw new IllegalArgumentException(aTimeToLive.toString());
+        }
+
+        return aTimeToLive.toNanos();
+    }
+
+    /**
+     * A cached value, the time it was written, and how long it stays in the cache.
+     *
+     * @param <V> The type of the cached value
+     */
+    private static final class CacheEntry<V> {
+
+        /**
+         * The cached value.
+         */
+        private final V myValue;
+
+        /**
+         * The time, in nanoseconds, that the value was written.
+         */
+        private final long myWriteTime;
+
+        /**
+         * How long, in nanoseconds, the value stays in the cache after it's written.
+         */
+        private final long myTimeToLive;
+
+        /**
+         * Creates a new cache entry.
+         *
+         * @param aValue The cached value
+         * @param aWriteTime The time, in nanoseconds, that the value was written
+         * @param aTimeToLive How long, in nanoseconds, the value stays in the cache after it's written
+         */
+        private CacheEntry(final V aValue, final long aWriteTime, final long aTimeToLive) {
+            myValue = aValue;
+            myWriteTime = aWriteTime;
+            myTimeToLive = aTimeToLive;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+
+package edu.ucla.library.iiif.auth.delegate.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free count-min sketch, which estimates how often each key has been seen using a fixed amount of memory.
+ * <p>
+ * Each key is counted in one counter of each of the sketch's rows, chosen by a different hash per row; its estimate is
+ * the smallest of those counters. An estimate is never lower than the true count, and is higher by at most a small
+ * fraction of the total count. So that the sketch follows changes in popularity, every counter is halved after a
+ * fixed number of additions (its sample size), which makes old sightings count for less than recent ones.
+ */
+public final class CountMinSketch {
+
+    /**
+     * The number of rows, each with its own hash.
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * The seeds of the rows' hashes.
+     */
+    private static final int[] SEEDS = { 0x9E37_79B9, 0x85EB_CA6B, 0xC2B2_AE35, 0x27D4_EB2F };
+
+    /**
+     * The number of additions, per counter in a row, after which the counters are halved.
+     */
+    private static final int SAMPLE_FACTOR = 10;
+
+    /**
+     * The counters, row by row.
+     */
+    private final AtomicLongArray myCounters;
+
+    /**
+     * The mask that finds a key's counter within a row; the width is a power of two.
+     */
+    private final int myMask;
+
+    /**
+     * The number of additions after which the counters are halved.
+     */
+    private final long mySampleSize;
+
+    /**
+     * The number of additions since the counters were last halved.
+     */
+    private final AtomicLong myAdditions = new AtomicLong();
+
+    /**
+     * The number of times the counters have been halved.
+     */
+    private volatile int myAge;
+
+    /**
+     * Creates a new count-min sketch.
+     *
+     * @param aWidth The smallest number of counters in each row; it's rounded up to a power of two
+     * @throws IllegalArgumentException If the width is less than one or more than 2^26
+     */
+    public CountMinSketch(final int aWidth) {
+        if (aWidth < 1 || aWidth > 1 << 26) {
+            throw new IllegalArgumentException(Integer.toString(aWidth));
+        }
+
+        final int width = aWidth == 1 ? 1 : Integer.highestOneBit(aWidth - 1) << 1;
+
+        myCounters = new AtomicLongArray(width * DEPTH);
+        myMask = width - 1;
+        mySampleSize = (long) width * SAMPLE_FACTOR;
+    }
+
+    /**
+     * Counts a sighting of the supplied key.
+     *
+     * @param aKey A key
+     * @return The key's estimated count, including this sighting
+     */
+    public long increment(final Object aKey) {
+        final int hash = spread(aKey.hashCode());
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, myCounters.incrementAndGet(getIndex(hash, row)));
+        }
+
+        if (myAdditions.incrementAndGet() == mySampleSize) {
+            age();
+        }
+
+        return estimate;
+    }
+
+    /**
+     * Estimates how often the supplied key has been seen.
+     *
+     * @param aKey A key
+     * @return The key's estimated count
+     */
+    public long estimate(final Object aKey) {
+        final int hash = spread(aKey.hashCode());
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, myCounters.get(getIndex(hash, row)));
+        }
+
+        return estimate;
+    }
+
+    /**
+     * Gets the number of counters in each row.
+     *
+     * @return The sketch's width
+     */
+    public int getWidth() {
+        return myMask + 1;
+    }
+
+    /**
+     * Gets the number of additions after which the counters are halved.
+     *
+     * @return The sketch's sample size
+     */
+    public long getSampleSize() {
+        return mySampleSize;
+    }
+
+    /**
+     * Gets the number of times the counters have been halved, so that a caller can tell when estimates it has kept
+     * are out of date.
+     *
+     * @return The sketch's age
+     */
+    public int getAge() {
+        return myAge;
+    }
+
+    /**
+     * Halves every counter. Additions made while the counters are being halved may be halved or not; either way, the
+     * estimates stay approximately right.
+     */
+    private void age() {
+        for (int index = 0; index < myCounters.length(); index++) {
+            long count;
+
+            do {
+                count = myCounters.get(index);
+            } while (!myCounters.compareAndSet(index, count, count >>> 1));
+        }
+
+        myAdditions.addAndGet(-mySampleSize / 2);
+        myAge += 1; // Only one thread ages the sketch at a time
+    }
+
+    /**
+     * Gets the index of a hashed key's counter in the supplied row.
+     *
+     * @param aHash A key's spread hash
+     * @param aRow A row
+     * @return The index of the key's counter
+     */
+    private int getIndex(final int aHash, final int aRow) {
+        final int hash = aHash * SEEDS[aRow];
+        return aRow * (myMask + 1) + ((hash ^ (hash >>> 16)) & myMask);
+    }
+
+    /**
+     * Spreads the bits of a hash code, so that keys with similar hash codes (e.g., similar strings) aren't counted
+     * together.
+     *
+     * @param aHashCode A hash code
+     * @return The spread hash
+     */
+    private static int spread(final int aHashCode) {
+        final int hash = (aHashCode ^ (aHashCode >>> 16)) * 0x45D9_F3B;
+        return hash ^ (hash >>> 16);
+    }
+}
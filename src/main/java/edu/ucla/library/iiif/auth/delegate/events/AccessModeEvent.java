@@ -0,0 +1,78 @@
+
+package edu.ucla.library.iiif.auth.delegate.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for finding an item's access mode, including any time spent waiting for the access mode
+ * service's bulkhead.
+ */
+@Name("edu.ucla.library.iiif.auth.delegate.AccessMode")
+@Label("Access Mode Resolution")
+@Category(DecisionEvent.CATEGORY)
+@Description("Finding an item's access mode in the local policy, the cache, or Hauth")
+@StackTrace(false)
+public final class AccessModeEvent extends Event {
+
+    /**
+     * The source of an access mode that's in the local access policy.
+     */
+    public static final String POLICY = "policy";
+
+    /**
+     * The source of an access mode that's cached.
+     */
+    public static final String CACHE = "cache";
+
+    /**
+     * The source of an access mode that was looked up in Hauth.
+     */
+    public static final String HAUTH = "hauth";
+
+    /**
+     * The source of the fallback access mode, which is used when a lookup fails or is rejected.
+     */
+    public static final String FALLBACK = "fallback";
+
+    /**
+     * The item's identifier.
+     */
+    @Label("Identifier")
+    @Name("identifier")
+    private String myIdentifier;
+
+    /**
+     * The item's access mode.
+     */
+    @Label("Access Mode")
+    @Name("accessMode")
+    private String myAccessMode;
+
+    /**
+     * Where the access mode was found.
+     */
+    @Label("Source")
+    @Name("source")
+    private String mySource;
+
+    /**
+     * Commits the event, if it's enabled and over its threshold.
+     *
+     * @param aIdentifier The item's identifier
+     * @param aAccessMode The item's access mode
+     * @param aSource Where the access mode was found
+     */
+    public void commit(final String aIdentifier, final String aAccessMode, final String aSource) {
+        if (shouldCommit()) {
+            myIdentifier = aIdentifier;
+            myAccessMode = aAccessMode;
+            mySource = aSource;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+
+package edu.ucla.library.iiif.auth.delegate.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for checking a client's cookies at a token service, including any time spent waiting for
+ * the service's bulkhead.
+ */
+@Name("edu.ucla.library.iiif.auth.delegate.CookieValidation")
+@Label("Cookie Validation")
+@Category(DecisionEvent.CATEGORY)
+@Description("Exchanging a client's cookies at a token service for a token with a claim")
+@StackTrace(false)
+public final class CookieValidationEvent extends Event {
+
+    /**
+     * The token service's name.
+     */
+    @Label("Service")
+    @Name("service")
+    private String myService;
+
+    /**
+     * The requested item's identifier.
+     */
+    @Label("Identifier")
+    @Name("identifier")
+    private String myIdentifier;
+
+    /**
+     * Whether the cookies proved that the client has the claim.
+     */
+    @Label("Allowed")
+    @Name("allowed")
+    private boolean isAllowed;
+
+    /**
+     * The HTTP status of the service's response, or zero if the service wasn't called or didn't respond.
+     */
+    @Label("Upstream Status")
+    @Name("upstreamStatus")
+    @SuppressWarnings("PMD.SingularField") // Flight Recorder reads the field when the event is committed
+    private int myUpstreamStatus;
+
+    /**
+     * Sets the HTTP status of the service's response.
+     *
+     * @param aUpstreamStatus An HTTP status
+     */
+    public void setUpstreamStatus(final int aUpstreamStatus) {
+        myUpstreamStatus = aUpstreamStatus;
+    }
+
+    /**
+     * Commits the event, if it's enabled and over its threshold.
+     *
+     * @param aService The token service's name
+     * @param aIdentifier The requested item's identifier
+     * @param aAllowed Whether the cookies proved that the client has the claim
+     */
+    public void commit(final String aService, final String aIdentifier, final boolean aAllowed) {
+        if (shouldCommit()) {
+            myService = aService;
+            myIdentifier = aIdentifier;
+            isAllowed = aAllowed;
+            commit();
+        }
+    }
+}
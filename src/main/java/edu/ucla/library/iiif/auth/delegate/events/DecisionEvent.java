@@ -0,0 +1,92 @@
+
+package edu.ucla.library.iiif.auth.delegate.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for a whole authorization decision. The stages of the decision are recorded as their own
+ * events, on the same thread, within this event's duration.
+ */
+@Name(DecisionEvent.NAME)
+@Label("Authorization Decision")
+@Category(DecisionEvent.CATEGORY)
+@Description("The decision of whether a IIIF request is authorized")
+@StackTrace(false)
+public final class DecisionEvent extends Event {
+
+    /**
+     * The category of all the delegate's events.
+     */
+    public static final String CATEGORY = "IIIF Auth Delegate";
+
+    /**
+     * The event's name.
+     */
+    public static final String NAME = "edu.ucla.library.iiif.auth.delegate.Decision";
+
+    /**
+     * The branch taken by a request for a free derivative (e.g., a thumbnail).
+     */
+    public static final String THUMBNAIL = "thumbnail";
+
+    /**
+     * The branch taken by an image information request.
+     */
+    public static final String INFO = "info";
+
+    /**
+     * The branch taken by an image request.
+     */
+    public static final String IMAGE = "image";
+
+    /**
+     * The requested item's identifier.
+     */
+    @Label("Identifier")
+    @Name("identifier")
+    private String myIdentifier;
+
+    /**
+     * The requested item's access mode.
+     */
+    @Label("Access Mode")
+    @Name("accessMode")
+    private String myAccessMode;
+
+    /**
+     * The branch of the decision that was taken: a free derivative, or an information or image request.
+     */
+    @Label("Branch")
+    @Name("branch")
+    private String myBranch;
+
+    /**
+     * The HTTP status of the decision.
+     */
+    @Label("Status")
+    @Name("status")
+    private int myStatus;
+
+    /**
+     * Commits the event, if it's enabled and over its threshold.
+     *
+     * @param aIdentifier The requested item's identifier
+     * @param aAccessMode The requested item's access mode, or null if it wasn't looked up
+     * @param aBranch The branch of the decision that was taken
+     * @param aStatus The HTTP status of the decision
+     */
+    public void commit(final String aIdentifier, final String aAccessMode, final String aBranch, final int aStatus) {
+        if (shouldCommit()) {
+            myIdentifier = aIdentifier;
+            myAccessMode = aAccessMode;
+            myBranch = aBranch;
+            myStatus = aStatus;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+
+package edu.ucla.library.iiif.auth.delegate.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for a call to the Hauth access mode service.
+ */
+@Name("edu.ucla.library.iiif.auth.delegate.HauthLookup")
+@Label("Hauth Access Mode Lookup")
+@Category(DecisionEvent.CATEGORY)
+@Description("A call to the Hauth access mode service")
+@StackTrace(false)
+public final class HauthLookupEvent extends Event {
+
+    /**
+     * The item's identifier.
+     */
+    @Label("Identifier")
+    @Name("identifier")
+    private String myIdentifier;
+
+    /**
+     * The item's access mode, or null if the lookup failed.
+     */
+    @Label("Access Mode")
+    @Name("accessMode")
+    private String myAccessMode;
+
+    /**
+     * The HTTP status of the service's response, or zero if there wasn't one.
+     */
+    @Label("Upstream Status")
+    @Name("upstreamStatus")
+    @SuppressWarnings("PMD.SingularField") // Flight Recorder reads the field when the event is committed
+    private int myUpstreamStatus;
+
+    /**
+     * Sets the HTTP status of the service's response.
+     *
+     * @param aUpstreamStatus An HTTP status
+     */
+    public void setUpstreamStatus(final int aUpstreamStatus) {
+        myUpstreamStatus = aUpstreamStatus;
+    }
+
+    /**
+     * Commits the event, if it's enabled and over its threshold.
+     *
+     * @param aIdentifier The item's identifier
+     * @param aAccessMode The item's access mode, or null if the lookup failed
+     */
+    public void commit(final String aIdentifier, final String aAccessMode) {
+        if (shouldCommit()) {
+            myIdentifier = aIdentifier;
+            myAccessMode = aAccessMode;
+            commit();
+        }
+    }
+}
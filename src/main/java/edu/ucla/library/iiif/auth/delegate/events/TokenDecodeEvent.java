@@ -0,0 +1,48 @@
+
+package edu.ucla.library.iiif.auth.delegate.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for decoding an Authorization header that isn't already cached.
+ */
+@Name("edu.ucla.library.iiif.auth.delegate.TokenDecode")
+@Label("Bearer Token Decoding")
+@Category(DecisionEvent.CATEGORY)
+@Description("Decoding and reading an Authorization header's bearer token")
+@StackTrace(false)
+public final class TokenDecodeEvent extends Event {
+
+    /**
+     * Whether the header held a Hauth (campus network) token.
+     */
+    @Label("Hauth Token")
+    @Name("hauthToken")
+    private boolean hasHauthToken;
+
+    /**
+     * Whether the header held a Sinai token.
+     */
+    @Label("Sinai Token")
+    @Name("sinaiToken")
+    private boolean hasSinaiToken;
+
+    /**
+     * Commits the event, if it's enabled and over its threshold.
+     *
+     * @param aHauthToken Whether the header held a Hauth (campus network) token
+     * @param aSinaiToken Whether the header held a Sinai token
+     */
+    public void commit(final boolean aHauthToken, final boolean aSinaiToken) {
+        if (shouldCommit()) {
+            hasHauthToken = aHauthToken;
+            hasSinaiToken = aSinaiToken;
+            commit();
+        }
+    }
+}
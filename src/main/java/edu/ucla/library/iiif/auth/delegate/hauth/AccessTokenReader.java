@@ -0,0 +1,132 @@
+
+package edu.ucla.library.iiif.auth.delegate.hauth;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A streaming reader for the JSON access token responses returned by Hauth's token services.
+ * <p>
+ * The response body is read directly from its byte source, only the <code>accessToken</code> value is decoded, and
+ * only the requested claim is read from the decoded token; no intermediate strings or JSON trees are created.
+ *
+ * @see <a href="https://iiif.io/api/auth/1.0/#the-json-access-token-response">The JSON Access Token Response</a>
+ */
+public final class AccessTokenReader {
+
+    /**
+     * The JSON key for the access token in a token service response.
+     */
+    public static final String ACCESS_TOKEN_KEY = "accessToken";
+
+    /**
+     * A shared, thread-safe factory for the JSON parsers.
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * The Base64 variant used to encode access tokens; padding is optional, like with {@link java.util.Base64}.
+     */
+    private static final Base64Variant BASE64 = Base64Variants.MIME_NO_LINEFEEDS.withPaddingAllowed();
+
+    /**
+     * Creates a new access token reader.
+     */
+    private AccessTokenReader() {
+        // This is intentionally left empty
+    }
+
+    /**
+     * Reads a token service response and checks whether its access token asserts the supplied boolean claim.
+     *
+     * @param aResponseBody A token service response body
+     * @param aClaim The JSON key of a boolean claim in the access token (e.g., {@link HauthToken#CAMPUS_NETWORK_KEY})
+     * @return True if the response has an access token and the claim's value is true; else, false
+     * @throws IOException If the response body can't be read or isn't valid JSON
+     */
+    public static boolean hasClaim(final InputStream aResponseBody, final String aClaim) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(aResponseBody)) {
+            return hasClaim(parser, aClaim);
+        }
+    }
+
+    /**
+     * Reads a token service response and checks whether its access token asserts the supplied boolean claim.
+     *
+     * @param aResponseBody A token service response body
+     * @param aClaim The JSON key of a boolean claim in the access token (e.g., {@link HauthToken#CAMPUS_NETWORK_KEY})
+     * @return True if the response has an access token and the claim's value is true; else, false
+     * @throws IOException If the response body isn't valid JSON
+     */
+    public static boolean hasClaim(final ByteBuffer aResponseBody, final String aClaim) throws IOException {
+        final ByteBuffer buffer = aResponseBody.slice();
+        final JsonParser parser;
+
+        if (buffer.hasArray()) {
+            parser = JSON_FACTORY.createParser(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+        } else {
+            final byte[] bytes = new byte[buffer.remaining()];
+
+            buffer.get(bytes);
+            parser = JSON_FACTORY.createParser(bytes);
+        }
+
+        try (parser) {
+            return hasClaim(parser, aClaim);
+        }
+    }
+
+    /**
+     * Finds the access token in a token service response and checks the supplied claim.
+     *
+     * @param aParser A parser positioned before the start of a token service response
+     * @param aClaim The JSON key of a boolean claim in the access token
+     * @return True if the response has an access token and the claim's value is true; else, false
+     * @throws IOException If the response body isn't valid JSON
+     */
+    private static boolean hasClaim(final JsonParser aParser, final String aClaim) throws IOException {
+        if (findField(aParser, ACCESS_TOKEN_KEY) && aParser.currentToken() == JsonToken.VALUE_STRING) {
+            // Decodes the Base64 value straight from the parser's buffer
+            try (JsonParser tokenParser = JSON_FACTORY.createParser(aParser.getBinaryValue(BASE64))) {
+                return findField(tokenParser, aClaim) && tokenParser.getValueAsBoolean();
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Advances the parser to the value of the supplied top-level field, skipping over any other values.
+     *
+     * @param aParser A parser positioned before the start of a JSON object
+     * @param aFieldName The name of the top-level field to find
+     * @return True if the parser is positioned at the field's value; false if the field isn't present
+     * @throws IOException If the JSON can't be read or parsed
+     */
+    private static boolean findField(final JsonParser aParser, final String aFieldName) throws IOException {
+        if (aParser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+
+        while (aParser.nextToken() == JsonToken.FIELD_NAME) {
+            final boolean found = aFieldName.equals(aParser.getCurrentName());
+
+            aParser.nextToken();
+
+            if (found) {
+                return true;
+            }
+
+            aParser.skipChildren();
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,163 @@
+
+package edu.ucla.library.iiif.auth.delegate.hauth;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Optional;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+import edu.ucla.library.iiif.auth.delegate.MessageCodes;
+import edu.ucla.library.iiif.auth.delegate.events.TokenDecodeEvent;
+
+/**
+ * The parsed value of an Authorization request header, which may be read as either a {@link HauthToken} or a
+ * {@link HauthSinaiToken}. Instances may be cached and shared between requests, so the tokens they hold shouldn't be
+ * modified.
+ */
+public final class BearerToken {
+
+    /**
+     * A bearer token for a missing or unparseable Authorization header.
+     */
+    public static final BearerToken NONE = new BearerToken(null, null);
+
+    /**
+     * The bearer token logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(BearerToken.class, MessageCodes.BUNDLE);
+
+    /**
+     * A shared, thread-safe factory for the JSON parsers.
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * The regex pattern for a single whitespace character.
+     */
+    private static final String SINGLE_SPACE_PATTERN = "\\s";
+
+    /**
+     * A JSON key for the Hauth version.
+     */
+    private static final String HAUTH_VERSION_KEY = "version";
+
+    /**
+     * The header value read as a Hauth token.
+     */
+    private final HauthToken myToken;
+
+    /**
+     * The header value read as a Sinai token.
+     */
+    private final HauthSinaiToken mySinaiToken;
+
+    /**
+     * Creates a new bearer token.
+     *
+     * @param aToken The header value read as a Hauth token
+     * @param aSinaiToken The header value read as a Sinai token
+     */
+    private BearerToken(final HauthToken aToken, final HauthSinaiToken aSinaiToken) {
+        myToken = aToken;
+        mySinaiToken = aSinaiToken;
+    }
+
+    /**
+     * Parses the value of an Authorization header. The header is Base64-decoded and read only once, no matter which
+     * type of token is later requested.
+     *
+     * @param aAuthorizationHeader The value of an Authorization header
+     * @return The parsed bearer token, or {@link #NONE} if the header value isn't a valid bearer token
+     */
+    public static BearerToken parse(final String aAuthorizationHeader) {
+        final TokenDecodeEvent event = new TokenDecodeEvent();
+        event.begin();
+
+        final BearerToken token = decode(aAuthorizationHeader);
+
+        event.commit(token.myToken != null, token.mySinaiToken != null);
+        return token;
+    }
+
+    /**
+     * Decodes and reads the value of an Authorization header.
+     *
+     * @param aAuthorizationHeader The value of an Authorization header
+     * @return The decoded bearer token, or {@link #NONE} if the header value isn't a valid bearer token
+     */
+    private static BearerToken decode(final String aAuthorizationHeader) {
+        final String[] tokenParts = aAuthorizationHeader.split(SINGLE_SPACE_PATTERN);
+
+        if (tokenParts.length == 2 && HauthToken.TYPE.equalsIgnoreCase(tokenParts[0])) {
+            try {
+                return read(Base64.getDecoder().decode(tokenParts[1]));
+            } catch (final IllegalArgumentException | IOException details) {
+                LOGGER.trace(details.getMessage(), details);
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Gets the bearer token as a Hauth token.
+     *
+     * @return An optional Hauth authorization token
+     */
+    public Optional<HauthToken> getToken() {
+        return Optional.ofNullable(myToken);
+    }
+
+    /**
+     * Gets the bearer token as a Sinai token.
+     *
+     * @return An optional Sinai authorization token
+     */
+    public Optional<HauthSinaiToken> getSinaiToken() {
+        return Optional.ofNullable(mySinaiToken);
+    }
+
+    /**
+     * Reads a decoded token's JSON object in a single pass.
+     *
+     * @param aJsonObject A decoded token
+     * @return The bearer token
+     * @throws IOException If the decoded token isn't valid JSON
+     */
+    private static BearerToken read(final byte[] aJsonObject) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(aJsonObject)) {
+            boolean isCampusNetwork = false;
+            boolean isSinaiAffiliate = false;
+            String version = null;
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return NONE;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String key = parser.getCurrentName();
+
+                parser.nextToken();
+
+                if (HAUTH_VERSION_KEY.equals(key)) {
+                    version = parser.getValueAsString();
+                } else if (HauthToken.CAMPUS_NETWORK_KEY.equals(key)) {
+                    isCampusNetwork = parser.getValueAsBoolean();
+                } else if (HauthSinaiToken.SINAI_AFFILIATE_KEY.equals(key)) {
+                    isSinaiAffiliate = parser.getValueAsBoolean();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            return new BearerToken(new HauthToken(version, isCampusNetwork),
+                    new HauthSinaiToken(version, isSinaiAffiliate));
+        }
+    }
+}
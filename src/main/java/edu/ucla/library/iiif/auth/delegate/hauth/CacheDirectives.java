@@ -0,0 +1,267 @@
+
+package edu.ucla.library.iiif.auth.delegate.hauth;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The HTTP caching metadata of a Hauth response: the directives in its <code>Cache-Control</code> header that a cache
+ * shared by all of the delegate's users honors, and its <code>ETag</code> and <code>Last-Modified</code> validators.
+ * <p>
+ * <code>max-age</code> (or <code>s-maxage</code>, which takes precedence) sets how long the response is fresh;
+ * <code>no-cache</code> makes it stale at once, so it's revalidated before each use; <code>no-store</code> and
+ * <code>private</code> keep it from being cached; and <code>stale-if-error</code> sets how long, after it goes stale,
+ * it may still be used when Hauth can't be reached. Other directives, and directives with invalid values, are ignored.
+ *
+ * @see <a href="https://www.rfc-editor.org/rfc/rfc9111">RFC 9111: HTTP Caching</a>
+ */
+public final class CacheDirectives {
+
+    /**
+     * The caching metadata of a response without any.
+     */
+    public static final CacheDirectives NONE = new CacheDirectives(null, null, false, null, null);
+
+    /**
+     * The name of the header with a response's cache directives.
+     */
+    public static final String CACHE_CONTROL = "Cache-Control";
+
+    /**
+     * The name of the header with a response's entity tag.
+     */
+    public static final String ETAG = "ETag";
+
+    /**
+     * The name of the header with the time a response was last modified.
+     */
+    public static final String LAST_MODIFIED = "Last-Modified";
+
+    /**
+     * The name of the request header that makes a request conditional on an entity tag.
+     */
+    public static final String IF_NONE_MATCH = "If-None-Match";
+
+    /**
+     * The name of the request header that makes a request conditional on a modification time.
+     */
+    public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    /**
+     * The directive with the number of seconds a response is fresh.
+     */
+    private static final String MAX_AGE = "max-age";
+
+    /**
+     * The directive with the number of seconds a response is fresh in a shared cache.
+     */
+    private static final String S_MAXAGE = "s-maxage";
+
+    /**
+     * The directive with the number of seconds a stale response may be used if the origin can't be reached.
+     */
+    private static final String STALE_IF_ERROR = "stale-if-error";
+
+    /**
+     * The directive that makes a response stale as soon as it's received.
+     */
+    private static final String NO_CACHE = "no-cache";
+
+    /**
+     * The directive that keeps a response from being cached.
+     */
+    private static final String NO_STORE = "no-store";
+
+    /**
+     * The directive that keeps a response from being cached by a shared cache.
+     */
+    private static final String PRIVATE = "private";
+
+    /**
+     * The separator between a directive and its value.
+     */
+    private static final char EQUALS = '=';
+
+    /**
+     * The largest number of seconds a directive's value may be; larger values are counted as this.
+     */
+    private static final long MAX_SECONDS = Integer.MAX_VALUE;
+
+    /**
+     * How long the response is fresh, or null if the response doesn't say.
+     */
+    private final Duration myMaxAge;
+
+    /**
+     * How long, after the response goes stale, it may be used if the origin can't be reached, or null if it may not.
+     */
+    private final Duration myStaleIfError;
+
+    /**
+     * Whether the response may not be cached.
+     */
+    private final boolean hasNoStore;
+
+    /**
+     * The response's entity tag, or null if it doesn't have one.
+     */
+    private final String myETag;
+
+    /**
+     * The time the response was last modified, as an HTTP date, or null if it doesn't say.
+     */
+    private final String myLastModified;
+
+    /**
+     * Creates new caching metadata.
+     *
+     * @param aMaxAge How long the response is fresh, or null
+     * @param aStaleIfError How long a stale response may be used if the origin can't be reached, or null
+     * @param aNoStore Whether the response may not be cached
+     * @param aETag The response's entity tag, or null
+     * @param aLastModified The time the response was last modified, or null
+     */
+    private CacheDirectives(final Duration aMaxAge, final Duration aStaleIfError, final boolean aNoStore,
+            final String aETag, final String aLastModified) {
+        myMaxAge = aMaxAge;
+        myStaleIfError = aStaleIfError;
+        hasNoStore = aNoStore;
+        myETag = aETag;
+        myLastModified = aLastModified;
+    }
+
+    /**
+     * Reads the caching metadata from a response's headers.
+     *
+     * @param aHeaders A response's headers
+     * @return The response's caching metadata
+     */
+    public static CacheDirectives from(final HttpHeaders aHeaders) {
+        final Map<String, Optional<Duration>> directives = parseDirectives(aHeaders);
+        final Optional<Duration> maxAge = directives.containsKey(NO_CACHE) ? Optional.of(Duration.ZERO)
+                : getValue(directives, S_MAXAGE).or(() -> getValue(directives, MAX_AGE));
+
+        return new CacheDirectives(maxAge.orElse(null), getValue(directives, STALE_IF_ERROR).orElse(null),
+                directives.containsKey(NO_STORE) || directives.containsKey(PRIVATE),
+                aHeaders.firstValue(ETAG).orElse(null), aHeaders.firstValue(LAST_MODIFIED).orElse(null));
+    }
+
+    /**
+     * Gets the caching metadata of a stored response that has been revalidated by a response (i.e., a 304 Not
+     * Modified) with this metadata. The stored response's metadata is replaced by this metadata, except that
+     * validators this response doesn't send are kept.
+     *
+     * @param aStored The stored response's caching metadata
+     * @return The revalidated response's caching metadata
+     */
+    public CacheDirectives revalidate(final CacheDirectives aStored) {
+        return new CacheDirectives(myMaxAge, myStaleIfError, hasNoStore, myETag != null ? myETag : aStored.myETag,
+                myLastModified != null ? myLastModified : aStored.myLastModified);
+    }
+
+    /**
+     * Gets how long the response is fresh.
+     *
+     * @return How long the response is fresh, if it says
+     */
+    public Optional<Duration> getMaxAge() {
+        return Optional.ofNullable(myMaxAge);
+    }
+
+    /**
+     * Gets how long, after the response goes stale, it may be used if the origin can't be reached.
+     *
+     * @return How long a stale response may be used, if it may be
+     */
+    public Optional<Duration> getStaleIfError() {
+        return Optional.ofNullable(myStaleIfError);
+    }
+
+    /**
+     * Checks whether the response may be cached.
+     *
+     * @return True if the response may not be cached; else, false
+     */
+    public boolean isNoStore() {
+        return hasNoStore;
+    }
+
+    /**
+     * Gets the response's entity tag.
+     *
+     * @return The response's entity tag, if it has one
+     */
+    public Optional<String> getETag() {
+        return Optional.ofNullable(myETag);
+    }
+
+    /**
+     * Gets the time the response was last modified.
+     *
+     * @return The time the response was last modified, as an HTTP date, if it says
+     */
+    public Optional<String> getLastModified() {
+        return Optional.ofNullable(myLastModified);
+    }
+
+    /**
+     * Parses the directives in a response's <code>Cache-Control</code> headers. If a directive is repeated, its last
+     * valid value is kept.
+     *
+     * @param aHeaders A response's headers
+     * @return The response's directives, by lowercase name, with their numbers of seconds (if they have valid ones)
+     */
+    private static Map<String, Optional<Duration>> parseDirectives(final HttpHeaders aHeaders) {
+        final Map<String, Optional<Duration>> directives = new HashMap<>();
+
+        for (final String header : aHeaders.allValues(CACHE_CONTROL)) {
+            for (final String directive : header.split(",")) {
+                final int separatorIndex = directive.indexOf(EQUALS);
+                final String name = (separatorIndex == -1 ? directive : directive.substring(0, separatorIndex))
+                        .trim().toLowerCase(Locale.ROOT);
+                final Optional<Duration> value = separatorIndex == -1 ? Optional.empty()
+                        : parseSeconds(directive.substring(separatorIndex + 1));
+
+                directives.merge(name, value, (previous, next) -> next.or(() -> previous));
+            }
+        }
+
+        return directives;
+    }
+
+    /**
+     * Gets the number of seconds of a parsed directive.
+     *
+     * @param aDirectives A response's parsed directives
+     * @param aName The name of a directive
+     * @return The directive's number of seconds, if the response has the directive with a valid value
+     */
+    private static Optional<Duration> getValue(final Map<String, Optional<Duration>> aDirectives,
+            final String aName) {
+        return aDirectives.getOrDefault(aName, Optional.empty());
+    }
+
+    /**
+     * Parses a directive's number of seconds, which may be quoted.
+     *
+     * @param aValue A directive's value
+     * @return The number of seconds, or an empty optional if the value isn't a valid number of seconds
+     */
+    private static Optional<Duration> parseSeconds(final String aValue) {
+        final String value = aValue.trim().replace("\"", "");
+
+        if (value.isEmpty() || !value.chars().allMatch(Character::isDigit)) {
+            return Optional.empty();
+        }
+
+        // A value too long to parse is larger than the largest allowed value
+        final long seconds = value.length() > String.valueOf(MAX_SECONDS).length() ? MAX_SECONDS
+                : Math.min(MAX_SECONDS, Long.parseLong(value));
+
+        return Optional.of(Duration.ofSeconds(seconds));
+    }
+}
@@ -0,0 +1,151 @@
+
+package edu.ucla.library.iiif.auth.delegate.hauth;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * An access mode returned by Hauth, with the caching metadata of the response it came in and the time it was
+ * received, so that a cache can tell whether it's still fresh and revalidate it when it isn't. If the item's Hauth
+ * record also says where its image is stored, that's kept with the access mode, so one lookup serves both.
+ */
+public final class HauthAccessMode {
+
+    /**
+     * The item's access mode.
+     */
+    private final AccessMode myAccessMode;
+
+    /**
+     * Where the item's image is stored, or null if its record doesn't say.
+     */
+    private final ItemSource mySource;
+
+    /**
+     * The caching metadata of the response the access mode came in.
+     */
+    private final CacheDirectives myDirectives;
+
+    /**
+     * The time, in nanoseconds, that the response was received or last revalidated.
+     */
+    private final long myResponseTime;
+
+    /**
+     * Creates a new access mode returned by Hauth, with where the item's image is stored.
+     *
+     * @param aAccessMode An item's access mode
+     * @param aSource Where the item's image is stored, or null if its record doesn't say
+     * @param aDirectives The caching metadata of the response the access mode came in
+     * @param aResponseTime The time, in nanoseconds, that the response was received
+     */
+    public HauthAccessMode(final AccessMode aAccessMode, final ItemSource aSource, final CacheDirectives aDirectives,
+            final long aResponseTime) {
+        myAccessMode = aAccessMode;
+        mySource = aSource;
+        myDirectives = aDirectives;
+        myResponseTime = aResponseTime;
+    }
+
+    /**
+     * Creates a new access mode returned by Hauth.
+     *
+     * @param aAccessMode An item's access mode
+     * @param aDirectives The caching metadata of the response the access mode came in
+     * @param aResponseTime The time, in nanoseconds, that the response was received
+     */
+    public HauthAccessMode(final AccessMode aAccessMode, final CacheDirectives aDirectives, final long aResponseTime) {
+        this(aAccessMode, null, aDirectives, aResponseTime);
+    }
+
+    /**
+     * Creates a new access mode that was received just now, in a response without any caching metadata.
+     *
+     * @param aAccessMode An item's access mode
+     */
+    public HauthAccessMode(final AccessMode aAccessMode) {
+        this(aAccessMode, CacheDirectives.NONE, System.nanoTime());
+    }
+
+    /**
+     * Gets the item's access mode.
+     *
+     * @return The item's access mode
+     */
+    public AccessMode getAccessMode() {
+        return myAccessMode;
+    }
+
+    /**
+     * Gets where the item's image is stored.
+     *
+     * @return Where the item's image is stored, if its record says
+     */
+    public Optional<ItemSource> getSource() {
+        return Optional.ofNullable(mySource);
+    }
+
+    /**
+     * Gets the caching metadata of the response the access mode came in.
+     *
+     * @return The response's caching metadata
+     */
+    public CacheDirectives getDirectives() {
+        return myDirectives;
+    }
+
+    /**
+     * Gets how long the access mode is fresh: the response's maximum age or, if it doesn't have one, the supplied
+     * default.
+     *
+     * @param aDefault How long an access mode is fresh if its response doesn't say
+     * @return How long the access mode is fresh
+     */
+    public Duration getFreshness(final Duration aDefault) {
+        return myDirectives.getMaxAge().orElse(aDefault);
+    }
+
+    /**
+     * Gets the number of nanoseconds since the response was received or last revalidated.
+     *
+     * @param aNow The current time, in nanoseconds
+     * @return The access mode's age, in nanoseconds
+     */
+    public long getAge(final long aNow) {
+        return aNow - myResponseTime;
+    }
+
+    /**
+     * Checks whether the access mode is still fresh, so it can be used without asking Hauth.
+     *
+     * @param aNow The current time, in nanoseconds
+     * @param aDefault How long an access mode is fresh if its response doesn't say
+     * @return True if the access mode is fresh; else, false
+     */
+    public boolean isFresh(final long aNow, final Duration aDefault) {
+        return getAge(aNow) < getFreshness(aDefault).toNanos();
+    }
+
+    /**
+     * Checks whether the access mode, fresh or not, may be used because Hauth can't be reached.
+     *
+     * @param aNow The current time, in nanoseconds
+     * @param aDefault How long an access mode is fresh if its response doesn't say
+     * @return True if the access mode may be used when Hauth can't be reached; else, false
+     */
+    public boolean isUsableOnError(final long aNow, final Duration aDefault) {
+        return getAge(aNow) < getFreshness(aDefault).plus(myDirectives.getStaleIfError().orElse(Duration.ZERO))
+                .toNanos();
+    }
+
+    /**
+     * Gets this access mode as revalidated by a 304 Not Modified response with the supplied caching metadata.
+     *
+     * @param aDirectives The caching metadata of the 304 response
+     * @param aResponseTime The time, in nanoseconds, that the 304 response was received
+     * @return The revalidated access mode
+     */
+    public HauthAccessMode revalidate(final CacheDirectives aDirectives, final long aResponseTime) {
+        return new HauthAccessMode(myAccessMode, mySource, aDirectives.revalidate(myDirectives), aResponseTime);
+    }
+}
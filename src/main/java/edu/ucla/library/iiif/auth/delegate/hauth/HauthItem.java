@@ -8,19 +8,23 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 
 import org.apache.http.client.utils.URIBuilder;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import info.freelibrary.util.Logger;
 import info.freelibrary.util.LoggerFactory;
 
+import edu.ucla.library.iiif.auth.delegate.Config;
 import edu.ucla.library.iiif.auth.delegate.ConfigException;
 import edu.ucla.library.iiif.auth.delegate.MessageCodes;
+import edu.ucla.library.iiif.auth.delegate.events.HauthLookupEvent;
 
 /**
  * A client for interacting with the Hauth service.
@@ -37,16 +41,27 @@ public class HauthItem {
      */
     private static final String ACCESS_MODE_KEY = "accessMode";
 
+    /**
+     * The JSON key for where an item's image is stored.
+     */
+    private static final String SOURCE_KEY = "source";
+
     /**
      * An internal HTTP client.
      */
-    private static final HttpClient HTTP = HttpClient.newHttpClient();
+    private static final HttpClient HTTP =
+            HttpClient.newBuilder().connectTimeout(Duration.ofMillis(Config.DEFAULT_UPSTREAM_TIMEOUT)).build();
 
     /**
      * An object mapper for reading JSON.
      */
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    /**
+     * The HTTP client used to look up the item's access mode.
+     */
+    private final HttpClient myHttpClient;
+
     /**
      * The access mode URI of the Hauth service.
      */
@@ -57,6 +72,11 @@ public class HauthItem {
      */
     private final String myID;
 
+    /**
+     * The amount of time a lookup may take.
+     */
+    private final Duration myTimeout;
+
     /**
      * Creates a new Hauth client.
      *
@@ -64,8 +84,34 @@ public class HauthItem {
      * @param aID The ID of the item
      */
     public HauthItem(final URI aService, final String aID) {
+        this(HTTP, aService, aID);
+    }
+
+    /**
+     * Creates a new Hauth client that uses the supplied HTTP client.
+     *
+     * @param aHttpClient An HTTP client
+     * @param aService The URI of the authorization access mode service
+     * @param aID The ID of the item
+     */
+    public HauthItem(final HttpClient aHttpClient, final URI aService, final String aID) {
+        this(aHttpClient, aService, aID, Duration.ofMillis(Config.DEFAULT_UPSTREAM_TIMEOUT));
+    }
+
+    /**
+     * Creates a new Hauth client that uses the supplied HTTP client, and whose lookups fail if they take longer than
+     * the supplied amount of time.
+     *
+     * @param aHttpClient An HTTP client
+     * @param aService The URI of the authorization access mode service
+     * @param aID The ID of the item
+     * @param aTimeout The amount of time a lookup may take
+     */
+    public HauthItem(final HttpClient aHttpClient, final URI aService, final String aID, final Duration aTimeout) {
+        myHttpClient = aHttpClient;
         myAccessModeService = aService;
         myID = aID;
+        myTimeout = aTimeout;
     }
 
     /**
@@ -83,23 +129,80 @@ public class HauthItem {
      * @return Whether access to the object with the supplied ID is restricted
      */
     public AccessMode getAccessMode() {
-        final HttpRequest request = HttpRequest.newBuilder().uri(getURI()).build();
+        return findAccessMode().orElse(AccessMode.ALL_OR_NOTHING); // We treat authorization lookup errors as restricted
+    }
+
+    /**
+     * Looks up the access mode of the object with the supplied ID, without deciding what a failed lookup means.
+     *
+     * @return The object's access mode, or an empty optional if the lookup failed
+     */
+    public Optional<AccessMode> findAccessMode() {
+        return lookUp(Optional.empty()).map(HauthAccessMode::getAccessMode);
+    }
+
+    /**
+     * Looks up the access mode of the object with the supplied ID, with the caching metadata of Hauth's response. If
+     * a previously returned access mode is supplied, the lookup is conditional on its validators, so that if it hasn't
+     * changed, Hauth can confirm it without sending it again.
+     *
+     * @param aCached A previously returned access mode of the object, if there is one
+     * @return The object's access mode, or an empty optional if the lookup failed
+     */
+    public Optional<HauthAccessMode> lookUp(final Optional<HauthAccessMode> aCached) {
+        final HauthLookupEvent event = new HauthLookupEvent();
+        event.begin();
+
+        final Optional<HauthAccessMode> accessMode = lookUp(aCached, event);
+
+        event.commit(myID, accessMode.map(mode -> mode.getAccessMode().name()).orElse(null));
+        return accessMode;
+    }
+
+    /**
+     * Looks up the access mode of the object with the supplied ID, noting the service's response status in the
+     * supplied Flight Recorder event.
+     *
+     * @param aCached A previously returned access mode of the object, if there is one
+     * @param aEvent The lookup's Flight Recorder event
+     * @return The object's access mode, or an empty optional if the lookup failed
+     */
+    private Optional<HauthAccessMode> lookUp(final Optional<HauthAccessMode> aCached, final HauthLookupEvent aEvent) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder().uri(getURI()).timeout(myTimeout);
+
+        aCached.flatMap(cached -> cached.getDirectives().getETag())
+                .ifPresent(etag -> builder.header(CacheDirectives.IF_NONE_MATCH, etag));
+        aCached.flatMap(cached -> cached.getDirectives().getLastModified())
+                .ifPresent(time -> builder.header(CacheDirectives.IF_MODIFIED_SINCE, time));
+
+        final HttpRequest request = builder.build();
 
         LOGGER.debug(MessageCodes.CAD_005, request.method(), request.uri());
 
         try {
-            final HttpResponse<String> response = HTTP.send(request, BodyHandlers.ofString());
+            final HttpResponse<String> response = myHttpClient.send(request, BodyHandlers.ofString());
+            final CacheDirectives directives = CacheDirectives.from(response.headers());
+            final long responseTime = System.nanoTime();
+
+            aEvent.setUpstreamStatus(response.statusCode());
 
             switch (response.statusCode()) {
                 case 200:
-                    // Throws NoSuchElementException if missing
-                    return AccessMode.valueOf(
-                            Optional.of(MAPPER.readTree(response.body()).get(ACCESS_MODE_KEY)).orElseThrow().asText());
+                    return Optional.of(readRecord(response.body(), directives, responseTime));
+                case 304:
+                    // Only a conditional lookup, which is only made with a previous access mode, should get this
+                    if (aCached.isPresent()) {
+                        return Optional.of(aCached.get().revalidate(directives, responseTime));
+                    }
+
+                    LOGGER.error(MessageCodes.CAD_004, myID, response.statusCode(), response.body());
+                    break;
                 case 404:
                     LOGGER.debug(MessageCodes.CAD_003, myID);
                     // Q: Do we want to limit access to info.json if auth service is configured and an item isn't found
                     // in it?
-                    return AccessMode.OPEN; // The default for unknowns is that access is not restricted
+                    // The default for unknowns is that access is not restricted
+                    return Optional.of(new HauthAccessMode(AccessMode.OPEN, directives, responseTime));
                 default:
                     LOGGER.error(MessageCodes.CAD_004, myID, response.statusCode(), response.body());
                     break;
@@ -108,7 +211,28 @@ public class HauthItem {
             LOGGER.error(details.getMessage(), details);
         }
 
-        return AccessMode.ALL_OR_NOTHING; // We treat authorization lookup errors as restricted
+        return Optional.empty();
+    }
+
+    /**
+     * Reads an item's Hauth record: its access mode and, if the record says, where its image is stored.
+     *
+     * @param aBody The body of a Hauth access mode response
+     * @param aDirectives The response's caching metadata
+     * @param aResponseTime The time, in nanoseconds, that the response was received
+     * @return The item's access mode
+     * @throws IOException If the body isn't valid JSON
+     * @throws NoSuchElementException If the record doesn't have an access mode
+     */
+    private static HauthAccessMode readRecord(final String aBody, final CacheDirectives aDirectives,
+            final long aResponseTime) throws IOException {
+        final JsonNode record = MAPPER.readTree(aBody);
+        // Throws NoSuchElementException if missing
+        final AccessMode accessMode =
+                AccessMode.valueOf(Optional.of(record.get(ACCESS_MODE_KEY)).orElseThrow().asText());
+
+        return new HauthAccessMode(accessMode, ItemSource.from(record.get(SOURCE_KEY)).orElse(null), aDirectives,
+                aResponseTime);
     }
 
     /**
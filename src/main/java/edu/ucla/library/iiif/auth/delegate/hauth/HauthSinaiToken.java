@@ -25,14 +25,14 @@ public class HauthSinaiToken {
     public static final String TYPE = "Bearer";
 
     /**
-     * A JSON key for the Hauth version.
+     * A JSON key for the Sinai affiliate information.
      */
-    private static final String HAUTH_VERSION_KEY = "version";
+    public static final String SINAI_AFFILIATE_KEY = "sinaiAffiliate";
 
     /**
-     * A JSON key for the Sinai affiliate information.
+     * A JSON key for the Hauth version.
      */
-    private static final String SINAI_AFFILIATE_KEY = "sinaiAffiliate";
+    private static final String HAUTH_VERSION_KEY = "version";
 
     /**
      * The version of Hauth that sent this token.
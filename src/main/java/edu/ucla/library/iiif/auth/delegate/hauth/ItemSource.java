@@ -0,0 +1,143 @@
+
+package edu.ucla.library.iiif.auth.delegate.hauth;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Where an item's image is stored, as given by the <code>source</code> object of its Hauth record, e.g.:
+ * <p>
+ * <code>{"type": "FilesystemSource", "pathname": "/imageroot/z1.jp2"}</code> or
+ * <code>{"type": "S3Source", "bucket": "images", "key": "z1.jp2"}</code>
+ * <p>
+ * The type is the name of the Cantaloupe source that reads the image; the other properties are the ones that source
+ * needs to find it.
+ */
+public final class ItemSource {
+
+    /**
+     * The name of the Cantaloupe source that reads images from the file system.
+     */
+    public static final String FILESYSTEM_SOURCE = "FilesystemSource";
+
+    /**
+     * The name of the Cantaloupe source that reads images from S3.
+     */
+    public static final String S3_SOURCE = "S3Source";
+
+    /**
+     * The key of the source's type.
+     */
+    private static final String TYPE = "type";
+
+    /**
+     * The key of the image's pathname, for the file system source.
+     */
+    private static final String PATHNAME = "pathname";
+
+    /**
+     * The key of the image's bucket, for the S3 source.
+     */
+    private static final String BUCKET = "bucket";
+
+    /**
+     * The key of the image's object key, for the S3 source.
+     */
+    private static final String KEY = "key";
+
+    /**
+     * The name of the Cantaloupe source that reads the image.
+     */
+    private final String myType;
+
+    /**
+     * The image's pathname, or null if it isn't on the file system.
+     */
+    private final String myPathname;
+
+    /**
+     * The image's bucket, or null if it isn't in S3.
+     */
+    private final String myBucket;
+
+    /**
+     * The image's object key, or null if it isn't in S3.
+     */
+    private final String myKey;
+
+    /**
+     * Creates a new item source.
+     *
+     * @param aType The name of the Cantaloupe source that reads the image
+     * @param aPathname The image's pathname, or null
+     * @param aBucket The image's bucket, or null
+     * @param aKey The image's object key, or null
+     */
+    private ItemSource(final String aType, final String aPathname, final String aBucket, final String aKey) {
+        myType = aType;
+        myPathname = aPathname;
+        myBucket = aBucket;
+        myKey = aKey;
+    }
+
+    /**
+     * Reads an item's source from the <code>source</code> object of its Hauth record.
+     *
+     * @param aSource The <code>source</code> object of a Hauth record, or null if the record doesn't have one
+     * @return The item's source, or an empty optional if the record doesn't have one with a type
+     */
+    public static Optional<ItemSource> from(final JsonNode aSource) {
+        if (aSource == null || !aSource.path(TYPE).isTextual()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new ItemSource(aSource.get(TYPE).asText(), getText(aSource, PATHNAME),
+                getText(aSource, BUCKET), getText(aSource, KEY)));
+    }
+
+    /**
+     * Gets the name of the Cantaloupe source that reads the image.
+     *
+     * @return The source's name
+     */
+    public String getType() {
+        return myType;
+    }
+
+    /**
+     * Gets the image's pathname, for the file system source.
+     *
+     * @return The image's pathname, if it's on the file system
+     */
+    public Optional<String> getPathname() {
+        return FILESYSTEM_SOURCE.equals(myType) ? Optional.ofNullable(myPathname) : Optional.empty();
+    }
+
+    /**
+     * Gets the image's bucket and object key, in the form Cantaloupe's S3 source expects.
+     *
+     * @return The image's bucket and key, or an empty map if it isn't in S3
+     */
+    public Map<String, String> getS3ObjectInfo() {
+        if (!S3_SOURCE.equals(myType) || myBucket == null || myKey == null) {
+            return Collections.emptyMap();
+        }
+
+        return Map.of(BUCKET, myBucket, KEY, myKey);
+    }
+
+    /**
+     * Gets the text of one of a source object's properties.
+     *
+     * @param aSource A source object
+     * @param aName The name of a property
+     * @return The property's text, or null if it doesn't have a textual value
+     */
+    private static String getText(final JsonNode aSource, final String aName) {
+        final JsonNode value = aSource.get(aName);
+        return value != null && value.isTextual() ? value.asText() : null;
+    }
+}
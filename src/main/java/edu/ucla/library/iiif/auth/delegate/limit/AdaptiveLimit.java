@@ -0,0 +1,217 @@
+
+package edu.ucla.library.iiif.auth.delegate.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrency limit that adapts to an upstream service's latency, using additive increase and multiplicative
+ * decrease (AIMD). While calls finish close to the service's baseline latency, and the limit is being used, it grows
+ * by one; when a call fails, or takes much longer than the baseline, it shrinks by a fixed ratio. The result stays
+ * near the most concurrency the service can handle before it starts to queue.
+ * <p>
+ * The baseline is the lowest latency seen in a window of calls. It's reset at the end of each window, so it follows
+ * the service as its capacity changes (e.g., after a deployment).
+ */
+public final class AdaptiveLimit {
+
+    /**
+     * The smallest the limit may get.
+     */
+    private static final int MIN_LIMIT = 1;
+
+    /**
+     * The ratio the limit is multiplied by when a call is too slow or fails.
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * How many times the baseline latency a call may take before it counts as too slow.
+     */
+    private static final double TOLERANCE = 2.0;
+
+    /**
+     * The number of calls in a baseline latency window.
+     */
+    private static final int WINDOW_SIZE = 1_000;
+
+    /**
+     * The largest the limit may get.
+     */
+    private final int myMaxLimit;
+
+    /**
+     * The number of calls that are being made.
+     */
+    private final AtomicInteger myInFlight = new AtomicInteger();
+
+    /**
+     * The number of calls that have been rejected because the limit was reached.
+     */
+    private final LongAdder myRejections = new LongAdder();
+
+    /**
+     * The current limit; it's fractional so that repeated backoffs from a small limit are still felt. It's only
+     * changed while holding this limit's lock, but it's volatile so that {@link #tryAcquire()} can read it without
+     * taking the lock that finishing calls contend for.
+     */
+    private volatile double myLimit;
+
+    /**
+     * The baseline latency, in nanoseconds, or zero if no call has finished yet.
+     */
+    private long myBaseline;
+
+    /**
+     * The lowest latency, in nanoseconds, seen in the current window.
+     */
+    private long myWindowMin = Long.MAX_VALUE;
+
+    /**
+     * The number of calls that have finished in the current window.
+     */
+    private int myWindowCount;
+
+    /**
+     * Creates a new adaptive limit, which starts at its maximum.
+     *
+     * @param aMaxLimit The largest the limit may get
+     * @throws IllegalArgumentException If the maximum limit is less than one
+     */
+    public AdaptiveLimit(final int aMaxLimit) {
+        if (aMaxLimit < MIN_LIMIT) {
+            throw new IllegalArgumentException(Integer.toString(aMaxLimit));
+        }
+
+        myMaxLimit = aMaxLimit;
+        myLimit = aMaxLimit;
+    }
+
+    /**
+     * Tries to start a call under the limit. A call that's started must be finished with
+     * {@link #finish(long, boolean)}, or released with {@link #release()} if it was never made.
+     *
+     * @return True if the call may be made; false if the limit has been reached
+     */
+    public boolean tryAcquire() {
+        final int limit = getLimit();
+
+        while (true) {
+            final int inFlight = myInFlight.get();
+
+            if (inFlight >= limit) {
+                myRejections.increment();
+                return false;
+            }
+
+            if (myInFlight.compareAndSet(inFlight, inFlight + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a call that was started but never made, without adjusting the limit.
+     */
+    public void release() {
+        myInFlight.decrementAndGet();
+    }
+
+    /**
+     * Finishes a call, adjusting the limit according to how long it took and whether it succeeded.
+     *
+     * @param aLatency The number of nanoseconds the call took
+     * @param aSucceeded Whether the call succeeded
+     */
+    public void finish(final long aLatency, final boolean aSucceeded) {
+        final int inFlight = myInFlight.getAndDecrement();
+
+        synchronized (this) {
+            if (aSucceeded) {
+                updateBaseline(aLatency);
+            }
+
+            if (!aSucceeded || aLatency > myBaseline * TOLERANCE) {
+                myLimit = Math.max(MIN_LIMIT, myLimit * BACKOFF_RATIO);
+            } else if (inFlight * 2 >= myLimit) {
+                // Only grow the limit when it's actually being used
+                myLimit = Math.min(myMaxLimit, myLimit + 1);
+            }
+        }
+    }
+
+    /**
+     * Resets the limit to its maximum and forgets the baseline latency, e.g. after an upstream service has recovered
+     * from an incident that backed the limit off.
+     */
+    public synchronized void reset() {
+        myLimit = myMaxLimit;
+        myBaseline = 0;
+        myWindowMin = Long.MAX_VALUE;
+        myWindowCount = 0;
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return The current limit
+     */
+    public int getLimit() {
+        return (int) myLimit;
+    }
+
+    /**
+     * Gets the largest the limit may get.
+     *
+     * @return The largest the limit may get
+     */
+    public int getMaxLimit() {
+        return myMaxLimit;
+    }
+
+    /**
+     * Gets the number of calls that are being made.
+     *
+     * @return The number of calls that are being made
+     */
+    public int getInFlight() {
+        return myInFlight.get();
+    }
+
+    /**
+     * Gets the number of calls that have been rejected because the limit was reached.
+     *
+     * @return The number of rejected calls
+     */
+    public long getRejections() {
+        return myRejections.sum();
+    }
+
+    /**
+     * Gets the baseline latency.
+     *
+     * @return The baseline latency in nanoseconds, or zero if no call has succeeded yet
+     */
+    public synchronized long getBaseline() {
+        return myBaseline;
+    }
+
+    /**
+     * Updates the baseline latency with a successful call's latency. The caller must hold this limit's lock.
+     *
+     * @param aLatency The number of nanoseconds a successful call took
+     */
+    private void updateBaseline(final long aLatency) {
+        myWindowMin = Math.min(myWindowMin, aLatency);
+
+        if (myBaseline == 0 || aLatency < myBaseline) {
+            myBaseline = aLatency;
+        }
+
+        if (++myWindowCount >= WINDOW_SIZE) {
+            myBaseline = myWindowMin;
+            myWindowMin = Long.MAX_VALUE;
+            myWindowCount = 0;
+        }
+    }
+}
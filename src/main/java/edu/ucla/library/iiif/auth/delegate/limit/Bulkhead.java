@@ -0,0 +1,311 @@
+
+package edu.ucla.library.iiif.auth.delegate.limit;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A limit on the number of calls that may be made to an upstream service at once, so that a slow service can only tie
+ * up a bounded number of Cantaloupe's threads. Calls over the limit wait in a bounded queue, for a bounded amount of
+ * time; when the queue is full, or the wait times out, the call is rejected and the caller falls back to a default
+ * decision instead.
+ * <p>
+ * A bulkhead can also have an {@link AdaptiveLimit}, which sheds calls below the bulkhead's maximum concurrency when
+ * the service's latency shows that it's already doing as much as it can.
+ * <p>
+ * Bulkheads are shared by the whole process, one per upstream service, so a configuration reload that doesn't change
+ * a bulkhead's limits keeps the calls that are already in flight counted against it.
+ */
+public final class Bulkhead {
+
+    /**
+     * The bulkheads that are shared by the whole process, by name.
+     */
+    private static final Map<String, Bulkhead> SHARED = new ConcurrentHashMap<>();
+
+    /**
+     * The bulkhead's name.
+     */
+    private final String myName;
+
+    /**
+     * The maximum number of calls that may be made at once.
+     */
+    private final int myMaxConcurrent;
+
+    /**
+     * The maximum number of calls that may wait for a permit.
+     */
+    private final int myMaxQueued;
+
+    /**
+     * The maximum amount of time a call may wait for a permit.
+     */
+    private final Duration myMaxWait;
+
+    /**
+     * The permits of the calls that are being made.
+     */
+    private final Semaphore myPermits;
+
+    /**
+     * The number of calls that are waiting for a permit.
+     */
+    private final AtomicInteger myQueued = new AtomicInteger();
+
+    /**
+     * The number of calls that have been rejected because the queue was full or the wait timed out.
+     */
+    private final LongAdder myRejections = new LongAdder();
+
+    /**
+     * Whether calls are limited by the adaptive limit.
+     */
+    private final boolean hasAdaptiveLimit;
+
+    /**
+     * The adaptive limit, which is only used if the bulkhead is adaptive.
+     */
+    private final AdaptiveLimit myAdaptiveLimit;
+
+    /**
+     * Creates a new bulkhead with a fixed limit.
+     *
+     * @param aName The bulkhead's name
+     * @param aMaxConcurrent The maximum number of calls that may be made at once
+     * @param aMaxQueued The maximum number of calls that may wait for a permit
+     * @param aMaxWait The maximum amount of time a call may wait for a permit
+     * @throws IllegalArgumentException If the maximum concurrency is less than one or the maximum queue size or wait is
+     *         negative
+     */
+    public Bulkhead(final String aName, final int aMaxConcurrent, final int aMaxQueued, final Duration aMaxWait) {
+        this(aName, aMaxConcurrent, aMaxQueued, aMaxWait, false);
+    }
+
+    /**
+     * Creates a new bulkhead.
+     *
+     * @param aName The bulkhead's name
+     * @param aMaxConcurrent The maximum number of calls that may be made at once
+     * @param aMaxQueued The maximum number of calls that may wait for a permit
+     * @param aMaxWait The maximum amount of time a call may wait for a permit
+     * @param aAdaptive Whether calls are also limited by an adaptive limit, up to the maximum concurrency
+     * @throws IllegalArgumentException If the maximum concurrency is less than one or the maximum queue size or wait is
+     *         negative
+     */
+    public Bulkhead(final String aName, final int aMaxConcurrent, final int aMaxQueued, final Duration aMaxWait,
+            final boolean aAdaptive) {
+        if (aMaxConcurrent < 1 || aMaxQueued < 0 || aMaxWait.isNegative()) {
+            throw new IllegalArgumentException(aName);
+        }
+
+        myName = aName;
+        myMaxConcurrent = aMaxConcurrent;
+        myMaxQueued = aMaxQueued;
+        myMaxWait = aMaxWait;
+        myPermits = new Semaphore(aMaxConcurrent, true);
+        hasAdaptiveLimit = aAdaptive;
+        myAdaptiveLimit = new AdaptiveLimit(aMaxConcurrent);
+    }
+
+    /**
+     * Gets the shared bulkhead with the supplied name, creating it (or replacing it, if its limits have changed) as
+     * needed.
+     *
+     * @param aName The bulkhead's name
+     * @param aMaxConcurrent The maximum number of calls that may be made at once
+     * @param aMaxQueued The maximum number of calls that may wait for a permit
+     * @param aMaxWait The maximum amount of time a call may wait for a permit
+     * @param aAdaptive Whether calls are also limited by an adaptive limit, up to the maximum concurrency
+     * @return The shared bulkhead
+     * @throws IllegalArgumentException If the maximum concurrency is less than one or the maximum queue size or wait is
+     *         negative
+     */
+    public static Bulkhead getShared(final String aName, final int aMaxConcurrent, final int aMaxQueued,
+            final Duration aMaxWait, final boolean aAdaptive) {
+        return SHARED.compute(aName, (name, bulkhead) -> bulkhead != null &&
+                bulkhead.hasLimits(aMaxConcurrent, aMaxQueued, aMaxWait, aAdaptive) ? bulkhead
+                        : new Bulkhead(name, aMaxConcurrent, aMaxQueued, aMaxWait, aAdaptive));
+    }
+
+    /**
+     * Gets all of the shared bulkheads.
+     *
+     * @return The shared bulkheads
+     */
+    public static Collection<Bulkhead> getAllShared() {
+        return Collections.unmodifiableCollection(SHARED.values());
+    }
+
+    /**
+     * Tries to get a permit to make a call, waiting in the queue if none is free. A caller that gets a permit must
+     * return it with {@link #exit(long, boolean)} (or {@link #exit()}, if the call wasn't timed) when the call is
+     * finished.
+     *
+     * @return True if the call may be made; false if it was rejected
+     */
+    public boolean tryEnter() {
+        if (hasAdaptiveLimit && !myAdaptiveLimit.tryAcquire()) {
+            return false;
+        }
+
+        if (acquirePermit()) {
+            return true;
+        }
+
+        if (hasAdaptiveLimit) {
+            myAdaptiveLimit.release();
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the permit of a finished call, without adjusting the adaptive limit.
+     */
+    public void exit() {
+        myPermits.release();
+
+        if (hasAdaptiveLimit) {
+            myAdaptiveLimit.release();
+        }
+    }
+
+    /**
+     * Returns the permit of a finished call, adjusting the adaptive limit according to how the call went.
+     *
+     * @param aLatency The number of nanoseconds the call took
+     * @param aSucceeded Whether the call succeeded
+     */
+    public void exit(final long aLatency, final boolean aSucceeded) {
+        myPermits.release();
+
+        if (hasAdaptiveLimit) {
+            myAdaptiveLimit.finish(aLatency, aSucceeded);
+        }
+    }
+
+    /**
+     * Gets the bulkhead's adaptive limit. If the bulkhead isn't adaptive, the limit is always the maximum concurrency.
+     *
+     * @return The bulkhead's adaptive limit
+     */
+    public AdaptiveLimit getAdaptiveLimit() {
+        return myAdaptiveLimit;
+    }
+
+    /**
+     * Checks whether calls are limited by the adaptive limit.
+     *
+     * @return True if the bulkhead is adaptive; else, false
+     */
+    public boolean isAdaptive() {
+        return hasAdaptiveLimit;
+    }
+
+    /**
+     * Tries to get one of the bulkhead's permits, waiting in the queue if none is free.
+     *
+     * @return True if a permit was acquired; false if the call was rejected
+     */
+    private boolean acquirePermit() {
+        if (myPermits.tryAcquire()) {
+            return true;
+        }
+
+        if (myQueued.incrementAndGet() > myMaxQueued) {
+            myQueued.decrementAndGet();
+            return reject();
+        }
+
+        try {
+            if (myPermits.tryAcquire(myMaxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (final InterruptedException details) {
+            Thread.currentThread().interrupt();
+        } finally {
+            myQueued.decrementAndGet();
+        }
+
+        return reject();
+    }
+
+    /**
+     * Gets the bulkhead's name.
+     *
+     * @return The bulkhead's name
+     */
+    public String getName() {
+        return myName;
+    }
+
+    /**
+     * Gets the maximum number of calls that may be made at once.
+     *
+     * @return The maximum number of calls that may be made at once
+     */
+    public int getMaxConcurrent() {
+        return myMaxConcurrent;
+    }
+
+    /**
+     * Gets the number of calls that are being made.
+     *
+     * @return The number of calls that are being made
+     */
+    public int getActive() {
+        return myMaxConcurrent - myPermits.availablePermits();
+    }
+
+    /**
+     * Gets the number of calls that are waiting for a permit.
+     *
+     * @return The number of calls that are waiting for a permit
+     */
+    public int getQueued() {
+        return myQueued.get();
+    }
+
+    /**
+     * Gets the number of calls that have been rejected because the queue was full or the wait timed out. Calls that
+     * are rejected by the adaptive limit are counted by it.
+     *
+     * @return The number of calls that have been rejected
+     */
+    public long getRejections() {
+        return myRejections.sum();
+    }
+
+    /**
+     * Checks whether the bulkhead has the supplied limits.
+     *
+     * @param aMaxConcurrent A maximum number of calls that may be made at once
+     * @param aMaxQueued A maximum number of calls that may wait for a permit
+     * @param aMaxWait A maximum amount of time a call may wait for a permit
+     * @param aAdaptive Whether calls are also limited by an adaptive limit
+     * @return True if the bulkhead has the supplied limits; else, false
+     */
+    private boolean hasLimits(final int aMaxConcurrent, final int aMaxQueued, final Duration aMaxWait,
+            final boolean aAdaptive) {
+        return myMaxConcurrent == aMaxConcurrent && myMaxQueued == aMaxQueued && myMaxWait.equals(aMaxWait) &&
+                hasAdaptiveLimit == aAdaptive;
+    }
+
+    /**
+     * Counts a rejected call.
+     *
+     * @return False, so a rejection can be returned directly
+     */
+    private boolean reject() {
+        myRejections.increment();
+        return false;
+    }
+}
@@ -0,0 +1,258 @@
+
+package edu.ucla.library.iiif.auth.delegate.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A per-client token bucket rate limiter, which is cheap enough to check on every request and whose memory use doesn't
+ * grow with the number of clients.
+ * <p>
+ * Clients are hashed into a fixed number of slots. Each slot holds one client's bucket, packed into a single long (a
+ * fingerprint of the client, its number of tokens, and the time the tokens were last counted), so a bucket is updated
+ * with a single compare-and-set and no locks are needed. When a client hashes to a slot that holds another client's
+ * bucket, it takes the slot over with a full bucket. A collision can therefore only let a client through, never hold
+ * one back.
+ */
+public final class ClientRateLimiter {
+
+    /**
+     * The largest number of tokens a bucket may hold.
+     */
+    public static final int MAX_BURST = (1 << 12) - 1;
+
+    /**
+     * The largest number of tokens that may be added to a bucket each minute.
+     */
+    public static final int MAX_RATE = 1_000_000;
+
+    /**
+     * The number of slots; a power of two, so a slot can be found with a mask.
+     */
+    private static final int SLOTS = 1 << 12;
+
+    /**
+     * The number of bits in a slot that hold the time its tokens were last counted.
+     */
+    private static final int TIME_BITS = 36;
+
+    /**
+     * The number of bits in a slot that hold its number of tokens.
+     */
+    private static final int TOKEN_BITS = 12;
+
+    /**
+     * The mask of the time in a slot.
+     */
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+
+    /**
+     * The mask of the number of tokens in a slot, after it's been shifted down.
+     */
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+
+    /**
+     * The number of bits a slot's client fingerprint is shifted by.
+     */
+    private static final int FINGERPRINT_SHIFT = TIME_BITS + TOKEN_BITS;
+
+    /**
+     * The number of milliseconds in a minute.
+     */
+    private static final long ONE_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The buckets, one per slot; an empty slot is zero.
+     */
+    private final AtomicLongArray mySlots = new AtomicLongArray(SLOTS);
+
+    /**
+     * The number of tokens added to a bucket each minute.
+     */
+    private final int myRate;
+
+    /**
+     * The largest number of tokens a bucket may hold.
+     */
+    private final int myBurst;
+
+    /**
+     * The time the limiter was created, in nanoseconds; slot times are counted from it.
+     */
+    private final long myEpoch = System.nanoTime();
+
+    /**
+     * The number of attempts that have been rejected.
+     */
+    private final LongAdder myRejections = new LongAdder();
+
+    /**
+     * Creates a new client rate limiter.
+     *
+     * @param aRate The number of attempts each client may make per minute, once its burst is spent
+     * @param aBurst The number of attempts a client may make at once
+     * @throws IllegalArgumentException If the rate or the burst is less than one, or larger than its maximum
+     */
+    public ClientRateLimiter(final int aRate, final int aBurst) {
+        if (aRate < 1 || aRate > MAX_RATE) {
+            throw new IllegalArgumentException(Integer.toString(aRate));
+        }
+
+        if (aBurst < 1 || aBurst > MAX_BURST) {
+            throw new IllegalArgumentException(Integer.toString(aBurst));
+        }
+
+        myRate = aRate;
+        myBurst = aBurst;
+    }
+
+    /**
+     * Tries to take a token from the supplied client's bucket.
+     *
+     * @param aClient A client's address
+     * @return True if the client may make the attempt; false if it's over its limit
+     */
+    public boolean tryAcquire(final String aClient) {
+        return tryAcquire(aClient, getTime());
+    }
+
+    /**
+     * Returns a token to the supplied client's bucket, e.g. because the attempt it was taken for succeeded.
+     *
+     * @param aClient A client's address
+     */
+    public void release(final String aClient) {
+        final int hash = hash(aClient);
+        final int index = hash & (SLOTS - 1);
+        final long fingerprint = getFingerprint(hash);
+
+        while (true) {
+            final long slot = mySlots.get(index);
+            final long tokens = (slot >>> TIME_BITS) & TOKEN_MASK;
+
+            // The bucket has been taken over by another client, or is already full
+            if (slot >>> FINGERPRINT_SHIFT != fingerprint || tokens >= myBurst) {
+                return;
+            }
+
+            if (mySlots.compareAndSet(index, slot, slot + (1L << TIME_BITS))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Refills every client's bucket, e.g. after the token service has recovered from an incident that made every
+     * client's checks fail.
+     */
+    public void reset() {
+        for (int index = 0; index < SLOTS; index++) {
+            mySlots.set(index, 0);
+        }
+    }
+
+    /**
+     * Gets the number of attempts that have been rejected.
+     *
+     * @return The number of rejected attempts
+     */
+    public long getRejections() {
+        return myRejections.sum();
+    }
+
+    /**
+     * Gets the number of tokens added to a bucket each minute.
+     *
+     * @return The number of attempts each client may make per minute
+     */
+    public int getRate() {
+        return myRate;
+    }
+
+    /**
+     * Gets the largest number of tokens a bucket may hold.
+     *
+     * @return The number of attempts a client may make at once
+     */
+    public int getBurst() {
+        return myBurst;
+    }
+
+    /**
+     * Tries to take a token from the supplied client's bucket at the supplied time.
+     *
+     * @param aClient A client's address
+     * @param aTime The number of milliseconds since the limiter was created
+     * @return True if the client may make the attempt; false if it's over its limit
+     */
+    boolean tryAcquire(final String aClient, final long aTime) {
+        final int hash = hash(aClient);
+        final int index = hash & (SLOTS - 1);
+        final long fingerprint = getFingerprint(hash);
+        final long now = aTime & TIME_MASK;
+
+        while (true) {
+            final long slot = mySlots.get(index);
+            long tokens = myBurst;
+            long time = now;
+
+            if (slot >>> FINGERPRINT_SHIFT == fingerprint) {
+                final long elapsed = (now - (slot & TIME_MASK)) & TIME_MASK;
+                final long added = elapsed * myRate / ONE_MINUTE;
+
+                tokens = ((slot >>> TIME_BITS) & TOKEN_MASK) + added;
+
+                // Only move the bucket's time on by the whole tokens added, so partial tokens aren't lost
+                if (tokens < myBurst) {
+                    time = ((slot & TIME_MASK) + added * ONE_MINUTE / myRate) & TIME_MASK;
+                } else {
+                    tokens = myBurst;
+                }
+            }
+
+            if (tokens == 0) {
+                myRejections.increment();
+                return false;
+            }
+
+            final long updated = fingerprint << FINGERPRINT_SHIFT | (tokens - 1) << TIME_BITS | time;
+
+            if (mySlots.compareAndSet(index, slot, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of milliseconds since the limiter was created.
+     *
+     * @return The limiter's current time
+     */
+    private long getTime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - myEpoch);
+    }
+
+    /**
+     * Hashes a client's address, spreading the bits of its hash code so both the slot index (low bits) and the
+     * fingerprint (high bits) depend on all of them.
+     *
+     * @param aClient A client's address
+     * @return The address's hash
+     */
+    private static int hash(final String aClient) {
+        final int hash = aClient.hashCode() * 0x9E37_79B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Gets the fingerprint of a hashed client address, which is never zero so that it can't match an empty slot.
+     *
+     * @param aHash A client address's hash
+     * @return The address's fingerprint
+     */
+    private static long getFingerprint(final int aHash) {
+        final long fingerprint = aHash >>> 16;
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+}
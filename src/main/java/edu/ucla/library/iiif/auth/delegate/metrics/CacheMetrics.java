@@ -0,0 +1,97 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import edu.ucla.library.iiif.auth.delegate.cache.BoundedCache;
+
+/**
+ * The metrics of one of the delegate's caches. The cache that's measured is replaced when a configuration reload
+ * replaces the cache, so its counts start over when that happens.
+ */
+public final class CacheMetrics implements CacheMetricsMXBean {
+
+    /**
+     * The cache's name.
+     */
+    private final String myName;
+
+    /**
+     * The cache that's measured.
+     */
+    private volatile BoundedCache<?, ?> myCache;
+
+    /**
+     * Creates new metrics for a named cache.
+     *
+     * @param aName The cache's name
+     * @param aCache The cache that's measured
+     */
+    CacheMetrics(final String aName, final BoundedCache<?, ?> aCache) {
+        myName = aName;
+        myCache = aCache;
+    }
+
+    /**
+     * Gets the cache's name.
+     *
+     * @return The cache's name
+     */
+    public String getName() {
+        return myName;
+    }
+
+    /**
+     * Gets the cache that's measured.
+     *
+     * @return The measured cache
+     */
+    public BoundedCache<?, ?> getCache() {
+        return myCache;
+    }
+
+    @Override
+    public long getHits() {
+        return myCache.getHits();
+    }
+
+    @Override
+    public long getMisses() {
+        return myCache.getMisses();
+    }
+
+    @Override
+    public double getHitRatio() {
+        final BoundedCache<?, ?> cache = myCache;
+        final long lookups = cache.getHits() + cache.getMisses();
+
+        return lookups == 0 ? 0 : (double) cache.getHits() / lookups;
+    }
+
+    @Override
+    public long getEvictions() {
+        return myCache.getEvictions();
+    }
+
+    @Override
+    public long getExpirations() {
+        return myCache.getExpirations();
+    }
+
+    @Override
+    public int getSize() {
+        return myCache.size();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return myCache.getMaxSize();
+    }
+
+    /**
+     * Sets the cache that's measured.
+     *
+     * @param aCache The measured cache
+     */
+    void setCache(final BoundedCache<?, ?> aCache) {
+        myCache = aCache;
+    }
+}
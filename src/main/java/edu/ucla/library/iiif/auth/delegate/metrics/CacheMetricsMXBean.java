@@ -0,0 +1,57 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+/**
+ * The JMX view of one of the delegate's caches.
+ */
+public interface CacheMetricsMXBean {
+
+    /**
+     * Gets the number of lookups that found a value in the cache.
+     *
+     * @return The number of cache hits
+     */
+    long getHits();
+
+    /**
+     * Gets the number of lookups that didn't find a value in the cache, including those that found an expired one.
+     *
+     * @return The number of cache misses
+     */
+    long getMisses();
+
+    /**
+     * Gets the share of lookups that found a value in the cache.
+     *
+     * @return The cache's hit ratio, from 0 to 1
+     */
+    double getHitRatio();
+
+    /**
+     * Gets the number of entries that were evicted to make room for new ones.
+     *
+     * @return The number of evictions
+     */
+    long getEvictions();
+
+    /**
+     * Gets the number of entries that were removed because they had expired.
+     *
+     * @return The number of expirations
+     */
+    long getExpirations();
+
+    /**
+     * Gets the number of entries in the cache.
+     *
+     * @return The cache's size
+     */
+    int getSize();
+
+    /**
+     * Gets the maximum number of entries the cache will hold.
+     *
+     * @return The cache's maximum size
+     */
+    int getMaxSize();
+}
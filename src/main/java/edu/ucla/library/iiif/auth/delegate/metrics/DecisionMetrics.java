@@ -0,0 +1,137 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * Counts of the delegate's authorization decisions, by access mode and outcome, and a histogram of their latencies.
+ */
+public final class DecisionMetrics implements DecisionMetricsMXBean {
+
+    /**
+     * The HTTP statuses that decisions are counted by; any other status is counted as the last one.
+     */
+    private static final int[] STATUSES = { 200, 302, 401, 403 };
+
+    /**
+     * The median percentile.
+     */
+    private static final double P50 = 50;
+
+    /**
+     * The 99th percentile.
+     */
+    private static final double P99 = 99;
+
+    /**
+     * The number of decisions, by access mode and status index.
+     */
+    private final LongAdder[][] myDecisions = new LongAdder[AccessMode.values().length][STATUSES.length];
+
+    /**
+     * The number of free derivative (e.g., thumbnail) requests.
+     */
+    private final LongAdder myThumbnailBypasses = new LongAdder();
+
+    /**
+     * The latencies of decisions, including thumbnail bypasses.
+     */
+    private final LatencyHistogram myLatencies = new LatencyHistogram();
+
+    /**
+     * Creates new decision metrics.
+     */
+    DecisionMetrics() {
+        for (final LongAdder[] counts : myDecisions) {
+            for (int index = 0; index < counts.length; index++) {
+                counts[index] = new LongAdder();
+            }
+        }
+    }
+
+    /**
+     * Records a decision.
+     *
+     * @param aAccessMode The requested item's access mode
+     * @param aStatusCode The decision's HTTP status
+     * @param aLatency The number of nanoseconds the decision took
+     */
+    public void record(final AccessMode aAccessMode, final int aStatusCode, final long aLatency) {
+        myDecisions[aAccessMode.ordinal()][getStatusIndex(aStatusCode)].increment();
+        myLatencies.record(aLatency);
+    }
+
+    /**
+     * Records a free derivative request that was allowed without an access check.
+     *
+     * @param aLatency The number of nanoseconds the decision took
+     */
+    public void recordThumbnailBypass(final long aLatency) {
+        myThumbnailBypasses.increment();
+        myLatencies.record(aLatency);
+    }
+
+    /**
+     * Gets the number of decisions for items with the supplied access mode that had the supplied HTTP status.
+     *
+     * @param aAccessMode An access mode
+     * @param aStatusCode An HTTP status
+     * @return The number of decisions
+     */
+    public long getDecisions(final AccessMode aAccessMode, final int aStatusCode) {
+        return myDecisions[aAccessMode.ordinal()][getStatusIndex(aStatusCode)].sum();
+    }
+
+    @Override
+    public Map<String, Long> getDecisions() {
+        final Map<String, Long> decisions = new LinkedHashMap<>();
+
+        for (final AccessMode accessMode : AccessMode.values()) {
+            for (final int status : STATUSES) {
+                decisions.put(accessMode.name() + ' ' + status, getDecisions(accessMode, status));
+            }
+        }
+
+        return decisions;
+    }
+
+    @Override
+    public long getThumbnailBypasses() {
+        return myThumbnailBypasses.sum();
+    }
+
+    @Override
+    public double getLatencyMean() {
+        return myLatencies.getMean();
+    }
+
+    @Override
+    public double getLatencyP50() {
+        return myLatencies.getPercentile(P50);
+    }
+
+    @Override
+    public double getLatencyP99() {
+        return myLatencies.getPercentile(P99);
+    }
+
+    /**
+     * Gets the index that decisions with the supplied HTTP status are counted at.
+     *
+     * @param aStatusCode An HTTP status
+     * @return The status's index
+     */
+    private static int getStatusIndex(final int aStatusCode) {
+        for (int index = 0; index < STATUSES.length - 1; index++) {
+            if (STATUSES[index] == aStatusCode) {
+                return index;
+            }
+        }
+
+        return STATUSES.length - 1;
+    }
+}
@@ -0,0 +1,46 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the delegate's authorization decisions. Latencies are in milliseconds.
+ */
+public interface DecisionMetricsMXBean {
+
+    /**
+     * Gets the number of decisions, by the requested item's access mode and the decision's HTTP status (e.g.,
+     * <code>TIERED 302</code>). Thumbnail bypasses aren't included, since their access modes aren't looked up.
+     *
+     * @return The number of decisions by access mode and status
+     */
+    Map<String, Long> getDecisions();
+
+    /**
+     * Gets the number of requests that were allowed as free derivatives (e.g., thumbnails) without an access check.
+     *
+     * @return The number of thumbnail bypasses
+     */
+    long getThumbnailBypasses();
+
+    /**
+     * Gets the mean time taken to make a decision.
+     *
+     * @return The mean decision latency in milliseconds
+     */
+    double getLatencyMean();
+
+    /**
+     * Gets the median time taken to make a decision.
+     *
+     * @return The median decision latency in milliseconds
+     */
+    double getLatencyP50();
+
+    /**
+     * Gets the 99th percentile of the time taken to make a decision.
+     *
+     * @return The 99th percentile decision latency in milliseconds
+     */
+    double getLatencyP99();
+}
@@ -0,0 +1,143 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.ucla.library.iiif.auth.delegate.cache.CountMinSketch;
+
+/**
+ * A fixed-memory tracker of the most frequently seen keys (the heavy hitters) of a stream, such as the identifiers or
+ * clients of the delegate's requests.
+ * <p>
+ * Every key is counted in a {@link CountMinSketch}, and the keys with the highest estimates are kept in a small
+ * top-K set. As in the space-saving algorithm, once the set is full a newly seen key replaces the set's least frequent
+ * key when its estimate is higher. Counting a key that's already in the set, or that isn't frequent enough to enter
+ * it, doesn't take a lock.
+ */
+public final class HeavyHitters implements HeavyHittersMXBean {
+
+    /**
+     * The smallest number of keys a tracker may track.
+     */
+    private static final int MIN_CAPACITY = 1;
+
+    /**
+     * The name of the tracker.
+     */
+    private final String myName;
+
+    /**
+     * The sketch that estimates every key's count.
+     */
+    private final CountMinSketch mySketch;
+
+    /**
+     * The tracked keys.
+     */
+    private final Set<String> myTop = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The number of keys that are tracked.
+     */
+    private final int myCapacity;
+
+    /**
+     * The estimated count a key needs to enter the full top-K set.
+     */
+    private volatile long myThreshold;
+
+    /**
+     * The sketch's age when the threshold was set; the threshold is out of date once the sketch has aged.
+     */
+    private volatile int myThresholdAge;
+
+    /**
+     * Creates a new heavy hitter tracker.
+     *
+     * @param aName The name of the tracker
+     * @param aCapacity The number of keys that are tracked
+     * @param aWidth The width of the sketch, which sets the accuracy of its estimates
+     * @throws IllegalArgumentException If the capacity or width is less than one
+     */
+    public HeavyHitters(final String aName, final int aCapacity, final int aWidth) {
+        if (aCapacity < MIN_CAPACITY) {
+            throw new IllegalArgumentException(Integer.toString(aCapacity));
+        }
+
+        myName = aName;
+        myCapacity = aCapacity;
+        mySketch = new CountMinSketch(aWidth);
+    }
+
+    /**
+     * Counts a sighting of the supplied key.
+     *
+     * @param aKey A key
+     */
+    public void record(final String aKey) {
+        final long estimate = mySketch.increment(aKey);
+
+        if (!myTop.contains(aKey) && (estimate > myThreshold || myThresholdAge != mySketch.getAge())) {
+            offer(aKey, estimate);
+        }
+    }
+
+    /**
+     * Gets the name of the tracker.
+     *
+     * @return The tracker's name
+     */
+    public String getName() {
+        return myName;
+    }
+
+    @Override
+    public Map<String, Long> getTop() {
+        final Map<String, Long> top = new LinkedHashMap<>();
+
+        myTop.stream().map(key -> Map.entry(key, mySketch.estimate(key)))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+
+        return top;
+    }
+
+    @Override
+    public int getCapacity() {
+        return myCapacity;
+    }
+
+    @Override
+    public long getSampleSize() {
+        return mySketch.getSampleSize();
+    }
+
+    /**
+     * Adds a key to the top-K set, replacing the least frequent key if the set is full and the new key is more
+     * frequent.
+     *
+     * @param aKey A key that isn't in the set
+     * @param aEstimate The key's estimated count
+     */
+    private synchronized void offer(final String aKey, final long aEstimate) {
+        if (myTop.size() < myCapacity) {
+            myTop.add(aKey);
+        } else {
+            final String least = myTop.stream().min(Comparator.comparingLong(mySketch::estimate)).orElseThrow();
+
+            if (mySketch.estimate(least) < aEstimate) {
+                myTop.remove(least);
+                myTop.add(aKey);
+            }
+        }
+
+        if (myTop.size() >= myCapacity) {
+            myThresholdAge = mySketch.getAge();
+            myThreshold = myTop.stream().mapToLong(mySketch::estimate).min().orElse(0);
+        }
+    }
+}
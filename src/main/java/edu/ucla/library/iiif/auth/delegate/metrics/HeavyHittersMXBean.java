@@ -0,0 +1,31 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the most frequently seen keys (e.g., identifiers or clients) of the delegate's requests.
+ */
+public interface HeavyHittersMXBean {
+
+    /**
+     * Gets the most frequently seen keys, with their estimated recent counts.
+     *
+     * @return The most frequently seen keys, most frequent first
+     */
+    Map<String, Long> getTop();
+
+    /**
+     * Gets the number of keys that are tracked.
+     *
+     * @return The number of most frequently seen keys that are tracked
+     */
+    int getCapacity();
+
+    /**
+     * Gets the number of sightings after which the counts are halved, so that recent sightings count for more.
+     *
+     * @return The number of sightings in the counts' sample
+     */
+    long getSampleSize();
+}
@@ -0,0 +1,175 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies, in the style of an HDR histogram: values are counted in buckets whose width
+ * grows with the value, so every recorded latency (from a microsecond to many hours) is kept to within about 3% using a
+ * fixed 1024 counters.
+ * <p>
+ * Values below 64 microseconds have a bucket each. Above that, each power of two is split into 32 equal buckets.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The number of bits of a value that select its bucket within its power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of buckets in each power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of bits in the largest value that can be recorded, in microseconds.
+     */
+    private static final int VALUE_BITS = 36;
+
+    /**
+     * The largest value that can be recorded, in microseconds; larger values are counted as this.
+     */
+    private static final long MAX_VALUE = (1L << VALUE_BITS) - 1;
+
+    /**
+     * The number of buckets.
+     */
+    private static final int BUCKETS = (VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * The number of values in each bucket.
+     */
+    private final AtomicLongArray myCounts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * The number of values that have been recorded.
+     */
+    private final LongAdder myCount = new LongAdder();
+
+    /**
+     * The sum of the values that have been recorded, in microseconds.
+     */
+    private final LongAdder mySum = new LongAdder();
+
+    /**
+     * The largest value that has been recorded, in microseconds.
+     */
+    private final LongAccumulator myMax = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a latency.
+     *
+     * @param aLatency A latency in nanoseconds
+     */
+    public void record(final long aLatency) {
+        final long value = Math.min(MAX_VALUE, Math.max(0, TimeUnit.NANOSECONDS.toMicros(aLatency)));
+
+        myCounts.incrementAndGet(getIndex(value));
+        myCount.increment();
+        mySum.add(value);
+        myMax.accumulate(value);
+    }
+
+    /**
+     * Gets the number of latencies that have been recorded.
+     *
+     * @return The number of recorded latencies
+     */
+    public long getCount() {
+        return myCount.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded latencies.
+     *
+     * @return The mean latency in milliseconds, or zero if none have been recorded
+     */
+    public double getMean() {
+        final long count = myCount.sum();
+        return count == 0 ? 0 : toMillis(mySum.sum()) / count;
+    }
+
+    /**
+     * Gets the largest recorded latency.
+     *
+     * @return The largest latency in milliseconds, or zero if none have been recorded
+     */
+    public double getMax() {
+        return toMillis(myMax.get());
+    }
+
+    /**
+     * Gets the latency that the supplied percentage of the recorded latencies are at or below. The result is the
+     * middle of the bucket the percentile falls in.
+     *
+     * @param aPercentile A percentile, from 0 to 100
+     * @return The percentile's latency in milliseconds, or zero if none have been recorded
+     */
+    public double getPercentile(final double aPercentile) {
+        final long[] counts = new long[BUCKETS];
+        long total = 0;
+
+        // Copy the counts first, so the total and the buckets agree even while values are being recorded
+        for (int index = 0; index < BUCKETS; index++) {
+            counts[index] = myCounts.get(index);
+            total += counts[index];
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, aPercentile)) / 100));
+        long seen = 0;
+
+        for (int index = 0; index < BUCKETS; index++) {
+            seen += counts[index];
+
+            if (seen >= rank && counts[index] > 0) {
+                return toMillis((getLowestValue(index) + getLowestValue(index + 1) - 1) / 2.0);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Gets the index of the bucket that counts the supplied value.
+     *
+     * @param aValue A value in microseconds
+     * @return The index of the value's bucket
+     */
+    static int getIndex(final long aValue) {
+        if (aValue < SUB_BUCKETS * 2) {
+            return (int) aValue;
+        }
+
+        final int shift = Long.SIZE - Long.numberOfLeadingZeros(aValue) - 1 - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (aValue >>> shift);
+    }
+
+    /**
+     * Gets the lowest value that the bucket at the supplied index counts.
+     *
+     * @param aIndex A bucket index
+     * @return The lowest value in the bucket, in microseconds
+     */
+    static long getLowestValue(final int aIndex) {
+        if (aIndex < SUB_BUCKETS * 2) {
+            return aIndex;
+        }
+
+        final int shift = aIndex / SUB_BUCKETS - 1;
+        return (long) (aIndex % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Converts a number of microseconds to milliseconds.
+     *
+     * @param aMicros A number of microseconds
+     * @return The number of milliseconds
+     */
+    private static double toMillis(final double aMicros) {
+        return aMicros / 1000;
+    }
+}
@@ -0,0 +1,187 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+import edu.ucla.library.iiif.auth.delegate.MessageCodes;
+import edu.ucla.library.iiif.auth.delegate.cache.BoundedCache;
+
+/**
+ * The delegate's metrics registry. Metrics are shared by the whole process, so they're kept across configuration
+ * reloads, and each is registered with the platform MBean server when it's created so it can be read over JMX (e.g.,
+ * with JConsole or a JMX exporter) without any other runtime service.
+ * <p>
+ * All the metrics are kept in {@link java.util.concurrent.atomic.LongAdder} counters and {@link LatencyHistogram}s, so
+ * recording them doesn't take any locks.
+ */
+public final class Metrics {
+
+    /**
+     * The JMX domain of the delegate's metrics.
+     */
+    public static final String DOMAIN = "edu.ucla.library.iiif.auth.delegate";
+
+    /**
+     * The number of most frequently requested identifiers and clients that are tracked.
+     */
+    private static final int HOT_KEYS = 20;
+
+    /**
+     * The width of the sketches that count requested identifiers and clients.
+     */
+    private static final int HOT_KEY_SKETCH_WIDTH = 4096;
+
+    /**
+     * The metrics registry's logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class, MessageCodes.BUNDLE);
+
+    /**
+     * The metrics of the upstream services, by name.
+     */
+    private static final Map<String, UpstreamMetrics> UPSTREAMS = new ConcurrentHashMap<>();
+
+    /**
+     * The metrics of the caches, by name.
+     */
+    private static final Map<String, CacheMetrics> CACHES = new ConcurrentHashMap<>();
+
+    /**
+     * The metrics of the authorization decisions.
+     */
+    private static final DecisionMetrics DECISIONS = register(new DecisionMetrics(), "type=Decisions");
+
+    /**
+     * The most frequently requested identifiers.
+     */
+    private static final HeavyHitters HOT_IDENTIFIERS =
+            register(new HeavyHitters("identifier", HOT_KEYS, HOT_KEY_SKETCH_WIDTH), "type=HotKeys,name=identifier");
+
+    /**
+     * The clients that make the most requests.
+     */
+    private static final HeavyHitters HOT_CLIENTS =
+            register(new HeavyHitters("client", HOT_KEYS, HOT_KEY_SKETCH_WIDTH), "type=HotKeys,name=client");
+
+    /**
+     * Creates a new metrics registry.
+     */
+    private Metrics() {
+        // This is intentionally left empty
+    }
+
+    /**
+     * Gets the metrics of the authorization decisions.
+     *
+     * @return The decision metrics
+     */
+    public static DecisionMetrics getDecisions() {
+        return DECISIONS;
+    }
+
+    /**
+     * Gets the tracker of the most frequently requested identifiers.
+     *
+     * @return The tracker of the hottest identifiers
+     */
+    public static HeavyHitters getHotIdentifiers() {
+        return HOT_IDENTIFIERS;
+    }
+
+    /**
+     * Gets the tracker of the clients that make the most requests.
+     *
+     * @return The tracker of the busiest clients
+     */
+    public static HeavyHitters getHotClients() {
+        return HOT_CLIENTS;
+    }
+
+    /**
+     * Gets the metrics of the named upstream service, creating them the first time they're needed.
+     *
+     * @param aName An upstream service's name
+     * @return The upstream service's metrics
+     */
+    public static UpstreamMetrics getUpstream(final String aName) {
+        return UPSTREAMS.computeIfAbsent(aName,
+                name -> register(new UpstreamMetrics(name), "type=Upstream,name=" + name));
+    }
+
+    /**
+     * Gets the metrics of all the upstream services that have been called.
+     *
+     * @return The upstream services' metrics
+     */
+    public static Collection<UpstreamMetrics> getUpstreams() {
+        return Collections.unmodifiableCollection(UPSTREAMS.values());
+    }
+
+    /**
+     * Measures the supplied cache under the supplied name, replacing any cache that was measured under that name.
+     *
+     * @param aName A cache name
+     * @param aCache The cache to measure
+     * @return The cache's metrics
+     */
+    public static CacheMetrics registerCache(final String aName, final BoundedCache<?, ?> aCache) {
+        return CACHES.compute(aName, (name, metrics) -> {
+            if (metrics == null) {
+                return register(new CacheMetrics(name, aCache), "type=Cache,name=" + name);
+            }
+
+            metrics.setCache(aCache);
+            return metrics;
+        });
+    }
+
+    /**
+     * Gets the metrics of all the caches that are being measured.
+     *
+     * @return The caches' metrics
+     */
+    public static Collection<CacheMetrics> getCaches() {
+        return Collections.unmodifiableCollection(CACHES.values());
+    }
+
+    /**
+     * Registers an MBean in the delegate's domain with the platform MBean server, replacing any that's already
+     * registered under its name (e.g., by an earlier load of the delegate). A failed registration is logged; the
+     * metrics are still recorded.
+     *
+     * @param <T> The type of the MBean
+     * @param aMBean An MBean
+     * @param aProperties The key properties of the MBean's name
+     * @return The MBean
+     */
+    public static <T> T register(final T aMBean, final String aProperties) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            final ObjectName name = new ObjectName(DOMAIN + ':' + aProperties);
+
+            try {
+                server.registerMBean(aMBean, name);
+            } catch (final InstanceAlreadyExistsException details) {
+                server.unregisterMBean(name);
+                server.registerMBean(aMBean, name);
+            }
+        } catch (final JMException details) {
+            LOGGER.warn(MessageCodes.CAD_046, aProperties, details.getMessage());
+        }
+
+        return aMBean;
+    }
+}
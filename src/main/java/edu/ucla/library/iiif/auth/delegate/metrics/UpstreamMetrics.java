@@ -0,0 +1,168 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.ucla.library.iiif.auth.delegate.limit.Bulkhead;
+
+/**
+ * The latency and error metrics of an upstream service, along with the state of the service's bulkhead.
+ */
+public final class UpstreamMetrics implements UpstreamMetricsMXBean {
+
+    /**
+     * The median percentile.
+     */
+    private static final double P50 = 50;
+
+    /**
+     * The 90th percentile.
+     */
+    private static final double P90 = 90;
+
+    /**
+     * The 99th percentile.
+     */
+    private static final double P99 = 99;
+
+    /**
+     * The service's name, which is also the name of its bulkhead.
+     */
+    private final String myName;
+
+    /**
+     * The latencies of the calls to the service.
+     */
+    private final LatencyHistogram myLatencies = new LatencyHistogram();
+
+    /**
+     * The number of calls to the service that have failed.
+     */
+    private final LongAdder myErrors = new LongAdder();
+
+    /**
+     * The number of calls to the service that its bulkhead has rejected, which, unlike the bulkhead's own count, isn't
+     * reset when a configuration reload replaces the bulkhead.
+     */
+    private final LongAdder myRejections = new LongAdder();
+
+    /**
+     * Creates new metrics for an upstream service.
+     *
+     * @param aName The service's name
+     */
+    UpstreamMetrics(final String aName) {
+        myName = aName;
+    }
+
+    /**
+     * Records a finished call to the service.
+     *
+     * @param aLatency The number of nanoseconds the call took
+     * @param aSucceeded Whether the call succeeded
+     */
+    public void record(final long aLatency, final boolean aSucceeded) {
+        myLatencies.record(aLatency);
+
+        if (!aSucceeded) {
+            myErrors.increment();
+        }
+    }
+
+    /**
+     * Records a call to the service that its bulkhead rejected.
+     */
+    public void recordRejection() {
+        myRejections.increment();
+    }
+
+    /**
+     * Gets the service's name.
+     *
+     * @return The service's name
+     */
+    public String getName() {
+        return myName;
+    }
+
+    /**
+     * Gets the latencies of the calls to the service.
+     *
+     * @return The service's latency histogram
+     */
+    public LatencyHistogram getLatencies() {
+        return myLatencies;
+    }
+
+    @Override
+    public long getCalls() {
+        return myLatencies.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return myErrors.sum();
+    }
+
+    @Override
+    public double getErrorRate() {
+        final long calls = getCalls();
+        return calls == 0 ? 0 : (double) getErrors() / calls;
+    }
+
+    @Override
+    public double getLatencyMean() {
+        return myLatencies.getMean();
+    }
+
+    @Override
+    public double getLatencyP50() {
+        return myLatencies.getPercentile(P50);
+    }
+
+    @Override
+    public double getLatencyP90() {
+        return myLatencies.getPercentile(P90);
+    }
+
+    @Override
+    public double getLatencyP99() {
+        return myLatencies.getPercentile(P99);
+    }
+
+    @Override
+    public double getLatencyMax() {
+        return myLatencies.getMax();
+    }
+
+    @Override
+    public int getActive() {
+        return getBulkhead().map(Bulkhead::getActive).orElse(0);
+    }
+
+    @Override
+    public int getQueued() {
+        return getBulkhead().map(Bulkhead::getQueued).orElse(0);
+    }
+
+    @Override
+    public long getRejections() {
+        return myRejections.sum();
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        return getBulkhead().map(bulkhead -> bulkhead.isAdaptive() ? bulkhead.getAdaptiveLimit().getLimit()
+                : bulkhead.getMaxConcurrent()).orElse(0);
+    }
+
+    /**
+     * Gets the service's current bulkhead, which may be replaced when the configuration is reloaded.
+     *
+     * @return The service's bulkhead, if it has one
+     */
+    private Optional<Bulkhead> getBulkhead() {
+        return Bulkhead.getAllShared().stream().filter(bulkhead -> bulkhead.getName().equals(myName)).findFirst();
+    }
+}
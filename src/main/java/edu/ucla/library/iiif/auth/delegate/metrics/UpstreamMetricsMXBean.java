@@ -0,0 +1,94 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+/**
+ * The JMX view of an upstream service's metrics. Latencies are in milliseconds.
+ */
+public interface UpstreamMetricsMXBean {
+
+    /**
+     * Gets the number of calls that have been made to the service.
+     *
+     * @return The number of calls
+     */
+    long getCalls();
+
+    /**
+     * Gets the number of calls to the service that have failed.
+     *
+     * @return The number of failed calls
+     */
+    long getErrors();
+
+    /**
+     * Gets the share of the calls to the service that have failed.
+     *
+     * @return The service's error rate, from 0 to 1
+     */
+    double getErrorRate();
+
+    /**
+     * Gets the mean latency of the calls to the service.
+     *
+     * @return The mean latency in milliseconds
+     */
+    double getLatencyMean();
+
+    /**
+     * Gets the median latency of the calls to the service.
+     *
+     * @return The median latency in milliseconds
+     */
+    double getLatencyP50();
+
+    /**
+     * Gets the 90th percentile latency of the calls to the service.
+     *
+     * @return The 90th percentile latency in milliseconds
+     */
+    double getLatencyP90();
+
+    /**
+     * Gets the 99th percentile latency of the calls to the service.
+     *
+     * @return The 99th percentile latency in milliseconds
+     */
+    double getLatencyP99();
+
+    /**
+     * Gets the largest latency of the calls to the service.
+     *
+     * @return The largest latency in milliseconds
+     */
+    double getLatencyMax();
+
+    /**
+     * Gets the number of calls that are being made to the service through its bulkhead.
+     *
+     * @return The number of calls in flight
+     */
+    int getActive();
+
+    /**
+     * Gets the number of calls that are waiting in the service's bulkhead.
+     *
+     * @return The number of queued calls
+     */
+    int getQueued();
+
+    /**
+     * Gets the number of calls that the service's bulkhead has rejected, including those over its adaptive limit. The
+     * count only goes up, even when a configuration reload replaces the bulkhead.
+     *
+     * @return The number of rejected calls
+     */
+    long getRejections();
+
+    /**
+     * Gets the number of calls that may currently be made to the service at once, which is below the configured
+     * maximum when the service's adaptive limit has backed off.
+     *
+     * @return The service's current concurrency limit
+     */
+    int getConcurrencyLimit();
+}
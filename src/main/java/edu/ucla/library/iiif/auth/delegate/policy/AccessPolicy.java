@@ -0,0 +1,226 @@
+
+package edu.ucla.library.iiif.auth.delegate.policy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import info.freelibrary.util.Logger;
+import info.freelibrary.util.LoggerFactory;
+
+import edu.ucla.library.iiif.auth.delegate.Config;
+import edu.ucla.library.iiif.auth.delegate.ConfigException;
+import edu.ucla.library.iiif.auth.delegate.MessageCodes;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * A local access policy that decides the access modes of whole collections (e.g., ARK shoulders) without a Hauth
+ * lookup.
+ * <p>
+ * A policy file has one rule per line; blank lines and lines starting with <code>#</code> are ignored. Each rule has a
+ * type, a value, and an access mode, separated by whitespace:
+ *
+ * <pre>
+ * prefix  ark:/21198/z1       OPEN
+ * prefix  ark:/21198/z2       TIERED
+ * pattern ^ark:/21198/s[0-9]+ ALL_OR_NOTHING
+ * </pre>
+ * <p>
+ * Prefix rules are compiled into a trie and the longest matching prefix wins. Pattern rules are regular expressions
+ * that are checked, in file order, only when no prefix rule matches. Identifiers that no rule matches are left for
+ * Hauth to decide.
+ */
+public final class AccessPolicy {
+
+    /**
+     * A policy without any rules.
+     */
+    public static final AccessPolicy EMPTY = new AccessPolicy(new PrefixTrie(), Collections.emptyList());
+
+    /**
+     * The access policy logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccessPolicy.class, MessageCodes.BUNDLE);
+
+    /**
+     * The rule type for an identifier prefix.
+     */
+    private static final String PREFIX = "prefix";
+
+    /**
+     * The rule type for an identifier pattern.
+     */
+    private static final String PATTERN = "pattern";
+
+    /**
+     * The start of a comment line.
+     */
+    private static final String COMMENT = "#";
+
+    /**
+     * The regex pattern for the whitespace between a rule's parts.
+     */
+    private static final String WHITESPACE_PATTERN = "\\s+";
+
+    /**
+     * The number of parts in a rule.
+     */
+    private static final int RULE_PARTS = 3;
+
+    /**
+     * The policy's compiled prefix rules.
+     */
+    private final PrefixTrie myPrefixes;
+
+    /**
+     * The policy's pattern rules, in the order they should be checked.
+     */
+    private final List<PatternRule> myPatterns;
+
+    /**
+     * Creates a new access policy.
+     *
+     * @param aPrefixes The compiled prefix rules
+     * @param aPatterns The pattern rules
+     */
+    private AccessPolicy(final PrefixTrie aPrefixes, final List<PatternRule> aPatterns) {
+        myPrefixes = aPrefixes;
+        myPatterns = aPatterns;
+    }
+
+    /**
+     * Loads and compiles the access policy in the supplied file.
+     *
+     * @param aPolicyFile A policy file
+     * @return The compiled access policy
+     * @throws ConfigException If the file can't be read or contains an invalid rule
+     */
+    public static AccessPolicy load(final Path aPolicyFile) {
+        try {
+            final AccessPolicy policy = parse(Files.readAllLines(aPolicyFile, StandardCharsets.UTF_8),
+                    aPolicyFile.toString());
+
+            LOGGER.info(MessageCodes.CAD_032, policy.size(), aPolicyFile);
+            return policy;
+        } catch (final IOException details) {
+            throw new ConfigException(details, Config.AUTH_POLICY_FILE, aPolicyFile.toString());
+        }
+    }
+
+    /**
+     * Parses and compiles the supplied access policy rules.
+     *
+     * @param aRules The lines of a policy file
+     * @param aSource A description of where the rules came from, for error messages
+     * @return The compiled access policy
+     * @throws ConfigException If the rules contain an invalid rule
+     */
+    public static AccessPolicy parse(final List<String> aRules, final String aSource) {
+        final PrefixTrie prefixes = new PrefixTrie();
+        final List<PatternRule> patterns = new ArrayList<>();
+
+        for (int index = 0; index < aRules.size(); index++) {
+            final String line = aRules.get(index).trim();
+
+            if (line.isEmpty() || line.startsWith(COMMENT)) {
+                continue;
+            }
+
+            try {
+                addRule(line.split(WHITESPACE_PATTERN), prefixes, patterns);
+            } catch (final IllegalArgumentException details) { // Includes PatternSyntaxException
+                throw new ConfigException(details, Config.AUTH_POLICY_FILE, aSource + ':' + (index + 1) + ' ' + line);
+            }
+        }
+
+        return new AccessPolicy(prefixes, List.copyOf(patterns));
+    }
+
+    /**
+     * Adds a rule to the prefix trie or the pattern rules, according to its type.
+     *
+     * @param aRule The parts of a rule
+     * @param aPrefixes The prefix rules
+     * @param aPatterns The pattern rules
+     * @throws IllegalArgumentException If the rule isn't valid
+     */
+    private static void addRule(final String[] aRule, final PrefixTrie aPrefixes, final List<PatternRule> aPatterns) {
+        if (aRule.length != RULE_PARTS) {
+            throw new IllegalArgumentException(String.join(" ", aRule));
+        }
+
+        final AccessMode accessMode = AccessMode.valueOf(aRule[2]);
+
+        if (PREFIX.equals(aRule[0])) {
+            aPrefixes.put(aRule[1], accessMode);
+        } else if (PATTERN.equals(aRule[0])) {
+            aPatterns.add(new PatternRule(Pattern.compile(aRule[1]), accessMode));
+        } else {
+            throw new IllegalArgumentException(aRule[0]);
+        }
+    }
+
+    /**
+     * Gets the access mode the policy assigns to the supplied identifier.
+     *
+     * @param aID An item identifier
+     * @return The item's access mode, or an empty optional if no rule matches the identifier
+     */
+    public Optional<AccessMode> getAccessMode(final String aID) {
+        final AccessMode accessMode = myPrefixes.getLongestMatch(aID);
+
+        if (accessMode != null) {
+            return Optional.of(accessMode);
+        }
+
+        for (final PatternRule rule : myPatterns) {
+            if (rule.myPattern.matcher(aID).find()) {
+                return Optional.of(rule.myAccessMode);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Gets the number of rules in the policy.
+     *
+     * @return The number of rules in the policy
+     */
+    public int size() {
+        return myPrefixes.size() + myPatterns.size();
+    }
+
+    /**
+     * A pattern rule.
+     */
+    private static final class PatternRule {
+
+        /**
+         * The rule's compiled pattern.
+         */
+        private final Pattern myPattern;
+
+        /**
+         * The access mode of the identifiers that match the pattern.
+         */
+        private final AccessMode myAccessMode;
+
+        /**
+         * Creates a new pattern rule.
+         *
+         * @param aPattern A compiled pattern
+         * @param aAccessMode The access mode of the identifiers that match the pattern
+         */
+        private PatternRule(final Pattern aPattern, final AccessMode aAccessMode) {
+            myPattern = aPattern;
+            myAccessMode = aAccessMode;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+
+package edu.ucla.library.iiif.auth.delegate.policy;
+
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+
+import edu.ucla.library.iiif.auth.delegate.Config;
+import edu.ucla.library.iiif.auth.delegate.ImageRequest;
+
+/**
+ * The rules that decide which small derivatives (e.g., thumbnails) of an image can be served without checking the
+ * image's access mode or the client's credentials.
+ * <p>
+ * A request for the whole image (i.e., the full or the square region) passes if its size bounds both the width and
+ * the height of the response, and neither can be more than the configured maximum; a size that only states a width or
+ * a height (e.g., <code>200,</code>) of a full region doesn't pass, since the other dimension could be any size. If
+ * scaled derivatives are allowed, requests for the whole image at a percentage size, or with a scale constraint,
+ * that's no larger than the tiered access scale constraint also pass.
+ * Note that these rules don't depend on an item's access mode, so they apply to all-or-nothing items, too.
+ */
+public final class DerivativeRules {
+
+    /**
+     * The number of dimensions in a scale constraint.
+     */
+    private static final int SCALE_CONSTRAINT_LENGTH = 2;
+
+    /**
+     * The largest dimension of a derivative that's always allowed.
+     */
+    private final int myMaxSize;
+
+    /**
+     * Whether derivatives within the tiered access scale constraint are always allowed.
+     */
+    private final boolean myScaledDerivativesAllowed;
+
+    /**
+     * The tiered access scale constraint.
+     */
+    private final int[] myScaleConstraint;
+
+    /**
+     * Creates the derivative rules for the supplied configuration.
+     *
+     * @param aConfig A delegate configuration
+     */
+    public DerivativeRules(final Config aConfig) {
+        myMaxSize = aConfig.getFreeDerivativeMaxSize();
+        myScaledDerivativesAllowed = aConfig.allowsFreeScaledDerivatives();
+        myScaleConstraint = aConfig.getScaleConstraint();
+    }
+
+    /**
+     * Checks whether the supplied image request is for a derivative that's always allowed.
+     *
+     * @param aRequest An image request
+     * @param aScaleConstraint The scale constraint of the request's meta-identifier (which is 1:1 if there isn't one)
+     * @return True if the request can be served without an authorization check; else, false
+     */
+    public boolean isAllowed(final ImageRequest aRequest, final int... aScaleConstraint) {
+        if (!aRequest.isWholeImage()) {
+            return false;
+        }
+
+        final OptionalInt maxDimension = aRequest.getMaxDimension();
+
+        if (maxDimension.isPresent() && maxDimension.getAsInt() <= myMaxSize) {
+            return true;
+        }
+
+        return myScaledDerivativesAllowed && isWithinScaleConstraint(aRequest, aScaleConstraint);
+    }
+
+    /**
+     * Checks whether the request is for a scaled derivative that's no larger than the tiered access scale constraint.
+     *
+     * @param aRequest An image request
+     * @param aScaleConstraint The scale constraint of the request's meta-identifier
+     * @return True if the request is within the tiered access scale constraint; else, false
+     */
+    private boolean isWithinScaleConstraint(final ImageRequest aRequest, final int... aScaleConstraint) {
+        final OptionalDouble scale = aRequest.getScale();
+        final long numerator = myScaleConstraint[0];
+        final long denominator = myScaleConstraint[1];
+
+        if (isUnscaled(aScaleConstraint)) {
+            return scale.isPresent() && scale.getAsDouble() * denominator <= numerator;
+        }
+
+        // A request with a scale constraint is compared by cross-multiplying the two fractions
+        return aScaleConstraint.length == SCALE_CONSTRAINT_LENGTH &&
+                aScaleConstraint[0] * denominator <= numerator * aScaleConstraint[1] &&
+                (!scale.isPresent() || scale.getAsDouble() <= 1);
+    }
+
+    /**
+     * Checks whether a scale constraint is for the full size image.
+     *
+     * @param aScaleConstraint A scale constraint
+     * @return True if the scale constraint is 1:1 (or missing); else, false
+     */
+    private static boolean isUnscaled(final int... aScaleConstraint) {
+        return aScaleConstraint == null || aScaleConstraint.length != SCALE_CONSTRAINT_LENGTH ||
+                aScaleConstraint[0] == aScaleConstraint[1];
+    }
+}
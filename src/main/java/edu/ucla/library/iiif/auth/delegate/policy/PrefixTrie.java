@@ -0,0 +1,143 @@
+
+package edu.ucla.library.iiif.auth.delegate.policy;
+
+import java.util.Arrays;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * A character trie that maps identifier prefixes to access modes. Each node keeps its children in sorted arrays, so a
+ * lookup walks the identifier once, without allocating, and returns the access mode of the longest matching prefix.
+ * <p>
+ * Prefixes are only added while a policy is being compiled; after that the trie is only read, so it can be shared by
+ * any number of threads.
+ */
+final class PrefixTrie {
+
+    /**
+     * The root of the trie, which matches the empty prefix.
+     */
+    private final Node myRoot = new Node();
+
+    /**
+     * The number of prefixes in the trie.
+     */
+    private int mySize;
+
+    /**
+     * Adds a prefix to the trie, replacing the access mode of an identical prefix if it's already in the trie.
+     *
+     * @param aPrefix An identifier prefix
+     * @param aAccessMode The access mode of identifiers that start with the prefix
+     */
+    void put(final String aPrefix, final AccessMode aAccessMode) {
+        Node node = myRoot;
+
+        for (int index = 0; index < aPrefix.length(); index++) {
+            node = node.getOrAddChild(aPrefix.charAt(index));
+        }
+
+        if (node.myAccessMode == null) {
+            mySize += 1;
+        }
+
+        node.myAccessMode = aAccessMode;
+    }
+
+    /**
+     * Gets the access mode of the longest prefix that matches the supplied identifier.
+     *
+     * @param aID An item identifier
+     * @return The access mode of the longest matching prefix, or null if no prefix matches
+     */
+    AccessMode getLongestMatch(final String aID) {
+        AccessMode accessMode = myRoot.myAccessMode;
+        Node node = myRoot;
+
+        for (int index = 0; index < aID.length(); index++) {
+            node = node.getChild(aID.charAt(index));
+
+            if (node == null) {
+                break;
+            }
+
+            if (node.myAccessMode != null) {
+                accessMode = node.myAccessMode;
+            }
+        }
+
+        return accessMode;
+    }
+
+    /**
+     * Gets the number of prefixes in the trie.
+     *
+     * @return The number of prefixes in the trie
+     */
+    int size() {
+        return mySize;
+    }
+
+    /**
+     * A node in the trie.
+     */
+    private static final class Node {
+
+        /**
+         * The characters that lead to the node's children, in sorted order.
+         */
+        private char[] myKeys = new char[0];
+
+        /**
+         * The node's children, in the same order as their keys.
+         */
+        private Node[] myChildren = new Node[0];
+
+        /**
+         * The access mode of the prefix that ends at this node, if there is one.
+         */
+        private AccessMode myAccessMode;
+
+        /**
+         * Gets the child for the supplied character.
+         *
+         * @param aChar A character
+         * @return The child node, or null if there isn't one
+         */
+        private Node getChild(final char aChar) {
+            final int index = Arrays.binarySearch(myKeys, aChar);
+            return index >= 0 ? myChildren[index] : null;
+        }
+
+        /**
+         * Gets the child for the supplied character, adding it if it doesn't exist.
+         *
+         * @param aChar A character
+         * @return The child node
+         */
+        private Node getOrAddChild(final char aChar) {
+            final int index = Arrays.binarySearch(myKeys, aChar);
+
+            if (index >= 0) {
+                return myChildren[index];
+            }
+
+            final int insertion = -(index + 1);
+            final char[] keys = new char[myKeys.length + 1];
+            final Node[] children = new Node[myChildren.length + 1];
+            final Node child = new Node();
+
+            System.arraycopy(myKeys, 0, keys, 0, insertion);
+            System.arraycopy(myKeys, insertion, keys, insertion + 1, myKeys.length - insertion);
+            System.arraycopy(myChildren, 0, children, 0, insertion);
+            System.arraycopy(myChildren, insertion, children, insertion + 1, myChildren.length - insertion);
+
+            keys[insertion] = aChar;
+            children[insertion] = child;
+            myKeys = keys;
+            myChildren = children;
+
+            return child;
+        }
+    }
+}
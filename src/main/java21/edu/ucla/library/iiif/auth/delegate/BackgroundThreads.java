@@ -0,0 +1,63 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The threads that run the delegate's background work (e.g., warm-up, preloading, prefetching, and watching the
+ * configuration file) and its HTTP client's tasks, which mostly wait on upstream services.
+ * <p>
+ * This is the JDK 21 version, which uses virtual threads. Virtual threads are always daemon threads, and a blocked
+ * virtual thread doesn't hold on to a platform thread, so the executors here don't need to pool or reuse them.
+ */
+final class BackgroundThreads {
+
+    /**
+     * Creates a new background threads utility.
+     */
+    private BackgroundThreads() {
+        // This is intentionally left empty
+    }
+
+    /**
+     * Checks whether background work runs on virtual threads.
+     *
+     * @return True if background work runs on virtual threads; else, false
+     */
+    static boolean isVirtual() {
+        return true;
+    }
+
+    /**
+     * Gets a factory for background threads with the supplied name.
+     *
+     * @param aName A thread name
+     * @return A thread factory
+     */
+    static ThreadFactory newThreadFactory(final String aName) {
+        return Thread.ofVirtual().name(aName).factory();
+    }
+
+    /**
+     * Gets an executor that runs each task on a new virtual thread.
+     *
+     * @param aName The name of the executor's threads
+     * @return An executor
+     */
+    static ExecutorService newExecutor(final String aName) {
+        return Executors.newThreadPerTaskExecutor(newThreadFactory(aName));
+    }
+
+    /**
+     * Starts a task on a new background thread.
+     *
+     * @param aName The thread's name
+     * @param aTask The task to run
+     * @return The started thread
+     */
+    static Thread start(final String aName, final Runnable aTask) {
+        return Thread.ofVirtual().name(aName).start(aTask);
+    }
+}
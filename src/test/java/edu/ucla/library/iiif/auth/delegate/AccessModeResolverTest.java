@@ -0,0 +1,297 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+import edu.ucla.library.iiif.auth.delegate.hauth.CacheDirectives;
+import edu.ucla.library.iiif.auth.delegate.hauth.ItemSource;
+import edu.ucla.library.iiif.auth.delegate.policy.AccessPolicy;
+
+/**
+ * Tests of the AccessModeResolver class, against a fake Hauth access mode service.
+ */
+public class AccessModeResolverTest {
+
+    /**
+     * A fake service URI.
+     */
+    private static final URI SERVICE = URI.create("https://example.com/service");
+
+    /**
+     * The path of the fake access mode service.
+     */
+    private static final String ACCESS_PATH = "/access";
+
+    /**
+     * A test identifier.
+     */
+    private static final String ID = "ark:/21198/z1";
+
+    /**
+     * The entity tag of the fake service's responses.
+     */
+    private static final String ETAG = "\"v1\"";
+
+    /**
+     * The body of the fake service's responses.
+     */
+    private static final String BODY = "{\"accessMode\":\"TIERED\"}";
+
+    /**
+     * The cache directives of a response that's stale as soon as it's received.
+     */
+    private static final String NO_CACHE = "no-cache";
+
+    /**
+     * The fake Hauth access mode service.
+     */
+    private HttpServer myServer;
+
+    /**
+     * The status code of the fake service's next responses.
+     */
+    private volatile int myStatus = 200;
+
+    /**
+     * The body of the fake service's next successful responses.
+     */
+    private volatile String myBody = BODY;
+
+    /**
+     * The <code>Cache-Control</code> header of the fake service's next responses.
+     */
+    private volatile String myCacheControl = "max-age=60";
+
+    /**
+     * The number of milliseconds the fake service waits before its next responses.
+     */
+    private volatile long myDelay;
+
+    /**
+     * The <code>If-None-Match</code> header of each request the fake service received, or an empty string if the
+     * request didn't have one.
+     */
+    private final List<String> myRequests = new CopyOnWriteArrayList<>();
+
+    /**
+     * Starts the fake Hauth access mode service.
+     *
+     * @throws IOException If the service can't be started
+     */
+    @Before
+    public final void setUp() throws IOException {
+        myServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        myServer.createContext(ACCESS_PATH, this::respond);
+        myServer.start();
+    }
+
+    /**
+     * Stops the fake Hauth access mode service.
+     */
+    @After
+    public final void tearDown() {
+        myServer.stop(0);
+    }
+
+    /**
+     * Tests that an access mode is cached for its response's maximum age.
+     */
+    @Test
+    public final void testMaxAge() {
+        final AccessModeResolver resolver = getResolver();
+
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+        assertEquals(1, myRequests.size());
+    }
+
+    /**
+     * Tests that a stale access mode is revalidated with a conditional lookup, which Hauth can answer with a 304.
+     */
+    @Test
+    public final void testRevalidate() {
+        final AccessModeResolver resolver = getResolver();
+
+        myCacheControl = NO_CACHE;
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+
+        myStatus = 304;
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+        assertEquals(List.of("", ETAG), myRequests);
+    }
+
+    /**
+     * Tests that an access mode whose response is <code>no-store</code> isn't cached.
+     */
+    @Test
+    public final void testNoStore() {
+        final AccessModeResolver resolver = getResolver();
+
+        myCacheControl = "no-store";
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+        assertEquals(2, myRequests.size());
+        assertFalse(resolver.getCache().peek(ID).isPresent());
+        assertFalse(resolver.preload(ID));
+    }
+
+    /**
+     * Tests that a stale access mode is used when Hauth fails, if its response allows it.
+     */
+    @Test
+    public final void testStaleIfError() {
+        final AccessModeResolver resolver = getResolver();
+
+        myCacheControl = "max-age=0, stale-if-error=60";
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+
+        myStatus = 500;
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+        assertEquals(2, myRequests.size());
+    }
+
+    /**
+     * Tests that a stale access mode isn't used when Hauth fails, if its response doesn't allow it.
+     */
+    @Test
+    public final void testStaleWithoutStaleIfError() {
+        final AccessModeResolver resolver = getResolver();
+
+        myCacheControl = NO_CACHE;
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+        assertTrue(resolver.getCache().peek(ID).isPresent());
+
+        myStatus = 500;
+        assertEquals(AccessMode.ALL_OR_NOTHING, resolver.getAccessMode(ID));
+    }
+
+    /**
+     * Tests that revalidating a fresh access mode looks it up again, and that the cached access mode is kept if the
+     * lookup fails.
+     */
+    @Test
+    public final void testRevalidateFresh() {
+        final AccessModeResolver resolver = getResolver();
+
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+        assertTrue(resolver.revalidate(ID));
+        assertEquals(List.of("", ETAG), myRequests);
+
+        myStatus = 500;
+        assertFalse(resolver.revalidate(ID));
+        assertTrue(resolver.getCache().peek(ID).isPresent());
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+        assertEquals(3, myRequests.size());
+    }
+
+    /**
+     * Tests that a lookup that takes too long fails, so the fallback access mode is used.
+     */
+    @Test
+    public final void testTimeout() {
+        final AccessModeResolver resolver = getResolver(Duration.ofMillis(100));
+        final long start = System.nanoTime();
+
+        myDelay = 2_000;
+        assertEquals(AccessMode.ALL_OR_NOTHING, resolver.getAccessMode(ID));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(myDelay));
+        assertFalse(resolver.getCache().peek(ID).isPresent());
+    }
+
+    /**
+     * Tests that an item's source comes from the same Hauth record as its access mode, without another lookup.
+     */
+    @Test
+    public final void testSource() {
+        final AccessModeResolver resolver = getResolver();
+
+        myBody = "{\"accessMode\":\"TIERED\",\"source\":{\"type\":\"FilesystemSource\",\"pathname\":\"/z1.jp2\"}}";
+        assertEquals(AccessMode.TIERED, resolver.getAccessMode(ID));
+        assertEquals(Optional.of("/z1.jp2"), resolver.getSource(ID).flatMap(ItemSource::getPathname));
+        assertEquals(1, myRequests.size());
+    }
+
+    /**
+     * Tests that an item's record is looked up for its source if it isn't cached, and that a record without a source
+     * gives the item none.
+     */
+    @Test
+    public final void testNoSource() {
+        assertFalse(getResolver().getSource(ID).isPresent());
+        assertEquals(1, myRequests.size());
+    }
+
+    /**
+     * Answers a request to the fake access mode service, with the test's status code and cache directives.
+     *
+     * @param aExchange A request and its response
+     * @throws IOException If the response can't be sent
+     */
+    private void respond(final HttpExchange aExchange) throws IOException {
+        final String etag = aExchange.getRequestHeaders().getFirst(CacheDirectives.IF_NONE_MATCH);
+        final byte[] body = myStatus == 200 ? myBody.getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+        try {
+            Thread.sleep(myDelay);
+        } catch (final InterruptedException details) {
+            Thread.currentThread().interrupt();
+        }
+
+        myRequests.add(etag == null ? "" : etag);
+        aExchange.getResponseHeaders().add(CacheDirectives.CACHE_CONTROL, myCacheControl);
+        aExchange.getResponseHeaders().add(CacheDirectives.ETAG, ETAG);
+        aExchange.sendResponseHeaders(myStatus, body.length == 0 ? -1 : body.length);
+
+        try (OutputStream output = aExchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * Gets a resolver that looks up access modes in the fake access mode service.
+     *
+     * @return An access mode resolver
+     */
+    private AccessModeResolver getResolver() {
+        return getResolver(Duration.ofMillis(Config.DEFAULT_UPSTREAM_TIMEOUT));
+    }
+
+    /**
+     * Gets a resolver that looks up access modes in the fake access mode service, with the supplied timeout.
+     *
+     * @param aTimeout The amount of time a lookup may take
+     * @return An access mode resolver
+     */
+    private AccessModeResolver getResolver(final Duration aTimeout) {
+        final URI accessService = URI.create("http://" + myServer.getAddress().getHostString() + ":" +
+                myServer.getAddress().getPort() + ACCESS_PATH);
+
+        return new AccessModeResolver(
+                new Config(SERVICE, SERVICE, SERVICE, accessService, "1:2").setUpstreamTimeout(aTimeout),
+                AccessPolicy.parse(List.of(), AccessModeResolverTest.class.getSimpleName()),
+                HttpClient.newHttpClient());
+    }
+}
@@ -0,0 +1,86 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import info.freelibrary.iiif.presentation.v3.utils.JsonKeys;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * Tests of the AuthServices class.
+ */
+public class AuthServicesTest {
+
+    /**
+     * A fake service URI.
+     */
+    private static final URI SERVICE = URI.create("https://example.com/service");
+
+    /**
+     * Another fake service URI.
+     */
+    private static final URI OTHER_SERVICE = URI.create("https://example.com/other");
+
+    /**
+     * A tiered access scale constraint.
+     */
+    private static final String SCALE_CONSTRAINT = "1:2";
+
+    /**
+     * Tests that the service descriptions are reused for configurations with the same service URIs.
+     */
+    @Test
+    public final void testForConfig() {
+        final AuthServices services = AuthServices.forConfig(getConfig(SERVICE, SCALE_CONSTRAINT));
+
+        assertSame(services, AuthServices.forConfig(getConfig(SERVICE, "1:4")));
+        assertNotSame(services, AuthServices.forConfig(getConfig(OTHER_SERVICE, SCALE_CONSTRAINT)));
+    }
+
+    /**
+     * Tests the extra info.json keys for each access mode.
+     */
+    @Test
+    public final void testGetInfoKeys() {
+        final AuthServices services = AuthServices.forConfig(getConfig(SERVICE, SCALE_CONSTRAINT));
+        final Map<String, Object> tiered = services.getInfoKeys(AccessMode.TIERED);
+
+        assertTrue(services.getInfoKeys(AccessMode.OPEN).isEmpty());
+        assertEquals(1, ((List<?>) tiered.get(JsonKeys.SERVICE)).size());
+        assertEquals(1, ((List<?>) services.getInfoKeys(AccessMode.ALL_OR_NOTHING).get(JsonKeys.SERVICE)).size());
+        assertSame(tiered, services.getInfoKeys(AccessMode.TIERED));
+    }
+
+    /**
+     * Tests that the shared service descriptions can't be modified.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    @SuppressWarnings("unchecked")
+    public final void testInfoKeysAreImmutable() {
+        final AuthServices services = AuthServices.forConfig(getConfig(SERVICE, SCALE_CONSTRAINT));
+        final List<Object> serviceList = (List<Object>) services.getInfoKeys(AccessMode.TIERED).get(JsonKeys.SERVICE);
+
+        ((Map<String, Object>) serviceList.get(0)).put(JsonKeys.LABEL, "Modified");
+    }
+
+    /**
+     * Gets a configuration with the supplied token service and scale constraint.
+     *
+     * @param aTokenService A token service URI
+     * @param aScaleConstraint A tiered access scale constraint
+     * @return A configuration
+     */
+    private Config getConfig(final URI aTokenService, final String aScaleConstraint) {
+        return new Config(SERVICE, aTokenService, SERVICE, SERVICE, aScaleConstraint);
+    }
+}
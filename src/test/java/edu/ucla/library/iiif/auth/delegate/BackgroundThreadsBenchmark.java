@@ -0,0 +1,178 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthItem;
+
+/**
+ * A benchmark of the delegate's background threads, which makes many concurrent access mode lookups against a local
+ * fake Hauth service that waits a fixed amount of time before it responds.
+ * <p>
+ * To compare platform and virtual threads, run the benchmark once on JDK 11 (or from the test classes directory) and
+ * once on JDK 21 with the delegate's multi-release jar on the class path, e.g.:
+ * <p>
+ * <code>java -cp target/cantaloupe-auth-delegate-0.0.1.jar:target/test-classes:$CP
+ * edu.ucla.library.iiif.auth.delegate.BackgroundThreadsBenchmark [lookups] [latency in ms]</code>
+ * <p>
+ * The fake Hauth service runs in the same JVM, on its own cached thread pool, so the reported peak thread count
+ * includes its threads in both modes; the difference between the two runs is the cost of the delegate's threads.
+ */
+public final class BackgroundThreadsBenchmark {
+
+    /**
+     * The default number of concurrent lookups.
+     */
+    private static final int DEFAULT_LOOKUPS = 2_000;
+
+    /**
+     * The default latency, in milliseconds, of the fake Hauth service.
+     */
+    private static final int DEFAULT_LATENCY = 100;
+
+    /**
+     * The number of connections the fake Hauth service will queue.
+     */
+    private static final int BACKLOG = 10_000;
+
+    /**
+     * The fake Hauth service's response.
+     */
+    private static final byte[] RESPONSE = "{\"accessMode\": \"OPEN\"}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The path of the fake Hauth access mode service.
+     */
+    private static final String ACCESS_PATH = "/access/";
+
+    /**
+     * Creates a new benchmark.
+     */
+    private BackgroundThreadsBenchmark() {
+        // This is intentionally left empty
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param aArgs The number of concurrent lookups and the fake Hauth service's latency in milliseconds
+     * @throws IOException If the fake Hauth service can't be started
+     * @throws InterruptedException If the benchmark is interrupted
+     * @throws ExecutionException If a lookup fails unexpectedly
+     */
+    @SuppressWarnings("checkstyle:UncommentedMain") // The benchmark is run from the command line
+    public static void main(final String[] aArgs) throws IOException, InterruptedException, ExecutionException {
+        final int lookups = aArgs.length > 0 ? Integer.parseInt(aArgs[0]) : DEFAULT_LOOKUPS;
+        final int latency = aArgs.length > 1 ? Integer.parseInt(aArgs[1]) : DEFAULT_LATENCY;
+        final ExecutorService hauthThreads = Executors.newCachedThreadPool();
+        final HttpServer server = startHauth(latency, hauthThreads);
+        final URI service = URI.create("http://localhost:" + server.getAddress().getPort() + ACCESS_PATH);
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        try {
+            // The first, smaller, round warms up the JIT, the HTTP client, and the fake service
+            lookUp(service, lookups / 10);
+            threads.resetPeakThreadCount();
+
+            final long start = System.nanoTime();
+            final int open = lookUp(service, lookups);
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            System.out.printf("%s threads, JDK %s: %d lookups (%d open) with %d ms latency in %d ms " +
+                    "(%.0f lookups/s); peak thread count: %d%n", BackgroundThreads.isVirtual() ? "Virtual" : "Platform",
+                    Runtime.version().feature(), lookups, open, latency, elapsed, lookups * 1000.0 / elapsed,
+                    threads.getPeakThreadCount());
+        } finally {
+            server.stop(0);
+            hauthThreads.shutdownNow();
+        }
+    }
+
+    /**
+     * Makes the supplied number of concurrent access mode lookups on the delegate's background threads.
+     *
+     * @param aService The fake Hauth access mode service
+     * @param aLookups The number of lookups to make
+     * @return The number of lookups that found an open access item
+     * @throws InterruptedException If the lookups are interrupted
+     * @throws ExecutionException If a lookup fails unexpectedly
+     */
+    private static int lookUp(final URI aService, final int aLookups) throws InterruptedException,
+            ExecutionException {
+        final ExecutorService executor = BackgroundThreads.newExecutor("benchmark");
+        final HttpClient httpClient =
+                HttpClient.newBuilder().executor(BackgroundThreads.newExecutor("benchmark-http")).build();
+        final List<Callable<AccessMode>> tasks = new ArrayList<>(aLookups);
+        int open = 0;
+
+        for (int index = 0; index < aLookups; index++) {
+            final String id = "ark:/21198/" + index;
+            tasks.add(() -> new HauthItem(httpClient, aService, id).getAccessMode());
+        }
+
+        try {
+            for (final Future<AccessMode> result : executor.invokeAll(tasks)) {
+                if (result.get() == AccessMode.OPEN) {
+                    open += 1;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return open;
+    }
+
+    /**
+     * Starts a fake Hauth access mode service that waits before it responds.
+     *
+     * @param aLatency The number of milliseconds the service waits before it responds
+     * @param aExecutor The executor that handles the service's requests
+     * @return The started service
+     * @throws IOException If the service can't be started
+     */
+    private static HttpServer startHauth(final int aLatency, final ExecutorService aExecutor) throws IOException {
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), BACKLOG);
+
+        server.createContext(ACCESS_PATH, exchange -> respond(exchange, aLatency));
+        server.setExecutor(aExecutor);
+        server.start();
+        return server;
+    }
+
+    /**
+     * Responds to a request after the supplied latency.
+     *
+     * @param aExchange An HTTP exchange
+     * @param aLatency The number of milliseconds to wait before responding
+     * @throws IOException If the response can't be written
+     */
+    private static void respond(final HttpExchange aExchange, final int aLatency) throws IOException {
+        try (OutputStream body = aExchange.getResponseBody()) {
+            TimeUnit.MILLISECONDS.sleep(aLatency);
+            aExchange.sendResponseHeaders(200, RESPONSE.length);
+            body.write(RESPONSE);
+        } catch (final InterruptedException details) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
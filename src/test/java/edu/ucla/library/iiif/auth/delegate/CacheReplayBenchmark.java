@@ -0,0 +1,179 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.ucla.library.iiif.auth.delegate.cache.BoundedCache;
+
+/**
+ * A benchmark of the access mode cache's admission policy, which replays a trace of identifier lookups against a least
+ * recently used cache and a cache with an admission policy, and prints each one's hit ratio.
+ * <p>
+ * The trace is either read from a Cantaloupe access log or an identifier list, e.g.:
+ * <p>
+ * <code>java -cp target/classes:target/test-classes:$CP edu.ucla.library.iiif.auth.delegate.CacheReplayBenchmark
+ * [cache size] [access log]</code>
+ * <p>
+ * or, if no file is supplied, generated: viewers look up items with a Zipf-like popularity, while, for some of the
+ * lookups, a crawler scans items that are each looked up once. The generated trace is replayed with several shares of
+ * crawler lookups.
+ */
+public final class CacheReplayBenchmark {
+
+    /**
+     * The default size of the replayed caches.
+     */
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    /**
+     * The number of lookups in a generated trace.
+     */
+    private static final int LOOKUPS = 2_000_000;
+
+    /**
+     * The number of items that viewers look up, as a multiple of the cache size.
+     */
+    private static final int CATALOG_FACTOR = 10;
+
+    /**
+     * The percentages of a generated trace's lookups that a crawler makes.
+     */
+    private static final int[] CRAWL_PERCENTAGES = { 0, 25, 50, 75 };
+
+    /**
+     * The time to live of the replayed caches' entries, which is long enough that none expire.
+     */
+    private static final Duration TIME_TO_LIVE = Duration.ofDays(1);
+
+    /**
+     * Creates a new benchmark.
+     */
+    private CacheReplayBenchmark() {
+        // This is intentionally left empty
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param aArgs The size of the replayed caches and, optionally, an access log or identifier list to replay
+     * @throws IOException If the access log or identifier list can't be read
+     */
+    @SuppressWarnings("checkstyle:UncommentedMain") // The benchmark is run from the command line
+    public static void main(final String[] aArgs) throws IOException {
+        final int cacheSize = aArgs.length > 0 ? Integer.parseInt(aArgs[0]) : DEFAULT_CACHE_SIZE;
+
+        if (aArgs.length > 1) {
+            final List<String> trace;
+
+            try (Stream<String> lines = Files.lines(Path.of(aArgs[1]), StandardCharsets.UTF_8)) {
+                trace = lines.map(Preloader::parseIdentifier).flatMap(Optional::stream).collect(Collectors.toList());
+            }
+
+            replay(aArgs[1], trace, cacheSize);
+        } else {
+            for (final int crawlPercentage : CRAWL_PERCENTAGES) {
+                replay(crawlPercentage + "% crawler lookups", generate(cacheSize, crawlPercentage), cacheSize);
+            }
+        }
+    }
+
+    /**
+     * Replays a trace against a least recently used cache and a cache with an admission policy, and prints their hit
+     * ratios.
+     *
+     * @param aName The name of the trace
+     * @param aTrace The identifiers that are looked up, in order
+     * @param aCacheSize The size of the caches
+     */
+    private static void replay(final String aName, final List<String> aTrace, final int aCacheSize) {
+        final BoundedCache<String, Boolean> lru = new BoundedCache<>(aCacheSize, TIME_TO_LIVE, false);
+        final BoundedCache<String, Boolean> admission = new BoundedCache<>(aCacheSize, TIME_TO_LIVE, true);
+
+        for (final String id : aTrace) {
+            lru.get(id, key -> Boolean.TRUE);
+            admission.get(id, key -> Boolean.TRUE);
+        }
+
+        System.out.printf("%s (%d lookups, cache size %d): LRU hit ratio %.1f%%, admission policy hit ratio %.1f%%%n",
+                aName, aTrace.size(), aCacheSize, getHitRatio(lru), getHitRatio(admission));
+    }
+
+    /**
+     * Generates a trace of viewer and crawler lookups.
+     *
+     * @param aCacheSize The size of the caches the trace is replayed against
+     * @param aCrawlPercentage The percentage of the lookups that a crawler makes
+     * @return The identifiers that are looked up, in order
+     */
+    private static List<String> generate(final int aCacheSize, final int aCrawlPercentage) {
+        final double[] popularity = getZipfDistribution(aCacheSize * CATALOG_FACTOR);
+        final List<String> trace = new ArrayList<>(LOOKUPS);
+        final Random random = new Random(aCrawlPercentage);
+        int crawled = 0;
+
+        for (int index = 0; index < LOOKUPS; index++) {
+            if (random.nextInt(100) < aCrawlPercentage) {
+                trace.add("ark:/21198/crawled/" + crawled++);
+            } else {
+                trace.add("ark:/21198/" + getRank(popularity, random.nextDouble()));
+            }
+        }
+
+        return trace;
+    }
+
+    /**
+     * Gets the cumulative probabilities of a Zipf distribution with an exponent of one.
+     *
+     * @param aItems The number of items
+     * @return The probability that an item's rank is at or below each index
+     */
+    private static double[] getZipfDistribution(final int aItems) {
+        final double[] cumulative = new double[aItems];
+        double sum = 0;
+
+        for (int index = 0; index < aItems; index++) {
+            sum += 1.0 / (index + 1);
+            cumulative[index] = sum;
+        }
+
+        for (int index = 0; index < aItems; index++) {
+            cumulative[index] /= sum;
+        }
+
+        return cumulative;
+    }
+
+    /**
+     * Finds the rank of the item that a random number picks from a distribution.
+     *
+     * @param aDistribution The cumulative probabilities of the items' ranks
+     * @param aRandom A random number from zero to one
+     * @return The item's rank
+     */
+    private static int getRank(final double[] aDistribution, final double aRandom) {
+        final int index = Arrays.binarySearch(aDistribution, aRandom);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Gets a cache's hit ratio.
+     *
+     * @param aCache A cache
+     * @return The percentage of the cache's lookups that were hits
+     */
+    private static double getHitRatio(final BoundedCache<?, ?> aCache) {
+        return aCache.getHits() * 100.0 / (aCache.getHits() + aCache.getMisses());
+    }
+}
@@ -2,18 +2,34 @@
 package edu.ucla.library.iiif.auth.delegate;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+import edu.ucla.library.iiif.auth.delegate.limit.ClientRateLimiter;
+
 /**
  * Tests of the Config class.
  */
 public class ConfigTest {
 
+    /**
+     * A test scale constraint.
+     */
+    private static final String SCALE_CONSTRAINT = "1:2";
+
     /**
      * A configuration.
      */
@@ -33,7 +49,7 @@ public class ConfigTest {
             throw new ConfigException(details, fakeService);
         }
 
-        myConfig = new Config(fakeServiceURI, fakeServiceURI, fakeServiceURI, fakeServiceURI, "1:2");
+        myConfig = new Config(fakeServiceURI, fakeServiceURI, fakeServiceURI, fakeServiceURI, SCALE_CONSTRAINT);
     }
 
     /**
@@ -144,6 +160,134 @@ public class ConfigTest {
         myConfig.setScaleConstraint("4:3");
     }
 
+    /**
+     * Tests getting/setting the token cache size configuration.
+     */
+    @Test
+    public final void testSetTokenCacheSize() {
+        assertEquals(Config.DEFAULT_TOKEN_CACHE_SIZE, myConfig.getTokenCacheSize());
+        assertEquals(10, myConfig.setTokenCacheSize(10).getTokenCacheSize());
+    }
+
+    /**
+     * Tests setting the token cache size configuration with an invalid value.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testSetTokenCacheSizeInvalid() {
+        myConfig.setTokenCacheSize(0);
+    }
+
+    /**
+     * Tests that setting a value returns a changed copy, leaving the original configuration as it was.
+     */
+    @Test
+    public final void testSetReturnsCopy() {
+        final Config config = myConfig.setTokenCacheSize(10);
+
+        assertNotSame(myConfig, config);
+        assertEquals(Config.DEFAULT_TOKEN_CACHE_SIZE, myConfig.getTokenCacheSize());
+        assertEquals(myConfig.getAccessService(), config.getAccessService());
+    }
+
+    /**
+     * Tests getting/setting the free derivative configuration.
+     */
+    @Test
+    public final void testSetFreeDerivatives() {
+        assertEquals(Config.DEFAULT_FREE_DERIVATIVE_MAX_SIZE, myConfig.getFreeDerivativeMaxSize());
+        assertEquals(0, myConfig.setFreeDerivativeMaxSize(0).getFreeDerivativeMaxSize());
+        assertFalse(myConfig.allowsFreeScaledDerivatives());
+        assertTrue(myConfig.setFreeScaledDerivatives(true).allowsFreeScaledDerivatives());
+    }
+
+    /**
+     * Tests setting the free derivative max size configuration with an invalid value.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testSetFreeDerivativeMaxSizeInvalid() {
+        myConfig.setFreeDerivativeMaxSize(-1);
+    }
+
+    /**
+     * Tests setting the fallback access mode.
+     */
+    @Test
+    public final void testSetFallbackAccessMode() {
+        assertEquals(AccessMode.ALL_OR_NOTHING, myConfig.getFallbackAccessMode());
+        assertEquals(AccessMode.TIERED, myConfig.setFallbackAccessMode("TIERED").getFallbackAccessMode());
+    }
+
+    /**
+     * Tests setting the fallback access mode with an invalid value.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testSetFallbackAccessModeInvalid() {
+        myConfig.setFallbackAccessMode("CLOSED");
+    }
+
+    /**
+     * Tests setting the upstream queue size with an invalid value.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testSetUpstreamQueueSizeInvalid() {
+        myConfig.setUpstreamQueueSize(-1);
+    }
+
+    /**
+     * Tests setting a client burst that's larger than the client rate limiter allows.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testSetClientBurstInvalid() {
+        myConfig.setClientBurst(ClientRateLimiter.MAX_BURST + 1);
+    }
+
+    /**
+     * Tests setting an audit sample rate that isn't a percentage.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testSetAuditSampleRateInvalid() {
+        myConfig.setAuditSampleRate(101);
+    }
+
+    /**
+     * Tests setting an access mode refresh time that isn't a percentage.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testSetAccessCacheRefreshInvalid() {
+        myConfig.setAccessCacheRefresh(-1);
+    }
+
+    /**
+     * Tests loading a configuration file whose properties override the environment's.
+     *
+     * @throws IOException If the test configuration file can't be written
+     */
+    @Test
+    public final void testLoad() throws IOException {
+        final Path configFile = Files.createTempFile(ConfigTest.class.getSimpleName(), ".properties");
+
+        try {
+            Files.write(configFile, List.of("# A comment", Config.AUTH_TOKEN_CACHE_SIZE + "=42",
+                    Config.AUTH_ACCESS_SERVICE + "=https://example.com/access"));
+
+            final Config config = Config.load(configFile);
+
+            assertEquals(42, config.getTokenCacheSize());
+            assertEquals(URI.create("https://example.com/access"), config.getAccessService());
+            assertEquals(Config.getURI(Config.AUTH_TOKEN_SERVICE), config.getTokenService());
+        } finally {
+            Files.delete(configFile);
+        }
+    }
+
+    /**
+     * Tests that a configuration without a required property isn't valid.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testConfigMissingProperty() {
+        new Config(Map.of(Config.TIERED_ACCESS_SCALE_CONSTRAINT, SCALE_CONSTRAINT));
+    }
+
     /**
      * Tests getting a configuration property from the package level <code>getString()</code> method.
      *
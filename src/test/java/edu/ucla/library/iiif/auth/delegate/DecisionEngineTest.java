@@ -0,0 +1,263 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.ucla.library.iiif.auth.delegate.audit.AuditLog;
+
+import edu.ucla.library.iiif.auth.delegate.metrics.Metrics;
+import edu.ucla.library.iiif.auth.delegate.policy.AccessPolicy;
+
+/**
+ * Tests of the DecisionEngine class, using a local access policy so that no Hauth lookups are needed.
+ */
+public class DecisionEngineTest {
+
+    /**
+     * A fake service URI.
+     */
+    private static final URI SERVICE = URI.create("https://example.com/service");
+
+    /**
+     * The ID of an open access item.
+     */
+    private static final String OPEN_ID = "ark:/21198/open";
+
+    /**
+     * The ID of a tiered access item.
+     */
+    private static final String TIERED_ID = "ark:/21198/tiered";
+
+    /**
+     * The ID of an all-or-nothing access item.
+     */
+    private static final String ALL_OR_NOTHING_ID = "ark:/21198/all";
+
+    /**
+     * The path of a full size image.
+     */
+    private static final String FULL_IMAGE = "/full/max/0/default.jpg";
+
+    /**
+     * The path of an info.json.
+     */
+    private static final String INFO_JSON = "/info.json";
+
+    /**
+     * The key of a status code in a <code>preAuthorize()</code> response.
+     */
+    private static final String STATUS_CODE = "status_code";
+
+    /**
+     * The scale constraint of a full size image request.
+     */
+    private static final int[] UNSCALED = { 1, 1 };
+
+    /**
+     * The configured tiered access scale constraint.
+     */
+    private static final int[] HALF = { 1, 2 };
+
+    /**
+     * The tiered access scale constraint.
+     */
+    private static final String SCALE_CONSTRAINT = "1:2";
+
+    /**
+     * The decision engine being tested.
+     */
+    private static final DecisionEngine ENGINE = new DecisionEngine(
+            new Config(SERVICE, SERVICE, SERVICE, SERVICE, SCALE_CONSTRAINT), AccessPolicy.parse(List.of( //
+                    "prefix ark:/21198/open OPEN", //
+                    "prefix ark:/21198/tiered TIERED", //
+                    "prefix ark:/21198/all ALL_OR_NOTHING"), DecisionEngineTest.class.getSimpleName()));
+
+    /**
+     * A temporary folder for audit log files.
+     */
+    @Rule
+    public final TemporaryFolder myFolder = new TemporaryFolder();
+
+    /**
+     * Tests that open access items are allowed.
+     */
+    @Test
+    public final void testOpen() {
+        final Decision decision = ENGINE.decide(getRequest(OPEN_ID, FULL_IMAGE, UNSCALED));
+
+        assertEquals(true, decision.getResult());
+        assertEquals(200, decision.getStatusCode());
+        assertTrue(decision.getInfoKeys().isEmpty());
+    }
+
+    /**
+     * Tests that a thumbnail of an all-or-nothing item is allowed.
+     */
+    @Test
+    public final void testThumbnail() {
+        assertEquals(true, ENGINE.decide(getRequest(ALL_OR_NOTHING_ID, "/full/!200,200/0/default.jpg", UNSCALED))
+                .getResult());
+    }
+
+    /**
+     * Tests that a restricted item's whole image, at a size that only states its width or its height, isn't allowed
+     * without an access check.
+     */
+    @Test
+    public final void testUnboundedThumbnail() {
+        final String widthOnly = "/full/200,/0/default.jpg";
+
+        assertEquals(401L, getStatusCode(ENGINE.decide(getRequest(ALL_OR_NOTHING_ID, widthOnly, UNSCALED))));
+        assertEquals(401L, getStatusCode(ENGINE.decide(getRequest(ALL_OR_NOTHING_ID, "/full/,200/0/default.jpg",
+                UNSCALED))));
+        assertTrue(ENGINE.decide(getRequest(TIERED_ID, widthOnly, UNSCALED)).getResult() instanceof Map);
+    }
+
+    /**
+     * Tests that a reload that only changes the audit log's sample rate keeps the previous engine's audit log, so
+     * that two logs never write to the same file.
+     */
+    @Test
+    public final void testReloadAuditSampleRate() {
+        final Map<String, String> properties = new HashMap<>(Map.of(Config.AUTH_COOKIE_SERVICE, SERVICE.toString(),
+                Config.AUTH_TOKEN_SERVICE, SERVICE.toString(), Config.SINAI_AUTH_TOKEN_SERVICE, SERVICE.toString(),
+                Config.AUTH_ACCESS_SERVICE, SERVICE.toString(), Config.TIERED_ACCESS_SCALE_CONSTRAINT,
+                SCALE_CONSTRAINT, Config.AUTH_AUDIT_LOG, myFolder.getRoot().toPath().resolve("audit.log").toString(),
+                Config.AUTH_AUDIT_SAMPLE_RATE, "100"));
+        final DecisionEngine previous = new DecisionEngine(new Config(properties));
+        final AuditLog auditLog = previous.getAuditLog().orElseThrow();
+
+        try {
+            properties.put(Config.AUTH_AUDIT_SAMPLE_RATE, "10");
+
+            assertSame(auditLog, new DecisionEngine(new Config(properties), previous).getAuditLog().orElseThrow());
+            assertEquals(10, auditLog.getSampleRate());
+        } finally {
+            auditLog.close();
+        }
+    }
+
+    /**
+     * Tests that a full size tiered image request from a client that's over its limit is redirected to the configured
+     * scale, like any other failed check, without a token service call.
+     */
+    @Test
+    public final void testTieredImageOverClientLimit() {
+        final URI tokenService = URI.create("http://0.0.0.0:9/token");
+        final Config config = new Config(SERVICE, tokenService, SERVICE, SERVICE, SCALE_CONSTRAINT)
+                .setClientRateLimit(1).setClientBurst(1);
+        final DecisionEngine engine = new DecisionEngine(config, AccessPolicy.parse(List.of("prefix " + TIERED_ID +
+                " TIERED"), DecisionEngineTest.class.getSimpleName()));
+        final AuthRequest request = getRequest(TIERED_ID, FULL_IMAGE, UNSCALED,
+                Map.of("Cookie", "iiif-access=x", RequestHeaders.X_FORWARDED_FOR, "10.0.0.1"));
+        final Object redirect = engine.decide(request).getResult();
+        final long calls = Metrics.getUpstream(CookieValidator.TOKEN_SERVICE).getCalls();
+
+        assertTrue(redirect instanceof Map);
+        assertEquals(redirect, engine.decide(request).getResult());
+        assertEquals(calls, Metrics.getUpstream(CookieValidator.TOKEN_SERVICE).getCalls());
+    }
+
+    /**
+     * Tests that a full size tiered image request without credentials is redirected to the configured scale.
+     */
+    @Test
+    public final void testTieredImageRedirect() {
+        final Object result = ENGINE.decide(getRequest(TIERED_ID, FULL_IMAGE, UNSCALED)).getResult();
+
+        assertEquals(Map.of(STATUS_CODE, 302L, "scale_numerator", 1L, "scale_denominator", 2L), result);
+    }
+
+    /**
+     * Tests tiered image requests with a scale constraint.
+     */
+    @Test
+    public final void testTieredImageScaled() {
+        assertEquals(true, ENGINE.decide(getRequest(TIERED_ID, FULL_IMAGE, HALF)).getResult());
+        assertEquals(401L, getStatusCode(ENGINE.decide(getRequest(TIERED_ID, FULL_IMAGE, 1, 3))));
+    }
+
+    /**
+     * Tests that a scaled tiered info.json request has the auth services added.
+     */
+    @Test
+    public final void testTieredInfo() {
+        final Decision decision = ENGINE.decide(getRequest(TIERED_ID, INFO_JSON, HALF));
+
+        assertEquals(true, decision.getResult());
+        assertFalse(decision.getInfoKeys().isEmpty());
+        assertEquals(false, ENGINE.decide(getRequest(TIERED_ID, INFO_JSON, 1, 3)).getResult());
+    }
+
+    /**
+     * Tests that all-or-nothing requests without credentials are unauthorized.
+     */
+    @Test
+    public final void testAllOrNothing() {
+        final Decision decision = ENGINE.decide(getRequest(ALL_OR_NOTHING_ID, INFO_JSON, UNSCALED));
+
+        assertEquals(401L, getStatusCode(decision));
+        assertEquals(401, decision.getStatusCode());
+        assertFalse(decision.getInfoKeys().isEmpty());
+        assertEquals(401L, getStatusCode(ENGINE.decide(getRequest(ALL_OR_NOTHING_ID, FULL_IMAGE, UNSCALED))));
+    }
+
+    /**
+     * Tests that items in the local access policy aren't preloaded.
+     */
+    @Test
+    public final void testPreloadPolicyItem() {
+        assertFalse(ENGINE.getAccessModes().preload(OPEN_ID));
+        assertEquals(0, new Preloader(ENGINE).preload(List.of(TIERED_ID, ALL_OR_NOTHING_ID)));
+    }
+
+    /**
+     * Gets a test authorization request without any headers.
+     *
+     * @param aID An item ID
+     * @param aPath The path of the request after the item ID
+     * @param aScaleConstraint The request's scale constraint
+     * @return The authorization request
+     */
+    private static AuthRequest getRequest(final String aID, final String aPath, final int... aScaleConstraint) {
+        return getRequest(aID, aPath, aScaleConstraint, Collections.emptyMap());
+    }
+
+    /**
+     * Gets a test authorization request with the supplied headers.
+     *
+     * @param aID An item ID
+     * @param aPath The path of the request after the item ID
+     * @param aScaleConstraint The request's scale constraint
+     * @param aHeaders The request's headers
+     * @return The authorization request
+     */
+    private static AuthRequest getRequest(final String aID, final String aPath, final int[] aScaleConstraint,
+            final Map<String, String> aHeaders) {
+        final String uri = "/iiif/2/" + aID + aPath;
+        return new AuthRequest(aID, uri, uri, aScaleConstraint, aHeaders);
+    }
+
+    /**
+     * Gets the status code of a decision's <code>preAuthorize()</code> response.
+     *
+     * @param aDecision An authorization decision
+     * @return The response's status code
+     */
+    private static Object getStatusCode(final Decision aDecision) {
+        return ((Map<?, ?>) aDecision.getResult()).get(STATUS_CODE);
+    }
+}
@@ -0,0 +1,106 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+
+import org.junit.Test;
+
+/**
+ * Tests of the ImageRequest class.
+ */
+public class ImageRequestTest {
+
+    /**
+     * The path of a test image.
+     */
+    private static final String IMAGE = "/iiif/3/ark:%2F21198%2Fz1";
+
+    /**
+     * The full region.
+     */
+    private static final String FULL = "full";
+
+    /**
+     * The square region.
+     */
+    private static final String SQUARE = "square";
+
+    /**
+     * A size with a width.
+     */
+    private static final String WIDTH = "100,";
+
+    /**
+     * The rotation and quality of a test image request.
+     */
+    private static final String DEFAULT_JPG = "/0/default.jpg";
+
+    /**
+     * Tests parsing an image request.
+     */
+    @Test
+    public final void testParse() {
+        final ImageRequest request = ImageRequest.parse(IMAGE + "/full/!200,150/90/gray.png?x=y").get();
+
+        assertEquals(FULL, request.getRegion());
+        assertEquals("!200,150", request.getSize());
+        assertEquals("90", request.getRotation());
+        assertEquals("gray", request.getQuality());
+        assertEquals("png", request.getFormat());
+        assertTrue(request.isWholeImage());
+        assertEquals(OptionalInt.of(200), request.getMaxDimension());
+        assertFalse(request.getScale().isPresent());
+    }
+
+    /**
+     * Tests that info.json requests and URIs without an identifier aren't parsed.
+     */
+    @Test
+    public final void testParseNotImage() {
+        assertFalse(ImageRequest.parse(IMAGE + "/info.json").isPresent());
+        assertFalse(ImageRequest.parse("/full/max/0/default.jpg").isPresent());
+        assertFalse(ImageRequest.parse(IMAGE + "/full/max//default.jpg").isPresent());
+    }
+
+    /**
+     * Tests the sizes that state a width, a height, or a percentage; only those that bound both the width and the
+     * height have a maximum dimension.
+     */
+    @Test
+    public final void testSizes() {
+        assertEquals(OptionalInt.of(150), getRequest(FULL, "100,150").getMaxDimension());
+        assertEquals(OptionalInt.of(150), getRequest(FULL, "^!150,100").getMaxDimension());
+        assertEquals(OptionalInt.of(100), getRequest(SQUARE, WIDTH).getMaxDimension());
+        assertFalse(getRequest(FULL, WIDTH).getMaxDimension().isPresent());
+        assertFalse(getRequest(FULL, "^,150").getMaxDimension().isPresent());
+        assertEquals(OptionalDouble.of(0.25), getRequest(SQUARE, "pct:25").getScale());
+        assertFalse(getRequest(FULL, "max").getMaxDimension().isPresent());
+        assertFalse(getRequest(FULL, FULL).getMaxDimension().isPresent());
+        assertFalse(getRequest(FULL, "abc,").getMaxDimension().isPresent());
+    }
+
+    /**
+     * Tests that a region other than the full or square region isn't for the whole image.
+     */
+    @Test
+    public final void testRegion() {
+        assertFalse(getRequest("0,0,512,512", WIDTH).isWholeImage());
+        assertFalse(getRequest("pct:0,0,50,50", WIDTH).isWholeImage());
+    }
+
+    /**
+     * Gets a test image request with the supplied region and size.
+     *
+     * @param aRegion A region
+     * @param aSize A size
+     * @return The image request
+     */
+    private static ImageRequest getRequest(final String aRegion, final String aSize) {
+        return ImageRequest.parse(IMAGE + '/' + aRegion + '/' + aSize + DEFAULT_JPG).get();
+    }
+}
@@ -0,0 +1,107 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.ucla.library.iiif.auth.delegate.cache.BoundedCache;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+import edu.ucla.library.iiif.auth.delegate.hauth.HauthAccessMode;
+import edu.ucla.library.iiif.auth.delegate.policy.AccessPolicy;
+
+/**
+ * Tests of the Management class.
+ */
+public class ManagementTest {
+
+    /**
+     * A fake service URI.
+     */
+    private static final URI SERVICE = URI.create("https://example.com/service");
+
+    /**
+     * The prefix of the test items' IDs.
+     */
+    private static final String PREFIX = "ark:/21198/";
+
+    /**
+     * The ID of an item that's in the local access policy.
+     */
+    private static final String POLICY_ID = PREFIX + "policy";
+
+    /**
+     * The ID of an item whose access mode is cached.
+     */
+    private static final String CACHED_ID = PREFIX + "cached";
+
+    /**
+     * An ID that doesn't have the test items' prefix.
+     */
+    private static final String OTHER_ID = "other";
+
+    /**
+     * The configured tiered access scale constraint.
+     */
+    private static final String SCALE_CONSTRAINT = "1:2";
+
+    /**
+     * Tests inspecting the access modes of items in the local access policy, in the cache, and in neither.
+     */
+    @Test
+    public final void testInspectAccessMode() {
+        final DecisionEngine engine = getEngine();
+        final Management management = new Management(() -> engine);
+
+        engine.getAccessModes().getCache().put(CACHED_ID, new HauthAccessMode(AccessMode.TIERED));
+
+        assertEquals("OPEN (local policy)", management.inspectAccessMode(POLICY_ID));
+        assertEquals("TIERED (cached)", management.inspectAccessMode(CACHED_ID));
+        assertEquals("not cached", management.inspectAccessMode(PREFIX + "unknown"));
+    }
+
+    /**
+     * Tests invalidating cached access modes by ID and by prefix.
+     */
+    @Test
+    public final void testInvalidateAccessModes() {
+        final DecisionEngine engine = getEngine();
+        final Management management = new Management(() -> engine);
+        final BoundedCache<String, HauthAccessMode> cache = engine.getAccessModes().getCache();
+        final HauthAccessMode open = new HauthAccessMode(AccessMode.OPEN);
+
+        cache.put(CACHED_ID, new HauthAccessMode(AccessMode.TIERED)).put(PREFIX + OTHER_ID, open).put(OTHER_ID, open);
+
+        assertTrue(management.invalidateAccessMode(CACHED_ID));
+        assertFalse(management.invalidateAccessMode(CACHED_ID));
+        assertEquals(1, management.invalidateAccessModes(PREFIX));
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Tests that the configuration snapshot holds the configured properties.
+     */
+    @Test
+    public final void testGetConfig() {
+        final Management management = new Management(ManagementTest::getEngine);
+
+        assertEquals(SCALE_CONSTRAINT, management.getConfig().get(Config.TIERED_ACCESS_SCALE_CONSTRAINT));
+        assertEquals(SERVICE.toString(), management.getConfig().get(Config.AUTH_ACCESS_SERVICE));
+        assertFalse(management.getConfig().containsKey(Config.AUTH_AUDIT_LOG));
+    }
+
+    /**
+     * Gets a new decision engine with a local access policy.
+     *
+     * @return A new decision engine
+     */
+    private static DecisionEngine getEngine() {
+        return new DecisionEngine(new Config(SERVICE, SERVICE, SERVICE, SERVICE, SCALE_CONSTRAINT),
+                AccessPolicy.parse(List.of("prefix " + POLICY_ID + " OPEN"), ManagementTest.class.getSimpleName()));
+    }
+}
@@ -0,0 +1,107 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucla.library.iiif.auth.delegate.policy.AccessPolicy;
+
+/**
+ * Tests of the ManifestPrefetcher class.
+ */
+public class ManifestPrefetcherTest {
+
+    /**
+     * A fake service URI.
+     */
+    private static final URI SERVICE = URI.create("https://example.com/service");
+
+    /**
+     * The identifiers of the images in the test manifests.
+     */
+    private static final Set<String> IMAGE_IDS = Set.of("ark:/21198/p1", "ark:/21198/p2");
+
+    /**
+     * An object mapper for reading the test manifests.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Tests reading the image identifiers from a Presentation API 2 manifest.
+     *
+     * @throws IOException If the test manifest can't be read
+     */
+    @Test
+    public final void testGetImageIDsV2() throws IOException {
+        final File manifest = new File("src/test/resources/json/test-manifest-v2.json");
+        assertEquals(IMAGE_IDS, ManifestPrefetcher.getImageIDs(MAPPER.readTree(manifest)));
+    }
+
+    /**
+     * Tests reading the image identifiers from a Presentation API 3 manifest.
+     *
+     * @throws IOException If the test manifest can't be read
+     */
+    @Test
+    public final void testGetImageIDsV3() throws IOException {
+        final File manifest = new File("src/test/resources/json/test-manifest-v3.json");
+        assertEquals(IMAGE_IDS, ManifestPrefetcher.getImageIDs(MAPPER.readTree(manifest)));
+    }
+
+    /**
+     * Tests that the requested item's identifier is encoded into the manifest URI template.
+     */
+    @Test
+    public final void testGetManifestURI() {
+        final ManifestPrefetcher prefetcher = getPrefetcher("https://example.com/{id}/manifest");
+
+        assertEquals(URI.create("https://example.com/ark%3A%2F21198%2Fz1%20a/manifest"),
+                prefetcher.getManifestURI("ark:/21198/z1 a"));
+    }
+
+    /**
+     * Tests that an item's manifest is only prefetched once.
+     */
+    @Test
+    public final void testPrefetchOnce() {
+        final ManifestPrefetcher prefetcher = getPrefetcher("http://0.0.0.0:9/{id}/manifest");
+        final String id = "ark:/21198/z1";
+
+        assertTrue(prefetcher.prefetch(id));
+        assertFalse(prefetcher.prefetch(id));
+    }
+
+    /**
+     * Tests that a manifest URI template must contain the identifier placeholder.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testInvalidTemplate() {
+        getPrefetcher("https://example.com/manifest");
+    }
+
+    /**
+     * Gets a test prefetcher that uses the supplied manifest URI template.
+     *
+     * @param aTemplate A manifest URI template
+     * @return The test prefetcher
+     */
+    private static ManifestPrefetcher getPrefetcher(final String aTemplate) {
+        final Config config = new Config(SERVICE, SERVICE, SERVICE, SERVICE, "1:2").setManifestTemplate(aTemplate);
+        final HttpClient httpClient = HttpClient.newHttpClient();
+        final AccessPolicy policy = AccessPolicy.parse(List.of(), ManifestPrefetcherTest.class.getSimpleName());
+
+        return new ManifestPrefetcher(config, new AccessModeResolver(config, policy, httpClient), httpClient);
+    }
+}
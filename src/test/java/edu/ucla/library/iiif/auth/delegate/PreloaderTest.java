@@ -0,0 +1,65 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+/**
+ * Tests of the Preloader class.
+ */
+public class PreloaderTest {
+
+    /**
+     * A test identifier.
+     */
+    private static final String ID = "ark:/21198/z1";
+
+    /**
+     * Another test identifier.
+     */
+    private static final String OTHER_ID = "ark:/21198/z2";
+
+    /**
+     * An access log entry for an image request.
+     */
+    private static final String IMAGE_LOG_ENTRY = "10.0.0.1 - - [19/Oct/2026:10:00:00 +0000] " +
+            "\"GET /iiif/2/ark:%2F21198%2Fz2;1:2/full/max/0/default.jpg HTTP/1.1\" 200 12345";
+
+    /**
+     * An access log entry for an information request.
+     */
+    private static final String INFO_LOG_ENTRY = "10.0.0.1 - - [19/Oct/2026:10:00:01 +0000] " +
+            "\"GET /iiif/3/ark:%2F21198%2Fz2/info.json HTTP/2.0\" 200 512";
+
+    /**
+     * Tests parsing the identifiers from an identifier list and an access log.
+     */
+    @Test
+    public final void testParseIdentifier() {
+        assertEquals(Optional.of(ID), Preloader.parseIdentifier("  " + ID + " "));
+        assertEquals(Optional.of(OTHER_ID), Preloader.parseIdentifier(IMAGE_LOG_ENTRY));
+        assertEquals(Optional.of(OTHER_ID), Preloader.parseIdentifier(INFO_LOG_ENTRY));
+        assertFalse(Preloader.parseIdentifier("# A comment").isPresent());
+        assertFalse(Preloader.parseIdentifier("").isPresent());
+        assertFalse(Preloader.parseIdentifier("10.0.0.1 - - [19/Oct/2026] \"GET /health HTTP/1.1\" 200 2").isPresent());
+        assertFalse(Preloader.parseIdentifier("10.0.0.1 - - [19/Oct/2026] \"-\" 408 0").isPresent());
+        assertFalse(Preloader.parseIdentifier("2026-10-19 10:00:01 INFO Server started").isPresent());
+    }
+
+    /**
+     * Tests that identifiers are read most requested first, and no more than the limit.
+     */
+    @Test
+    public final void testReadIdentifiers() {
+        final List<String> lines = List.of(ID, IMAGE_LOG_ENTRY, INFO_LOG_ENTRY, "ark:/21198/z3");
+
+        assertEquals(List.of(OTHER_ID), Preloader.readIdentifiers(lines.stream(), 1));
+        assertEquals(3, Preloader.readIdentifiers(Stream.concat(lines.stream(), lines.stream()), 10).size());
+    }
+}
@@ -0,0 +1,82 @@
+
+package edu.ucla.library.iiif.auth.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of the RequestHeaders class.
+ */
+public class RequestHeadersTest {
+
+    /**
+     * A sample Authorization header value.
+     */
+    private static final String AUTHORIZATION = "Bearer abc";
+
+    /**
+     * A sample Cookie header value.
+     */
+    private static final String COOKIE = "iiif-access=xyz";
+
+    /**
+     * A sample X-Forwarded-For header value.
+     */
+    private static final String FORWARDED_FOR = "10.0.0.1";
+
+    /**
+     * Tests reading headers with HTTP/1.1 style names.
+     */
+    @Test
+    public final void testCapitalizedHeaders() {
+        final RequestHeaders headers = new RequestHeaders(Map.of("Authorization", AUTHORIZATION,
+                RequestHeaders.COOKIE, COOKIE, RequestHeaders.X_FORWARDED_FOR, FORWARDED_FOR));
+
+        assertEquals(AUTHORIZATION, headers.getAuthorization().get());
+        assertEquals(COOKIE, headers.getCookie().get());
+        assertEquals(FORWARDED_FOR, headers.getForwardedFor().get());
+    }
+
+    /**
+     * Tests reading headers with HTTP/2 style names.
+     */
+    @Test
+    public final void testLowercasedHeaders() {
+        final RequestHeaders headers = new RequestHeaders(Map.of("authorization", AUTHORIZATION, "cookie", COOKIE,
+                "x-forwarded-for", FORWARDED_FOR, "accept", "*/*"));
+
+        assertEquals(AUTHORIZATION, headers.getAuthorization().get());
+        assertEquals(COOKIE, headers.getCookie().get());
+        assertEquals(FORWARDED_FOR, headers.getForwardedFor().get());
+    }
+
+    /**
+     * Tests reading headers that aren't present.
+     */
+    @Test
+    public final void testMissingHeaders() {
+        final RequestHeaders headers = new RequestHeaders(Map.of());
+
+        assertFalse(headers.getAuthorization().isPresent());
+        assertFalse(headers.getCookie().isPresent());
+        assertFalse(headers.getForwardedFor().isPresent());
+    }
+
+    /**
+     * Tests finding the client's address in an X-Forwarded-For header that's been appended to by proxies.
+     */
+    @Test
+    public final void testGetClientIP() {
+        final RequestHeaders headers =
+                new RequestHeaders(Map.of(RequestHeaders.X_FORWARDED_FOR, "192.0.2.1, " + FORWARDED_FOR + ",10.0.0.2"));
+
+        assertEquals("10.0.0.2", headers.getClientIP(1).get());
+        assertEquals(FORWARDED_FOR, headers.getClientIP(2).get());
+        assertEquals("192.0.2.1", headers.getClientIP(5).get());
+        assertFalse(new RequestHeaders(Map.of()).getClientIP(1).isPresent());
+    }
+}
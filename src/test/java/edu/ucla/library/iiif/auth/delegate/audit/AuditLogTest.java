@@ -0,0 +1,168 @@
+
+package edu.ucla.library.iiif.auth.delegate.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * Tests of the AuditLog class.
+ */
+public class AuditLogTest {
+
+    /**
+     * A test identifier.
+     */
+    private static final String ID = "ark:/21198/zz0009gsq9";
+
+    /**
+     * The name of the test audit log file.
+     */
+    private static final String FILE_NAME = "audit.log";
+
+    /**
+     * The name of the access mode field.
+     */
+    private static final String ACCESS_MODE = "accessMode";
+
+    /**
+     * A temporary folder for the audit log files.
+     */
+    @Rule
+    public final TemporaryFolder myFolder = new TemporaryFolder();
+
+    /**
+     * Tests that recorded decisions are written as JSON lines when the log is closed.
+     *
+     * @throws IOException If the audit log can't be read
+     */
+    @Test
+    public final void testRecord() throws IOException {
+        final Path file = myFolder.getRoot().toPath().resolve(FILE_NAME);
+        final List<String> lines;
+        final JsonNode json;
+
+        try (AuditLog log = new AuditLog(file, 100, 16, 1024 * 1024, Executors.defaultThreadFactory())) {
+            log.record(ID, AccessMode.TIERED, 302, Credential.CAMPUS_COOKIE, TimeUnit.MILLISECONDS.toNanos(3));
+            log.record(ID, null, 200, Credential.NONE, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        json = new ObjectMapper().readTree(lines.get(0));
+
+        assertEquals(2, lines.size());
+        assertEquals(ID, json.get("identifier").asText());
+        assertEquals(AccessMode.TIERED.name(), json.get(ACCESS_MODE).asText());
+        assertEquals(302, json.get("status").asInt());
+        assertEquals("campus-cookie", json.get("credential").asText());
+        assertEquals(3.0, json.get("latencyMs").asDouble(), 0);
+        assertTrue(new ObjectMapper().readTree(lines.get(1)).get(ACCESS_MODE).isNull());
+    }
+
+    /**
+     * Tests that a log closed after a grace period keeps accepting decisions until the grace period ends, and ignores
+     * them afterwards.
+     *
+     * @throws IOException If the audit log can't be read
+     * @throws InterruptedException If the test is interrupted while waiting for the log to close
+     */
+    @Test
+    public final void testCloseLater() throws IOException, InterruptedException {
+        final Path file = myFolder.getRoot().toPath().resolve(FILE_NAME);
+        final AuditLog log = new AuditLog(file, 100, 16, 1024 * 1024, Executors.defaultThreadFactory());
+
+        log.closeLater(100, TimeUnit.MILLISECONDS);
+        log.record(ID, AccessMode.OPEN, 200, Credential.NONE, 0);
+
+        for (int attempt = 0; attempt < 50 && !log.isClosed(); attempt++) {
+            Thread.sleep(100);
+        }
+
+        assertTrue(log.isClosed());
+        log.record(ID, AccessMode.OPEN, 200, Credential.NONE, 0);
+        log.close();
+
+        assertEquals(1, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    /**
+     * Tests that decisions recorded before and after the buffer size is changed are all written.
+     *
+     * @throws IOException If the audit log can't be read
+     */
+    @Test
+    public final void testReconfigure() throws IOException {
+        final Path file = myFolder.getRoot().toPath().resolve(FILE_NAME);
+
+        try (AuditLog log = new AuditLog(file, 100, 16, 1024 * 1024, Executors.defaultThreadFactory())) {
+            log.record(ID, AccessMode.OPEN, 200, Credential.NONE, 0);
+            log.reconfigure(100, 32, 1024 * 1024);
+            log.record(ID, AccessMode.OPEN, 200, Credential.NONE, 0);
+        }
+
+        assertEquals(2, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+    }
+
+    /**
+     * Tests that decisions that don't fit in the buffer are dropped and counted.
+     *
+     * @throws IOException If the audit log can't be read
+     */
+    @Test
+    public final void testDrops() throws IOException {
+        final Path file = myFolder.getRoot().toPath().resolve(FILE_NAME);
+        final long drops;
+
+        try (AuditLog log = new AuditLog(file, 100, 2, 1024 * 1024, Executors.defaultThreadFactory())) {
+            // The writer waits before its first batch, so these all go to the buffer
+            for (int index = 0; index < 5; index++) {
+                log.record(ID, AccessMode.OPEN, 200, Credential.NONE, 0);
+            }
+
+            drops = log.getDrops();
+        }
+
+        assertEquals(5, drops + Files.readAllLines(file, StandardCharsets.UTF_8).size());
+        assertTrue(drops > 0);
+    }
+
+    /**
+     * Tests that a full file is rotated and that only the configured number of rotated files are kept.
+     *
+     * @throws IOException If the audit log can't be read
+     */
+    @Test
+    public final void testRotation() throws IOException {
+        final Path file = myFolder.getRoot().toPath().resolve(FILE_NAME);
+        final AuditLog log = new AuditLog(file, 100, 1024, 1, Executors.defaultThreadFactory());
+
+        // With a one byte maximum, each decision gets a file of its own
+        for (int index = 0; index < AuditLog.ROTATED_FILES + 2; index++) {
+            log.record(ID + index, AccessMode.OPEN, 200, Credential.NONE, 0);
+        }
+
+        log.close();
+
+        assertTrue(Files.readString(file).contains(ID + (AuditLog.ROTATED_FILES + 1)));
+        assertTrue(Files.readString(log.getRotatedFile(1)).contains(ID + AuditLog.ROTATED_FILES));
+        assertTrue(Files.exists(log.getRotatedFile(AuditLog.ROTATED_FILES)));
+        assertFalse(Files.exists(log.getRotatedFile(AuditLog.ROTATED_FILES + 1)));
+    }
+}
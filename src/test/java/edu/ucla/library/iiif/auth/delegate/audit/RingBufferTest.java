@@ -0,0 +1,104 @@
+
+package edu.ucla.library.iiif.auth.delegate.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests of the RingBuffer class.
+ */
+public class RingBufferTest {
+
+    /**
+     * Tests that a buffer's capacity is rounded up to a power of two.
+     */
+    @Test
+    public final void testGetCapacity() {
+        assertEquals(1, new RingBuffer<>(1).getCapacity());
+        assertEquals(8, new RingBuffer<>(5).getCapacity());
+        assertEquals(8, new RingBuffer<>(8).getCapacity());
+    }
+
+    /**
+     * Tests that a full buffer refuses elements, and that elements are taken in the order they were added.
+     */
+    @Test
+    public final void testOfferAndPoll() {
+        final RingBuffer<Integer> buffer = new RingBuffer<>(4);
+
+        // Go around the buffer more than once
+        for (int lap = 0; lap < 3; lap++) {
+            for (int index = 0; index < 4; index++) {
+                assertTrue(buffer.offer(index));
+            }
+
+            assertFalse(buffer.offer(4));
+
+            for (int index = 0; index < 4; index++) {
+                assertEquals(Integer.valueOf(index), buffer.poll());
+            }
+
+            assertNull(buffer.poll());
+        }
+    }
+
+    /**
+     * Tests that every element offered by concurrent producers is either taken once or refused.
+     *
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public final void testConcurrentProducers() throws InterruptedException {
+        final RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+        final AtomicInteger refused = new AtomicInteger();
+        final List<Thread> producers = new ArrayList<>();
+        final Set<Integer> taken = new HashSet<>();
+
+        for (int thread = 0; thread < 4; thread++) {
+            final int first = thread * 10_000;
+
+            producers.add(new Thread(() -> {
+                for (int value = first; value < first + 10_000; value++) {
+                    if (!buffer.offer(value)) {
+                        refused.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        producers.forEach(Thread::start);
+
+        while (producers.stream().anyMatch(Thread::isAlive)) {
+            drain(buffer, taken);
+        }
+
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+
+        drain(buffer, taken);
+        assertEquals(40_000, taken.size() + refused.get());
+    }
+
+    /**
+     * Takes all of the elements in a buffer, checking that none has been taken before.
+     *
+     * @param aBuffer A ring buffer
+     * @param aTaken The elements that have been taken
+     */
+    private static void drain(final RingBuffer<Integer> aBuffer, final Set<Integer> aTaken) {
+        for (Integer value = aBuffer.poll(); value != null; value = aBuffer.poll()) {
+            assertTrue(aTaken.add(value));
+        }
+    }
+}
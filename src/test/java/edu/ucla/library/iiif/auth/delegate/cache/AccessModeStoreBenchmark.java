@@ -0,0 +1,138 @@
+
+package edu.ucla.library.iiif.auth.delegate.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * A benchmark of the access mode store's memory footprint and speed, compared with a
+ * <code>HashMap&lt;String, AccessMode&gt;</code> holding the same entries, e.g.:
+ * <p>
+ * <code>java -Xmx4g -cp target/classes:target/test-classes
+ * edu.ucla.library.iiif.auth.delegate.cache.AccessModeStoreBenchmark [entries]</code>
+ * <p>
+ * Footprints are measured as the growth in used heap after a garbage collection, so they're approximate; the store's
+ * is also reported exactly, from the sizes of its table and arena.
+ */
+public final class AccessModeStoreBenchmark {
+
+    /**
+     * The default number of entries.
+     */
+    private static final int DEFAULT_ENTRIES = 10_000_000;
+
+    /**
+     * The prefix of the benchmark's identifiers, which look like real ARKs.
+     */
+    private static final String ARK = "ark:/21198/zz";
+
+    /**
+     * The number of bytes in a megabyte.
+     */
+    private static final double ONE_MEGABYTE = 1024 * 1024;
+
+    /**
+     * The access modes, by ordinal.
+     */
+    private static final AccessMode[] MODES = AccessMode.values();
+
+    /**
+     * Creates a new benchmark.
+     */
+    private AccessModeStoreBenchmark() {
+        // This is intentionally left empty
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param aArgs The number of entries
+     */
+    @SuppressWarnings("checkstyle:UncommentedMain") // The benchmark is run from the command line
+    public static void main(final String[] aArgs) {
+        final int entries = aArgs.length > 0 ? Integer.parseInt(aArgs[0]) : DEFAULT_ENTRIES;
+        long before = getUsedHeap();
+        long start = System.nanoTime();
+        final AccessModeStore store = new AccessModeStore(entries);
+
+        for (int index = 0; index < entries; index++) {
+            store.put(getID(index), MODES[index % MODES.length]);
+        }
+
+        final long storeWrites = System.nanoTime() - start;
+        final long storeFootprint = getUsedHeap() - before;
+
+        start = System.nanoTime();
+        final int storeFound = read(store::get, entries);
+        final long storeReads = System.nanoTime() - start;
+
+        before = getUsedHeap();
+        start = System.nanoTime();
+        final Map<String, AccessMode> map = new HashMap<>();
+
+        for (int index = 0; index < entries; index++) {
+            map.put(getID(index), MODES[index % MODES.length]);
+        }
+
+        final long mapWrites = System.nanoTime() - start;
+        final long mapFootprint = getUsedHeap() - before;
+
+        start = System.nanoTime();
+        final int mapFound = read(id -> Optional.ofNullable(map.get(id)), entries);
+        final long mapReads = System.nanoTime() - start;
+
+        System.out.printf("AccessModeStore: %d of %d entries found; %.0f MB (%.1f bytes/entry, table and arena %.1f " +
+                "bytes/entry); writes %d ms, reads %d ms%n", storeFound, entries, storeFootprint / ONE_MEGABYTE,
+                (double) storeFootprint / entries, (double) store.getFootprint() / entries,
+                TimeUnit.NANOSECONDS.toMillis(storeWrites), TimeUnit.NANOSECONDS.toMillis(storeReads));
+        System.out.printf("HashMap: %d of %d entries found; %.0f MB (%.1f bytes/entry); writes %d ms, reads %d ms%n",
+                mapFound, entries, mapFootprint / ONE_MEGABYTE, (double) mapFootprint / entries,
+                TimeUnit.NANOSECONDS.toMillis(mapWrites), TimeUnit.NANOSECONDS.toMillis(mapReads));
+    }
+
+    /**
+     * Looks up every identifier.
+     *
+     * @param aLookup A lookup of an identifier's access mode
+     * @param aEntries The number of entries
+     * @return The number of identifiers whose access modes were found
+     */
+    private static int read(final Function<String, Optional<AccessMode>> aLookup, final int aEntries) {
+        int found = 0;
+
+        for (int index = 0; index < aEntries; index++) {
+            if (aLookup.apply(getID(index)).isPresent()) {
+                found += 1;
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Gets a benchmark identifier.
+     *
+     * @param aIndex The index of the identifier
+     * @return The identifier
+     */
+    private static String getID(final int aIndex) {
+        return ARK + Integer.toString(aIndex, Character.MAX_RADIX);
+    }
+
+    /**
+     * Gets the amount of heap in use after a garbage collection.
+     *
+     * @return The number of bytes of heap in use
+     */
+    private static long getUsedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
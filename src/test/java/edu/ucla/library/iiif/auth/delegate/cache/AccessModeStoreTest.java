@@ -0,0 +1,166 @@
+
+package edu.ucla.library.iiif.auth.delegate.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * Tests of the AccessModeStore class.
+ */
+public class AccessModeStoreTest {
+
+    /**
+     * A test identifier.
+     */
+    private static final String ID = "ark:/21198/zz0009gsq9";
+
+    /**
+     * A test identifier with the same fingerprint as {@link #COLLIDING_ID}.
+     */
+    private static final String COLLIDING_ID = "ark:/21198/zz1a0";
+
+    /**
+     * A test identifier with the same fingerprint as {@link #COLLIDING_ID}.
+     */
+    private static final String OTHER_COLLIDING_ID = "ark:/21198/zz191f";
+
+    /**
+     * The number of identifiers in the larger tests.
+     */
+    private static final int COUNT = 10_000;
+
+    /**
+     * Tests storing, replacing, and getting an access mode.
+     */
+    @Test
+    public final void testPut() {
+        final AccessModeStore store = new AccessModeStore(1);
+
+        assertEquals(Optional.empty(), store.get(ID));
+        store.put(ID, AccessMode.TIERED);
+        assertEquals(Optional.of(AccessMode.TIERED), store.get(ID));
+        store.put(ID, AccessMode.ALL_OR_NOTHING);
+        assertEquals(Optional.of(AccessMode.ALL_OR_NOTHING), store.get(ID));
+        assertEquals(1, store.size());
+    }
+
+    /**
+     * Tests that the store grows to hold more entries than it was sized for.
+     */
+    @Test
+    public final void testGrow() {
+        final AccessModeStore store = new AccessModeStore(0);
+
+        for (int index = 0; index < COUNT; index++) {
+            store.put(ID + index, getMode(index));
+        }
+
+        for (int index = 0; index < COUNT; index++) {
+            assertEquals(Optional.of(getMode(index)), store.get(ID + index));
+        }
+
+        assertEquals(COUNT, store.size());
+        assertTrue(store.getCapacity() > COUNT);
+        assertTrue(store.getFootprint() > store.getCapacity() * (long) Long.BYTES);
+    }
+
+    /**
+     * Tests that two identifiers with the same fingerprint are kept apart.
+     */
+    @Test
+    public final void testCollision() {
+        final AccessModeStore store = new AccessModeStore(1).put(COLLIDING_ID, AccessMode.TIERED);
+
+        assertEquals(Optional.empty(), store.get(OTHER_COLLIDING_ID));
+        store.put(OTHER_COLLIDING_ID, AccessMode.OPEN);
+        assertEquals(Optional.of(AccessMode.TIERED), store.get(COLLIDING_ID));
+        assertEquals(Optional.of(AccessMode.OPEN), store.get(OTHER_COLLIDING_ID));
+        assertEquals(2, store.size());
+        assertTrue(store.remove(COLLIDING_ID));
+        assertEquals(Optional.empty(), store.get(COLLIDING_ID));
+        assertEquals(Optional.of(AccessMode.OPEN), store.get(OTHER_COLLIDING_ID));
+    }
+
+    /**
+     * Tests that removed identifiers' space is reclaimed, rather than the store growing, when entries keep being
+     * replaced.
+     */
+    @Test
+    public final void testReclaim() {
+        final AccessModeStore store = new AccessModeStore(COUNT);
+        final long footprint = store.getFootprint();
+
+        for (int index = 0; index < COUNT * 10; index++) {
+            store.put(ID + index, getMode(index));
+
+            if (index >= COUNT / 2) {
+                assertTrue(store.remove(ID + (index - COUNT / 2)));
+            }
+        }
+
+        assertEquals(COUNT / 2, store.size());
+        assertEquals(Optional.of(getMode(COUNT * 10 - 1)), store.get(ID + (COUNT * 10 - 1)));
+        assertTrue(store.getFootprint() <= footprint * 2);
+    }
+
+    /**
+     * Tests that removing entries leaves the others findable.
+     */
+    @Test
+    public final void testRemove() {
+        final AccessModeStore store = new AccessModeStore(COUNT);
+
+        for (int index = 0; index < COUNT; index++) {
+            store.put(ID + index, getMode(index));
+        }
+
+        for (int index = 0; index < COUNT; index += 2) {
+            assertTrue(store.remove(ID + index));
+        }
+
+        assertFalse(store.remove(ID));
+
+        for (int index = 0; index < COUNT; index++) {
+            assertEquals(index % 2 == 0 ? Optional.empty() : Optional.of(getMode(index)), store.get(ID + index));
+        }
+
+        assertEquals(COUNT / 2, store.size());
+    }
+
+    /**
+     * Tests clearing the store.
+     */
+    @Test
+    public final void testClear() {
+        final AccessModeStore store = new AccessModeStore(1).put(ID, AccessMode.OPEN);
+
+        store.clear();
+        assertEquals(Optional.empty(), store.get(ID));
+        assertEquals(0, store.size());
+    }
+
+    /**
+     * Tests creating a store with an invalid expected size.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testInvalidSize() {
+        new AccessModeStore(-1);
+    }
+
+    /**
+     * Gets an access mode for a test identifier.
+     *
+     * @param aIndex The index of a test identifier
+     * @return An access mode
+     */
+    private static AccessMode getMode(final int aIndex) {
+        return AccessMode.values()[aIndex % AccessMode.values().length];
+    }
+}
@@ -0,0 +1,215 @@
+
+package edu.ucla.library.iiif.auth.delegate.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Tests of the BoundedCache class.
+ */
+public class BoundedCacheTest {
+
+    /**
+     * A first cache key.
+     */
+    private static final String A = "a";
+
+    /**
+     * A second cache key.
+     */
+    private static final String B = "b";
+
+    /**
+     * A third cache key.
+     */
+    private static final String C = "c";
+
+    /**
+     * The prefix of the keys a crawler scans.
+     */
+    private static final String CRAWLED = "crawled-";
+
+    /**
+     * The number of popular keys in the replayed trace.
+     */
+    private static final int POPULAR_KEYS = 500;
+
+    /**
+     * Tests that the least recently used entry is evicted when the cache is full.
+     */
+    @Test
+    public final void testEviction() {
+        final BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+
+        cache.put(A, 1).put(B, 2);
+        cache.get(A); // Makes B the least recently used entry
+        cache.put(C, 3);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get(A).isPresent());
+        assertFalse(cache.get(B).isPresent());
+        assertTrue(cache.get(C).isPresent());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Tests that a loaded value is cached.
+     */
+    @Test
+    public final void testGetWithLoader() {
+        final BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+        final AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(Integer.valueOf(1), cache.get(A, key -> loads.incrementAndGet()));
+        assertEquals(Integer.valueOf(1), cache.get(A, key -> loads.incrementAndGet()));
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Tests invalidating an entry.
+     */
+    @Test
+    public final void testInvalidate() {
+        final BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+
+        assertFalse(cache.put(A, 1).invalidate(A).get(A).isPresent());
+    }
+
+    /**
+     * Tests invalidating the entries whose keys match a predicate, and that peeking doesn't count as a lookup.
+     */
+    @Test
+    public final void testInvalidateAll() {
+        final BoundedCache<String, Integer> cache = new BoundedCache<>(3);
+
+        cache.put(A, 1).put(B, 2).put(C, 3);
+
+        assertEquals(2, cache.invalidateAll(key -> !key.equals(B)));
+        assertFalse(cache.peek(A).isPresent());
+        assertEquals(Integer.valueOf(2), cache.peek(B).orElseThrow());
+        assertEquals(0, cache.getHits() + cache.getMisses());
+    }
+
+    /**
+     * Tests that entries expire once their time to live has passed.
+     */
+    @Test
+    public final void testExpiry() {
+        final AtomicLong clock = new AtomicLong();
+        final BoundedCache<String, Integer> cache = new BoundedCache<>(2, 10, clock::get);
+
+        cache.put(A, 1);
+        clock.set(9);
+        assertTrue(cache.get(A).isPresent());
+        clock.set(10);
+        assertFalse(cache.get(A).isPresent());
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getExpirations());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Tests that a cache with an admission policy doesn't let a key that has been looked up once replace one that has
+     * been looked up more often.
+     */
+    @Test
+    public final void testAdmission() {
+        final BoundedCache<String, Integer> cache = new BoundedCache<>(3, Long.MAX_VALUE, System::nanoTime, true);
+
+        assertTrue(cache.hasAdmissionPolicy());
+
+        for (final String key : new String[] { A, B }) {
+            cache.get(key);
+            cache.get(key);
+            cache.put(key, 1);
+        }
+
+        // C passes through the window, but isn't admitted in place of A or B
+        cache.get(C);
+        cache.put(C, 1).put(CRAWLED, 1);
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.get(A).isPresent());
+        assertTrue(cache.get(B).isPresent());
+        assertFalse(cache.get(C).isPresent());
+        assertTrue(cache.get(CRAWLED).isPresent());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    /**
+     * Tests that a cache with an admission policy keeps more of its popular entries than a least recently used cache
+     * while a crawler scans keys that are each looked up once.
+     */
+    @Test
+    public final void testAdmissionResistsScan() {
+        final BoundedCache<String, Integer> lru = new BoundedCache<>(POPULAR_KEYS / 2);
+        final BoundedCache<String, Integer> admission =
+                new BoundedCache<>(POPULAR_KEYS / 2, Long.MAX_VALUE, System::nanoTime, true);
+        final Random random = new Random(1);
+
+        for (int index = 0; index < 100_000; index++) {
+            // Half the lookups are of popular keys, skewed towards the most popular; the other half are a scan
+            final String key = index % 2 == 0 ? A + (int) Math.pow(POPULAR_KEYS, random.nextDouble()) : CRAWLED + index;
+
+            lru.get(key, value -> 1);
+            admission.get(key, value -> 1);
+        }
+
+        assertTrue(admission.getHits() > lru.getHits() * 11 / 10);
+    }
+
+    /**
+     * Tests that a cache too small for a window doesn't have an admission policy.
+     */
+    @Test
+    public final void testNoAdmissionWhenTooSmall() {
+        final BoundedCache<String, Integer> cache = new BoundedCache<>(1, Long.MAX_VALUE, System::nanoTime, true);
+
+        assertFalse(cache.hasAdmissionPolicy());
+        cache.put(A, 1).put(B, 2);
+        assertFalse(cache.get(A).isPresent());
+        assertTrue(cache.get(B).isPresent());
+    }
+
+    /**
+     * Tests that an entry written with its own time to live expires after it, instead of the cache's.
+     */
+    @Test
+    public final void testPutWithTimeToLive() {
+        final AtomicLong clock = new AtomicLong();
+        final BoundedCache<String, Integer> cache = new BoundedCache<>(2, 10, clock::get);
+
+        cache.put(A, 1, Duration.ofNanos(20)).put(B, 2);
+        clock.set(10);
+        assertTrue(cache.get(A).isPresent());
+        assertFalse(cache.get(B).isPresent());
+        clock.set(20);
+        assertFalse(cache.get(A).isPresent());
+    }
+
+    /**
+     * Tests creating a cache with an invalid time to live.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testInvalidTimeToLive() {
+        new BoundedCache<String, Integer>(2, Duration.ZERO);
+    }
+
+    /**
+     * Tests creating a cache with an invalid size.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testInvalidSize() {
+        new BoundedCache<String, Integer>(0);
+    }
+}
@@ -0,0 +1,60 @@
+
+package edu.ucla.library.iiif.auth.delegate.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the CountMinSketch class.
+ */
+public class CountMinSketchTest {
+
+    /**
+     * A test key.
+     */
+    private static final String KEY = "ark:/21198/zz0009gsq9";
+
+    /**
+     * Tests that estimates are never lower than the true counts, and are close to them on average.
+     */
+    @Test
+    public final void testEstimate() {
+        final CountMinSketch sketch = new CountMinSketch(1024);
+        long error = 0;
+
+        for (int index = 0; index < 1000; index++) {
+            for (int count = 0; count <= index % 5; count++) {
+                sketch.increment(KEY + index);
+            }
+        }
+
+        for (int index = 0; index < 1000; index++) {
+            final long estimate = sketch.estimate(KEY + index);
+
+            assertTrue(estimate >= index % 5 + 1);
+            error += estimate - (index % 5 + 1);
+        }
+
+        assertTrue(error < 1000);
+    }
+
+    /**
+     * Tests that the counters are halved once the sketch's sample size is reached.
+     */
+    @Test
+    public final void testAge() {
+        final CountMinSketch sketch = new CountMinSketch(16);
+
+        for (long count = 1; count < sketch.getSampleSize(); count++) {
+            sketch.increment(KEY);
+        }
+
+        assertEquals(sketch.getSampleSize() - 1, sketch.estimate(KEY));
+        assertEquals(0, sketch.getAge());
+        assertEquals(sketch.getSampleSize() / 2, sketch.increment(KEY) / 2);
+        assertEquals(1, sketch.getAge());
+        assertEquals(sketch.getSampleSize() / 2, sketch.estimate(KEY));
+    }
+}
@@ -0,0 +1,84 @@
+
+package edu.ucla.library.iiif.auth.delegate.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.ucla.library.iiif.auth.delegate.hauth.BearerToken;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests of the delegate's Flight Recorder events.
+ */
+public class DecisionEventTest {
+
+    /**
+     * The name of the token decoding event.
+     */
+    private static final String TOKEN_DECODE = "edu.ucla.library.iiif.auth.delegate.TokenDecode";
+
+    /**
+     * A test identifier.
+     */
+    private static final String ID = "ark:/21198/zz0009gsq9";
+
+    /**
+     * Tests that the delegate's events are recorded with their fields when they're enabled.
+     *
+     * @throws IOException If the recording can't be written or read
+     */
+    @Test
+    public final void testRecording() throws IOException {
+        final Path file = Files.createTempFile(DecisionEventTest.class.getSimpleName(), ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(DecisionEvent.NAME);
+            recording.enable(TOKEN_DECODE);
+            recording.start();
+
+            BearerToken.parse("Bearer not-a-token");
+
+            final DecisionEvent event = new DecisionEvent();
+
+            event.begin();
+            event.commit(ID, null, DecisionEvent.THUMBNAIL, 200);
+
+            recording.stop();
+            recording.dump(file);
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+            assertEquals(2, events.size());
+            assertFalse(getEvent(events, TOKEN_DECODE).getBoolean("hauthToken"));
+            assertEquals(ID, getEvent(events, DecisionEvent.NAME).getString("identifier"));
+            assertNull(getEvent(events, DecisionEvent.NAME).getString("accessMode"));
+            assertEquals(DecisionEvent.THUMBNAIL, getEvent(events, DecisionEvent.NAME).getString("branch"));
+            assertEquals(200, getEvent(events, DecisionEvent.NAME).getInt("status"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Gets the recorded event with the supplied name.
+     *
+     * @param aEvents A list of recorded events
+     * @param aName An event name
+     * @return The recorded event
+     */
+    private static RecordedEvent getEvent(final List<RecordedEvent> aEvents, final String aName) {
+        return aEvents.stream().filter(event -> aName.equals(event.getEventType().getName())).findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,106 @@
+
+package edu.ucla.library.iiif.auth.delegate.hauth;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests of the AccessTokenReader class.
+ */
+public class AccessTokenReaderTest {
+
+    /**
+     * A campus network access token, generated using the shell command below.
+     * <p>
+     * <code> $ base64 <<< '{"version": "0.0.0-SNAPSHOT", "campusNetwork": true}'</code>
+     */
+    private static final String CAMPUS_ACCESS_TOKEN =
+            "eyJ2ZXJzaW9uIjogIjAuMC4wLVNOQVBTSE9UIiwgImNhbXB1c05ldHdvcmsiOiB0cnVlfQo=";
+
+    /**
+     * A Sinai access token, generated using the shell command below.
+     * <p>
+     * <code> $ base64 <<< '{"version": "0.0.0-SNAPSHOT", "sinaiAffiliate": true}'</code>
+     */
+    private static final String SINAI_ACCESS_TOKEN =
+            "eyJ2ZXJzaW9uIjogIjAuMC4wLVNOQVBTSE9UIiwgInNpbmFpQWZmaWxpYXRlIjogdHJ1ZX0K";
+
+    /**
+     * The template for a token service response.
+     */
+    private static final String RESPONSE_TEMPLATE =
+            "{\"messageId\": 1, \"context\": {\"nested\": [1, 2]}, \"accessToken\": \"%s\", \"expiresIn\": 3600}";
+
+    /**
+     * Tests reading a campus network claim from a response stream.
+     *
+     * @throws IOException If the response can't be read
+     */
+    @Test
+    public final void testHasCampusNetworkClaim() throws IOException {
+        assertTrue(AccessTokenReader.hasClaim(getStream(CAMPUS_ACCESS_TOKEN), HauthToken.CAMPUS_NETWORK_KEY));
+        assertFalse(AccessTokenReader.hasClaim(getStream(SINAI_ACCESS_TOKEN), HauthToken.CAMPUS_NETWORK_KEY));
+    }
+
+    /**
+     * Tests reading a Sinai affiliate claim from a response buffer.
+     *
+     * @throws IOException If the response can't be read
+     */
+    @Test
+    public final void testHasSinaiAffiliateClaim() throws IOException {
+        final String key = HauthSinaiToken.SINAI_AFFILIATE_KEY;
+
+        assertTrue(AccessTokenReader.hasClaim(getBuffer(SINAI_ACCESS_TOKEN), key));
+        assertFalse(AccessTokenReader.hasClaim(getBuffer(CAMPUS_ACCESS_TOKEN), key));
+    }
+
+    /**
+     * Tests reading a token without its Base64 padding.
+     *
+     * @throws IOException If the response can't be read
+     */
+    @Test
+    public final void testHasClaimUnpadded() throws IOException {
+        final String token = CAMPUS_ACCESS_TOKEN.replace("=", "");
+        assertTrue(AccessTokenReader.hasClaim(getStream(token), HauthToken.CAMPUS_NETWORK_KEY));
+    }
+
+    /**
+     * Tests reading a response that doesn't contain an access token.
+     *
+     * @throws IOException If the response can't be read
+     */
+    @Test
+    public final void testHasClaimNoToken() throws IOException {
+        final byte[] response = "{\"error\": \"invalidCredentials\"}".getBytes(StandardCharsets.UTF_8);
+        assertFalse(AccessTokenReader.hasClaim(new ByteArrayInputStream(response), HauthToken.CAMPUS_NETWORK_KEY));
+    }
+
+    /**
+     * Gets a token service response as a stream.
+     *
+     * @param aToken An encoded access token
+     * @return A token service response stream
+     */
+    private ByteArrayInputStream getStream(final String aToken) {
+        return new ByteArrayInputStream(String.format(RESPONSE_TEMPLATE, aToken).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Gets a token service response as a byte buffer.
+     *
+     * @param aToken An encoded access token
+     * @return A token service response buffer
+     */
+    private ByteBuffer getBuffer(final String aToken) {
+        return ByteBuffer.wrap(String.format(RESPONSE_TEMPLATE, aToken).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,72 @@
+
+package edu.ucla.library.iiif.auth.delegate.hauth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the BearerToken class.
+ */
+public class BearerTokenTest {
+
+    /**
+     * A campus network access token, generated using the shell command below.
+     * <p>
+     * <code> $ base64 <<< '{"version": "0.0.0-SNAPSHOT", "campusNetwork": true}'</code>
+     */
+    private static final String CAMPUS_ACCESS_TOKEN =
+            "eyJ2ZXJzaW9uIjogIjAuMC4wLVNOQVBTSE9UIiwgImNhbXB1c05ldHdvcmsiOiB0cnVlfQo=";
+
+    /**
+     * A Sinai access token, generated using the shell command below.
+     * <p>
+     * <code> $ base64 <<< '{"version": "0.0.0-SNAPSHOT", "sinaiAffiliate": true}'</code>
+     */
+    private static final String SINAI_ACCESS_TOKEN =
+            "eyJ2ZXJzaW9uIjogIjAuMC4wLVNOQVBTSE9UIiwgInNpbmFpQWZmaWxpYXRlIjogdHJ1ZX0K";
+
+    /**
+     * The expected token version.
+     */
+    private static final String VERSION = "0.0.0-SNAPSHOT";
+
+    /**
+     * Tests parsing a campus network token.
+     */
+    @Test
+    public final void testParseCampusNetworkToken() {
+        final BearerToken token = BearerToken.parse(HauthToken.TYPE + " " + CAMPUS_ACCESS_TOKEN);
+
+        assertTrue(token.getToken().get().isValidIP());
+        assertEquals(VERSION, token.getToken().get().getVersion());
+        assertFalse(token.getSinaiToken().get().hasSinaiAffiliate());
+    }
+
+    /**
+     * Tests parsing a Sinai token.
+     */
+    @Test
+    public final void testParseSinaiToken() {
+        final BearerToken token = BearerToken.parse("bearer " + SINAI_ACCESS_TOKEN);
+
+        assertTrue(token.getSinaiToken().get().hasSinaiAffiliate());
+        assertEquals(VERSION, token.getSinaiToken().get().getVersion());
+        assertFalse(token.getToken().get().isValidIP());
+    }
+
+    /**
+     * Tests parsing Authorization headers that don't contain a valid bearer token.
+     */
+    @Test
+    public final void testParseInvalid() {
+        assertSame(BearerToken.NONE, BearerToken.parse("Basic " + CAMPUS_ACCESS_TOKEN));
+        assertSame(BearerToken.NONE, BearerToken.parse(HauthToken.TYPE + " not-base64!"));
+        assertSame(BearerToken.NONE, BearerToken.parse(HauthToken.TYPE + " WzEsIDJd")); // [1, 2]
+        assertFalse(BearerToken.NONE.getToken().isPresent());
+        assertFalse(BearerToken.NONE.getSinaiToken().isPresent());
+    }
+}
@@ -0,0 +1,98 @@
+
+package edu.ucla.library.iiif.auth.delegate.hauth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+
+/**
+ * Tests of the CacheDirectives class.
+ */
+public class CacheDirectivesTest {
+
+    /**
+     * A test entity tag.
+     */
+    private static final String ETAG = "\"v1\"";
+
+    /**
+     * A test maximum age, in seconds.
+     */
+    private static final int MAX_AGE = 60;
+
+    /**
+     * Tests reading the maximum age, the stale-if-error time, and the validators of a response.
+     */
+    @Test
+    public final void testFrom() {
+        final CacheDirectives directives = CacheDirectives.from(getHeaders(Map.of(CacheDirectives.CACHE_CONTROL,
+                List.of("public, Max-Age=\"60\"", "stale-if-error=30, max-age=invalid"), CacheDirectives.ETAG,
+                List.of(ETAG))));
+
+        assertEquals(Optional.of(Duration.ofSeconds(MAX_AGE)), directives.getMaxAge());
+        assertEquals(Optional.of(Duration.ofSeconds(30)), directives.getStaleIfError());
+        assertEquals(Optional.of(ETAG), directives.getETag());
+        assertFalse(directives.getLastModified().isPresent());
+        assertFalse(directives.isNoStore());
+    }
+
+    /**
+     * Tests that a shared maximum age takes precedence over a maximum age, and that no-cache overrides both.
+     */
+    @Test
+    public final void testFreshnessPrecedence() {
+        assertEquals(Optional.of(Duration.ofSeconds(MAX_AGE)), getDirectives("max-age=5, s-maxage=60").getMaxAge());
+        assertEquals(Optional.of(Duration.ZERO), getDirectives("no-cache, max-age=60").getMaxAge());
+        assertFalse(CacheDirectives.NONE.getMaxAge().isPresent());
+    }
+
+    /**
+     * Tests that no-store and private responses aren't cached by a shared cache.
+     */
+    @Test
+    public final void testNoStore() {
+        assertTrue(getDirectives("no-store").isNoStore());
+        assertTrue(getDirectives("private, max-age=60").isNoStore());
+    }
+
+    /**
+     * Tests that a revalidating response's validators replace the stored response's, and are kept if it has none.
+     */
+    @Test
+    public final void testRevalidate() {
+        final CacheDirectives stored =
+                CacheDirectives.from(getHeaders(Map.of(CacheDirectives.ETAG, List.of(ETAG))));
+        final CacheDirectives revalidated = getDirectives("max-age=60").revalidate(stored);
+
+        assertEquals(Optional.of(ETAG), revalidated.getETag());
+        assertEquals(Optional.of(Duration.ofSeconds(MAX_AGE)), revalidated.getMaxAge());
+    }
+
+    /**
+     * Gets the caching metadata of a response with the supplied <code>Cache-Control</code> header.
+     *
+     * @param aCacheControl A <code>Cache-Control</code> header
+     * @return The response's caching metadata
+     */
+    private static CacheDirectives getDirectives(final String aCacheControl) {
+        return CacheDirectives.from(getHeaders(Map.of(CacheDirectives.CACHE_CONTROL, List.of(aCacheControl))));
+    }
+
+    /**
+     * Gets a response's headers.
+     *
+     * @param aHeaders The headers' values, by name
+     * @return The response's headers
+     */
+    private static HttpHeaders getHeaders(final Map<String, List<String>> aHeaders) {
+        return HttpHeaders.of(aHeaders, (name, value) -> true);
+    }
+}
@@ -0,0 +1,75 @@
+
+package edu.ucla.library.iiif.auth.delegate.hauth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests of the ItemSource class.
+ */
+public class ItemSourceTest {
+
+    /**
+     * An object mapper for reading the test source objects.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Tests reading a file system source.
+     *
+     * @throws IOException If the test source object can't be read
+     */
+    @Test
+    public final void testFilesystemSource() throws IOException {
+        final ItemSource source = getSource("{\"type\":\"FilesystemSource\",\"pathname\":\"/imageroot/z1.jp2\"}");
+
+        assertEquals(ItemSource.FILESYSTEM_SOURCE, source.getType());
+        assertEquals(Optional.of("/imageroot/z1.jp2"), source.getPathname());
+        assertTrue(source.getS3ObjectInfo().isEmpty());
+    }
+
+    /**
+     * Tests reading an S3 source.
+     *
+     * @throws IOException If the test source object can't be read
+     */
+    @Test
+    public final void testS3Source() throws IOException {
+        final ItemSource source = getSource("{\"type\":\"S3Source\",\"bucket\":\"images\",\"key\":\"z1.jp2\"}");
+
+        assertEquals(ItemSource.S3_SOURCE, source.getType());
+        assertEquals(Map.of("bucket", "images", "key", "z1.jp2"), source.getS3ObjectInfo());
+        assertFalse(source.getPathname().isPresent());
+    }
+
+    /**
+     * Tests that a source object without a type isn't a source.
+     *
+     * @throws IOException If the test source object can't be read
+     */
+    @Test
+    public final void testNoType() throws IOException {
+        assertFalse(ItemSource.from(MAPPER.readTree("{\"pathname\":\"/imageroot/z1.jp2\"}")).isPresent());
+        assertFalse(ItemSource.from(null).isPresent());
+    }
+
+    /**
+     * Reads a test source object.
+     *
+     * @param aJSON A source object
+     * @return The source
+     * @throws IOException If the source object can't be read
+     */
+    private static ItemSource getSource(final String aJSON) throws IOException {
+        return ItemSource.from(MAPPER.readTree(aJSON)).orElseThrow();
+    }
+}
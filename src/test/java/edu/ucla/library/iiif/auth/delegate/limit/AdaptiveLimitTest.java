@@ -0,0 +1,104 @@
+
+package edu.ucla.library.iiif.auth.delegate.limit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the AdaptiveLimit class.
+ */
+public class AdaptiveLimitTest {
+
+    /**
+     * The baseline latency of the test calls, in nanoseconds.
+     */
+    private static final long BASELINE = 1_000_000;
+
+    /**
+     * The maximum limit of the test limits.
+     */
+    private static final int MAX_LIMIT = 10;
+
+    /**
+     * Tests that the limit backs off when calls fail.
+     */
+    @Test
+    public final void testBackOffOnFailure() {
+        final AdaptiveLimit limit = new AdaptiveLimit(MAX_LIMIT);
+
+        assertTrue(limit.tryAcquire());
+        limit.finish(BASELINE, false);
+        assertEquals(9, limit.getLimit());
+        assertEquals(0, limit.getBaseline());
+    }
+
+    /**
+     * Tests that the limit backs off when calls take much longer than the baseline, and grows back when they're fast
+     * again and the limit is being used.
+     */
+    @Test
+    public final void testBackOffOnLatency() {
+        final AdaptiveLimit limit = new AdaptiveLimit(MAX_LIMIT);
+
+        assertTrue(limit.tryAcquire());
+        limit.finish(BASELINE, true);
+        assertEquals(MAX_LIMIT, limit.getLimit());
+
+        for (int index = 0; index < 5; index++) {
+            assertTrue(limit.tryAcquire());
+            limit.finish(BASELINE * 3, true);
+        }
+
+        assertEquals(5, limit.getLimit());
+        assertEquals(BASELINE, limit.getBaseline());
+
+        // Saturate the limit with fast calls so that it grows
+        for (int index = 0; index < 5; index++) {
+            assertTrue(limit.tryAcquire());
+        }
+
+        limit.finish(BASELINE, true);
+        assertEquals(6, limit.getLimit());
+    }
+
+    /**
+     * Tests that the limit doesn't grow while it's mostly unused.
+     */
+    @Test
+    public final void testNoGrowthWhenIdle() {
+        final AdaptiveLimit limit = new AdaptiveLimit(MAX_LIMIT);
+
+        assertTrue(limit.tryAcquire());
+        limit.finish(BASELINE, false);
+        assertTrue(limit.tryAcquire());
+        limit.finish(BASELINE, true);
+        assertEquals(9, limit.getLimit());
+    }
+
+    /**
+     * Tests that calls over the limit are rejected until one finishes.
+     */
+    @Test
+    public final void testRejection() {
+        final AdaptiveLimit limit = new AdaptiveLimit(1);
+
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(1, limit.getRejections());
+
+        limit.release();
+        assertEquals(0, limit.getInFlight());
+        assertTrue(limit.tryAcquire());
+    }
+
+    /**
+     * Tests that a limit can't be created without room for any calls.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testInvalidLimit() {
+        new AdaptiveLimit(0);
+    }
+}
@@ -0,0 +1,122 @@
+
+package edu.ucla.library.iiif.auth.delegate.limit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+/**
+ * Tests of the Bulkhead class.
+ */
+public class BulkheadTest {
+
+    /**
+     * The name of a test bulkhead.
+     */
+    private static final String NAME = BulkheadTest.class.getSimpleName();
+
+    /**
+     * Tests that calls over the limit are rejected when there's no queue.
+     */
+    @Test
+    public final void testRejection() {
+        final Bulkhead bulkhead = new Bulkhead(NAME, 1, 0, Duration.ZERO);
+
+        assertTrue(bulkhead.tryEnter());
+        assertEquals(1, bulkhead.getActive());
+        assertFalse(bulkhead.tryEnter());
+        assertEquals(1, bulkhead.getRejections());
+
+        bulkhead.exit();
+        assertTrue(bulkhead.tryEnter());
+    }
+
+    /**
+     * Tests that a queued call gets a permit when one is returned.
+     *
+     * @throws ExecutionException If the queued call fails
+     * @throws InterruptedException If the test is interrupted
+     */
+    @Test
+    public final void testQueued() throws ExecutionException, InterruptedException {
+        final Bulkhead bulkhead = new Bulkhead(NAME, 1, 1, Duration.ofSeconds(10));
+        final CompletableFuture<Boolean> queued;
+
+        assertTrue(bulkhead.tryEnter());
+        queued = CompletableFuture.supplyAsync(bulkhead::tryEnter);
+
+        while (bulkhead.getQueued() == 0) {
+            Thread.onSpinWait();
+        }
+
+        // The queue is full, so this call is rejected without waiting
+        assertFalse(bulkhead.tryEnter());
+
+        bulkhead.exit();
+        assertTrue(queued.get());
+        assertEquals(0, bulkhead.getQueued());
+        assertEquals(1, bulkhead.getRejections());
+    }
+
+    /**
+     * Tests that a queued call is rejected when its wait times out.
+     */
+    @Test
+    public final void testQueueTimeout() {
+        final Bulkhead bulkhead = new Bulkhead(NAME, 1, 1, Duration.ofMillis(10));
+
+        assertTrue(bulkhead.tryEnter());
+        assertFalse(bulkhead.tryEnter());
+        assertEquals(1, bulkhead.getRejections());
+    }
+
+    /**
+     * Tests that a shared bulkhead is only replaced when its limits change.
+     */
+    @Test
+    public final void testGetShared() {
+        final Bulkhead bulkhead = Bulkhead.getShared(NAME, 2, 2, Duration.ZERO, false);
+
+        assertSame(bulkhead, Bulkhead.getShared(NAME, 2, 2, Duration.ZERO, false));
+        assertNotSame(bulkhead, Bulkhead.getShared(NAME, 2, 2, Duration.ZERO, true));
+        assertNotSame(bulkhead, Bulkhead.getShared(NAME, 3, 2, Duration.ZERO, false));
+        assertTrue(Bulkhead.getAllShared().contains(Bulkhead.getShared(NAME, 3, 2, Duration.ZERO, false)));
+    }
+
+    /**
+     * Tests that an adaptive bulkhead rejects calls once its adaptive limit has shrunk, and returns the limit's
+     * permit when the bulkhead itself is full.
+     */
+    @Test
+    public final void testAdaptive() {
+        final Bulkhead bulkhead = new Bulkhead(NAME, 2, 0, Duration.ZERO, true);
+
+        assertTrue(bulkhead.tryEnter());
+        bulkhead.exit(1, false);
+        assertEquals(1, bulkhead.getAdaptiveLimit().getLimit());
+
+        assertTrue(bulkhead.tryEnter());
+        assertFalse(bulkhead.tryEnter());
+        assertEquals(0, bulkhead.getRejections());
+        assertEquals(1, bulkhead.getAdaptiveLimit().getRejections());
+
+        bulkhead.exit();
+        assertEquals(0, bulkhead.getAdaptiveLimit().getInFlight());
+    }
+
+    /**
+     * Tests that a bulkhead can't be created without any permits.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testInvalidLimit() {
+        new Bulkhead(NAME, 0, 0, Duration.ZERO);
+    }
+}
@@ -0,0 +1,85 @@
+
+package edu.ucla.library.iiif.auth.delegate.limit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of the ClientRateLimiter class.
+ */
+public class ClientRateLimiterTest {
+
+    /**
+     * A test client's address.
+     */
+    private static final String CLIENT = "192.0.2.1";
+
+    /**
+     * Another test client's address.
+     */
+    private static final String OTHER_CLIENT = "192.0.2.2";
+
+    /**
+     * The number of milliseconds it takes a test limiter to add a token.
+     */
+    private static final long REFILL = 1_000;
+
+    /**
+     * Tests that a client is rejected once its burst is spent, without affecting other clients.
+     */
+    @Test
+    public final void testBurst() {
+        final ClientRateLimiter limiter = new ClientRateLimiter(60, 2);
+
+        assertTrue(limiter.tryAcquire(CLIENT, 0));
+        assertTrue(limiter.tryAcquire(CLIENT, 0));
+        assertFalse(limiter.tryAcquire(CLIENT, 0));
+        assertEquals(1, limiter.getRejections());
+        assertTrue(limiter.tryAcquire(OTHER_CLIENT, 0));
+    }
+
+    /**
+     * Tests that a client's tokens are refilled at the limiter's rate, without losing partial tokens.
+     */
+    @Test
+    public final void testRefill() {
+        final ClientRateLimiter limiter = new ClientRateLimiter(60, 1);
+
+        assertTrue(limiter.tryAcquire(CLIENT, 0));
+        assertFalse(limiter.tryAcquire(CLIENT, REFILL / 2));
+        assertTrue(limiter.tryAcquire(CLIENT, REFILL));
+        assertFalse(limiter.tryAcquire(CLIENT, REFILL));
+
+        // A long idle period only refills the bucket up to its burst
+        assertTrue(limiter.tryAcquire(CLIENT, REFILL * 100));
+        assertFalse(limiter.tryAcquire(CLIENT, REFILL * 100));
+    }
+
+    /**
+     * Tests that a released token can be used again.
+     */
+    @Test
+    public final void testRelease() {
+        final ClientRateLimiter limiter = new ClientRateLimiter(1, 1);
+
+        assertTrue(limiter.tryAcquire(CLIENT, 0));
+        limiter.release(CLIENT);
+        assertTrue(limiter.tryAcquire(CLIENT, 0));
+        assertFalse(limiter.tryAcquire(CLIENT, 0));
+
+        // A client's release doesn't add to another client's bucket
+        limiter.release(OTHER_CLIENT);
+        assertFalse(limiter.tryAcquire(CLIENT, 0));
+    }
+
+    /**
+     * Tests that a limiter's burst can't be larger than a bucket can hold.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testInvalidBurst() {
+        new ClientRateLimiter(1, ClientRateLimiter.MAX_BURST + 1);
+    }
+}
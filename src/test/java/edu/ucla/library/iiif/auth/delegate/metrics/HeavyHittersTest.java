@@ -0,0 +1,64 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of the HeavyHitters class.
+ */
+public class HeavyHittersTest {
+
+    /**
+     * The prefix of the test identifiers.
+     */
+    private static final String PREFIX = "ark:/21198/";
+
+    /**
+     * The prefix of the test's hot identifiers.
+     */
+    private static final String HOT = PREFIX + "hot";
+
+    /**
+     * Tests that the most frequent keys of a skewed stream are found, most frequent first.
+     */
+    @Test
+    public final void testGetTop() {
+        final HeavyHitters hotKeys = new HeavyHitters(HeavyHittersTest.class.getSimpleName(), 5, 1024);
+        final Random random = new Random(42);
+        final List<String> stream = new ArrayList<>();
+
+        // Five hot keys, with decreasing frequencies, in a long tail of keys that are each seen a few times
+        for (int key = 0; key < 5; key++) {
+            for (int count = 0; count < (5 - key) * 200; count++) {
+                stream.add(HOT + key);
+            }
+        }
+
+        for (int index = 0; index < 20_000; index++) {
+            stream.add(PREFIX + random.nextInt(10_000));
+        }
+
+        Collections.shuffle(stream, random);
+        stream.forEach(hotKeys::record);
+
+        final Map<String, Long> top = hotKeys.getTop();
+        final List<String> keys = new ArrayList<>(top.keySet());
+
+        assertEquals(5, top.size());
+
+        for (int key = 0; key < 5; key++) {
+            assertEquals(HOT + key, keys.get(key));
+        }
+
+        assertTrue(top.get(HOT + 4) > 0);
+    }
+}
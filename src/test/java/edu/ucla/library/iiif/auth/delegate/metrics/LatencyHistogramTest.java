@@ -0,0 +1,63 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests of the LatencyHistogram class.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * The largest relative error of a recorded value.
+     */
+    private static final double PRECISION = 1.0 / 32;
+
+    /**
+     * Tests that every value is counted in a bucket whose range contains it, and that the buckets are contiguous.
+     */
+    @Test
+    public final void testBuckets() {
+        for (long value = 1; value < 1L << 35; value = value * 3 / 2 + 1) {
+            final int index = LatencyHistogram.getIndex(value);
+
+            assertTrue(LatencyHistogram.getLowestValue(index) <= value);
+            assertTrue(LatencyHistogram.getLowestValue(index + 1) > value);
+        }
+    }
+
+    /**
+     * Tests reading percentiles from a uniform spread of latencies.
+     */
+    @Test
+    public final void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMean(), 0.001);
+        assertEquals(1000, histogram.getMax(), 0.001);
+        assertEquals(500, histogram.getPercentile(50), 500 * PRECISION);
+        assertEquals(990, histogram.getPercentile(99), 990 * PRECISION);
+        assertEquals(1, histogram.getPercentile(0), PRECISION);
+    }
+
+    /**
+     * Tests that an empty histogram reports zeros.
+     */
+    @Test
+    public final void testEmpty() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getPercentile(99), 0);
+    }
+}
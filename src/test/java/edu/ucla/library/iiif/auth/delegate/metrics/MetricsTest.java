@@ -0,0 +1,89 @@
+
+package edu.ucla.library.iiif.auth.delegate.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import edu.ucla.library.iiif.auth.delegate.cache.BoundedCache;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * Tests of the Metrics class.
+ */
+public class MetricsTest {
+
+    /**
+     * The name of a test upstream service and cache.
+     */
+    private static final String NAME = MetricsTest.class.getSimpleName();
+
+    /**
+     * The platform MBean server.
+     */
+    private static final MBeanServer SERVER = ManagementFactory.getPlatformMBeanServer();
+
+    /**
+     * Tests that an upstream service's metrics can be read over JMX.
+     *
+     * @throws JMException If the metrics can't be read
+     */
+    @Test
+    public final void testUpstream() throws JMException {
+        final UpstreamMetrics metrics = Metrics.getUpstream(NAME);
+        final ObjectName name = new ObjectName(Metrics.DOMAIN + ":type=Upstream,name=" + NAME);
+
+        assertSame(metrics, Metrics.getUpstream(NAME));
+
+        metrics.record(TimeUnit.MILLISECONDS.toNanos(10), true);
+        metrics.record(TimeUnit.MILLISECONDS.toNanos(20), false);
+        metrics.recordRejection();
+
+        assertEquals(2L, SERVER.getAttribute(name, "Calls"));
+        assertEquals(1L, SERVER.getAttribute(name, "Errors"));
+        assertEquals(0.5, (double) SERVER.getAttribute(name, "ErrorRate"), 0);
+        assertEquals(1L, SERVER.getAttribute(name, "Rejections"));
+    }
+
+    /**
+     * Tests that a registered cache's metrics follow the cache it's replaced with.
+     *
+     * @throws JMException If the metrics can't be read
+     */
+    @Test
+    public final void testCache() throws JMException {
+        final BoundedCache<String, String> cache = new BoundedCache<>(1);
+        final ObjectName name = new ObjectName(Metrics.DOMAIN + ":type=Cache,name=" + NAME);
+
+        Metrics.registerCache(NAME, new BoundedCache<>(1));
+        Metrics.registerCache(NAME, cache);
+
+        cache.put(NAME, NAME).get(NAME);
+        assertEquals(1L, SERVER.getAttribute(name, "Hits"));
+        assertEquals(1, SERVER.getAttribute(name, "Size"));
+    }
+
+    /**
+     * Tests counting decisions by access mode and status.
+     */
+    @Test
+    public final void testDecisions() {
+        final DecisionMetrics metrics = new DecisionMetrics();
+
+        metrics.record(AccessMode.TIERED, 302, 1);
+        metrics.record(AccessMode.TIERED, 302, 1);
+        metrics.record(AccessMode.ALL_OR_NOTHING, 500, 1);
+
+        assertEquals(2, metrics.getDecisions(AccessMode.TIERED, 302));
+        assertEquals(2L, (long) metrics.getDecisions().get("TIERED 302"));
+        assertEquals(1, metrics.getDecisions(AccessMode.ALL_OR_NOTHING, 403));
+    }
+}
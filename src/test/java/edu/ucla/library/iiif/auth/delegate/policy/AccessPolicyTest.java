@@ -0,0 +1,77 @@
+
+package edu.ucla.library.iiif.auth.delegate.policy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import edu.ucla.library.iiif.auth.delegate.ConfigException;
+import edu.ucla.library.iiif.auth.delegate.hauth.AccessMode;
+
+/**
+ * Tests of the AccessPolicy class.
+ */
+public class AccessPolicyTest {
+
+    /**
+     * The source name used for the test policies.
+     */
+    private static final String SOURCE = "test-policy";
+
+    /**
+     * A test policy.
+     */
+    private static final AccessPolicy POLICY = AccessPolicy.parse(List.of("# A comment", "", //
+            "prefix ark:/21198/z1 OPEN", //
+            "prefix  ark:/21198/z1t  TIERED", //
+            "pattern ^ark:/21198/s[0-9]+$ ALL_OR_NOTHING", //
+            "pattern ^ark:/21198/ OPEN"), SOURCE);
+
+    /**
+     * Tests that the longest matching prefix wins.
+     */
+    @Test
+    public final void testLongestPrefix() {
+        assertEquals(Optional.of(AccessMode.OPEN), POLICY.getAccessMode("ark:/21198/z1abc"));
+        assertEquals(Optional.of(AccessMode.TIERED), POLICY.getAccessMode("ark:/21198/z1tabc"));
+    }
+
+    /**
+     * Tests that patterns are checked in order when no prefix matches.
+     */
+    @Test
+    public final void testPatterns() {
+        assertEquals(Optional.of(AccessMode.ALL_OR_NOTHING), POLICY.getAccessMode("ark:/21198/s123"));
+        assertEquals(Optional.of(AccessMode.OPEN), POLICY.getAccessMode("ark:/21198/s123x"));
+    }
+
+    /**
+     * Tests an identifier that no rule matches.
+     */
+    @Test
+    public final void testNoMatch() {
+        assertFalse(POLICY.getAccessMode("ark:/13030/z1abc").isPresent());
+        assertFalse(POLICY.getAccessMode("ark:/").isPresent());
+        assertEquals(4, POLICY.size());
+    }
+
+    /**
+     * Tests parsing a rule with an unknown access mode.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testInvalidAccessMode() {
+        AccessPolicy.parse(List.of("prefix ark:/21198/z1 CLOSED"), SOURCE);
+    }
+
+    /**
+     * Tests parsing a rule with an invalid pattern.
+     */
+    @Test(expected = ConfigException.class)
+    public final void testInvalidPattern() {
+        AccessPolicy.parse(List.of("pattern ark:/21198/[z1 OPEN"), SOURCE);
+    }
+}
@@ -0,0 +1,153 @@
+
+package edu.ucla.library.iiif.auth.delegate.policy;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+import edu.ucla.library.iiif.auth.delegate.Config;
+import edu.ucla.library.iiif.auth.delegate.ImageRequest;
+
+/**
+ * Tests of the DerivativeRules class.
+ */
+public class DerivativeRulesTest {
+
+    /**
+     * A fake service URI.
+     */
+    private static final URI SERVICE = URI.create("https://example.com/service");
+
+    /**
+     * The path of a test image.
+     */
+    private static final String IMAGE = "/iiif/2/ark:%2F21198%2Fz1/";
+
+    /**
+     * The rotation and quality of a test image request.
+     */
+    private static final String DEFAULT_JPG = "/0/default.jpg";
+
+    /**
+     * The full region.
+     */
+    private static final String FULL = "full";
+
+    /**
+     * A region for part of an image.
+     */
+    private static final String TILE = "0,0,1024,1024";
+
+    /**
+     * The legacy thumbnail size.
+     */
+    private static final String THUMBNAIL = "!200,200";
+
+    /**
+     * The maximum size.
+     */
+    private static final String MAX = "max";
+
+    /**
+     * A size that's half of the full size.
+     */
+    private static final String HALF_SIZE = "pct:50";
+
+    /**
+     * The scale constraint of a request without one.
+     */
+    private static final int[] UNSCALED = { 1, 1 };
+
+    /**
+     * The scale constraint of a request at the configured scale.
+     */
+    private static final int[] HALF = { 1, 2 };
+
+    /**
+     * Tests that the legacy thumbnail size is allowed by default.
+     */
+    @Test
+    public final void testDefaultRules() {
+        final DerivativeRules rules = new DerivativeRules(getConfig());
+
+        assertTrue(rules.isAllowed(getRequest(FULL, THUMBNAIL), UNSCALED));
+        assertTrue(rules.isAllowed(getRequest("square", "150,"), UNSCALED));
+        assertFalse(rules.isAllowed(getRequest(FULL, "!201,200"), UNSCALED));
+        assertTrue(rules.isAllowed(getRequest(FULL, "^!200,200"), UNSCALED));
+        assertFalse(rules.isAllowed(getRequest(FULL, MAX), HALF));
+        assertFalse(rules.isAllowed(getRequest(FULL, "pct:10"), UNSCALED));
+    }
+
+    /**
+     * Tests that sizes that only state a width or a height aren't allowed, since the other dimension is unbounded.
+     */
+    @Test
+    public final void testUnboundedDimension() {
+        final DerivativeRules rules = new DerivativeRules(getConfig());
+
+        assertFalse(rules.isAllowed(getRequest(FULL, "200,"), UNSCALED));
+        assertFalse(rules.isAllowed(getRequest(FULL, ",200"), UNSCALED));
+        assertFalse(rules.isAllowed(getRequest(FULL, "^200,"), UNSCALED));
+        assertFalse(rules.isAllowed(getRequest(FULL, "^,200"), UNSCALED));
+    }
+
+    /**
+     * Tests that small requests for part of an image (i.e., tiles) aren't allowed.
+     */
+    @Test
+    public final void testRegionNotAllowed() {
+        final DerivativeRules rules = new DerivativeRules(getConfig().setFreeScaledDerivatives(true));
+
+        assertFalse(rules.isAllowed(getRequest(TILE, THUMBNAIL), UNSCALED));
+        assertFalse(rules.isAllowed(getRequest(TILE, MAX), HALF));
+    }
+
+    /**
+     * Tests that the size rule can be disabled.
+     */
+    @Test
+    public final void testMaxSizeDisabled() {
+        final DerivativeRules rules = new DerivativeRules(getConfig().setFreeDerivativeMaxSize(0));
+
+        assertFalse(rules.isAllowed(getRequest(FULL, THUMBNAIL), UNSCALED));
+    }
+
+    /**
+     * Tests that scaled derivatives are allowed when they're configured to be.
+     */
+    @Test
+    public final void testScaledDerivatives() {
+        final DerivativeRules rules = new DerivativeRules(getConfig().setFreeScaledDerivatives(true));
+
+        assertTrue(rules.isAllowed(getRequest(FULL, HALF_SIZE), UNSCALED));
+        assertTrue(rules.isAllowed(getRequest(FULL, MAX), HALF));
+        assertTrue(rules.isAllowed(getRequest(FULL, MAX), 1, 4));
+        assertTrue(rules.isAllowed(getRequest(FULL, HALF_SIZE), HALF));
+        assertFalse(rules.isAllowed(getRequest(FULL, "pct:51"), UNSCALED));
+        assertFalse(rules.isAllowed(getRequest(FULL, MAX), 2, 3));
+        assertFalse(rules.isAllowed(getRequest(FULL, MAX), UNSCALED));
+    }
+
+    /**
+     * Gets a test configuration.
+     *
+     * @return A test configuration
+     */
+    private static Config getConfig() {
+        return new Config(SERVICE, SERVICE, SERVICE, SERVICE, "1:2");
+    }
+
+    /**
+     * Gets a test image request with the supplied region and size.
+     *
+     * @param aRegion A region
+     * @param aSize A size
+     * @return The image request
+     */
+    private static ImageRequest getRequest(final String aRegion, final String aSize) {
+        return ImageRequest.parse(IMAGE + aRegion + '/' + aSize + DEFAULT_JPG).get();
+    }
+}